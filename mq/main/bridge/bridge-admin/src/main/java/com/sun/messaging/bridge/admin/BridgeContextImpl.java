@@ -18,6 +18,7 @@
 package com.sun.messaging.bridge.admin;
 
 import java.io.File;
+import java.net.InetSocketAddress;
 import java.util.Properties;
 import java.util.List;
 import java.util.Locale;
@@ -27,6 +28,8 @@ import java.util.Enumeration;
 import com.sun.messaging.bridge.api.BridgeContext;
 import com.sun.messaging.bridge.api.BridgeBaseContext;
 import com.sun.messaging.bridge.api.BridgeUtil;
+import com.sun.messaging.bridge.api.StompConnection;
+import com.sun.messaging.bridge.api.StompProtocolHandler;
 
 /**
  * The runtime context for a Bridge Service
@@ -322,6 +325,11 @@ public class BridgeContextImpl implements BridgeContext {
         return _bc.getKnownSSLEnabledProtocols();
     }
 
+    @Override
+    public StompConnection createDirectStompConnection(String serviceName, StompProtocolHandler sph, InetSocketAddress remoteAddress) throws Exception {
+        return _bc.createDirectStompConnection(serviceName, sph, remoteAddress);
+    }
+
     /**
      * Logging method for Bridge Service Manager
      */
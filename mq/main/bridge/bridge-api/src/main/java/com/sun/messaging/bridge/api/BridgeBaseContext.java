@@ -17,6 +17,7 @@
 
 package com.sun.messaging.bridge.api;
 
+import java.net.InetSocketAddress;
 import java.util.Properties;
 import java.util.HashMap;
 import org.jvnet.hk2.annotations.Contract;
@@ -170,4 +171,13 @@ public interface BridgeBaseContext {
     boolean getPoodleFixEnabled();
 
     String[] getKnownSSLEnabledProtocols();
+
+    /**
+     * Create a STOMP connection that the broker serves directly instead of through a JMS client connection
+     *
+     * @param serviceName the broker connection service the connection belongs to
+     * @param sph the STOMP protocol handler of the client connection
+     * @param remoteAddress the address of the STOMP client, null if not known
+     */
+    StompConnection createDirectStompConnection(String serviceName, StompProtocolHandler sph, InetSocketAddress remoteAddress) throws Exception;
 }
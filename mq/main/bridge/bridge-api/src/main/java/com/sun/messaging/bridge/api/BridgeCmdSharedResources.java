@@ -61,6 +61,10 @@ public interface BridgeCmdSharedResources {
     String I_BGMGR_TITLE_REF = "BS1020";
     String I_BGMGR_TITLE_COUNT = "BS1021";
 
+    String I_BGMGR_TITLE_WORKER = "BS1022";
+    String I_BGMGR_TITLE_PENDING = "BS1023";
+    String I_BGMGR_TITLE_TRANSFERRED = "BS1024";
+
     String I_STATE_UNINITIALIZED = "BS1500";
     String I_STATE_STARTING = "BS1501";
     String I_STATE_STARTED = "BS1502";
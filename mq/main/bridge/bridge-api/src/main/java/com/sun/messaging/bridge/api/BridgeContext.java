@@ -17,6 +17,7 @@
 
 package com.sun.messaging.bridge.api;
 
+import java.net.InetSocketAddress;
 import java.util.Properties;
 import java.util.HashMap;
 import jakarta.jms.ConnectionFactory;
@@ -140,6 +141,15 @@ public interface BridgeContext {
 
     String[] getKnownSSLEnabledProtocols();
 
+    /**
+     * Create a STOMP connection that the broker serves directly instead of through a JMS client connection
+     *
+     * @param serviceName the broker connection service the connection belongs to
+     * @param sph the STOMP protocol handler of the client connection
+     * @param remoteAddress the address of the STOMP client, null if not known
+     */
+    StompConnection createDirectStompConnection(String serviceName, StompProtocolHandler sph, InetSocketAddress remoteAddress) throws Exception;
+
     /**
      * Logging method for Bridge Service Manager
      */
@@ -31,5 +31,26 @@ public interface ByteBufferWrapper<T> {
 
     byte get();
 
+    int limit();
+
+    /**
+     * Absolute get, does not change the position
+     */
+    byte get(int index);
+
+    /**
+     * Relative bulk get
+     */
+    ByteBufferWrapper get(byte[] dst, int offset, int length);
+
+    /**
+     * @return true if the bytes of the buffer are in an accessible array
+     */
+    boolean hasArray();
+
+    byte[] array();
+
+    int arrayOffset();
+
     T getWrapped();
 }
@@ -21,10 +21,11 @@ package com.sun.messaging.bridge.api;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.Map;
 import java.io.PrintStream;
 import java.io.OutputStream;
 import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
+import java.nio.charset.StandardCharsets;
 import com.sun.messaging.jmq.util.LoggerWrapper;
 
 /**
@@ -205,6 +206,8 @@ public abstract class StompFrameMessage {
 
     private ByteArrayOutputStream _bao = null;
     private byte[] _body = null;
+    // bytes of _body read so far when parsing a body with content-length
+    private int _bodyRead = -1;
     private Exception _parseException = null;
 
     private boolean _fatalERROR = false;
@@ -283,7 +286,7 @@ public abstract class StompFrameMessage {
 
         if (_body != null) {
             try {
-                return new String(_body, "UTF-8");
+                return new String(_body, StandardCharsets.UTF_8);
             } catch (Exception e) {
                 throw new StompFrameParseException(e.getMessage(), e);
             }
@@ -296,26 +299,16 @@ public abstract class StompFrameMessage {
         _body = _bao.toByteArray();
 
         try {
-            text = new String(_body, "UTF-8");
+            text = new String(_body, StandardCharsets.UTF_8);
             return text;
         } catch (Exception e) {
             throw new StompFrameParseException(getKStringX_CANNOT_PARSE_BODY_TO_TEXT(getCommand().toString(), e.getMessage()));
         }
     }
 
-    private void writeByteToBody(byte b) throws Exception {
-        if (_bao == null) {
-            if (getContentLength() != -1) {
-                _bao = new ByteArrayOutputStream(getContentLength());
-            } else {
-                _bao = new ByteArrayOutputStream();
-            }
-        }
-        _bao.write(b);
-    }
-
     public void setBody(byte[] data) {
         _body = data;
+        _bodyRead = -1;
     }
 
     protected void writeExceptionToBody(Throwable t) throws Exception {
@@ -330,6 +323,9 @@ public abstract class StompFrameMessage {
     }
 
     private int getBodySize() {
+        if (_bodyRead != -1) {
+            return _bodyRead;
+        }
         if (_bao == null) {
             return 0;
         }
@@ -386,47 +382,115 @@ public abstract class StompFrameMessage {
         return len;
     }
 
+    /**
+     * Marshall the frame to a buffer ready to be read.
+     * <P>
+     * The frame is passed to {@link #newFrameBuffer} as the encoded command and headers, the body and the end of frame
+     * bytes, the body is not copied if the subclass gathers the parts into one buffer.
+     */
     public ByteBufferWrapper marshall(Object obj) throws IOException {
-        OutputStream bos = null;
-        DataOutputStream dos = null;
+        byte[] body = getBody();
+        // the parts may end up in buffers of the transport, don't hand out the shared constant
+        byte[] end = END_OF_FRAME.clone();
+        if (body.length == 0) {
+            return newFrameBuffer(obj, marshallHeaders(), end);
+        }
+        return newFrameBuffer(obj, marshallHeaders(), body, end);
+    }
 
-        try {
-            bos = newBufferOutputStream(obj);
-            dos = new DataOutputStream(bos);
+    /**
+     * @return the whole frame in one array
+     */
+    public byte[] marshallToBytes() {
+        byte[] head = marshallHeaders();
+        byte[] body = getBody();
+        byte[] frame = new byte[head.length + body.length + END_OF_FRAME.length];
+        System.arraycopy(head, 0, frame, 0, head.length);
+        System.arraycopy(body, 0, frame, head.length, body.length);
+        System.arraycopy(END_OF_FRAME, 0, frame, head.length + body.length, END_OF_FRAME.length);
+        return frame;
+    }
 
-            StringBuilder sbuf = new StringBuilder();
-            sbuf.append(getCommand());
-            sbuf.append(NEWLINESTR);
-            for (String key : _headers.keySet()) {
-                sbuf.append(key);
-                sbuf.append(HEADER_SEPERATOR);
-                sbuf.append(_headers.get(key));
-                sbuf.append(NEWLINESTR);
+    /**
+     * @return the command line, the header lines and the empty line ending the headers encoded in UTF-8
+     */
+    protected byte[] marshallHeaders() {
+        String cmd = getCommand().toString();
+        int len = cmd.length() + 2;
+        boolean ascii = true;
+        for (Map.Entry<String, String> e : _headers.entrySet()) {
+            String key = e.getKey();
+            String val = String.valueOf(e.getValue());
+            len += key.length() + val.length() + 2;
+            ascii = ascii && isASCII(key) && isASCII(val);
+        }
+        if (!ascii) {
+            StringBuilder sbuf = new StringBuilder(len);
+            sbuf.append(cmd).append(NEWLINESTR);
+            for (Map.Entry<String, String> e : _headers.entrySet()) {
+                sbuf.append(e.getKey()).append(HEADER_SEPERATOR).append(e.getValue()).append(NEWLINESTR);
             }
             sbuf.append(NEWLINESTR);
+            return sbuf.toString().getBytes(StandardCharsets.UTF_8);
+        }
+        // the common case, write the chars as bytes without going through a String and an encoder
+        byte[] head = new byte[len];
+        int pos = putASCII(cmd, head, 0);
+        head[pos++] = NEWLINE_BYTE;
+        for (Map.Entry<String, String> e : _headers.entrySet()) {
+            pos = putASCII(e.getKey(), head, pos);
+            head[pos++] = (byte) ':';
+            pos = putASCII(String.valueOf(e.getValue()), head, pos);
+            head[pos++] = NEWLINE_BYTE;
+        }
+        head[pos] = NEWLINE_BYTE;
+        return head;
+    }
+
+    private static boolean isASCII(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int putASCII(String s, byte[] dst, int pos) {
+        for (int i = 0; i < s.length(); i++) {
+            dst[pos++] = (byte) s.charAt(i);
+        }
+        return pos;
+    }
 
-            dos.write(sbuf.toString().getBytes("UTF-8"));
-            dos.write(getBody());
-            dos.write(END_OF_FRAME);
-            dos.flush();
+    /**
+     * Put the parts of a frame in a buffer ready to be read.
+     * <P>
+     * This implementation copies the parts to the stream of {@link #newBufferOutputStream}; a subclass whose buffers
+     * can be composed of several arrays should override it to wrap the parts without copying them.
+     *
+     * @param obj the object passed to {@link #marshall}
+     * @param parts the frame parts in order, they must not be modified afterwards
+     */
+    protected ByteBufferWrapper newFrameBuffer(Object obj, byte[]... parts) throws IOException {
+        try (OutputStream bos = newBufferOutputStream(obj)) {
+            for (byte[] part : parts) {
+                bos.write(part);
+            }
+            bos.flush();
             ByteBufferWrapper bb = getBuffer(bos);
             bb.flip();
             return bb;
-
-        } finally {
-            if (dos != null) {
-                dos.close();
-            }
-            if (bos != null) {
-                bos.close();
-            }
         }
     }
 
     /**
+     * Parse header lines in place: the key and value of a header are decoded from the bytes of the buffer without
+     * copying the line first.
      */
     public void parseHeader(ByteBufferWrapper buf) throws Exception {
-        String header = null;
+        int start = -1;
+        int end = -1;
 
         if (logger.isFineLoggable()) {
             logger.logFine("in parseHeader: position=" + buf.position() + ", remaining=" + buf.remaining(), null);
@@ -435,34 +499,38 @@ public abstract class StompFrameMessage {
         try {
 
             while (buf.hasRemaining()) {
-                byte[] line = parseLine(buf, MAX_HEADER_LEN);
-                if (line == null) {
+                start = buf.position();
+                end = findLineEnd(buf, MAX_HEADER_LEN);
+                if (end == -1) {
                     return;
                 }
-                header = new String(line, "UTF-8");
+                buf.position(end + 1);
 
                 if (logger.isFineLoggable()) {
-                    logger.logFine("parseHeader: got line byte-length=" + line.length + ", header=:" + header + ", header-length=" + header.length()
+                    String header = decode(buf, start, end);
+                    logger.logFine("parseHeader: got line byte-length=" + (end - start) + ", header=:" + header + ", header-length=" + header.length()
                             + ", position=" + buf.position(), null);
                 }
 
-                if (header.trim().length() == 0) {
+                int ks = skipSpace(buf, start, end);
+                if (ks == end) {
                     setNextParseStage(ParseStage.BODY);
                     if (logger.isFinestLoggable()) {
                         logger.logFinest("parseHeader: DONE - position=" + buf.position(), null);
                     }
                     return;
                 }
-                int index = header.indexOf(HEADER_SEPERATOR);
+                int index = indexOf(buf, start, end, (byte) ':');
                 if (index == -1) {
                     if (_parseException == null) {
-                        _parseException = new StompFrameParseException(getKStringX_INVALID_HEADER(header));
+                        _parseException = new StompFrameParseException(getKStringX_INVALID_HEADER(decode(buf, start, end)));
                         logger.logSevere(_parseException.getMessage(), null);
                     }
-                    index = header.length() - 1;
+                    index = end - 1;
                 }
-                String key = header.substring(0, index).trim();
-                String val = header.substring(index + 1, header.length()).trim();
+                String key = decode(buf, ks, trimEnd(buf, ks, index));
+                int vs = skipSpace(buf, Math.min(index + 1, end), end);
+                String val = decode(buf, vs, trimEnd(buf, vs, end));
                 addHeader(key, val);
                 if (_headers.size() > MAX_HEADERS) { // XXX
                     throw new StompFrameParseException(getKStringX_MAX_HEADERS_EXCEEDED(MAX_HEADERS));
@@ -473,12 +541,14 @@ public abstract class StompFrameMessage {
             if (e instanceof StompFrameParseException) {
                 throw e;
             }
+            String header = (end == -1 ? null : decode(buf, start, end));
             throw new StompFrameParseException(getKStringX_EXCEPTION_PARSE_HEADER(header, e.getMessage()), e);
         }
     }
 
     /**
-     *
+     * Read the body into an array of content-length bytes, or, without content-length, copy each run of bytes up to
+     * the NULL terminator in one go.
      */
     public void readBody(ByteBufferWrapper buf) throws Exception {
 
@@ -489,40 +559,68 @@ public abstract class StompFrameMessage {
                     + getBodySize(), null);
         }
 
-        byte b;
-        while (buf.hasRemaining()) {
-            if (clen != -1 && clen == getBodySize()) {
+        if (clen != -1) {
+            if (_bodyRead == -1) {
+                _body = new byte[clen];
+                _bodyRead = 0;
+            }
+            int n = Math.min(buf.remaining(), clen - _bodyRead);
+            if (n > 0) {
+                buf.get(_body, _bodyRead, n);
+                _bodyRead += n;
+            }
+            if (_bodyRead == clen) {
                 if (logger.isFinestLoggable()) {
                     logger.logFinest("Body has beed read!", null);
                 }
+                _bodyRead = -1;
                 setNextParseStage(ParseStage.NULL);
-                return;
             }
-            b = buf.get();
-            if (b == NULL_BYTE && clen == -1) {
+            return;
+        }
 
-                if (buf.hasRemaining()) {
-                    int pos = buf.position();
-                    byte bb = buf.get();
-                    if (bb != '\n' && bb != '\r') {
-                        buf.position(pos);
-                    }
-                }
-                if (buf.hasRemaining()) {
-                    int pos = buf.position();
-                    byte bb = buf.get();
-                    if (bb != '\n') {
-                        buf.position(pos);
-                    }
+        int start = buf.position();
+        int limit = buf.limit();
+        int i = start;
+        while (i < limit && buf.get(i) != NULL_BYTE) {
+            i++;
+        }
+        if (i > start) {
+            if (_bao == null) {
+                _bao = new ByteArrayOutputStream(i - start);
+            }
+            if (buf.hasArray()) {
+                _bao.write(buf.array(), buf.arrayOffset() + start, i - start);
+                buf.position(i);
+            } else {
+                byte[] tmp = new byte[i - start];
+                buf.get(tmp, 0, tmp.length);
+                _bao.write(tmp, 0, tmp.length);
+            }
+        }
+        if (i < limit) {
+            buf.get();
+
+            if (buf.hasRemaining()) {
+                int pos = buf.position();
+                byte bb = buf.get();
+                if (bb != '\n' && bb != '\r') {
+                    buf.position(pos);
                 }
-                if (logger.isFinestLoggable()) {
-                    logger.logFinest("readBody: DONE - position=" + buf.position() + ", remaining=" + buf.remaining(), null);
+            }
+            if (buf.hasRemaining()) {
+                int pos = buf.position();
+                byte bb = buf.get();
+                if (bb != '\n') {
+                    buf.position(pos);
                 }
-
-                setNextParseStage(ParseStage.DONE);
-                return;
             }
-            writeByteToBody(b);
+            if (logger.isFinestLoggable()) {
+                logger.logFinest("readBody: DONE - position=" + buf.position() + ", remaining=" + buf.remaining(), null);
+            }
+
+            setNextParseStage(ParseStage.DONE);
+            return;
         }
         if (logger.isFinestLoggable()) {
             logger.logFinest("leaving readBody(): BODY_SIZE=" + getBodySize(), null);
@@ -576,14 +674,16 @@ public abstract class StompFrameMessage {
         try {
 
             while (cmd.trim().length() == 0) {
-                byte[] line = parseLine(buf, MAX_COMMAND_LEN);
-                if (line == null) {
+                int start = buf.position();
+                int end = findLineEnd(buf, MAX_COMMAND_LEN);
+                if (end == -1) {
                     if (logger.isFinestLoggable()) {
                         logger.logFinest("parseCommand: position[" + buf.position() + "] command line not found", null);
                     }
                     return null;
                 }
-                cmd = new String(line, "UTF-8");
+                buf.position(end + 1);
+                cmd = decode(buf, start, end);
 
                 if (logger.isFinestLoggable()) {
                     logger.logFinest("parseCommand: got line:" + cmd + ", position=" + buf.position(), null);
@@ -643,36 +743,66 @@ public abstract class StompFrameMessage {
     }
 
     /**
+     * @return the index of the newline ending the line at the position of the buffer, -1 if the line is not complete
      */
-    private static byte[] parseLine(ByteBufferWrapper buf, int maxbytes) throws Exception {
-
-        byte[] line = new byte[maxbytes];
-        int pos = buf.position();
-        boolean foundline = false;
-        int i = 0;
-        byte b;
-        while (buf.hasRemaining()) {
-            b = buf.get();
-            /*
-             * if (logger.isFinestLoggable()) { logger.logFinest("parseLine: byte="+Byte.valueOf(b), null); }
-             */
-            if (b == NEWLINE_BYTE) {
-                foundline = true;
-                break;
-            }
-            line[i++] = b;
-            if (i >= (maxbytes - 1)) {
+    private static int findLineEnd(ByteBufferWrapper buf, int maxbytes) throws Exception {
+        int start = buf.position();
+        int limit = buf.limit();
+        for (int i = start; i < limit; i++) {
+            if (buf.get(i) == NEWLINE_BYTE) {
+                return i;
+            }
+            if (i - start + 1 >= (maxbytes - 1)) {
                 StompFrameMessage em = newStompFrameMessageERROR();
                 throw new StompFrameParseException(em.getKStringX_MAX_LINELEN_EXCEEDED(maxbytes));
             }
         }
-        if (!foundline) {
-            buf.position(pos);
-            return null;
+        return -1;
+    }
+
+    /**
+     * @return the bytes from start to end of the buffer decoded as UTF-8
+     */
+    private static String decode(ByteBufferWrapper buf, int start, int end) {
+        if (buf.hasArray()) {
+            return new String(buf.array(), buf.arrayOffset() + start, end - start, StandardCharsets.UTF_8);
+        }
+        byte[] tmp = new byte[end - start];
+        for (int i = start; i < end; i++) {
+            tmp[i - start] = buf.get(i);
+        }
+        return new String(tmp, StandardCharsets.UTF_8);
+    }
+
+    private static int indexOf(ByteBufferWrapper buf, int start, int end, byte b) {
+        for (int i = start; i < end; i++) {
+            if (buf.get(i) == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the index of the first byte from start that is not white space as for String.trim, or end
+     */
+    private static int skipSpace(ByteBufferWrapper buf, int start, int end) {
+        int i = start;
+        while (i < end && (buf.get(i) & 0xff) <= ' ') {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * @return the index after the last byte before end that is not white space as for String.trim, or start
+     */
+    private static int trimEnd(ByteBufferWrapper buf, int start, int end) {
+        int i = end;
+        while (i > start && (buf.get(i - 1) & 0xff) <= ' ') {
+            i--;
         }
-        byte[] tmp = new byte[i];
-        System.arraycopy(line, 0, tmp, 0, i);
-        return tmp;
+        return i;
     }
 
     protected static StompFrameMessage newStompFrameMessageERROR() {
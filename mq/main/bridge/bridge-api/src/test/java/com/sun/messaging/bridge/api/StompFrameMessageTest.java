@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.messaging.bridge.api;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import com.sun.messaging.jmq.util.LoggerWrapper;
+
+class StompFrameMessageTest {
+
+    private static final LoggerWrapper LOGGER = new LoggerWrapper() {
+        @Override
+        public void logInfo(String msg, Throwable t) {
+        }
+
+        @Override
+        public void logWarn(String msg, Throwable t) {
+        }
+
+        @Override
+        public void logSevere(String msg, Throwable t) {
+        }
+
+        @Override
+        public void logFine(String msg, Throwable t) {
+        }
+
+        @Override
+        public void logFinest(String msg, Throwable t) {
+        }
+
+        @Override
+        public boolean isFineLoggable() {
+            return false;
+        }
+
+        @Override
+        public boolean isFinestLoggable() {
+            return false;
+        }
+    };
+
+    private static final StompFrameMessageFactory FACTORY = (cmd, logger) -> new TestFrame(cmd, logger);
+
+    static class TestFrame extends StompFrameMessage {
+        TestFrame(Command cmd, LoggerWrapper logger) {
+            super(cmd, logger);
+        }
+
+        @Override
+        protected OutputStream newBufferOutputStream(Object obj) {
+            return new ByteArrayOutputStream();
+        }
+
+        @Override
+        protected ByteBufferWrapper getBuffer(OutputStream os) {
+            byte[] b = ((ByteArrayOutputStream) os).toByteArray();
+            return new Wrapper(ByteBuffer.wrap(b).position(b.length));
+        }
+
+        @Override
+        protected String getKStringX_CANNOT_PARSE_BODY_TO_TEXT(String cmd, String emsg) {
+            return emsg;
+        }
+
+        @Override
+        protected String getKStringX_HEADER_NOT_SPECIFIED_FOR(String headerName, String cmd) {
+            return headerName;
+        }
+
+        @Override
+        protected String getKStringX_INVALID_HEADER_VALUE(String headerValue, String cmd) {
+            return headerValue;
+        }
+
+        @Override
+        protected String getKStringX_INVALID_HEADER(String headerName) {
+            return headerName;
+        }
+
+        @Override
+        protected String getKStringX_MAX_HEADERS_EXCEEDED(int maxHeaders) {
+            return String.valueOf(maxHeaders);
+        }
+
+        @Override
+        protected String getKStringX_EXCEPTION_PARSE_HEADER(String headerName, String emsg) {
+            return emsg;
+        }
+
+        @Override
+        protected String getKStringX_NO_NULL_TERMINATOR(String contentlen) {
+            return contentlen;
+        }
+
+        @Override
+        protected String getKStringX_UNKNOWN_STOMP_CMD(String cmd) {
+            return cmd;
+        }
+
+        @Override
+        protected String getKStringX_MAX_LINELEN_EXCEEDED(int maxbytes) {
+            return String.valueOf(maxbytes);
+        }
+    }
+
+    static class Wrapper implements ByteBufferWrapper<ByteBuffer> {
+        private final ByteBuffer buf;
+
+        Wrapper(ByteBuffer buf) {
+            this.buf = buf;
+        }
+
+        @Override
+        public int position() {
+            return buf.position();
+        }
+
+        @Override
+        public ByteBufferWrapper position(int newPosition) {
+            buf.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public boolean hasRemaining() {
+            return buf.hasRemaining();
+        }
+
+        @Override
+        public int remaining() {
+            return buf.remaining();
+        }
+
+        @Override
+        public ByteBufferWrapper flip() {
+            buf.flip();
+            return this;
+        }
+
+        @Override
+        public byte get() {
+            return buf.get();
+        }
+
+        @Override
+        public int limit() {
+            return buf.limit();
+        }
+
+        @Override
+        public byte get(int index) {
+            return buf.get(index);
+        }
+
+        @Override
+        public ByteBufferWrapper get(byte[] dst, int offset, int length) {
+            buf.get(dst, offset, length);
+            return this;
+        }
+
+        @Override
+        public boolean hasArray() {
+            return buf.hasArray();
+        }
+
+        @Override
+        public byte[] array() {
+            return buf.array();
+        }
+
+        @Override
+        public int arrayOffset() {
+            return buf.arrayOffset();
+        }
+
+        @Override
+        public ByteBuffer getWrapped() {
+            return buf;
+        }
+    }
+
+    private static StompFrameMessage parse(ByteBufferWrapper buf) throws Exception {
+        StompFrameMessage message = StompFrameMessage.parseCommand(buf, LOGGER, FACTORY);
+        message.parseHeader(buf);
+        if (message.getNextParseStage() == StompFrameMessage.ParseStage.BODY) {
+            message.readBody(buf);
+        }
+        if (message.getNextParseStage() == StompFrameMessage.ParseStage.NULL) {
+            message.readNULL(buf);
+        }
+        return message;
+    }
+
+    @Test
+    void testMarshallAndParseWithContentLength() throws Exception {
+        StompFrameMessage out = new TestFrame(StompFrameMessage.Command.SEND, LOGGER);
+        byte[] body = new byte[] { 1, 0, 2, 'x' };
+        out.addHeader(StompFrameMessage.SendHeader.DESTINATION, "/queue/qé");
+        out.addHeader(StompFrameMessage.CommonHeader.CONTENTLENGTH, String.valueOf(body.length));
+        out.setBody(body);
+
+        ByteBufferWrapper buf = out.marshall(null);
+        StompFrameMessage in = parse(buf);
+
+        assertThat(in.getNextParseStage()).isEqualTo(StompFrameMessage.ParseStage.DONE);
+        assertThat(in.getParseException()).isNull();
+        assertThat(in.getCommand()).isEqualTo(StompFrameMessage.Command.SEND);
+        assertThat(in.getHeader(StompFrameMessage.SendHeader.DESTINATION)).isEqualTo("/queue/qé");
+        assertThat(in.getBody()).containsExactly(body);
+        assertThat(out.marshallToBytes()).containsExactly(((ByteBuffer) out.marshall(null).getWrapped()).array());
+    }
+
+    @Test
+    void testHeadersAreTrimmedAndBodyEndsAtNull() throws Exception {
+        byte[] frame = "\nSEND\n destination :  /queue/a \r\nreceipt:1\n\nhello\0\n".getBytes(StandardCharsets.UTF_8);
+        // a direct buffer has no array, the bytes are read through the buffer
+        ByteBuffer direct = ByteBuffer.allocateDirect(frame.length).put(frame);
+        direct.flip();
+
+        StompFrameMessage in = parse(new Wrapper(direct));
+
+        assertThat(in.getNextParseStage()).isEqualTo(StompFrameMessage.ParseStage.DONE);
+        assertThat(in.getHeader(StompFrameMessage.SendHeader.DESTINATION)).isEqualTo("/queue/a");
+        assertThat(in.getHeader(StompFrameMessage.CommonHeader.RECEIPT)).isEqualTo("1");
+        assertThat(in.getBodyText()).isEqualTo("hello");
+        assertThat(direct.hasRemaining()).isFalse();
+    }
+
+    @Test
+    void testBodySplitOverReads() throws Exception {
+        byte[] frame = "SEND\ndestination:/queue/a\ncontent-length:6\n\nabcdef\0".getBytes(StandardCharsets.UTF_8);
+        int split = frame.length - 4;
+
+        ByteBuffer first = ByteBuffer.wrap(frame, 0, split).slice();
+        StompFrameMessage in = StompFrameMessage.parseCommand(new Wrapper(first), LOGGER, FACTORY);
+        in.parseHeader(new Wrapper(first));
+        in.readBody(new Wrapper(first));
+        assertThat(in.getNextParseStage()).isEqualTo(StompFrameMessage.ParseStage.BODY);
+
+        ByteBufferWrapper rest = new Wrapper(ByteBuffer.wrap(frame, split, frame.length - split).slice());
+        in.readBody(rest);
+        in.readNULL(rest);
+
+        assertThat(in.getNextParseStage()).isEqualTo(StompFrameMessage.ParseStage.DONE);
+        assertThat(in.getBodyText()).isEqualTo("abcdef");
+    }
+}
@@ -744,6 +744,19 @@ public class JMSBridge {
                 return replys;
             }
 
+            if (l.getParallelWorkers() > 1) {
+                BridgeCmdSharedReplyData wrep = new BridgeCmdSharedReplyData(3, 3, "-");
+                String woneRow[] = new String[3];
+                woneRow[0] = rb.getString(BridgeCmdSharedResources.I_BGMGR_TITLE_WORKER);
+                woneRow[1] = rb.getString(BridgeCmdSharedResources.I_BGMGR_TITLE_PENDING);
+                woneRow[2] = rb.getString(BridgeCmdSharedResources.I_BGMGR_TITLE_TRANSFERRED);
+                wrep.addTitle(woneRow);
+                for (String[] row : l.getWorkerMetrics()) {
+                    wrep.add(row);
+                }
+                replys.add(wrep);
+            }
+
             if (l.isTransacted()) {
                 BridgeCmdSharedReplyData rep = new BridgeCmdSharedReplyData(1, 3, "-");
                 String toneRow[] = new String[1];
@@ -18,7 +18,14 @@
 
 package com.sun.messaging.bridge.service.jms;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.ResourceBundle;
@@ -167,6 +174,14 @@ public class Link {
     private int _sourceAttemptInterval = 5; // sec
     private int _targetAttemptInterval = 5; // sec
 
+    private int _parallelWorkers = 1;
+    private String _partitionKey = null;
+    private LinkWorker[] _workers = null;
+    private long _unkeyedCount = 0;
+    private final ConcurrentLinkedQueue<Transfer> _completedTransfers = new ConcurrentLinkedQueue<>();
+    private static final int MAX_WORKER_PENDING = 100;
+    private static final long PARTITIONED_RECEIVE_TIMEOUT = 1000L; // millisecs
+
     public synchronized void init(Properties linkAttrs, Properties srcAttrs, Properties tgtAttrs, Properties tgtProps, JMSBridge parent) throws Exception {
         var _linkAttrs = linkAttrs;
         _srcAttrs = srcAttrs;
@@ -208,6 +223,30 @@ public class Link {
 
         _retainReplyTo = Boolean.parseBoolean(_tgtAttrs.getProperty(JMSBridgeXMLConstant.Target.RETAINREPLYTO, JMSBridgeXMLConstant.Target.RETAINREPLYTO_DEFAULT));
 
+        _parallelWorkers = Integer
+                .parseInt(_linkAttrs.getProperty(JMSBridgeXMLConstant.Link.PARALLELWORKERS, JMSBridgeXMLConstant.Link.PARALLELWORKERS_DEFAULT));
+        if (_parallelWorkers < 1) {
+            throw new IllegalArgumentException("Invalid " + JMSBridgeXMLConstant.Link.PARALLELWORKERS + " " + _parallelWorkers + " in " + this);
+        }
+        _partitionKey = _linkAttrs.getProperty(JMSBridgeXMLConstant.Link.PARTITIONKEY, JMSBridgeXMLConstant.Link.PARTITIONKEY_DEFAULT);
+        if (_parallelWorkers > 1) {
+            String reason = null;
+            if (_isTransacted) {
+                reason = JMSBridgeXMLConstant.Link.TRANSACTED;
+            } else if (_msgTransformer != null) {
+                reason = JMSBridgeXMLConstant.Target.MTFCLASS;
+            } else if (JMSBridgeXMLConstant.Target.DESTINATIONREF_AS_SOURCE.equals(_targetDest)) {
+                reason = JMSBridgeXMLConstant.Target.DESTINATIONREF_AS_SOURCE;
+            } else if (!(_sourceCF.getRefed() instanceof com.sun.messaging.ConnectionFactory)) {
+                reason = "source " + _sourceCF.getRefed().getClass().getName();
+            }
+            if (reason != null) {
+                _logger.log(Level.WARNING,
+                        JMSBridgeXMLConstant.Link.PARALLELWORKERS + " " + _parallelWorkers + " is not supported with " + reason + ", use 1 in " + this);
+                _parallelWorkers = 1;
+            }
+        }
+
         String val = _parent.getCFAttributes(_sourceCF).getProperty(JMSBridgeXMLConstant.CF.CONNECTATTEMPTINTERVAL,
                 JMSBridgeXMLConstant.CF.CONNECTATTEMPTINTERVAL_DEFAULT);
         if (val != null) {
@@ -341,9 +380,13 @@ public class Link {
     }
 
     static Thread newLinkThread(Link link) {
-        var thread = new Thread(link::run);
+        return newLinkThread(link::run, link.toString());
+    }
+
+    static Thread newLinkThread(Runnable r, String name) {
+        var thread = new Thread(r);
         thread.setDaemon(true);
-        thread.setName(link.toString());
+        thread.setName(name);
         return thread;
     }
 
@@ -956,6 +999,10 @@ public class Link {
             if (_sourceConn instanceof XAConnection) {
                 _logger.log(Level.INFO, _jbr.getString(_jbr.I_RUNNING_XA_CONSUMER, this.toString()));
                 runTransacted();
+            } else if (_parallelWorkers > 1) {
+                _logger.log(Level.INFO, _jbr.getString(_jbr.I_RUNNING_NONTXN_CONSUMER, this.toString()) + " with " + _parallelWorkers
+                        + " workers partitioned by " + _partitionKey);
+                runPartitioned();
             } else {
                 _logger.log(Level.INFO, _jbr.getString(_jbr.I_RUNNING_NONTXN_CONSUMER, this.toString()));
                 runNonTransacted();
@@ -1763,6 +1810,403 @@ public class Link {
         }
     }
 
+    /**
+     * Receive from source and dispatch each message to one of the partitioned workers, which send to target in parallel.
+     * Messages of the same partition key go to the same worker so that their order is preserved. Acknowledgements are
+     * done in this thread as workers complete their transfers since the source session is not shared with the workers.
+     */
+    private void runPartitioned() throws Throwable {
+        long msgCount = 0;
+
+        int consecutiveThrowables = 0;
+
+        startWorkers();
+        try {
+            while (_state != LinkState.STOPPING && _state != LinkState.STOPPED) {
+
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedException(_jbr.getKString(_jbr.X_LINK_INTERRUPTED, this.toString()));
+                }
+
+                ackCompletedTransfers();
+
+                if (_sourceConnException) {
+                    awaitWorkersIdle();
+                    _completedTransfers.clear();
+                    closeSource();
+                    initSource();
+                    resume(false);
+                }
+
+                Message m = null;
+                try {
+                    if (_fi.FAULT_INJECTION) {
+                        _fi.setLogger(_logger);
+                        _fi.checkFaultAndThrowException(FaultInjection.FAULT_RECEIVE_1, null, "jakarta.jms.JMSException", true);
+                    }
+                    m = _consumer.receive(PARTITIONED_RECEIVE_TIMEOUT);
+                    if (m == null) {
+                        continue;
+                    }
+
+                    msgCount++;
+                    if (_logger.isLoggable(Level.FINE)) {
+                        _logger.log(Level.FINE, "Received message " + m + " from source in " + this + ", msgCount=" + msgCount);
+                    }
+                    if (_fi.FAULT_INJECTION) {
+                        _fi.setLogger(_logger);
+                        _fi.checkFaultAndThrowException(FaultInjection.FAULT_RECEIVE_2, null, "jakarta.jms.JMSException", true);
+                    }
+                    consecutiveThrowables = 0;
+                } catch (Throwable t) {
+                    logWarning("Exception in receiving message: " + t.getMessage() + " in " + this, t);
+
+                    if (_state == LinkState.STOPPING || _state == LinkState.STOPPED) {
+                        return;
+                    }
+                    if (++consecutiveThrowables > MAX_CONSECUTIVE_THROWABLES) {
+                        throw new RuntimeException("Maximum consecutive exceptions exceeded", t);
+                    }
+                    _sourceConnException = true;
+                    continue;
+                }
+
+                Transfer tr = new Transfer(m, MessageHeaders.getMessageHeaders(m));
+                if (tr.headers.expiration != 0L && tr.headers.expiration < System.currentTimeMillis()) {
+                    _logger.log(Level.INFO, _jbr.getString(_jbr.I_NONTXN_MESSAGE_EXPIRED, tr.headers.mid, this.toString()));
+                    sendToDMQ(m, tr.headers.mid, DMQ.DMQReason.MESSAGE_EXPIRED, (Throwable) null);
+                    // other messages may be in transit in workers, so consume it rather than recover the source session
+                    ((com.sun.messaging.jmq.jmsclient.MessageImpl) m).acknowledgeThisMessage();
+                    continue;
+                }
+                selectWorker(m).dispatch(tr);
+            }
+        } finally {
+            stopWorkers();
+        }
+    }
+
+    private LinkWorker selectWorker(Message m) throws JMSException {
+        Object key = null;
+        if ("JMSCorrelationID".equals(_partitionKey)) {
+            key = m.getJMSCorrelationID();
+        } else if ("JMSType".equals(_partitionKey)) {
+            key = m.getJMSType();
+        } else {
+            key = m.getObjectProperty(_partitionKey);
+        }
+        if (key == null) {
+            return _workers[(int) (_unkeyedCount++ % _workers.length)];
+        }
+        return _workers[Math.floorMod(key.hashCode(), _workers.length)];
+    }
+
+    private void startWorkers() {
+        _completedTransfers.clear();
+        LinkWorker[] workers = new LinkWorker[_parallelWorkers];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new LinkWorker(i);
+        }
+        _workers = workers;
+        for (int i = 0; i < workers.length; i++) {
+            workers[i].start();
+        }
+    }
+
+    private void stopWorkers() {
+        LinkWorker[] workers = _workers;
+        if (workers == null) {
+            return;
+        }
+        for (int i = 0; i < workers.length; i++) {
+            workers[i].interrupt();
+        }
+        for (int i = 0; i < workers.length; i++) {
+            try {
+                workers[i].join(30000);
+            } catch (InterruptedException e) {
+                _logger.log(Level.WARNING, "Interrupted in waiting for " + workers[i] + " to exit");
+            }
+        }
+    }
+
+    /**
+     * To be called only by the link thread
+     */
+    private void ackCompletedTransfers() throws Throwable {
+        Transfer tr = null;
+        while ((tr = _completedTransfers.poll()) != null) {
+            String mid = tr.headers.mid;
+            try {
+                if (_fi.FAULT_INJECTION) {
+                    _fi.setLogger(_logger);
+                    _fi.checkFaultAndThrowException(FaultInjection.FAULT_ACK_1, null, "jakarta.jms.JMSException", true);
+                }
+                ((com.sun.messaging.jmq.jmsclient.MessageImpl) tr.message).acknowledgeThisMessage();
+                if (tr.sentToDMQ) {
+                    continue;
+                }
+                String[] param = { mid, tr.midSent, this.toString() };
+                if (_parent.logMessageTransfer()) {
+                    _logger.log(Level.INFO, _jbr.getString(_jbr.I_MESSAGE_TRANSFER_SUCCESS, param));
+                } else if (_logger.isLoggable(Level.FINE)) {
+                    _logger.log(Level.FINE, _jbr.getString(_jbr.I_MESSAGE_TRANSFER_SUCCESS, param));
+                }
+            } catch (Throwable t) {
+                _logger.log(Level.SEVERE, "Failed to acknowledge message " + mid + " in " + this, t);
+                sendToDMQ(tr.message, mid, DMQ.DMQReason.ACK_FAILURE, t);
+            }
+        }
+        LinkWorker[] workers = _workers;
+        for (int i = 0; i < workers.length; i++) {
+            if (workers[i]._fatal != null) {
+                throw new RuntimeException("Maximum consecutive exceptions exceeded in " + workers[i], workers[i]._fatal);
+            }
+        }
+    }
+
+    private void awaitWorkersIdle() throws Throwable {
+        LinkWorker[] workers = _workers;
+        for (int i = 0; i < workers.length; i++) {
+            while (workers[i].getPendingCount() > 0) {
+                if (_state == LinkState.STOPPING || _state == LinkState.STOPPED) {
+                    throw new JMSException(_jbr.getKString(_jbr.X_LINK_IS_STOPPED, this.toString()));
+                }
+                ackCompletedTransfers();
+                Thread.sleep(100L);
+            }
+        }
+    }
+
+    /**
+     * @return one row of worker index, number of messages dispatched to but not yet sent by the worker and number of
+     * messages sent by the worker for each partitioned worker, or empty if the link is not running partitioned workers
+     */
+    public List<String[]> getWorkerMetrics() {
+        List<String[]> rows = new ArrayList<>();
+        LinkWorker[] workers = _workers;
+        if (workers == null) {
+            return rows;
+        }
+        for (int i = 0; i < workers.length; i++) {
+            rows.add(new String[] { String.valueOf(i), String.valueOf(workers[i].getPendingCount()), String.valueOf(workers[i]._transferred.get()) });
+        }
+        return rows;
+    }
+
+    public int getParallelWorkers() {
+        return _parallelWorkers;
+    }
+
+    static class Transfer {
+        final Message message;
+        final MessageHeaders headers;
+        String midSent = null;
+        boolean sentToDMQ = false;
+
+        Transfer(Message m, MessageHeaders mhs) {
+            message = m;
+            headers = mhs;
+        }
+    }
+
+    /**
+     * A partitioned worker of the link that sends to target on its own connection
+     */
+    class LinkWorker implements Runnable {
+        private final int _index;
+        private final BlockingQueue<Transfer> _queue = new LinkedBlockingQueue<>(MAX_WORKER_PENDING);
+        private final AtomicLong _dispatched = new AtomicLong(0);
+        private final AtomicLong _transferred = new AtomicLong(0);
+        private volatile Throwable _fatal = null;
+        private Thread _wthread = null;
+        private int _consecutiveThrowables = 0;
+
+        private Connection _wconn = null;
+        private Session _wsession = null;
+        private MessageProducer _wproducer = null;
+        private volatile boolean _wconnException = false;
+
+        LinkWorker(int index) {
+            _index = index;
+        }
+
+        void start() {
+            _wthread = newLinkThread(this, this.toString());
+            _wthread.start();
+        }
+
+        void interrupt() {
+            _wthread.interrupt();
+        }
+
+        void join(long millis) throws InterruptedException {
+            _wthread.join(millis);
+        }
+
+        long getPendingCount() {
+            return _dispatched.get() - _transferred.get();
+        }
+
+        /**
+         * To be called only by the link thread
+         */
+        void dispatch(Transfer tr) throws Throwable {
+            _dispatched.incrementAndGet();
+            while (!_queue.offer(tr, PARTITIONED_RECEIVE_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                if (_state == LinkState.STOPPING || _state == LinkState.STOPPED) {
+                    throw new JMSException(_jbr.getKString(_jbr.X_LINK_IS_STOPPED, Link.this.toString()));
+                }
+                ackCompletedTransfers();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (_state != LinkState.STOPPING && _state != LinkState.STOPPED) {
+                    if (!process(_queue.take())) {
+                        return;
+                    }
+                }
+            } catch (InterruptedException e) {
+                if (_logger.isLoggable(Level.FINE)) {
+                    _logger.log(Level.FINE, "Interrupted " + this);
+                }
+            } finally {
+                closeWorkerTarget();
+            }
+        }
+
+        /**
+         * Send the message to target, or to the DMQ if it can not be sent. Either way the message is then done and is
+         * acknowledged on source by the link thread, it is not sent again.
+         *
+         * @return false if the worker must stop
+         */
+        boolean process(Transfer tr) {
+            try {
+                send(tr);
+                _consecutiveThrowables = 0;
+            } catch (Throwable t) {
+                if (_state == LinkState.STOPPING || _state == LinkState.STOPPED) {
+                    return false;
+                }
+                _logger.log(Level.SEVERE, "Unable to send message " + tr.headers.mid + " to target in " + this, t);
+                closeWorkerTarget();
+                if (++_consecutiveThrowables > MAX_CONSECUTIVE_THROWABLES) {
+                    _fatal = t;
+                    return false;
+                }
+                try {
+                    sendToDMQ(tr.message, tr.headers.mid, DMQ.DMQReason.SEND_FAILURE, t);
+                    tr.sentToDMQ = true;
+                } catch (Throwable t1) {
+                    _fatal = t1;
+                    return false;
+                }
+            }
+            _transferred.incrementAndGet();
+            _completedTransfers.add(tr);
+            return true;
+        }
+
+        private void send(Transfer tr) throws Throwable {
+            if (_wconnException) {
+                closeWorkerTarget();
+            }
+            if (_wconn == null) {
+                initWorkerTarget();
+            }
+            long ttl = tr.headers.expiration;
+            if (ttl != 0L) {
+                ttl = Math.max(1L, ttl - System.currentTimeMillis());
+            }
+            if (_fi.FAULT_INJECTION) {
+                _fi.setLogger(_logger);
+                _fi.checkFaultAndThrowException(FaultInjection.FAULT_SEND_1, null, "jakarta.jms.JMSException", true);
+            }
+            try {
+                if (!_retainReplyTo) {
+                    tr.message.setJMSReplyTo((Destination) null);
+                }
+                if (_parent.needTagBridgeName()) {
+                    _parent.tagBridgeName(tr.message, _wsession.createMessage());
+                }
+                _wproducer.send(tr.message, tr.headers.deliverymode, tr.headers.priority, ttl);
+                tr.midSent = tr.message.getJMSMessageID();
+            } finally {
+                MessageHeaders.resetMessageHeaders(tr.message, tr.headers);
+            }
+            if (_fi.FAULT_INJECTION) {
+                _fi.setLogger(_logger);
+                _fi.checkFaultAndThrowException(FaultInjection.FAULT_SEND_2, null, "jakarta.jms.JMSException", true);
+            }
+        }
+
+        private void initWorkerTarget() throws Exception {
+            _wconnException = false;
+            _wconn = _parent.obtainConnection(_targetCF, _jbr.getString(_jbr.M_TARGET), this);
+            _wconn.setExceptionListener(new ExceptionListener() {
+
+                @Override
+                public void onException(JMSException exception) {
+                    _logger.log(Level.WARNING, _jbr.getKString(_jbr.W_CONN_EXCEPTION_OCCURRED, _jbr.getString(_jbr.M_TARGET_1), LinkWorker.this.toString()),
+                            exception);
+                    if (_wconn instanceof PooledConnection) {
+                        ((PooledConnection) _wconn).invalid();
+                    } else if (_wconn instanceof SharedConnection) {
+                        ((SharedConnection) _wconn).invalid();
+                    }
+                    _wconnException = true;
+                }
+            });
+            _wsession = _wconn.createSession(false, Session.CLIENT_ACKNOWLEDGE);
+            if (_targetDest instanceof AutoDestination) {
+                AutoDestination ad = (AutoDestination) _targetDest;
+                if (ad.isQueue()) {
+                    _wproducer = _wsession.createProducer(_wsession.createQueue(ad.getName()));
+                } else {
+                    _wproducer = _wsession.createProducer(_wsession.createTopic(ad.getName()));
+                }
+            } else {
+                _wproducer = _wsession.createProducer((Destination) _targetDest);
+            }
+            if (_wproducer instanceof com.sun.messaging.jmq.jmsclient.MessageProducerImpl) {
+                ((com.sun.messaging.jmq.jmsclient.MessageProducerImpl) _wproducer)._setForJMSBridge();
+            }
+        }
+
+        private void closeWorkerTarget() {
+            _wconnException = false;
+
+            if (_wconn == null) {
+                return;
+            }
+            try {
+                if (_wsession != null) {
+                    _wsession.close();
+                }
+            } catch (Throwable t) {
+                _logger.log(Level.WARNING, "Unable to close target Session in " + this, t);
+            } finally {
+                try {
+                    _parent.returnConnection(_wconn, _targetCF);
+                } catch (Throwable t) {
+                    _logger.log(Level.WARNING, "Unable to return target connection " + _wconn + " in " + this, t);
+                }
+                _wconn = null;
+                _wsession = null;
+                _wproducer = null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return Link.this.toString() + "-worker-" + _index;
+        }
+    }
+
     /**
      * @param m The message to be transformed
      *
@@ -1898,6 +2342,13 @@ public class Link {
         }
     }
 
+    /**
+     * For unit tests only
+     */
+    void setState(LinkState state) {
+        _state = state;
+    }
+
     public LinkState getState() {
         return _state;
     }
@@ -65,9 +65,13 @@ public class JMSBridgeXMLConstant {
         public static final String NAME = "name";
         public static final String ENABLED = "enabled";
         public static final String TRANSACTED = "transacted";
+        public static final String PARALLELWORKERS = "parallel-workers";
+        public static final String PARTITIONKEY = "partition-key";
 
         public static final String ENABLED_DEFAULT = "true";
         public static final String TRANSACTED_DEFAULT = "true";
+        public static final String PARALLELWORKERS_DEFAULT = "1";
+        public static final String PARTITIONKEY_DEFAULT = "JMSXGroupID";
     }
 
     public enum Source {
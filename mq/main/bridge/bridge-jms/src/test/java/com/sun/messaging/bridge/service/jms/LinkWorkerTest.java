@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+
+package com.sun.messaging.bridge.service.jms;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import jakarta.jms.Connection;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.MessageProducer;
+import jakarta.jms.Queue;
+import jakarta.jms.Session;
+
+import com.sun.messaging.bridge.api.BridgeBaseContext;
+import com.sun.messaging.bridge.api.FaultInjection;
+import com.sun.messaging.bridge.service.jms.xml.JMSBridgeXMLConstant;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class LinkWorkerTest {
+    @Mock
+    private BridgeBaseContext bc;
+    @Mock
+    private JMSBridge bridge;
+    @Mock
+    private Refable sourceCF;
+    @Mock
+    private Refable targetCF;
+    @Mock
+    private Queue sourceDest;
+    @Mock
+    private Queue targetDest;
+    @Mock
+    private Connection conn;
+    @Mock
+    private Session session;
+    @Mock
+    private MessageProducer producer;
+    @Mock
+    private Message message;
+
+    private Link link;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        when(bridge.getBridgeName()).thenReturn("bridge");
+        when(bridge.getCFAttributes(any())).thenReturn(new Properties());
+        when(bridge.obtainConnection(any(), anyString(), any())).thenReturn(conn);
+        when(conn.createSession(false, Session.CLIENT_ACKNOWLEDGE)).thenReturn(session);
+        when(session.createProducer(targetDest)).thenReturn(producer);
+
+        FaultInjection.setBridgeBaseContext(bc);
+        link = new Link();
+        link.setLogger(Logger.getLogger(LinkWorkerTest.class.getName()));
+        link.setSourceConnectionFactory(sourceCF);
+        link.setTargetConnectionFactory(targetCF);
+        link.setSourceDestination(sourceDest);
+        link.setTargetDestination(targetDest);
+        Properties linkAttrs = new Properties();
+        linkAttrs.setProperty(JMSBridgeXMLConstant.Link.TRANSACTED, "false");
+        link.init(linkAttrs, new Properties(), new Properties(), null, bridge);
+        link.setState(Link.LinkState.STARTED);
+    }
+
+    @Test
+    void messageSentToDMQIsNotSentAgain() throws Exception {
+        doThrow(new JMSException("send failed")).when(producer).send(eq(message), anyInt(), anyInt(), anyLong());
+        Link.LinkWorker worker = link.new LinkWorker(0);
+        Link.Transfer tr = new Link.Transfer(message, MessageHeaders.getMessageHeaders(message));
+
+        assertThat(worker.process(tr)).isTrue();
+
+        assertThat(tr.sentToDMQ).isTrue();
+        verify(producer, times(1)).send(eq(message), anyInt(), anyInt(), anyLong());
+        verify(bridge, times(1)).toDMQ(eq(message), any(), eq(DMQ.DMQReason.SEND_FAILURE), any(), eq(link));
+    }
+
+    @Test
+    void sentMessageDoesNotGoToDMQ() throws Exception {
+        Link.LinkWorker worker = link.new LinkWorker(0);
+        Link.Transfer tr = new Link.Transfer(message, MessageHeaders.getMessageHeaders(message));
+
+        assertThat(worker.process(tr)).isTrue();
+
+        assertThat(tr.sentToDMQ).isFalse();
+        verify(producer, times(1)).send(eq(message), anyInt(), anyInt(), anyLong());
+        verify(bridge, times(0)).toDMQ(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void workerThreadIsDaemon() {
+        Link.LinkWorker worker = link.new LinkWorker(3);
+        Thread thread = Link.newLinkThread(worker, worker.toString());
+
+        assertThat(thread.isDaemon()).isTrue();
+        assertThat(thread.getName()).endsWith("-worker-3");
+    }
+}
@@ -43,10 +43,13 @@ public class AsyncStompOutputHandler implements StompOutputHandler {
         _sph = sph;
     }
 
+    /**
+     * Called by the subscribers of a STOMP connection served directly through the broker's JMSService, the output
+     * context of this handler is used
+     */
     @Override
     public void sendToClient(StompFrameMessage msg, StompProtocolHandler sph, Object ctx) throws Exception {
-
-        throw new UnsupportedOperationException("sendToClient(msg, ctx, sph)");
+        sendToClient(msg);
     }
 
     @Override
@@ -20,6 +20,8 @@ package com.sun.messaging.bridge.service.stomp;
 import java.io.IOException;
 import java.io.OutputStream;
 import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.memory.Buffers;
+import org.glassfish.grizzly.memory.CompositeBuffer;
 import org.glassfish.grizzly.memory.MemoryManager;
 import org.glassfish.grizzly.utils.BufferOutputStream;
 import com.sun.messaging.jmq.util.LoggerWrapper;
@@ -79,6 +81,19 @@ public class StompFrameMessageImpl extends StompFrameMessage {
         return new ByteBufferWrapperImpl(bos.getBuffer());
     }
 
+    /**
+     * Wrap the frame parts in a composite buffer, so they are written with a gathering write without being copied
+     */
+    @Override
+    protected ByteBufferWrapper newFrameBuffer(Object obj, byte[]... parts) throws IOException {
+        MemoryManager mm = (MemoryManager) obj;
+        Buffer[] bufs = new Buffer[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            bufs[i] = Buffers.wrap(mm, parts[i]);
+        }
+        return new ByteBufferWrapperImpl(CompositeBuffer.newBuffer(mm, bufs));
+    }
+
     @Override
     protected String getKStringX_CANNOT_PARSE_BODY_TO_TEXT(String cmd, String emsg) {
         return sbr.getKString(sbr.X_CANNOT_PARSE_BODY_TO_TEXT, cmd, emsg);
@@ -167,5 +182,36 @@ public class StompFrameMessageImpl extends StompFrameMessage {
         public byte get() {
             return buf.get();
         }
+
+        @Override
+        public int limit() {
+            return buf.limit();
+        }
+
+        @Override
+        public byte get(int index) {
+            return buf.get(index);
+        }
+
+        @Override
+        public ByteBufferWrapper get(byte[] dst, int offset, int length) {
+            buf.get(dst, offset, length);
+            return this;
+        }
+
+        @Override
+        public boolean hasArray() {
+            return buf.hasArray();
+        }
+
+        @Override
+        public byte[] array() {
+            return buf.array();
+        }
+
+        @Override
+        public int arrayOffset() {
+            return buf.arrayOffset();
+        }
     }
 }
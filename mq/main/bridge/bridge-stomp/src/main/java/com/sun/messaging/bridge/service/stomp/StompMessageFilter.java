@@ -18,6 +18,7 @@
 package com.sun.messaging.bridge.service.stomp;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.util.Properties;
 import org.glassfish.grizzly.Grizzly;
 import org.glassfish.grizzly.Buffer;
@@ -61,14 +62,8 @@ public class StompMessageFilter extends BaseFilter {
                 }
             });
 
-    private final Attribute<StompProtocolHandler> sphAttr = Grizzly.DEFAULT_ATTRIBUTE_BUILDER.createAttribute(StompMessageFilter.class + ".sphAttr",
-            new NullaryFunction<StompProtocolHandler>() {
-
-                @Override
-                public StompProtocolHandler evaluate() {
-                    return new StompProtocolHandlerImpl(server);
-                }
-            });
+    private final Attribute<StompProtocolHandler> sphAttr = Grizzly.DEFAULT_ATTRIBUTE_BUILDER
+            .createAttribute(StompMessageFilter.class + ".sphAttr");
 
     protected StompMessageFilter(StompServer server) {
         this.server = server;
@@ -109,6 +104,11 @@ public class StompMessageFilter extends BaseFilter {
 
         final Connection c = ctx.getConnection();
         StompProtocolHandler sph = sphAttr.get(c);
+        if (sph == null) {
+            Object addr = c.getPeerAddress();
+            sph = new StompProtocolHandlerImpl(server, (addr instanceof InetSocketAddress ? (InetSocketAddress) addr : null));
+            sphAttr.set(c, sph);
+        }
 
         if (logger.isFinestLoggable()) {
             logger.logFinest(this + ", conn=@" + c.hashCode() + ", sph=@" + (sph == null ? "null" : sph.hashCode()), null);
@@ -16,6 +16,7 @@
 
 package com.sun.messaging.bridge.service.stomp;
 
+import java.net.InetSocketAddress;
 import java.util.*;
 import java.util.logging.Logger;
 import com.sun.messaging.bridge.api.BridgeContext;
@@ -38,11 +39,11 @@ public class StompProtocolHandlerImpl extends StompProtocolHandler {
     private StompBridgeResources sbr = null;
     private StompServer server = null;
 
-    public StompProtocolHandlerImpl(StompServer server) {
+    public StompProtocolHandlerImpl(StompServer server, InetSocketAddress remoteAddress) {
         super(new LoggerWrapperImpl(server.getLogger()));
         this.server = server;
         sbr = server.getStompBridgeResources();
-        stompConnection = new StompConnectionImpl(this);
+        stompConnection = server.createStompConnection(this, remoteAddress);
     }
 
     BridgeContext getBridgeContext() {
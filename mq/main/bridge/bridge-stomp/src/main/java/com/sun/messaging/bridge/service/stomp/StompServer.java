@@ -41,6 +41,7 @@ import com.sun.messaging.portunif.PUService;
 import com.sun.messaging.portunif.StompProtocolFinder;
 import com.sun.messaging.bridge.api.BridgeContext;
 import com.sun.messaging.bridge.api.MessageTransformer;
+import com.sun.messaging.bridge.api.StompConnection;
 import com.sun.messaging.bridge.api.LogSimpleFormatter;
 import com.sun.messaging.bridge.service.stomp.resources.StompBridgeResources;
 
@@ -57,6 +58,10 @@ public class StompServer {
     private final static String PROP_SSL_REQUIRE_CLIENTAUTH_SUFFIX = ".tls.requireClientAuth";
     private final static String PROP_FLOWLIMIT_SUFFIX = ".consumerFlowLimit";
     private final static String PROP_MSGTRANSFORM_SUFFIX = ".messageTransformer";
+    private final static String PROP_DIRECT_SUFFIX = ".direct.enabled";
+    private final static String PROP_DIRECT_SERVICE_SUFFIX = ".direct.service";
+
+    private final static String DEFAULT_DIRECT_SERVICE = "jms";
 
     private final static String PROP_LOGFILE_LIMIT_SUFFIX = ".logfile.limit";
     private final static String PROP_LOGFILE_COUNT_SUFFIX = ".logfile.count";
@@ -76,6 +81,10 @@ public class StompServer {
 
     private MessageTransformer<Message, Message> _msgTransformer = null;
 
+    // serve clients through the JMSService of a broker connection service instead of the JMS client runtime
+    private boolean _directEnabled = false;
+    private String _directService = DEFAULT_DIRECT_SERVICE;
+
     private BridgeContext _bc = null;
     private Properties jmsprop = null;
     private boolean _tcpEnabled = false;
@@ -135,7 +144,19 @@ public class StompServer {
         _logger.log(Level.INFO, getStompBridgeResources().getString(StompBridgeResources.I_LOG_DOMAIN, domain));
         _logger.log(Level.INFO, getStompBridgeResources().getString(StompBridgeResources.I_LOG_FILE, logfile) + "[" + limit + "," + count + "]");
 
-        String v = props.getProperty(domain + PROP_TCPENABLED_SUFFIX, "true");
+        String v = props.getProperty(domain + PROP_DIRECT_SUFFIX, "false");
+        if (v != null && Boolean.parseBoolean(v)) {
+            if (_msgTransformer != null) {
+                _logger.log(Level.WARNING, getStompBridgeResources().getKString(StompBridgeResources.W_DIRECT_STOMP_DISABLED,
+                        domain + PROP_DIRECT_SUFFIX + "=" + v, domain + PROP_MSGTRANSFORM_SUFFIX + "=" + cn));
+            } else {
+                _directEnabled = true;
+                _directService = props.getProperty(domain + PROP_DIRECT_SERVICE_SUFFIX, DEFAULT_DIRECT_SERVICE).trim();
+                _logger.log(Level.INFO, getStompBridgeResources().getString(StompBridgeResources.I_DIRECT_STOMP_SERVICE, _directService));
+            }
+        }
+
+        v = props.getProperty(domain + PROP_TCPENABLED_SUFFIX, "true");
         if (v != null && Boolean.parseBoolean(v)) {
             String p = props.getProperty(domain + PROP_TCPPORT_SUFFIX, String.valueOf(DEFAULT_TCPPORT));
             TCPPORT = Integer.parseInt(p);
@@ -255,6 +276,27 @@ public class StompServer {
         return jmsprop;
     }
 
+    /**
+     * Create the StompConnection of a client connection.
+     * <P>
+     * In direct mode the connection is served by the broker through the JMSService of the configured connection service;
+     * if that fails the JMS client runtime is used.
+     *
+     * @param sph the protocol handler of the client connection
+     * @param remoteAddress the address of the client, null if the transport does not provide an InetSocketAddress
+     */
+    StompConnection createStompConnection(StompProtocolHandlerImpl sph, InetSocketAddress remoteAddress) {
+        if (_directEnabled) {
+            try {
+                return _bc.createDirectStompConnection(_directService, sph, remoteAddress);
+            } catch (Exception e) {
+                _logger.log(Level.WARNING,
+                        getStompBridgeResources().getKString(StompBridgeResources.W_DIRECT_STOMP_CONNECTION_FAILED, remoteAddress, e.getMessage()), e);
+            }
+        }
+        return new StompConnectionImpl(sph);
+    }
+
     private static SSLEngineConfigurator initializeSSL(BridgeContext bc, String domain, Properties props, Logger logger) throws Exception {
 
         logger.log(Level.INFO, getStompBridgeResources().getString(StompBridgeResources.I_INIT_SSL));
@@ -18,12 +18,15 @@
 
 package com.sun.messaging.jmq.io;
 
+import java.lang.ref.Cleaner;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.HashMap;
 import java.util.Map;
-import java.util.Iterator;
-import java.util.Set;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.nio.ByteBuffer;
 
 import com.sun.messaging.jmq.util.DiagManager;
@@ -46,7 +49,11 @@ import com.sun.messaging.jmq.util.DiagDictionaryEntry;
  *
  * bigBufSize and bigRatio are used to prevent large buffers from blowing out most of the pool.
  *
- * The pool is implemented as a HashMap of ArrayLists keyed by buffer size. Each ArrayList holds buffers of one size.
+ * The pool is implemented as a ConcurrentHashMap of lock-free queues keyed by buffer size. Each queue holds buffers of
+ * one size. In front of it each thread caches up to MAGAZINE_SIZE buffers that are not big, so a thread that reads and
+ * releases packets mostly reuses its own buffers without touching the shared queues. The buffers cached by threads are
+ * counted in poolSize and nBufs like the ones in the queues, so poolCapacity bounds both. When a thread ends, the buffers
+ * it cached are discounted once its cache is garbage collected.
  *
  */
 public class ByteBufferPool implements DiagManager.Data {
@@ -65,8 +72,20 @@ public class ByteBufferPool implements DiagManager.Data {
     // By default big buffers can take up half of the pool
     public static final float DEFAULT_BIGRATIO = 0.5f;
 
-    // Hash table for holding lists of buffers
-    protected HashMap table = null;
+    // Number of buffers each thread caches in front of the shared pool
+    public static final int MAGAZINE_SIZE = 16;
+
+    // Hash table for holding queues of buffers
+    protected final Map<Integer, Queue<ByteBuffer>> table = new ConcurrentHashMap<>();
+
+    // Discounts the buffers cached by a thread once the thread is gone
+    static final Cleaner cleaner = Cleaner.create();
+
+    // Buffers cached by each thread
+    private final ThreadLocal<Magazine> magazines = ThreadLocal.withInitial(this::newMagazine);
+
+    // Incremented by clear() so that threads drop their cached buffers
+    private volatile int generation = 0;
 
     // True if pool is managing direct buffers, else false
     protected boolean useDirect = true;
@@ -87,31 +106,29 @@ public class ByteBufferPool implements DiagManager.Data {
     protected float bigRatio = DEFAULT_BIGRATIO;
 
     // Current number of bytes in the pool that are used by big buffers
-    protected int bigPoolSize = 0;
+    protected final AtomicInteger bigPoolSize = new AtomicInteger();
 
     // Current number of bytes in the pool that are used by all buffers
-    protected int poolSize = 0;
+    protected final AtomicInteger poolSize = new AtomicInteger();
 
     // Current number of buffers in the pool
-    protected int nBufs = 0;
+    protected final AtomicInteger nBufs = new AtomicInteger();
 
     // Number of direct bytes allocated. Direct buffers are very expensive
     // to allocate and are not free'd efficiently, so once we reach
     // our limit of direct bytes to allocate we revert to using
     // heap ByteBuffers.
-    protected int directBytesAllocated = 0;
-    protected int heapBytesAllocated = 0;
-    protected int directBufsAllocated = 0;
-    protected int heapBufsAllocated = 0;
+    protected final AtomicInteger directBytesAllocated = new AtomicInteger();
+    protected final AtomicInteger heapBytesAllocated = new AtomicInteger();
+    protected final AtomicInteger directBufsAllocated = new AtomicInteger();
+    protected final AtomicInteger heapBufsAllocated = new AtomicInteger();
 
     // Diagnostic counters
-    protected int hits = 0; // # of times we found a buffer in the pool
-    protected int misses = 0; // # of times we had to allocate a new one
+    protected final LongAdder hits = new LongAdder(); // # of times we found a buffer in the pool
+    protected final LongAdder misses = new LongAdder(); // # of times we had to allocate a new one
 
-    protected int adds = 0; // # of times we added a buffer to the pool
-    protected int drops = 0; // # of times we failed to add a buffer
-    // protected int heapDrops = 0;// # of buffers we dropped because they
-    // were heap buffers
+    protected final LongAdder adds = new LongAdder(); // # of times we added a buffer to the pool
+    protected final LongAdder drops = new LongAdder(); // # of times we failed to add a buffer
     protected String poolContents = null;
     protected double utilization = 0;
 
@@ -134,7 +151,6 @@ public class ByteBufferPool implements DiagManager.Data {
     public ByteBufferPool(int capacity, boolean useDirect) {
         this.poolCapacity = capacity;
         this.useDirect = useDirect;
-        table = new HashMap();
         DiagManager.register(this);
     }
 
@@ -199,17 +215,17 @@ public class ByteBufferPool implements DiagManager.Data {
      * Get utilization as a percentage. Ideal utilization would be 1.0. poor utilization would be 0.1
      */
     public double getUtilization() {
-        return (hits / (double) (hits + misses));
+        long h = hits.sum();
+        return (h / (double) (h + misses.sum()));
     }
 
     /**
      * Get a buffer from the pool of at least the specified size. If the pool is empty a newly allocated buffer will be
      * returned. ByteBuffer.limit will be set to bufSize. ByteBuffer.capacity may be larger than bufSize.
      */
-    public synchronized ByteBuffer get(int bufSize) {
+    public ByteBuffer get(int bufSize) {
 
         int allocateSize = 0;
-        ArrayList buffers = null;
         ByteBuffer b = null;
 
         // The size of the buffer we allocate is a multiple of the blocksize
@@ -218,35 +234,42 @@ public class ByteBufferPool implements DiagManager.Data {
             allocateSize += blockSize;
         }
 
-        buffers = (ArrayList) table.get(Integer.valueOf(allocateSize));
+        b = magazines.get().get(allocateSize, generation);
+
+        if (b == null) {
+            Queue<ByteBuffer> buffers = table.get(Integer.valueOf(allocateSize));
+            if (buffers != null) {
+                b = buffers.poll();
+            }
+        }
+
+        if (b != null) {
+            discount(b);
+        }
 
-        if (buffers == null || buffers.isEmpty()) {
+        if (b == null) {
             // No buffer of the correct size in the pool. Allocate one
-            misses++;
-            if (directBytesAllocated >= poolCapacity) {
+            misses.increment();
+            if (directBytesAllocated.get() >= poolCapacity) {
                 // Once we allocate "poolCapacity" worth of direct bytes
                 // allocate heap bytes instead.
                 b = ByteBuffer.allocate(bufSize);
-                heapBytesAllocated += bufSize;
-                heapBufsAllocated += 1;
+                heapBytesAllocated.addAndGet(bufSize);
+                heapBufsAllocated.incrementAndGet();
             } else if (useDirect) {
                 b = ByteBuffer.allocateDirect(allocateSize);
-                directBytesAllocated += allocateSize;
-                directBufsAllocated += 1;
+                directBytesAllocated.addAndGet(allocateSize);
+                directBufsAllocated.incrementAndGet();
             } else {
                 b = ByteBuffer.allocate(allocateSize);
+                heapBytesAllocated.addAndGet(allocateSize);
+                heapBufsAllocated.incrementAndGet();
             }
             if (DEBUG) {
                 System.out.println(super.toString() + " get(): miss: allocating new buffer. Requested " + bufSize + " bytes, allocating " + allocateSize);
             }
         } else {
-            b = (ByteBuffer) (buffers.remove(buffers.size() - 1));
-            poolSize -= b.capacity();
-            if (b.capacity() >= bigBufSize) {
-                bigPoolSize -= b.capacity();
-            }
-            nBufs--;
-            hits++;
+            hits.increment();
             if (DEBUG) {
                 System.out.println(super.toString() + " get(): hit: Requested " + bufSize + " bytes, returning " + b.capacity());
             }
@@ -265,7 +288,19 @@ public class ByteBufferPool implements DiagManager.Data {
      * Also, if the ByteBuffer.isDirect is inconsitent with the "useDirect" parameter passed in the pool constructor, the
      * buffer is disgarded.
      */
-    public synchronized void put(ByteBuffer b) {
+    public void put(ByteBuffer b) {
+        put(b, true);
+    }
+
+    /**
+     * Return a buffer to the shared pool, bypassing the cache of the calling thread. Used by threads that release buffers
+     * but do not get any, so that the buffers are not held in their cache.
+     */
+    public void putShared(ByteBuffer b) {
+        put(b, false);
+    }
+
+    private void put(ByteBuffer b, boolean cache) {
         if (b == null) {
             return;
         }
@@ -275,61 +310,76 @@ public class ByteBufferPool implements DiagManager.Data {
             if (DEBUG) {
                 System.out.println(super.toString() + " put(): drop: buffer is not direct. " + "Dropping " + b.capacity() + " bytes onto floor ");
             }
-            drops++;
+            drops.increment();
             return;
         }
 
-        ArrayList buffers = null;
-        boolean bigBuf = false;
+        int capacity = b.capacity();
 
         // See if it is a big buffer
-        if (b.capacity() >= bigBufSize) {
-            bigBuf = true;
-        }
+        boolean bigBuf = (capacity >= bigBufSize);
 
         // If it's a big buffer and we've exceeded the space allowed
         // for big buffers, drip it on floor.
-        if (bigBuf && bigPoolSize > (poolCapacity * bigRatio)) {
-            drops++;
+        if (bigBuf && bigPoolSize.addAndGet(capacity) - capacity > (poolCapacity * bigRatio)) {
+            bigPoolSize.addAndGet(-capacity);
+            drops.increment();
             if (DEBUG) {
-                System.out.println(super.toString() + " put(): drop: big pool capacity of " + (poolCapacity * bigRatio) + "exceeded. dropping " + b.capacity()
+                System.out.println(super.toString() + " put(): drop: big pool capacity of " + (poolCapacity * bigRatio) + "exceeded. dropping " + capacity
                         + " bytes onto floor ");
             }
-        } else if (poolSize < poolCapacity) {
-            Integer key = Integer.valueOf(b.capacity());
-            // Add buffer to the pool
-            buffers = (ArrayList) table.get(key);
-            if (buffers == null) {
-                buffers = new ArrayList(64);
-                table.put(key, buffers);
-            }
-            buffers.add(b);
-            poolSize += b.capacity();
-            nBufs++;
-            adds++;
-            if (bigBuf) {
-                bigPoolSize += b.capacity();
+        } else if (poolSize.addAndGet(capacity) - capacity < poolCapacity) {
+            // Add buffer to the pool, the cache of this thread first
+            nBufs.incrementAndGet();
+            if (!cache || bigBuf || !magazines.get().put(b, generation)) {
+                table.computeIfAbsent(Integer.valueOf(capacity), k -> new ConcurrentLinkedQueue<>()).offer(b);
             }
+            adds.increment();
             if (DEBUG) {
-                System.out.println(super.toString() + "put(): add: putting " + b.capacity() + " bytes back into pool");
+                System.out.println(super.toString() + "put(): add: putting " + capacity + " bytes back into pool");
             }
         } else {
             // Drop it on floor
-            drops++;
+            poolSize.addAndGet(-capacity);
+            if (bigBuf) {
+                bigPoolSize.addAndGet(-capacity);
+            }
+            drops.increment();
             if (DEBUG) {
-                System.out.println(super.toString() + " put(): drop: dropping " + b.capacity() + " bytes onto floor ");
+                System.out.println(super.toString() + " put(): drop: dropping " + capacity + " bytes onto floor ");
             }
         }
     }
 
     /**
-     * Empty the pool.
+     * Take a buffer from the pool's size
+     */
+    private void discount(ByteBuffer b) {
+        poolSize.addAndGet(-b.capacity());
+        if (b.capacity() >= bigBufSize) {
+            bigPoolSize.addAndGet(-b.capacity());
+        }
+        nBufs.decrementAndGet();
+    }
+
+    /**
+     * Empty the pool. Buffers cached by threads are dropped the next time the thread uses the pool.
      */
-    public synchronized void clear() {
-        table.clear();
-        poolSize = 0;
-        bigPoolSize = 0;
-        nBufs = 0;
+    public void clear() {
+        generation++;
+        // take the buffers out one by one, so that buffers being put at the same time stay counted
+        for (Queue<ByteBuffer> buffers : table.values()) {
+            ByteBuffer b;
+            while ((b = buffers.poll()) != null) {
+                discount(b);
+            }
+        }
+    }
+
+    private Magazine newMagazine() {
+        Magazine magazine = new Magazine();
+        cleaner.register(magazine, new Discount(magazine.cached, poolSize, nBufs));
+        return magazine;
     }
 
     @Override
@@ -346,15 +396,12 @@ public class ByteBufferPool implements DiagManager.Data {
     public String poolContents() {
         StringBuilder sb = new StringBuilder();
 
-        Set set = table.entrySet();
-        Iterator iter = set.iterator();
         int totalBytes = 0;
-        while (iter.hasNext()) {
-            Map.Entry entry = (Map.Entry) iter.next();
-            int n = ((Integer) entry.getKey());
-            ArrayList list = (ArrayList) entry.getValue();
-            sb.append(n).append(':').append(list.size()).append(' ');
-            totalBytes += n * list.size();
+        for (Map.Entry<Integer, Queue<ByteBuffer>> entry : table.entrySet()) {
+            int n = entry.getKey();
+            int size = entry.getValue().size();
+            sb.append(n).append(':').append(size).append(' ');
+            totalBytes += n * size;
         }
 
         sb.append(" Total Bytes: ").append(totalBytes);
@@ -363,10 +410,10 @@ public class ByteBufferPool implements DiagManager.Data {
     }
 
     public void resetDiagCounters() {
-        hits = 0;
-        misses = 0;
-        adds = 0;
-        drops = 0;
+        hits.reset();
+        misses.reset();
+        adds.reset();
+        drops.reset();
     }
 
     // Methods to support diagnostics
@@ -412,4 +459,81 @@ public class ByteBufferPool implements DiagManager.Data {
         return "ByteBufferPool";
     }
 
+    /**
+     * Number of buffers and bytes cached by a thread, read by the cleaner once the thread is gone
+     */
+    private static final class Cached {
+        volatile int bytes = 0;
+        volatile int count = 0;
+    }
+
+    /**
+     * Discounts the buffers cached by a thread from the pool's size once the cache is unreachable
+     */
+    private static final class Discount implements Runnable {
+        private final Cached cached;
+        private final AtomicInteger poolSize;
+        private final AtomicInteger nBufs;
+
+        Discount(Cached cached, AtomicInteger poolSize, AtomicInteger nBufs) {
+            this.cached = cached;
+            this.poolSize = poolSize;
+            this.nBufs = nBufs;
+        }
+
+        @Override
+        public void run() {
+            poolSize.addAndGet(-cached.bytes);
+            nBufs.addAndGet(-cached.count);
+        }
+    }
+
+    /**
+     * The buffers cached by one thread. Only accessed by its thread, except for the counts read by the cleaner.
+     */
+    private final class Magazine {
+        private final ByteBuffer[] buffers = new ByteBuffer[MAGAZINE_SIZE];
+        private final Cached cached = new Cached();
+        private int count = 0;
+        private int generation = 0;
+
+        private void check(int poolGeneration) {
+            if (generation != poolGeneration) {
+                for (int i = 0; i < count; i++) {
+                    discount(buffers[i]);
+                    buffers[i] = null;
+                }
+                count = 0;
+                cached.bytes = 0;
+                cached.count = 0;
+                generation = poolGeneration;
+            }
+        }
+
+        ByteBuffer get(int capacity, int poolGeneration) {
+            check(poolGeneration);
+            for (int i = count - 1; i >= 0; i--) {
+                ByteBuffer b = buffers[i];
+                if (b.capacity() == capacity) {
+                    buffers[i] = buffers[--count];
+                    buffers[count] = null;
+                    cached.bytes -= capacity;
+                    cached.count = count;
+                    return b;
+                }
+            }
+            return null;
+        }
+
+        boolean put(ByteBuffer b, int poolGeneration) {
+            check(poolGeneration);
+            if (count == buffers.length) {
+                return false;
+            }
+            buffers[count++] = b;
+            cached.bytes += b.capacity();
+            cached.count = count;
+            return true;
+        }
+    }
 }
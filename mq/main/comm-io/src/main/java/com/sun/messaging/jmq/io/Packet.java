@@ -21,6 +21,7 @@ import java.util.Hashtable;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.io.*;
+import java.lang.ref.Cleaner;
 import java.nio.ByteBuffer;
 import java.nio.channels.*;
 
@@ -108,6 +109,9 @@ public class Packet implements JMSPacket {
     // so we can easily return them to the pool when the packet is destroyed
     protected ArrayList allocatedBuffers = new ArrayList(8);
 
+    // Pool of heap ByteBuffers this packet allocates its buffers from, or null
+    protected ByteBufferPool heapPool = null;
+
     // Values in fixed header
     protected short version = defaultVersion;
     protected int magic = MAGIC;
@@ -203,6 +207,22 @@ public class Packet implements JMSPacket {
         this.reset();
     }
 
+    /**
+     * Construct a packet that allocates its heap ByteBuffers from the pool.
+     *
+     * The buffers are returned to the pool when the packet is destroyed, or else when the packet is garbage collected. The
+     * body buffer is not returned once it has been handed out by getMessageBodyByteBuffer(), getMessageBodyByteArray() or
+     * getMessageBodyStream(), and neither are the body and properties buffers once they are shared with another packet by
+     * fill(), since they may still be in use after this packet is unreachable. A body lent by lendMessageBodyByteArray()
+     * is returned with the packet. The pool should have a block size of 1 so that the body array is exactly the size of
+     * the body.
+     */
+    public Packet(ByteBufferPool heapPool) {
+        this.heapPool = heapPool;
+        Release.register(this, heapPool, allocatedBuffers);
+        this.reset();
+    }
+
     /**
      * Fill this packet with the contents of sourcePacket. The fixed and variable headers are copied. The payload
      * (properties and body) are shared. This method turns off timestamp and sequence number generation since we assume you
@@ -256,6 +276,9 @@ public class Packet implements JMSPacket {
 
             // Get payload from source packet. Note this is NOT a copy
             PacketPayload sourcePayload = sourcePacket.getPacketPayload();
+            if (sourcePayload != null && !deep) {
+                sourcePacket.keepPayload();
+            }
             if (sourcePayload != null) {
                 // If not deep: set our payload buffers to be those of the source packet.
                 // The packets will share payload content, but each must have
@@ -606,6 +629,7 @@ public class Packet implements JMSPacket {
      *
      */
     public synchronized ByteBuffer getMessageBodyByteBuffer() {
+        keepBody();
         return packetPayload.getBodyBytes();
     }
 
@@ -613,6 +637,20 @@ public class Packet implements JMSPacket {
      * Return the message body as a byte array
      */
     public synchronized byte[] getMessageBodyByteArray() {
+        keepBody();
+        ByteBuffer bb = packetPayload.getBodyBytes();
+        if (bb != null && bb.hasArray()) {
+            return bb.array();
+        }
+        return null;
+    }
+
+    /**
+     * Return the message body as a byte array that stays owned by the packet. If the packet was read into heap pool
+     * buffers the array goes back to the pool when the packet is destroyed or garbage collected, so the caller must hold
+     * a reference to the packet for as long as it uses the array, as a message does with the packet it was received in.
+     */
+    public synchronized byte[] lendMessageBodyByteArray() {
         ByteBuffer bb = packetPayload.getBodyBytes();
         if (bb != null && bb.hasArray()) {
             return bb.array();
@@ -635,9 +673,29 @@ public class Packet implements JMSPacket {
      * @return An InputStream from which the message body can be read from. Or null if no message body.
      */
     public synchronized InputStream getMessageBodyStream() {
+        keepBody();
         return packetPayload.getBodyStream();
     }
 
+    /**
+     * Do not return the body buffer to the heap pool, it is handed out of the packet
+     */
+    private void keepBody() {
+        if (heapPool != null && packetPayload != null) {
+            Release.keep(allocatedBuffers, packetPayload.getBodyBytes());
+        }
+    }
+
+    /**
+     * Do not return the body and properties buffers to the heap pool, they are shared with another packet
+     */
+    private void keepPayload() {
+        if (heapPool != null) {
+            keepBody();
+            Release.keep(allocatedBuffers, propBuf);
+        }
+    }
+
     /**
      * Reset packet to initial values. This does not free buffers just in case we can reused them.
      */
@@ -2017,6 +2075,11 @@ public class Packet implements JMSPacket {
             }
             // Track allocated direct ByteBuffers
             allocatedBuffers.add(b);
+        } else if (heapPool != null) {
+            b = heapPool.get(capacity);
+            synchronized (allocatedBuffers) {
+                allocatedBuffers.add(b);
+            }
         } else {
             b = ByteBuffer.allocate(capacity);
         }
@@ -2036,6 +2099,10 @@ public class Packet implements JMSPacket {
 
         this.reset();
 
+        if (heapPool != null) {
+            Release.release(heapPool, allocatedBuffers);
+        }
+
         Iterator iterator = allocatedBuffers.iterator();
         while (iterator.hasNext()) {
             b = (ByteBuffer) iterator.next();
@@ -2150,4 +2217,56 @@ public class Packet implements JMSPacket {
     public com.sun.messaging.jmq.io.Packet getPacket() {
         return this;
     }
+
+    /**
+     * Returns the buffers of a packet to its heap pool once the packet is unreachable. Only holds the list of buffers, not
+     * the packet.
+     */
+    private static final class Release implements Runnable {
+        private static final Cleaner cleaner = Cleaner.create();
+
+        private final ByteBufferPool pool;
+        private final ArrayList buffers;
+
+        private Release(ByteBufferPool pool, ArrayList buffers) {
+            this.pool = pool;
+            this.buffers = buffers;
+        }
+
+        static void register(Packet pkt, ByteBufferPool pool, ArrayList buffers) {
+            cleaner.register(pkt, new Release(pool, buffers));
+        }
+
+        /**
+         * Remove the buffer from the buffers returned to the pool
+         */
+        static void keep(ArrayList buffers, ByteBuffer b) {
+            if (b == null) {
+                return;
+            }
+            synchronized (buffers) {
+                // ByteBuffer.equals compares the contents
+                for (int i = 0; i < buffers.size(); i++) {
+                    if (buffers.get(i) == b) {
+                        buffers.remove(i);
+                        return;
+                    }
+                }
+            }
+        }
+
+        static void release(ByteBufferPool pool, ArrayList buffers) {
+            synchronized (buffers) {
+                for (int i = 0; i < buffers.size(); i++) {
+                    pool.putShared((ByteBuffer) buffers.get(i));
+                }
+                buffers.clear();
+            }
+        }
+
+        @Override
+        public void run() {
+            release(pool, buffers);
+        }
+    }
 }
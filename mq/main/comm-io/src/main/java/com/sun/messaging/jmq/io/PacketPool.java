@@ -17,7 +17,16 @@
 
 package com.sun.messaging.jmq.io;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sun.messaging.jmq.util.DiagDictionaryEntry;
+import com.sun.messaging.jmq.util.DiagManager;
 
 /**
  *
@@ -26,34 +35,46 @@ import java.util.ArrayList;
  * The latest Packet code makes use of nio direct ByteBuffers. Direct buffers are faster than byte[]s, but are more
  * expensive to allocate. To compensate for this we introduce a packet pool so that packets can be reaused.
  *
+ * The pool is a lock-free queue. In front of it each thread caches up to ByteBufferPool.MAGAZINE_SIZE packets. These
+ * are counted in the size of the pool like the ones in the queue, so the capacity bounds both. When a thread ends, the
+ * packets it cached are discounted once its cache is garbage collected.
+ *
  */
-public class PacketPool {
+public class PacketPool implements DiagManager.Data {
+
+    // Queue of packets. This will grow as needed.
+    final Queue<Packet> pool = new ConcurrentLinkedQueue<>();
 
-    // List of packets. This will grow as needed.
-    ArrayList pool = null;
+    // Packets cached by each thread
+    private final ThreadLocal<Magazine> magazines = ThreadLocal.withInitial(this::newMagazine);
+
+    // Incremented by clear() so that threads drop their cached packets
+    private volatile int generation = 0;
 
     // Initial size of list of packets.
     static final int INITIALSIZE = 128;
 
     // Max size of buffer pool in # of packets
     int capacity = INITIALSIZE;
-    int size = 0;
+    final AtomicInteger size = new AtomicInteger();
 
     // Diagnostic counters
-    int hits = 0;
-    int misses = 0;
+    final LongAdder hits = new LongAdder();
+    final LongAdder misses = new LongAdder();
 
-    int drops = 0;
-    int adds = 0;
+    final LongAdder drops = new LongAdder();
+    final LongAdder adds = new LongAdder();
 
     boolean resetPacket = false;
     boolean dontTimestampPacket = false;
 
+    ArrayList diagDictionary = null;
+
     /**
      * Create an empty packet pool with a default capacity (128)
      */
     public PacketPool() {
-        pool = new ArrayList(INITIALSIZE);
+        DiagManager.register(this);
     }
 
     /**
@@ -61,7 +82,7 @@ public class PacketPool {
      */
     public PacketPool(int capacity) {
         this.capacity = capacity;
-        pool = new ArrayList(INITIALSIZE);
+        DiagManager.register(this);
     }
 
     /**
@@ -69,9 +90,9 @@ public class PacketPool {
      */
     public PacketPool(int capacity, boolean resetPacket, boolean dontTiemstamp) {
         this.capacity = capacity;
-        pool = new ArrayList(INITIALSIZE);
         this.dontTimestampPacket = dontTiemstamp;
         this.resetPacket = resetPacket;
+        DiagManager.register(this);
     }
 
     /**
@@ -88,17 +109,41 @@ public class PacketPool {
         return capacity;
     }
 
+    private Magazine newMagazine() {
+        Magazine magazine = new Magazine();
+        ByteBufferPool.cleaner.register(magazine, new Discount(magazine.cached, size));
+        return magazine;
+    }
+
+    private Magazine getMagazine() {
+        Magazine magazine = magazines.get();
+        if (magazine.generation != generation) {
+            size.addAndGet(-magazine.packets.size());
+            magazine.packets.clear();
+            magazine.cached.set(0);
+            magazine.generation = generation;
+        }
+        return magazine;
+    }
+
     /**
      * Get a packet from the pool. If the pool is empty a newly allocated packet is returned.
      */
-    public synchronized Packet get() {
-        if (size > 0) {
-            size--;
-            hits++;
-            return (Packet) (pool.remove(pool.size() - 1));
+    public Packet get() {
+        Magazine magazine = getMagazine();
+        Packet p = magazine.packets.pollLast();
+        if (p != null) {
+            magazine.cached.set(magazine.packets.size());
+        } else {
+            p = pool.poll();
+        }
+        if (p != null) {
+            size.decrementAndGet();
+            hits.increment();
+            return p;
         } else {
-            misses++;
-            Packet p = new Packet();
+            misses.increment();
+            p = new Packet();
             if (dontTimestampPacket) {
                 p.generateSequenceNumber(false);
                 p.generateTimestamp(false);
@@ -120,28 +165,32 @@ public class PacketPool {
             p.reset();
         }
 
-        synchronized (this) {
-
-            if (size < capacity) {
-                // Clear packet and add it to the pool
-                size++;
-                pool.add(p);
-                adds++;
+        if (size.incrementAndGet() <= capacity) {
+            // Add it to the pool, the cache of this thread first
+            Magazine magazine = getMagazine();
+            if (magazine.packets.size() < ByteBufferPool.MAGAZINE_SIZE) {
+                magazine.packets.addLast(p);
+                magazine.cached.set(magazine.packets.size());
             } else {
-                // Drop it on floor
-                drops++;
+                pool.offer(p);
             }
+            adds.increment();
+        } else {
+            // Drop it on floor
+            size.decrementAndGet();
+            drops.increment();
         }
     }
 
     /**
-     * Empty the pool.
+     * Empty the pool. Packets cached by threads are dropped the next time the thread uses the pool.
      */
-    public synchronized void clear() {
-        // We reallocate the ArrayList so it shrinks back to initial size
-        pool = null;
-        size = 0;
-        pool = new ArrayList(INITIALSIZE);
+    public void clear() {
+        generation++;
+        // take the packets out one by one, so that packets being put at the same time stay counted
+        while (pool.poll() != null) {
+            size.decrementAndGet();
+        }
     }
 
     @Override
@@ -152,4 +201,62 @@ public class PacketPool {
     public String toDiagString() {
         return toString() + ", hits=" + hits + ", misses=" + misses + ", adds=" + adds + ", drops=" + drops;
     }
+
+    // Methods to support diagnostics
+    @Override
+    public synchronized List getDictionary() {
+        if (diagDictionary == null) {
+            diagDictionary = new ArrayList();
+
+            diagDictionary.add(new DiagDictionaryEntry("capacity", DiagManager.VARIABLE));
+            diagDictionary.add(new DiagDictionaryEntry("size", DiagManager.VARIABLE));
+            diagDictionary.add(new DiagDictionaryEntry("hits", DiagManager.COUNTER));
+            diagDictionary.add(new DiagDictionaryEntry("misses", DiagManager.COUNTER));
+            diagDictionary.add(new DiagDictionaryEntry("adds", DiagManager.COUNTER));
+            diagDictionary.add(new DiagDictionaryEntry("drops", DiagManager.COUNTER));
+        }
+
+        return diagDictionary;
+    }
+
+    @Override
+    public void update() {
+    }
+
+    @Override
+    public String getPrefix() {
+        return "pktpool";
+    }
+
+    @Override
+    public String getTitle() {
+        return "PacketPool";
+    }
+
+    /**
+     * Discounts the packets cached by a thread from the size of the pool once the cache is unreachable
+     */
+    private static final class Discount implements Runnable {
+        private final AtomicInteger cached;
+        private final AtomicInteger size;
+
+        Discount(AtomicInteger cached, AtomicInteger size) {
+            this.cached = cached;
+            this.size = size;
+        }
+
+        @Override
+        public void run() {
+            size.addAndGet(-cached.get());
+        }
+    }
+
+    /**
+     * The packets cached by one thread. Only accessed by its thread, except for the count read by the cleaner.
+     */
+    private static final class Magazine {
+        final ArrayDeque<Packet> packets = new ArrayDeque<>(ByteBufferPool.MAGAZINE_SIZE);
+        final AtomicInteger cached = new AtomicInteger();
+        int generation = 0;
+    }
 }
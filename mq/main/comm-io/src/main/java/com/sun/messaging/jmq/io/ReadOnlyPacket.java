@@ -37,6 +37,18 @@ import java.io.*;
  */
 public class ReadOnlyPacket extends Packet implements Cloneable {
 
+    public ReadOnlyPacket() {
+    }
+
+    /**
+     * Construct a packet that allocates its heap buffers from the pool
+     *
+     * @see Packet#Packet(ByteBufferPool)
+     */
+    public ReadOnlyPacket(ByteBufferPool heapPool) {
+        super(heapPool);
+    }
+
     /**
      * this method MUST be called before a packet is created
      */
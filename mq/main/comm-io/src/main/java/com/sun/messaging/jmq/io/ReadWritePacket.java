@@ -25,6 +25,18 @@ import java.io.*;
  */
 public class ReadWritePacket extends ReadOnlyPacket {
 
+    public ReadWritePacket() {
+    }
+
+    /**
+     * Construct a packet that allocates its heap buffers from the pool
+     *
+     * @see Packet#Packet(ByteBufferPool)
+     */
+    public ReadWritePacket(ByteBufferPool heapPool) {
+        super(heapPool);
+    }
+
     /**
      * Read packet from an InputStream. This method reads one packet from the InputStream and sets the state of this object
      * to reflect the packet read.
@@ -236,6 +248,16 @@ public class ReadWritePacket extends ReadOnlyPacket {
         return super.getMessageBodyByteArray();
     }
 
+    /**
+     * Return the message body without taking it from the packet. Like getMessageBody() but the body array is owned by
+     * the packet and may be reused once the packet is unreachable.
+     *
+     * @see Packet#lendMessageBodyByteArray()
+     */
+    public synchronized byte[] lendMessageBody() {
+        return super.lendMessageBodyByteArray();
+    }
+
     /**
      * Make a deep copy of this packet
      */
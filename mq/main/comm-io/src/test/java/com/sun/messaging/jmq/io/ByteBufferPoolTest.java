@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+
+package com.sun.messaging.jmq.io;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+class ByteBufferPoolTest {
+
+    private static final int CAPACITY = 64 * 1024;
+    private static final int[] SIZES = { 100, 1000, 4000, 20000 };
+    private static final int MAX_SIZE = 20000 + ByteBufferPool.DEFAULT_BLOCKSIZE;
+
+    private static long queuedBytes(ByteBufferPool pool) {
+        long n = 0;
+        for (Queue<ByteBuffer> buffers : pool.table.values()) {
+            for (ByteBuffer b : buffers) {
+                n += b.capacity();
+            }
+        }
+        return n;
+    }
+
+    private static int queuedBuffers(ByteBufferPool pool) {
+        int n = 0;
+        for (Queue<ByteBuffer> buffers : pool.table.values()) {
+            n += buffers.size();
+        }
+        return n;
+    }
+
+    @Test
+    void testCachedBuffersCountAgainstCapacity() {
+        ByteBufferPool pool = new ByteBufferPool(8 * 1024, false);
+        for (int i = 0; i < 100; i++) {
+            pool.put(ByteBuffer.allocate(1024));
+        }
+
+        assertThat(pool.poolSize.get()).isEqualTo(8 * 1024);
+        assertThat(pool.nBufs.get()).isEqualTo(8);
+        assertThat(pool.adds.sum()).isEqualTo(8);
+        assertThat(pool.drops.sum()).isEqualTo(92);
+
+        for (int i = 0; i < 8; i++) {
+            pool.get(1024);
+        }
+        assertThat(pool.hits.sum()).isEqualTo(8);
+        assertThat(pool.poolSize.get()).isZero();
+        assertThat(pool.nBufs.get()).isZero();
+    }
+
+    @Test
+    void testClearDropsCachedBuffers() {
+        ByteBufferPool pool = new ByteBufferPool(CAPACITY, false);
+        for (int i = 0; i < 32; i++) {
+            pool.put(ByteBuffer.allocate(1024));
+        }
+        assertThat(queuedBuffers(pool)).isEqualTo(32 - ByteBufferPool.MAGAZINE_SIZE);
+
+        pool.clear();
+        assertThat(queuedBuffers(pool)).isZero();
+        assertThat(pool.get(1024)).isNotNull();
+
+        assertThat(pool.hits.sum()).isZero();
+        assertThat(pool.poolSize.get()).isZero();
+        assertThat(pool.nBufs.get()).isZero();
+    }
+
+    @Test
+    void testSizeAndCapacityUnderConcurrentUse() throws Exception {
+        ByteBufferPool pool = new ByteBufferPool(CAPACITY, false);
+        int nThreads = 8;
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<String> violation = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(nThreads);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < nThreads; t++) {
+            long seed = t;
+            threads.add(new Thread(() -> {
+                Random random = new Random(seed);
+                List<ByteBuffer> held = new ArrayList<>();
+                for (int i = 0; i < 20000; i++) {
+                    held.add(pool.get(SIZES[random.nextInt(SIZES.length)]));
+                    if (held.size() > 4 || random.nextBoolean()) {
+                        ByteBuffer b = held.remove(random.nextInt(held.size()));
+                        if (random.nextInt(4) == 0) {
+                            pool.putShared(b);
+                        } else {
+                            pool.put(b);
+                        }
+                    }
+                }
+                held.forEach(pool::put);
+                done.countDown();
+            }));
+        }
+        Thread clearer = new Thread(() -> {
+            while (running.get()) {
+                pool.clear();
+                Thread.yield();
+            }
+        });
+        Thread monitor = new Thread(() -> {
+            while (running.get()) {
+                // every put reserves its buffer before checking, so each thread may be one buffer over
+                int size = pool.poolSize.get();
+                if (size < 0 || size >= CAPACITY + (nThreads + 1) * MAX_SIZE || pool.nBufs.get() < 0 || pool.bigPoolSize.get() < 0) {
+                    violation.compareAndSet(null, pool.toString());
+                }
+            }
+        });
+        threads.forEach(Thread::start);
+        clearer.start();
+        monitor.start();
+
+        done.await();
+        running.set(false);
+        clearer.join();
+        monitor.join();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        threads.clear();
+
+        assertThat(violation.get()).isNull();
+
+        // the buffers cached by the threads are discounted once their caches are collected
+        for (int i = 0; i < 500 && pool.nBufs.get() != queuedBuffers(pool); i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertThat(pool.nBufs.get()).isEqualTo(queuedBuffers(pool));
+        assertThat((long) pool.poolSize.get()).isEqualTo(queuedBytes(pool)).isLessThan(CAPACITY + MAX_SIZE);
+        assertThat(pool.bigPoolSize.get()).isBetween(0, pool.poolSize.get());
+
+        pool.clear();
+        assertThat(pool.poolSize.get()).isZero();
+        assertThat(pool.bigPoolSize.get()).isZero();
+        assertThat(pool.nBufs.get()).isZero();
+    }
+}
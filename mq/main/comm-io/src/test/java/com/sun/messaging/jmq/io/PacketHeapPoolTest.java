@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+
+package com.sun.messaging.jmq.io;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class PacketHeapPoolTest {
+
+    private static final byte[] BODY = "the body of the message".getBytes();
+
+    /**
+     * Records the buffers taken from and returned to the pool
+     */
+    static class RecordingPool extends ByteBufferPool {
+        final Set<ByteBuffer> taken = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+        final Set<ByteBuffer> returned = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+
+        RecordingPool() {
+            super(1024 * 1024, false);
+            setBlockSize(1);
+        }
+
+        @Override
+        public ByteBuffer get(int bufSize) {
+            ByteBuffer b = super.get(bufSize);
+            taken.add(b);
+            return b;
+        }
+
+        @Override
+        public void put(ByteBuffer b) {
+            returned.add(b);
+            super.put(b);
+        }
+
+        @Override
+        public void putShared(ByteBuffer b) {
+            returned.add(b);
+            super.putShared(b);
+        }
+
+        boolean returnedArray(byte[] array) {
+            synchronized (returned) {
+                return returned.stream().anyMatch(b -> b.array() == array);
+            }
+        }
+    }
+
+    private RecordingPool pool;
+    private byte[] bytes;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        pool = new RecordingPool();
+
+        ReadWritePacket pkt = new ReadWritePacket();
+        pkt.setPacketType(PacketType.BYTES_MESSAGE);
+        Hashtable<String, Object> props = new Hashtable<>();
+        props.put("color", "red");
+        pkt.setProperties(props);
+        pkt.setMessageBody(BODY);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        pkt.writePacket(bos);
+        bytes = bos.toByteArray();
+    }
+
+    private ReadWritePacket read() throws Exception {
+        ReadWritePacket pkt = new ReadWritePacket(pool);
+        pkt.readPacket(new ByteArrayInputStream(bytes));
+        return pkt;
+    }
+
+    @Test
+    void testDestroyReturnsAllBuffers() throws Exception {
+        ReadWritePacket pkt = read();
+        assertThat(pkt.getProperties()).containsEntry("color", "red");
+
+        pkt.destroy();
+
+        assertThat(pool.taken).isNotEmpty();
+        assertThat(pool.returned).containsExactlyInAnyOrderElementsOf(pool.taken);
+    }
+
+    @Test
+    void testBodyArrayIsNotReturned() throws Exception {
+        ReadWritePacket pkt = read();
+        byte[] body = pkt.getMessageBody();
+
+        pkt.destroy();
+
+        assertThat(pool.returned).hasSize(pool.taken.size() - 1);
+        assertThat(pool.returnedArray(body)).isFalse();
+        assertThat(body).isEqualTo(BODY);
+    }
+
+    @Test
+    void testBodyStreamIsNotReturned() throws Exception {
+        ReadWritePacket pkt = read();
+        InputStream is = pkt.getMessageBodyStream();
+        ByteBuffer body = pkt.getMessageBodyByteBuffer();
+
+        pkt.destroy();
+
+        assertThat(pool.returned).hasSize(pool.taken.size() - 1).doesNotContain(body);
+        assertThat(is.readAllBytes()).isEqualTo(BODY);
+    }
+
+    @Test
+    void testSharedPayloadIsNotReturned() throws Exception {
+        ReadWritePacket pkt = read();
+        ReadWritePacket copy = new ReadWritePacket();
+        copy.fill(pkt);
+
+        pkt.destroy();
+
+        assertThat(pool.returned).hasSize(pool.taken.size() - 2);
+        // overwrite whatever went back to the pool
+        read();
+        assertThat(copy.getMessageBody()).isEqualTo(BODY);
+        assertThat(copy.getProperties()).containsEntry("color", "red");
+    }
+
+    @Test
+    void testDeepCopyReturnsAllBuffers() throws Exception {
+        ReadWritePacket pkt = read();
+        ReadWritePacket copy = (ReadWritePacket) pkt.clone();
+
+        pkt.destroy();
+
+        assertThat(pool.returned).containsExactlyInAnyOrderElementsOf(pool.taken);
+        assertThat(copy.getMessageBody()).isEqualTo(BODY);
+    }
+
+    private byte[] readBodyAndDrop() throws Exception {
+        return read().getMessageBody();
+    }
+
+    @Test
+    void testUnreachablePacketKeepsBodyArray() throws Exception {
+        byte[] body = readBodyAndDrop();
+
+        for (int i = 0; i < 200 && pool.returned.size() < pool.taken.size() - 1; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        assertThat(pool.returned).hasSize(pool.taken.size() - 1);
+        assertThat(pool.returnedArray(body)).isFalse();
+        for (int i = 0; i < 10; i++) {
+            read();
+        }
+        assertThat(body).isEqualTo(BODY);
+    }
+
+    @Test
+    void testLentBodyIsReturnedWithThePacket() throws Exception {
+        ReadWritePacket pkt = read();
+        byte[] body = pkt.lendMessageBody();
+        assertThat(body).isEqualTo(BODY);
+
+        pkt.destroy();
+
+        assertThat(pool.returned).containsExactlyInAnyOrderElementsOf(pool.taken);
+        assertThat(pool.returnedArray(body)).isTrue();
+    }
+
+    /**
+     * Read messages that are dropped once their body is read, as by a consumer, and return the bytes the pool allocated
+     */
+    private long allocatedReading(int count, boolean lend) throws Exception {
+        for (int i = 0; i < count; i++) {
+            ReadWritePacket pkt = read();
+            byte[] body = (lend ? pkt.lendMessageBody() : pkt.getMessageBody());
+            assertThat(body).isEqualTo(BODY);
+            if (i % 10 == 9) {
+                System.gc();
+                Thread.sleep(10);
+            }
+        }
+        return pool.heapBytesAllocated.get();
+    }
+
+    @Test
+    void testLentBodiesAreReused() throws Exception {
+        long kept = allocatedReading(100, false);
+        pool = new RecordingPool();
+        long lent = allocatedReading(100, true);
+
+        // a body taken from its packet is allocated for every message,
+        // a lent one comes back from the pool with its packet
+        assertThat(kept).isGreaterThanOrEqualTo(100L * BODY.length);
+        assertThat(lent).isLessThan(kept / 2);
+        assertThat(pool.hits.sum()).isGreaterThan(0L);
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+
+package com.sun.messaging.jmq.io;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+class PacketPoolTest {
+
+    @Test
+    void testCachedPacketsCountAgainstCapacity() {
+        PacketPool pool = new PacketPool(4);
+        for (int i = 0; i < 20; i++) {
+            pool.put(new Packet(false));
+        }
+
+        assertThat(pool.size.get()).isEqualTo(4);
+        assertThat(pool.adds.sum()).isEqualTo(4);
+        assertThat(pool.drops.sum()).isEqualTo(16);
+
+        for (int i = 0; i < 5; i++) {
+            pool.get();
+        }
+        assertThat(pool.hits.sum()).isEqualTo(4);
+        assertThat(pool.misses.sum()).isEqualTo(1);
+        assertThat(pool.size.get()).isZero();
+    }
+
+    @Test
+    void testClearDropsCachedPackets() {
+        PacketPool pool = new PacketPool(64);
+        for (int i = 0; i < 32; i++) {
+            pool.put(new Packet(false));
+        }
+
+        pool.clear();
+        // the cached packets are dropped when the thread next uses the pool
+        assertThat(pool.size.get()).isEqualTo(ByteBufferPool.MAGAZINE_SIZE);
+        pool.get();
+        assertThat(pool.hits.sum()).isZero();
+        assertThat(pool.size.get()).isZero();
+    }
+
+    @Test
+    void testSizeAndCapacityUnderConcurrentUse() throws Exception {
+        int capacity = 64;
+        int nThreads = 8;
+        PacketPool pool = new PacketPool(capacity);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<String> violation = new AtomicReference<>();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < nThreads; t++) {
+            long seed = t;
+            threads.add(new Thread(() -> {
+                Random random = new Random(seed);
+                List<Packet> held = new ArrayList<>();
+                for (int i = 0; i < 20000; i++) {
+                    held.add(pool.get());
+                    if (held.size() > 4 || random.nextBoolean()) {
+                        pool.put(held.remove(random.nextInt(held.size())));
+                    }
+                }
+                held.forEach(pool::put);
+            }));
+        }
+        Thread clearer = new Thread(() -> {
+            while (running.get()) {
+                pool.clear();
+                Thread.yield();
+            }
+        });
+        Thread monitor = new Thread(() -> {
+            while (running.get()) {
+                // every put reserves its packet before checking, so each thread may be one over
+                int size = pool.size.get();
+                if (size < 0 || size > capacity + nThreads) {
+                    violation.compareAndSet(null, pool.toString());
+                }
+            }
+        });
+        threads.forEach(Thread::start);
+        clearer.start();
+        monitor.start();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        running.set(false);
+        clearer.join();
+        monitor.join();
+        threads.clear();
+
+        assertThat(violation.get()).isNull();
+
+        // the packets cached by the threads are discounted once their caches are collected
+        for (int i = 0; i < 500 && pool.size.get() != pool.pool.size(); i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertThat(pool.size.get()).isEqualTo(pool.pool.size()).isLessThanOrEqualTo(capacity);
+
+        pool.clear();
+        assertThat(pool.size.get()).isZero();
+    }
+}
@@ -91,6 +91,7 @@ public class SharedResources extends MQResourceBundle {
     final public static String W_LOGCHANNEL_DISABLED = "S2004";
     final public static String W_SET_UNCAUGHT_EX_HANDLER_FAIL = "S2005";
     final public static String W_SCHEDULE_UNCAUGHT_EX_HANDLER_TASK_FAIL = "S2006";
+    final public static String W_ASYNC_LOG_DISCARDED = "S2007";
 
     // 3000-3999 Error Messages
     final public static String E_BAD_LOGFILE = "S3000";
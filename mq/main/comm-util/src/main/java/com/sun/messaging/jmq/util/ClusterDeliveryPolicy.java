@@ -28,6 +28,8 @@ public class ClusterDeliveryPolicy {
     public static final int NA = 0;
     public static final int LOCAL_PREFERRED = 1;
     public static final int DISTRIBUTED = 2;
+    // distributed, weighted by how fast the remote consumers keep up
+    public static final int ADAPTIVE = 3;
 
     private ClusterDeliveryPolicy() {
     }
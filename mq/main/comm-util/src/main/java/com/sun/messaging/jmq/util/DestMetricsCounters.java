@@ -65,6 +65,34 @@ public class DestMetricsCounters extends HashMap<String, Number> {
     public static final String REJECT_CNT = "numRejectedMsgs";
     public static final String ROLLBACK_CNT = "numRolledbackMsgs";
 
+    /*
+     * Latency of the stages of the message flow through the broker, in microseconds. A key is the stage name followed by
+     * the statistic, e.g. "queuedLatencyP99". Brokers that do not record latencies do not send these keys.
+     */
+    public static final String LATENCY_PRODUCE_TO_ROUTE = "produceToRoute";
+    public static final String LATENCY_STORE_WRITE = "storeWrite";
+    public static final String LATENCY_FSYNC = "fsync";
+    public static final String LATENCY_QUEUED = "queued";
+    public static final String LATENCY_DELIVER_TO_ACK = "deliverToAck";
+
+    public static final String[] LATENCY_STAGES = { LATENCY_PRODUCE_TO_ROUTE, LATENCY_STORE_WRITE, LATENCY_FSYNC, LATENCY_QUEUED, LATENCY_DELIVER_TO_ACK };
+
+    public static final String LATENCY_COUNT = "LatencyCount";
+    public static final String LATENCY_MEAN = "LatencyMean";
+    public static final String LATENCY_P50 = "LatencyP50";
+    public static final String LATENCY_P90 = "LatencyP90";
+    public static final String LATENCY_P99 = "LatencyP99";
+    public static final String LATENCY_P999 = "LatencyP999";
+    public static final String LATENCY_MAX = "LatencyMax";
+
+    /*
+     * Compression of the message bodies written to the store. Brokers that do not compress messages at rest do not send
+     * these keys.
+     */
+    public static final String STORE_COMPRESSED_MSGS = "numStoreCompressedMsgs";
+    public static final String STORE_UNCOMPRESSED_BYTES = "storeUncompressedBytes";
+    public static final String STORE_COMPRESSED_BYTES = "storeCompressedBytes";
+
     public long timeStamp = 0;
 
     public DestMetricsCounters() {
@@ -361,4 +389,48 @@ public class DestMetricsCounters extends HashMap<String, Number> {
     public void setRollbackMsgCnt(int val) {
         setIntProperty(ROLLBACK_CNT, val);
     }
+
+    /**
+     * @param stage one of LATENCY_STAGES
+     * @param stat one of LATENCY_COUNT, LATENCY_MEAN, LATENCY_P50, LATENCY_P90, LATENCY_P99, LATENCY_P999, LATENCY_MAX
+     * @return -1 if the broker did not report the value
+     */
+    public long getLatency(String stage, String stat) {
+        Number n = get(stage + stat);
+        if (n == null) {
+            return -1;
+        }
+        return n.longValue();
+    }
+
+    public void setLatency(String stage, String stat, long val) {
+        setLongProperty(stage + stat, val);
+    }
+
+    /**
+     * @return the number of messages written compressed to the store, -1 if the broker did not report it
+     */
+    public long getStoreCompressedMsgs() {
+        Number n = get(STORE_COMPRESSED_MSGS);
+        return (n == null ? -1 : n.longValue());
+    }
+
+    /**
+     * @return compressed size / uncompressed size of the message bodies written compressed to the store, 1 if none, -1 if
+     * the broker did not report it
+     */
+    public double getStoreCompressionRatio() {
+        Number in = get(STORE_UNCOMPRESSED_BYTES);
+        Number out = get(STORE_COMPRESSED_BYTES);
+        if (in == null || out == null) {
+            return -1;
+        }
+        return (in.longValue() == 0 ? 1.0 : out.doubleValue() / in.longValue());
+    }
+
+    public void setStoreCompression(long msgs, long uncompressedBytes, long compressedBytes) {
+        setLongProperty(STORE_COMPRESSED_MSGS, msgs);
+        setLongProperty(STORE_UNCOMPRESSED_BYTES, uncompressedBytes);
+        setLongProperty(STORE_COMPRESSED_BYTES, compressedBytes);
+    }
 }
@@ -17,18 +17,33 @@
 
 package com.sun.messaging.jmq.util;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Class for performing packet counting
+ * <P>
+ * The in and out counters are incremented on every packet, so updateIn and updateOut add to striped LongAdder cells
+ * instead of taking a lock. The cells are summed into the public fields only when a snapshot is taken: by clone(),
+ * update(MetricCounters), toString() and serialization. The public fields of a live object therefore only hold the
+ * values added by update(MetricCounters); use a clone to read the totals.
  */
 
 public class MetricCounters implements Cloneable, Serializable {
     private static final long serialVersionUID = -6326807264269230289L;
-    // We use two locks because counters are typically incremented by
-    // seperate input and output threads.
-    transient private Object inLock;
-    transient private Object outLock;
+
+    // Counts added by updateIn/updateOut, summed on snapshot
+    transient private LongAdder messagesInCell;
+    transient private LongAdder messageBytesInCell;
+    transient private LongAdder packetsInCell;
+    transient private LongAdder packetBytesInCell;
+    transient private LongAdder messagesOutCell;
+    transient private LongAdder messageBytesOutCell;
+    transient private LongAdder packetsOutCell;
+    transient private LongAdder packetBytesOutCell;
 
     // Number of JMS messages in and out
     public long messagesIn = 0;
@@ -64,89 +79,131 @@ public class MetricCounters implements Cloneable, Serializable {
     public int nConnections = 1;
 
     public MetricCounters() {
-        inLock = new Object();
-        outLock = new Object();
+        initCells();
         reset();
     }
 
+    private void initCells() {
+        messagesInCell = new LongAdder();
+        messageBytesInCell = new LongAdder();
+        packetsInCell = new LongAdder();
+        packetBytesInCell = new LongAdder();
+        messagesOutCell = new LongAdder();
+        messageBytesOutCell = new LongAdder();
+        packetsOutCell = new LongAdder();
+        packetBytesOutCell = new LongAdder();
+    }
+
     /**
      * Reset counters to 0
      */
-    public void reset() {
-
-        synchronized (inLock) {
-            messagesIn = messageBytesIn = 0;
-            packetsIn = packetBytesIn = 0;
-        }
-
-        synchronized (outLock) {
-            messagesOut = messageBytesOut = 0;
-            packetsOut = packetBytesOut = 0;
-        }
+    public synchronized void reset() {
+        messagesIn = messageBytesIn = 0;
+        packetsIn = packetBytesIn = 0;
+        messagesInCell.reset();
+        messageBytesInCell.reset();
+        packetsInCell.reset();
+        packetBytesInCell.reset();
+
+        messagesOut = messageBytesOut = 0;
+        packetsOut = packetBytesOut = 0;
+        messagesOutCell.reset();
+        messageBytesOutCell.reset();
+        packetsOutCell.reset();
+        packetBytesOutCell.reset();
     }
 
     /**
      * Updated input counters
      */
-    public synchronized void updateIn(long messagesIn, long messageBytesIn, long packetsIn, long packetBytesIn) {
-
-        synchronized (inLock) {
-            this.messagesIn += messagesIn;
-            this.messageBytesIn += messageBytesIn;
-            this.packetsIn += packetsIn;
-            this.packetBytesIn += packetBytesIn;
+    public void updateIn(long messagesIn, long messageBytesIn, long packetsIn, long packetBytesIn) {
+        if (messagesIn != 0 || messageBytesIn != 0) {
+            messagesInCell.add(messagesIn);
+            messageBytesInCell.add(messageBytesIn);
         }
+        packetsInCell.add(packetsIn);
+        packetBytesInCell.add(packetBytesIn);
     }
 
     /**
      * Update output counters
      */
-    public synchronized void updateOut(long messagesOut, long messageBytesOut, long packetsOut, long packetBytesOut) {
-
-        synchronized (outLock) {
-            this.messagesOut += messagesOut;
-            this.messageBytesOut += messageBytesOut;
-            this.packetsOut += packetsOut;
-            this.packetBytesOut += packetBytesOut;
+    public void updateOut(long messagesOut, long messageBytesOut, long packetsOut, long packetBytesOut) {
+        if (messagesOut != 0 || messageBytesOut != 0) {
+            messagesOutCell.add(messagesOut);
+            messageBytesOutCell.add(messageBytesOut);
         }
+        packetsOutCell.add(packetsOut);
+        packetBytesOutCell.add(packetBytesOut);
     }
 
-    /**
-     * Update counters using values from another MetricCounters
-     */
-    public synchronized void update(MetricCounters counter) {
+    public synchronized long getMessagesIn() {
+        return messagesIn + messagesInCell.sum();
+    }
 
-        synchronized (inLock) {
-            this.messagesIn += counter.messagesIn;
-            this.messageBytesIn += counter.messageBytesIn;
-            this.packetsIn += counter.packetsIn;
-            this.packetBytesIn += counter.packetBytesIn;
-        }
+    public synchronized long getMessageBytesIn() {
+        return messageBytesIn + messageBytesInCell.sum();
+    }
+
+    public synchronized long getPacketsIn() {
+        return packetsIn + packetsInCell.sum();
+    }
+
+    public synchronized long getPacketBytesIn() {
+        return packetBytesIn + packetBytesInCell.sum();
+    }
 
-        synchronized (outLock) {
-            this.messagesOut += counter.messagesOut;
-            this.messageBytesOut += counter.messageBytesOut;
-            this.packetsOut += counter.packetsOut;
-            this.packetBytesOut += counter.packetBytesOut;
+    public synchronized long getMessagesOut() {
+        return messagesOut + messagesOutCell.sum();
+    }
+
+    public synchronized long getMessageBytesOut() {
+        return messageBytesOut + messageBytesOutCell.sum();
+    }
+
+    public synchronized long getPacketsOut() {
+        return packetsOut + packetsOutCell.sum();
+    }
 
-            this.threadsActive = counter.threadsActive;
-            this.threadsHighWater = counter.threadsHighWater;
-            this.threadsLowWater = counter.threadsLowWater;
+    public synchronized long getPacketBytesOut() {
+        return packetBytesOut + packetBytesOutCell.sum();
+    }
+
+    /**
+     * Update counters using values from another MetricCounters
+     */
+    public void update(MetricCounters counter) {
+        MetricCounters snapshot = (MetricCounters) counter.clone();
+
+        synchronized (this) {
+            this.messagesIn += snapshot.messagesIn;
+            this.messageBytesIn += snapshot.messageBytesIn;
+            this.packetsIn += snapshot.packetsIn;
+            this.packetBytesIn += snapshot.packetBytesIn;
+
+            this.messagesOut += snapshot.messagesOut;
+            this.messageBytesOut += snapshot.messageBytesOut;
+            this.packetsOut += snapshot.packetsOut;
+            this.packetBytesOut += snapshot.packetBytesOut;
+
+            this.threadsActive = snapshot.threadsActive;
+            this.threadsHighWater = snapshot.threadsHighWater;
+            this.threadsLowWater = snapshot.threadsLowWater;
         }
     }
 
     @Override
     public String toString() {
-        synchronized (outLock) {
-            synchronized (inLock) {
-                return " In: " + messagesIn + " messages(" + messageBytesIn + " bytes)\t" + packetsIn + " packets(" + packetBytesIn + " bytes)\n" + "Out: "
-                        + messagesOut + " messages(" + messageBytesOut + " bytes)\t" + packetsOut + " packets(" + packetBytesOut + " bytes)\n";
-            }
-        }
+        MetricCounters c = (MetricCounters) clone();
+        return " In: " + c.messagesIn + " messages(" + c.messageBytesIn + " bytes)\t" + c.packetsIn + " packets(" + c.packetBytesIn + " bytes)\n" + "Out: "
+                + c.messagesOut + " messages(" + c.messageBytesOut + " bytes)\t" + c.packetsOut + " packets(" + c.packetBytesOut + " bytes)\n";
     }
 
+    /**
+     * @return a snapshot whose public fields hold the current totals
+     */
     @Override
-    public Object clone() {
+    public synchronized Object clone() {
 
         // Bug id 6359793
         // 9 Oct 2006
@@ -166,32 +223,48 @@ public class MetricCounters implements Cloneable, Serializable {
             return null;
         }
         // do deep clone
-        counter.inLock = new Object();
-        counter.outLock = new Object();
-
-        // do just shallow clone
-        synchronized (inLock) {
-            counter.messagesIn = this.messagesIn;
-            counter.messageBytesIn = this.messageBytesIn;
-            counter.packetsIn = this.packetsIn;
-            counter.packetBytesIn = this.packetBytesIn;
-        }
+        counter.initCells();
 
-        synchronized (outLock) {
-            counter.messagesOut = this.messagesOut;
-            counter.messageBytesOut = this.messageBytesOut;
-            counter.packetsOut = this.packetsOut;
-            counter.packetBytesOut = this.packetBytesOut;
-        }
+        counter.messagesIn = getMessagesIn();
+        counter.messageBytesIn = getMessageBytesIn();
+        counter.packetsIn = getPacketsIn();
+        counter.packetBytesIn = getPacketBytesIn();
+
+        counter.messagesOut = getMessagesOut();
+        counter.messageBytesOut = getMessageBytesOut();
+        counter.packetsOut = getPacketsOut();
+        counter.packetBytesOut = getPacketBytesOut();
 
         return counter;
     }
 
-    private void readObject(java.io.ObjectInputStream s) throws java.io.IOException, ClassNotFoundException {
+    /*
+     * Write the summed counters so the serialized form stays the same
+     */
+    private synchronized void writeObject(ObjectOutputStream s) throws IOException {
+        ObjectOutputStream.PutField fields = s.putFields();
+        fields.put("messagesIn", getMessagesIn());
+        fields.put("messagesOut", getMessagesOut());
+        fields.put("messageBytesIn", getMessageBytesIn());
+        fields.put("messageBytesOut", getMessageBytesOut());
+        fields.put("packetsIn", getPacketsIn());
+        fields.put("packetsOut", getPacketsOut());
+        fields.put("packetBytesIn", getPacketBytesIn());
+        fields.put("packetBytesOut", getPacketBytesOut());
+        fields.put("totalMemory", totalMemory);
+        fields.put("freeMemory", freeMemory);
+        fields.put("threadsActive", threadsActive);
+        fields.put("threadsHighWater", threadsHighWater);
+        fields.put("threadsLowWater", threadsLowWater);
+        fields.put("timeStamp", timeStamp);
+        fields.put("nConnections", nConnections);
+        s.writeFields();
+    }
+
+    private void readObject(ObjectInputStream s) throws IOException, ClassNotFoundException {
         s.defaultReadObject();
 
-        // Instantiate transient locks
-        inLock = new Object();
-        outLock = new Object();
+        // Instantiate transient cells
+        initCells();
     }
 }
@@ -105,6 +105,14 @@ public class MessageType {
      */
     public static final String JMQ_MAX_NUM_MSGS_RETRIEVED = "JMQMaxNumMsgsRetrieved";
 
+    /**
+     * Position after which GET_MESSAGES returns messages, an empty string for the first page. GET_MESSAGES_REPLY carries
+     * the position to pass for the next page, or no cursor if there are no more messages.
+     *
+     * @since 6.4
+     */
+    public static final String JMQ_MESSAGE_CURSOR = "JMQMessageCursor";
+
     /**
      * Message ID
      *
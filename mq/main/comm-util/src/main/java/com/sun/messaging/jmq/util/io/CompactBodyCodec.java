@@ -0,0 +1,440 @@
+/*
+ * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.messaging.jmq.util.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of MapMessage and StreamMessage bodies.
+ * <P>
+ * The bodies have always been written with an ObjectOutputStream, which is kept as the default format. A compact body
+ * starts with a 3 byte header ('M', 'Q', version) that can not be the start of a serialization stream (0xACED), so
+ * readers tell the two formats apart from the body itself. A map body is the number of entries followed by each name
+ * and value, a stream body is the number of values followed by the values. Each value is a type tag followed by:
+ *
+ * <PRE>
+ * null, true, false        nothing
+ * byte                     1 byte
+ * short, char              2 bytes
+ * int, long                zigzag varint
+ * float, double            4 or 8 bytes of the IEEE 754 bits
+ * String                   varint byte length and modified UTF-8 (as DataOutput.writeUTF, without the 64K limit)
+ * byte[]                   varint length and bytes
+ * </PRE>
+ *
+ * Only the value types allowed in MapMessage and StreamMessage bodies can be encoded.
+ */
+public final class CompactBodyCodec {
+
+    public static final int VERSION = 1;
+
+    private static final byte MAGIC1 = 'M';
+    private static final byte MAGIC2 = 'Q';
+    private static final int HEADER_SIZE = 3;
+
+    private static final byte NULL = 0;
+    private static final byte TRUE = 1;
+    private static final byte FALSE = 2;
+    private static final byte BYTE = 3;
+    private static final byte SHORT = 4;
+    private static final byte CHAR = 5;
+    private static final byte INT = 6;
+    private static final byte LONG = 7;
+    private static final byte FLOAT = 8;
+    private static final byte DOUBLE = 9;
+    private static final byte STRING = 10;
+    private static final byte BYTES = 11;
+
+    private CompactBodyCodec() {
+    }
+
+    /**
+     * @return true if the body is in the compact format
+     */
+    public static boolean isCompact(byte[] body) {
+        return body != null && body.length >= HEADER_SIZE && body[0] == MAGIC1 && body[1] == MAGIC2;
+    }
+
+    /**
+     * @return true if the remaining bytes of the buffer are a body in the compact format
+     */
+    public static boolean isCompact(ByteBuffer body) {
+        if (body == null || body.remaining() < HEADER_SIZE) {
+            return false;
+        }
+        int pos = body.position();
+        return body.get(pos) == MAGIC1 && body.get(pos + 1) == MAGIC2;
+    }
+
+    /**
+     * @throws IllegalArgumentException if a name is null or a value can not be encoded
+     */
+    public static byte[] encodeMap(Map<?, ?> map) {
+        Out out = new Out(64 + map.size() * 16);
+        out.header();
+        out.writeVarLong(map.size());
+        for (Map.Entry<?, ?> e : map.entrySet()) {
+            if (!(e.getKey() instanceof String)) {
+                throw new IllegalArgumentException("Invalid map body name " + e.getKey());
+            }
+            out.writeString((String) e.getKey());
+            out.writeValue(e.getValue());
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @throws IllegalArgumentException if a value can not be encoded
+     */
+    public static byte[] encodeList(List<?> values) {
+        Out out = new Out(64 + values.size() * 8);
+        out.header();
+        out.writeVarLong(values.size());
+        for (Object value : values) {
+            out.writeValue(value);
+        }
+        return out.toByteArray();
+    }
+
+    public static HashMap<String, Object> decodeMap(byte[] body) throws IOException {
+        In in = new In(body);
+        int size = in.readSize();
+        HashMap<String, Object> map = new HashMap<>(Math.max(16, (int) (size / 0.75f) + 1));
+        for (int i = 0; i < size; i++) {
+            String name = in.readString();
+            map.put(name, in.readValue());
+        }
+        in.checkEnd();
+        return map;
+    }
+
+    public static ArrayList<Object> decodeList(byte[] body) throws IOException {
+        In in = new In(body);
+        int size = in.readSize();
+        ArrayList<Object> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(in.readValue());
+        }
+        in.checkEnd();
+        return values;
+    }
+
+    /**
+     * Read a map body in either format
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> readMap(byte[] body) throws IOException, ClassNotFoundException {
+        if (isCompact(body)) {
+            return decodeMap(body);
+        }
+        try (ObjectInputStream ois = new FilteringObjectInputStream(new ByteArrayInputStream(body))) {
+            return (Map<String, Object>) ois.readObject();
+        }
+    }
+
+    /**
+     * @return the map body in the serialized format, the body itself if it is not compact
+     */
+    public static byte[] toSerializedMap(byte[] body) throws IOException {
+        if (!isCompact(body)) {
+            return body;
+        }
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(body.length * 2);
+        try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+            oos.writeObject(decodeMap(body));
+        }
+        return bos.toByteArray();
+    }
+
+    /**
+     * @return the stream body in the serialized format, the body itself if it is not compact
+     */
+    public static byte[] toSerializedStream(byte[] body) throws IOException {
+        if (!isCompact(body)) {
+            return body;
+        }
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(body.length * 2);
+        try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+            for (Object value : decodeList(body)) {
+                oos.writeObject(value);
+            }
+        }
+        return bos.toByteArray();
+    }
+
+    private static final class Out {
+        private byte[] buf;
+        private int count;
+
+        Out(int size) {
+            buf = new byte[size];
+        }
+
+        void header() {
+            ensure(HEADER_SIZE);
+            buf[count++] = MAGIC1;
+            buf[count++] = MAGIC2;
+            buf[count++] = VERSION;
+        }
+
+        void ensure(int n) {
+            if (count + n > buf.length) {
+                byte[] b = new byte[Math.max(buf.length << 1, count + n)];
+                System.arraycopy(buf, 0, b, 0, count);
+                buf = b;
+            }
+        }
+
+        void write(int b) {
+            ensure(1);
+            buf[count++] = (byte) b;
+        }
+
+        void writeFixed(long v, int bytes) {
+            ensure(bytes);
+            for (int shift = (bytes - 1) * 8; shift >= 0; shift -= 8) {
+                buf[count++] = (byte) (v >>> shift);
+            }
+        }
+
+        void writeVarLong(long v) {
+            ensure(10);
+            while ((v & ~0x7FL) != 0) {
+                buf[count++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buf[count++] = (byte) v;
+        }
+
+        void writeString(String s) {
+            int len = s.length();
+            int utflen = len;
+            for (int i = 0; i < len; i++) {
+                char c = s.charAt(i);
+                if (c >= 0x800) {
+                    utflen += 2;
+                } else if (c >= 0x80 || c == 0) {
+                    utflen++;
+                }
+            }
+            writeVarLong(utflen);
+            ensure(utflen);
+            for (int i = 0; i < len; i++) {
+                char c = s.charAt(i);
+                if (c < 0x80 && c != 0) {
+                    buf[count++] = (byte) c;
+                } else if (c < 0x800) {
+                    buf[count++] = (byte) (0xC0 | (c >> 6));
+                    buf[count++] = (byte) (0x80 | (c & 0x3F));
+                } else {
+                    buf[count++] = (byte) (0xE0 | (c >> 12));
+                    buf[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    buf[count++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+        }
+
+        void writeValue(Object value) {
+            if (value == null) {
+                write(NULL);
+            } else if (value instanceof String) {
+                write(STRING);
+                writeString((String) value);
+            } else if (value instanceof Integer) {
+                write(INT);
+                int v = (Integer) value;
+                writeVarLong(((v << 1) ^ (v >> 31)) & 0xFFFFFFFFL);
+            } else if (value instanceof Long) {
+                write(LONG);
+                long v = (Long) value;
+                writeVarLong((v << 1) ^ (v >> 63));
+            } else if (value instanceof Boolean) {
+                write((Boolean) value ? TRUE : FALSE);
+            } else if (value instanceof Double) {
+                write(DOUBLE);
+                writeFixed(Double.doubleToRawLongBits((Double) value), 8);
+            } else if (value instanceof Float) {
+                write(FLOAT);
+                writeFixed(Float.floatToRawIntBits((Float) value), 4);
+            } else if (value instanceof Byte) {
+                write(BYTE);
+                write((Byte) value);
+            } else if (value instanceof Short) {
+                write(SHORT);
+                writeFixed((Short) value, 2);
+            } else if (value instanceof Character) {
+                write(CHAR);
+                writeFixed((Character) value, 2);
+            } else if (value instanceof byte[]) {
+                byte[] b = (byte[]) value;
+                write(BYTES);
+                writeVarLong(b.length);
+                ensure(b.length);
+                System.arraycopy(b, 0, buf, count, b.length);
+                count += b.length;
+            } else {
+                throw new IllegalArgumentException("Invalid body value type " + value.getClass().getName());
+            }
+        }
+
+        byte[] toByteArray() {
+            byte[] b = new byte[count];
+            System.arraycopy(buf, 0, b, 0, count);
+            return b;
+        }
+    }
+
+    private static final class In {
+        private final byte[] buf;
+        private int pos;
+
+        In(byte[] body) throws IOException {
+            if (!isCompact(body)) {
+                throw new StreamCorruptedException("Not a compact message body");
+            }
+            if (body[2] != VERSION) {
+                throw new StreamCorruptedException("Unsupported compact message body version " + body[2]);
+            }
+            buf = body;
+            pos = HEADER_SIZE;
+        }
+
+        void require(long n) throws EOFException {
+            if (n < 0 || n > buf.length - pos) {
+                throw new EOFException("Truncated compact message body");
+            }
+        }
+
+        int read() throws EOFException {
+            require(1);
+            return buf[pos++];
+        }
+
+        long readFixed(int bytes) throws EOFException {
+            require(bytes);
+            long v = 0;
+            for (int i = 0; i < bytes; i++) {
+                v = (v << 8) | (buf[pos++] & 0xFF);
+            }
+            return v;
+        }
+
+        long readVarLong() throws IOException {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = read();
+                v |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return v;
+                }
+            }
+            throw new StreamCorruptedException("Invalid varint in compact message body");
+        }
+
+        int readSize() throws IOException {
+            long size = readVarLong();
+            // every entry takes at least one byte
+            require(size);
+            return (int) size;
+        }
+
+        String readString() throws IOException {
+            int utflen = readSize();
+            char[] chars = new char[utflen];
+            int n = 0;
+            int end = pos + utflen;
+            while (pos < end) {
+                int c = buf[pos++] & 0xFF;
+                if (c < 0x80) {
+                    chars[n++] = (char) c;
+                } else if ((c & 0xE0) == 0xC0) {
+                    if (pos >= end) {
+                        throw new UTFDataFormatException("Truncated string in compact message body");
+                    }
+                    chars[n++] = (char) (((c & 0x1F) << 6) | (buf[pos++] & 0x3F));
+                } else if ((c & 0xF0) == 0xE0) {
+                    if (pos + 1 >= end) {
+                        throw new UTFDataFormatException("Truncated string in compact message body");
+                    }
+                    chars[n++] = (char) (((c & 0x0F) << 12) | ((buf[pos++] & 0x3F) << 6) | (buf[pos++] & 0x3F));
+                } else {
+                    throw new UTFDataFormatException("Invalid string in compact message body");
+                }
+            }
+            return new String(chars, 0, n);
+        }
+
+        Object readValue() throws IOException {
+            int tag = read();
+            switch (tag) {
+            case NULL:
+                return null;
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case BYTE:
+                return Byte.valueOf((byte) read());
+            case SHORT:
+                return Short.valueOf((short) readFixed(2));
+            case CHAR:
+                return Character.valueOf((char) readFixed(2));
+            case INT: {
+                int v = (int) readVarLong();
+                return Integer.valueOf((v >>> 1) ^ -(v & 1));
+            }
+            case LONG: {
+                long v = readVarLong();
+                return Long.valueOf((v >>> 1) ^ -(v & 1));
+            }
+            case FLOAT:
+                return Float.valueOf(Float.intBitsToFloat((int) readFixed(4)));
+            case DOUBLE:
+                return Double.valueOf(Double.longBitsToDouble(readFixed(8)));
+            case STRING:
+                return readString();
+            case BYTES: {
+                int len = readSize();
+                byte[] b = new byte[len];
+                System.arraycopy(buf, pos, b, 0, len);
+                pos += len;
+                return b;
+            }
+            default:
+                throw new StreamCorruptedException("Invalid value type " + tag + " in compact message body");
+            }
+        }
+
+        void checkEnd() throws StreamCorruptedException {
+            if (pos != buf.length) {
+                throw new StreamCorruptedException("Unexpected data at the end of compact message body");
+            }
+        }
+    }
+}
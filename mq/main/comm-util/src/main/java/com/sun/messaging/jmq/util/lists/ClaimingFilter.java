@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+
+package com.sun.messaging.jmq.util.lists;
+
+/**
+ * A filter whose view takes the objects it hands out with removeNext, e.g. to assign them to the owner of the view.
+ * <P>
+ * matches must not have side effects, it is called whenever the set or a view looks for matching objects: when an
+ * object is added, when a view checks whether it is empty or looks for its next object, and by contains and remove.
+ * claim is only called by removeNext of the view, with the lock of the set held, for the object about to be removed.
+ */
+public interface ClaimingFilter extends Filter {
+    /**
+     * Take an object that matched this filter and is about to be removed through its view
+     *
+     * @param o the object
+     * @return false if the object can no longer be taken through this view, it is then left in the set and the view
+     * moves on to its next object
+     */
+    boolean claim(Object o);
+}
@@ -575,18 +575,26 @@ public class NFLPriorityFifoSet<E> extends PriorityFifoSet<E> implements Filtera
             NotifyInfo ni = null;
             synchronized (lock) {
 
-                if (!skipToNext()) {
-                    // removeNext failed
-                    return null;
-                }
-                if (currentEntry == null) {
-                    if (DEBUG && f == null && nextEntry == null && lookup.size() != 0) {
-                        throw new RuntimeException("Corruption noticed in removeNext " + " lookup.size is not 0 " + lookup);
+                while (true) {
+                    if (!skipToNext()) {
+                        // removeNext failed
+                        return null;
                     }
+                    if (currentEntry == null) {
+                        if (DEBUG && f == null && nextEntry == null && lookup.size() != 0) {
+                            throw new RuntimeException("Corruption noticed in removeNext " + " lookup.size is not 0 " + lookup);
+                        }
 
-                    return null;
+                        return null;
+                    }
+                    currentData = currentEntry.getData();
+                    if (!(f instanceof ClaimingFilter) || ((ClaimingFilter) f).claim(currentData)) {
+                        break;
+                    }
+                    // no longer ours, leave it for the views it matches
+                    nextEntry = (nSetEntry) currentEntry.getNext();
+                    currentEntry = null;
                 }
-                currentData = currentEntry.getData();
 
                 nextEntry = (nSetEntry) currentEntry.getNext();
                 currentEntry = null;
@@ -1914,4 +1922,41 @@ public class NFLPriorityFifoSet<E> extends PriorityFifoSet<E> implements Filtera
         }
     }
 
+    /**
+     * Rewind all subsets to the head of the list, so that the items a subset has already passed over because its filter
+     * did not match them are matched again. Used when the result of a filter changed for items already in the list.
+     *
+     * @param r reason passed to the listeners of subsets which are no longer empty
+     */
+    public void resetSubSets(Reason r) {
+        List<FilterSet> notify = null;
+        synchronized (lock) {
+            if (filterSets == null) {
+                return;
+            }
+            List<FilterSet> sets = null;
+            synchronized (filterSetLock) {
+                sets = new ArrayList<>(filterSets.values());
+            }
+            for (FilterSet s : sets) {
+                if (s == null) {
+                    continue;
+                }
+                boolean wasEmpty = s.isEmpty();
+                s.resetFilterSet((nSetEntry) head);
+                if (wasEmpty && !s.isEmpty()) {
+                    if (notify == null) {
+                        notify = new ArrayList<>();
+                    }
+                    notify.add(s);
+                }
+            }
+        }
+        if (notify != null) {
+            for (FilterSet s : notify) {
+                s.notifyEmptyChanged(false, r);
+            }
+        }
+    }
+
 }
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+
+package com.sun.messaging.jmq.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class DestMetricsCountersTest {
+
+    @Test
+    void storeCompressionIsReportedOnlyWhenSet() {
+        DestMetricsCounters dmc = new DestMetricsCounters();
+        assertThat(dmc.getStoreCompressedMsgs()).isEqualTo(-1);
+        assertThat(dmc.getStoreCompressionRatio()).isEqualTo(-1.0);
+
+        dmc.setStoreCompression(0, 0, 0);
+        assertThat(dmc.getStoreCompressedMsgs()).isZero();
+        assertThat(dmc.getStoreCompressionRatio()).isEqualTo(1.0);
+
+        dmc.setStoreCompression(4, 8000, 2000);
+        assertThat(dmc.getStoreCompressedMsgs()).isEqualTo(4);
+        assertThat(dmc.getStoreCompressionRatio()).isEqualTo(0.25);
+        // sent to admin clients as part of the map
+        assertThat(dmc.getHashMap()).containsEntry(DestMetricsCounters.STORE_UNCOMPRESSED_BYTES, 8000L);
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.messaging.jmq.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+
+    @Test
+    void emptyHistogramReportsZero() {
+        LatencyHistogram h = new LatencyHistogram();
+
+        assertThat(h.getCount()).isZero();
+        assertThat(h.getMean()).isZero();
+        assertThat(h.getValueAtPercentile(99)).isZero();
+    }
+
+    @Test
+    void smallValuesAreExact() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (long v = 1; v <= 20; v++) {
+            h.recordValue(v);
+        }
+
+        assertThat(h.getCount()).isEqualTo(20);
+        assertThat(h.getValueAtPercentile(50)).isEqualTo(10);
+        assertThat(h.getValueAtPercentile(100)).isEqualTo(20);
+        assertThat(h.getMax()).isEqualTo(20);
+    }
+
+    @Test
+    void percentilesAreWithinRelativeError() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (long v = 1; v <= 100000; v++) {
+            h.recordValue(v);
+        }
+
+        assertThat(h.getValueAtPercentile(50)).isBetween(50000L, 50000L + 50000L / 32);
+        assertThat(h.getValueAtPercentile(99)).isBetween(99000L, 99000L + 99000L / 32);
+        assertThat(h.getValueAtPercentile(100)).isEqualTo(100000L);
+        assertThat(h.getMean()).isEqualTo(50000L);
+    }
+
+    @Test
+    void bucketBoundariesAreContiguous() {
+        for (int i = 1; i < 2000; i++) {
+            long v = LatencyHistogram.highestValue(LatencyHistogram.bucketIndex(i * 997L));
+            assertThat(LatencyHistogram.bucketIndex(v)).isEqualTo(LatencyHistogram.bucketIndex(i * 997L));
+            assertThat(LatencyHistogram.bucketIndex(v + 1)).isEqualTo(LatencyHistogram.bucketIndex(i * 997L) + 1);
+        }
+    }
+
+    @Test
+    void largeValuesAreClamped() {
+        LatencyHistogram h = new LatencyHistogram();
+        h.recordValue(Long.MAX_VALUE);
+
+        assertThat(h.getMax()).isEqualTo(Long.MAX_VALUE);
+        assertThat(h.getValueAtPercentile(50)).isEqualTo(LatencyHistogram.MAX_VALUE);
+    }
+
+    @Test
+    void resetClearsValues() {
+        LatencyHistogram h = new LatencyHistogram();
+        h.recordValue(12345);
+        h.reset();
+
+        assertThat(h.getCount()).isZero();
+        assertThat(h.getMax()).isZero();
+    }
+}
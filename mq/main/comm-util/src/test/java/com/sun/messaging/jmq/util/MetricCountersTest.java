@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.messaging.jmq.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.junit.jupiter.api.Test;
+
+class MetricCountersTest {
+
+    @Test
+    void concurrentUpdatesAreSummedInSnapshot() throws Exception {
+        MetricCounters mc = new MetricCounters();
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 10000; j++) {
+                    mc.updateIn(1, 10, 1, 12);
+                    mc.updateOut(0, 0, 1, 4);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        MetricCounters snapshot = (MetricCounters) mc.clone();
+        assertThat(snapshot.messagesIn).isEqualTo(80000);
+        assertThat(snapshot.messageBytesIn).isEqualTo(800000);
+        assertThat(snapshot.packetsIn).isEqualTo(80000);
+        assertThat(snapshot.packetBytesIn).isEqualTo(960000);
+        assertThat(snapshot.messagesOut).isZero();
+        assertThat(snapshot.packetsOut).isEqualTo(80000);
+        assertThat(snapshot.packetBytesOut).isEqualTo(320000);
+
+        // the snapshot does not share cells with the live counters
+        mc.updateIn(1, 1, 1, 1);
+        assertThat(snapshot.getMessagesIn()).isEqualTo(80000);
+        assertThat(mc.getMessagesIn()).isEqualTo(80001);
+    }
+
+    @Test
+    void updateAndResetIncludeCells() {
+        MetricCounters live = new MetricCounters();
+        live.updateIn(2, 20, 3, 30);
+        live.updateOut(1, 10, 1, 11);
+
+        MetricCounters totals = new MetricCounters();
+        totals.update(live);
+        totals.update(live);
+        assertThat(totals.messagesIn).isEqualTo(4);
+        assertThat(totals.packetBytesIn).isEqualTo(60);
+        assertThat(totals.messageBytesOut).isEqualTo(20);
+
+        live.reset();
+        assertThat(live.getMessagesIn()).isZero();
+        assertThat(live.getPacketBytesOut()).isZero();
+    }
+
+    @Test
+    void serializedFormHoldsTotals() throws Exception {
+        MetricCounters mc = new MetricCounters();
+        mc.updateIn(5, 50, 6, 60);
+        mc.updateOut(3, 30, 4, 40);
+        mc.threadsActive = 7;
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+            oos.writeObject(mc);
+        }
+        MetricCounters read;
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()))) {
+            read = (MetricCounters) ois.readObject();
+        }
+
+        assertThat(read.messagesIn).isEqualTo(5);
+        assertThat(read.messageBytesIn).isEqualTo(50);
+        assertThat(read.packetsIn).isEqualTo(6);
+        assertThat(read.packetBytesIn).isEqualTo(60);
+        assertThat(read.messagesOut).isEqualTo(3);
+        assertThat(read.packetBytesOut).isEqualTo(40);
+        assertThat(read.threadsActive).isEqualTo(7);
+
+        read.updateIn(1, 1, 1, 1);
+        assertThat(read.getMessagesIn()).isEqualTo(6);
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.messaging.jmq.util.io;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class CompactBodyCodecTest {
+
+    private static Map<String, Object> sample() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("null", null);
+        map.put("bool", Boolean.TRUE);
+        map.put("byte", Byte.valueOf((byte) -7));
+        map.put("short", Short.valueOf(Short.MIN_VALUE));
+        map.put("char", Character.valueOf('\uffff'));
+        map.put("int", Integer.valueOf(-1));
+        map.put("maxint", Integer.valueOf(Integer.MAX_VALUE));
+        map.put("long", Long.valueOf(Long.MIN_VALUE));
+        map.put("float", Float.valueOf(1.5f));
+        map.put("double", Double.valueOf(Double.NaN));
+        map.put("string", "a\u0000\u00e9\u20ac\ud800");
+        map.put("", new byte[] { 1, 2, 3 });
+        return map;
+    }
+
+    @Test
+    void mapRoundTrip() throws IOException {
+        Map<String, Object> map = sample();
+        byte[] body = CompactBodyCodec.encodeMap(map);
+
+        assertThat(CompactBodyCodec.isCompact(body)).isTrue();
+        Map<String, Object> decoded = CompactBodyCodec.decodeMap(body);
+        assertThat(decoded).containsOnlyKeys(map.keySet().toArray(new String[0]));
+        assertThat(decoded.get("string")).isEqualTo(map.get("string"));
+        assertThat(decoded.get("long")).isEqualTo(Long.MIN_VALUE);
+        assertThat(decoded.get("double")).isEqualTo(Double.NaN);
+        assertThat((byte[]) decoded.get("")).containsExactly(1, 2, 3);
+    }
+
+    @Test
+    void streamConvertsToSerializedValues() throws Exception {
+        List<Object> values = Arrays.asList(Integer.valueOf(42), "x", null, Boolean.FALSE);
+        byte[] body = CompactBodyCodec.toSerializedStream(CompactBodyCodec.encodeList(values));
+
+        assertThat(CompactBodyCodec.isCompact(body)).isFalse();
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(body))) {
+            for (Object value : values) {
+                assertThat(ois.readObject()).isEqualTo(value);
+            }
+        }
+    }
+
+    @Test
+    void readMapAcceptsSerializedBody() throws Exception {
+        HashMap<String, Object> map = new HashMap<>();
+        map.put("k", "v");
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+            oos.writeObject(map);
+        }
+
+        assertThat(CompactBodyCodec.isCompact(bos.toByteArray())).isFalse();
+        assertThat(CompactBodyCodec.readMap(bos.toByteArray())).isEqualTo(map);
+        assertThat(CompactBodyCodec.readMap(CompactBodyCodec.toSerializedMap(CompactBodyCodec.encodeMap(map)))).isEqualTo(map);
+    }
+
+    @Test
+    void rejectsInvalidBodies() {
+        byte[] body = CompactBodyCodec.encodeList(Arrays.asList("abc"));
+
+        assertThatThrownBy(() -> CompactBodyCodec.decodeList(Arrays.copyOf(body, body.length - 1))).isInstanceOf(IOException.class);
+        body[2] = 99;
+        assertThatThrownBy(() -> CompactBodyCodec.decodeList(body)).isInstanceOf(IOException.class);
+        assertThatThrownBy(() -> CompactBodyCodec.encodeList(Arrays.asList(new Object()))).isInstanceOf(IllegalArgumentException.class);
+    }
+}
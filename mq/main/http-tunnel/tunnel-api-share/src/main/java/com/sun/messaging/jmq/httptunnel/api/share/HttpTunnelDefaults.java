@@ -69,11 +69,21 @@ public interface HttpTunnelDefaults {
      */
     int DEFAULT_WINDOW_SIZE = 64;
 
+    /**
+     * Upper limit the receive window grows to when the round trip delay, not the receiver, limits the throughput.
+     */
+    int MAX_WINDOW_SIZE = 1024;
+
     /**
      * Maximum data bytes per packet.
      */
     int MAX_PACKETSIZE = 8192;
 
+    /**
+     * Maximum bytes of packets the client sends with one HTTP push request.
+     */
+    int MAX_PUSH_BATCH_SIZE = 64 * 1024;
+
     /**
      * Initial packet retransmission period.
      */
@@ -96,6 +106,12 @@ public interface HttpTunnelDefaults {
 
     boolean ONE_PACKET_PER_REQUEST = false;
 
+    /**
+     * HTTP response header of the connect request, set by a servlet that can stream pull responses and accepts several
+     * packets per push request.
+     */
+    String STREAMING_HEADER = "X-MQ-HttpTunnel-Streaming";
+
     //
     // PACKET TYPES :
     //
@@ -55,6 +55,10 @@ public class HttpTunnelConnection implements HttpTunnelDefaults {
     private Hashtable rexmitTable;
     private long RTO;
     private long measuredRTO;
+    private volatile long smoothedRTT;
+
+    private long rxRoundStart;
+    private int rxRoundCount;
 
     private int pullPeriod;
     private int connectionTimeout;
@@ -66,6 +70,8 @@ public class HttpTunnelConnection implements HttpTunnelDefaults {
 
     private static long CLOSE_WAIT_TIMEOUT = Long.getLong("imq.httptunnel.close_wait", 60000).longValue();
 
+    private static int MAX_RX_WINDOW = Integer.getInteger("imq.httptunnel.window.max", MAX_WINDOW_SIZE).intValue();
+
     private String remoteip = null;
 
     /**
@@ -100,6 +106,10 @@ public class HttpTunnelConnection implements HttpTunnelDefaults {
         rexmitTable = new Hashtable();
         RTO = INITIAL_RETRANSMIT_PERIOD;
         measuredRTO = INITIAL_RETRANSMIT_PERIOD;
+        smoothedRTT = 0;
+
+        rxRoundStart = System.currentTimeMillis();
+        rxRoundCount = 0;
 
         pullPeriod = -1;
         connectionTimeout = -1;
@@ -212,9 +222,12 @@ public class HttpTunnelConnection implements HttpTunnelDefaults {
                             break;
                         }
                     }
+                    rxRoundCount += (first + n) - nextRecvSeq;
                     nextRecvSeq = first + n;
                     rxWindowMax = recvQ.length - n;
 
+                    adjustReceiveWindow(n);
+
                     recvQLock.notifyAll();
 
                     // If driver says it has more data packets,
@@ -229,6 +242,36 @@ public class HttpTunnelConnection implements HttpTunnelDefaults {
         }
     }
 
+    /**
+     * Grow the receive window when the sender fills most of it within one round trip while the application keeps up
+     * with reading, i.e. when the window rather than the reader limits the throughput. The round trip delay is the one
+     * measured for the packets sent on this connection, the window does not grow before there is a measurement.
+     *
+     * @param unread number of packets in the receive queue not yet read by the application
+     */
+    private void adjustReceiveWindow(int unread) {
+        long now = System.currentTimeMillis();
+        long rtt = smoothedRTT;
+
+        if (rtt <= 0 || (now - rxRoundStart) < rtt) {
+            return;
+        }
+
+        int size = recvQ.length;
+
+        if (size < MAX_RX_WINDOW && (rxRoundCount * 4) >= (size * 3) && (unread * 2) < size) {
+            int newSize = Math.min(size * 2, MAX_RX_WINDOW);
+
+            HttpTunnelPacket[] q = new HttpTunnelPacket[newSize];
+            System.arraycopy(recvQ, 0, q, 0, size);
+            recvQ = q;
+            rxWindowMax += (newSize - size);
+        }
+
+        rxRoundStart = now;
+        rxRoundCount = 0;
+    }
+
     /**
      * Send an acknowledgement packet. Besides acknowledging a data packet sequence number, an acknowledgement packet also
      * conveys receivers window size.
@@ -520,6 +563,10 @@ public class HttpTunnelConnection implements HttpTunnelDefaults {
         long SRTT = ((measuredRTO << 3) - measuredRTO + RTT) >>> 3;
 
         measuredRTO = SRTT << 1;
+
+        // Unbounded estimate of the round trip delay for sizing the receive window
+        smoothedRTT = (smoothedRTT == 0) ? RTT : ((smoothedRTT << 3) - smoothedRTT + RTT) >>> 3;
+
         if (measuredRTO < MIN_RETRANSMIT_PERIOD) {
             measuredRTO = MIN_RETRANSMIT_PERIOD;
         }
@@ -905,6 +952,8 @@ public class HttpTunnelConnection implements HttpTunnelDefaults {
 
         s.addElement("RTO = " + RTO);
         s.addElement("measuredRTO = " + measuredRTO);
+        s.addElement("smoothedRTT = " + smoothedRTT);
+        s.addElement("RX.window = " + (recvQ == null ? 0 : recvQ.length));
         s.addElement("TX.nRetransmit = " + nRetransmit);
         s.addElement("TX.nFastRetransmit = " + nFastRetransmit);
 
@@ -932,6 +981,7 @@ public class HttpTunnelConnection implements HttpTunnelDefaults {
 
         ht.put("RTO", String.valueOf(RTO));
         ht.put("measuredRTO", String.valueOf(measuredRTO));
+        ht.put("smoothedRTT", String.valueOf(smoothedRTT));
         ht.put("TX.nRetransmit", String.valueOf(nRetransmit));
         ht.put("TX.nFastRetransmit", String.valueOf(nFastRetransmit));
 
@@ -42,11 +42,14 @@ import java.util.logging.Logger;
  */
 public class HttpTunnelClientDriver extends Thread implements HttpTunnelDefaults, HttpTunnelDriver {
     private static boolean DEBUG = Boolean.getBoolean("httptunnel.debug");
+    private static boolean STREAMING = Boolean.parseBoolean(System.getProperty("imq.httptunnel.streaming", "true"));
     private boolean stopThread = false;
     private String urlString = null;
     private String urlParam = null;
     private URL pushUrl = null;
     private URL pullUrl = null;
+    private URL streamUrl = null;
+    private boolean streaming = false;
     private URLConnection uc = null;
     private HttpTunnelPush pushWorker = null;
     private int connId;
@@ -153,6 +156,13 @@ public class HttpTunnelClientDriver extends Thread implements HttpTunnelDefaults
             pushUrl = new URL(urlString + "?Type=push" + urlParam);
             pullUrl = new URL(urlString + "?Type=pull&ConnId=" + connId + urlParam);
 
+            // An older servlet neither streams nor reads more than one packet per push
+            streaming = STREAMING && pushWorker.isServerStreaming();
+            if (streaming) {
+                streamUrl = new URL(urlString + "?Type=pull&Stream=true&ConnId=" + connId + urlParam);
+                pushWorker.setBatching(true);
+            }
+
             while (conn == null) {
                 Vector v = pullPackets();
 
@@ -323,6 +333,72 @@ public class HttpTunnelClientDriver extends Thread implements HttpTunnelDefaults
         return v;
     }
 
+    /**
+     * Send a HTTP pull request that the servlet answers with a long-lived streamed response, and handle the packets as
+     * they arrive until the servlet ends the response.
+     */
+    private void streamPackets() throws Exception {
+        int responseCode = HttpURLConnection.HTTP_OK;
+
+        try {
+            uc = streamUrl.openConnection();
+            uc.setDoInput(true);
+            uc.setDoOutput(false);
+            uc.setUseCaches(false);
+            uc.connect();
+
+            if (uc instanceof HttpURLConnection) {
+                responseCode = ((HttpURLConnection) uc).getResponseCode();
+            } else {
+                uc.getContentType();
+            }
+        } catch (IOException e) {
+            handleHTTPConnectError();
+            throw e;
+        }
+
+        if (responseCode != HttpURLConnection.HTTP_OK) {
+            handleHTTPConnectError();
+            uc = null;
+            throw new IOException("HTTP pull request failed, response code = " + responseCode);
+        }
+
+        lastConnectTime = System.currentTimeMillis();
+
+        InputStream is = uc.getInputStream();
+
+        try {
+            while (!stopThread) {
+                Vector v = new Vector();
+
+                HttpTunnelPacket p = new HttpTunnelPacket();
+
+                try {
+                    p.readPacket(is);
+                } catch (EOFException e) {
+                    break; // The servlet ended this response
+                }
+
+                v.addElement(p);
+
+                // Packets that have already arrived are handled together,
+                // so that the data packets among them are acknowledged once.
+                while (is.available() > 0) {
+                    p = new HttpTunnelPacket();
+                    p.readPacket(is);
+                    v.addElement(p);
+                }
+
+                lastConnectTime = System.currentTimeMillis();
+
+                handlePackets(v);
+            }
+        } finally {
+            is.close();
+            uc = null;
+        }
+    }
+
     private void handleHTTPConnectError() {
         if (conn.getConnectionTimeout() <= 0) {
             return;
@@ -353,6 +429,13 @@ public class HttpTunnelClientDriver extends Thread implements HttpTunnelDefaults
     public void run() {
         while (!stopThread) {
             try {
+                // Polling connections (pullPeriod > 0) do not hold a request open
+                if (streaming && conn.getPullPeriod() <= 0) {
+                    streamPackets();
+
+                    continue;
+                }
+
                 Vector v = pullPackets();
 
                 if (v == null || v.isEmpty()) {
@@ -361,71 +444,75 @@ public class HttpTunnelClientDriver extends Thread implements HttpTunnelDefaults
                     continue;
                 }
 
-                int i;
-                int j;
+                handlePackets(v);
+            } catch (Exception e) {
+                try {
+                    Thread.sleep(1000);
+                } catch (Exception se) {
+                }
 
-                for (j = v.size() - 1; j >= 0; j--) {
-                    HttpTunnelPacket p = (HttpTunnelPacket) v.elementAt(j);
+                handleHttpPullError();
+            }
+        }
+    }
 
-                    if (p.getPacketType() == DATA_PACKET) {
-                        break;
-                    }
-                }
+    private void handlePackets(Vector v) {
+        int i;
+        int j;
 
-                // Now j points to the last data packet in v
-                for (i = 0; i < v.size(); i++) {
-                    HttpTunnelPacket p = (HttpTunnelPacket) v.elementAt(i);
+        for (j = v.size() - 1; j >= 0; j--) {
+            HttpTunnelPacket p = (HttpTunnelPacket) v.elementAt(j);
 
-                    if (p.getPacketType() == CONN_SHUTDOWN) {
-                        // TBD: Connection aborted...
-                    }
+            if (p.getPacketType() == DATA_PACKET) {
+                break;
+            }
+        }
 
-                    if (DEBUG) {
-                        log("Received packet:" + p);
-                    }
+        // Now j points to the last data packet in v
+        for (i = 0; i < v.size(); i++) {
+            HttpTunnelPacket p = (HttpTunnelPacket) v.elementAt(i);
 
-                    switch (p.getPacketType()) {
-                    case CONN_CLOSE_PACKET:
-                        handleConnClose(p);
+            if (p.getPacketType() == CONN_SHUTDOWN) {
+                // TBD: Connection aborted...
+            }
 
-                        break;
+            if (DEBUG) {
+                log("Received packet:" + p);
+            }
 
-                    case CONN_ABORT_PACKET:
-                        handleConnAbort(p);
+            switch (p.getPacketType()) {
+            case CONN_CLOSE_PACKET:
+                handleConnClose(p);
 
-                        break;
+                break;
 
-                    case CONN_OPTION_PACKET:
-                        handleConnOption(p);
+            case CONN_ABORT_PACKET:
+                handleConnAbort(p);
 
-                        break;
+                break;
 
-                    case DATA_PACKET:
-                    case ACK:
-                        handlePacket(p, (i != j));
+            case CONN_OPTION_PACKET:
+                handleConnOption(p);
 
-                        // i == j is true for the last data packet in v
-                        break;
+                break;
 
-                    case DUMMY_PACKET:
-                        handleDummyPacket(p);
+            case DATA_PACKET:
+            case ACK:
+                handlePacket(p, (i != j));
 
-                        break;
+                // i == j is true for the last data packet in v
+                break;
 
-                    default:
-                        break;
-                    }
+            case DUMMY_PACKET:
+                handleDummyPacket(p);
 
-                    // receivePacket(p);
-                }
-            } catch (Exception e) {
-                try {
-                    Thread.sleep(1000);
-                } catch (Exception se) {
-                }
+                break;
 
-                handleHttpPullError();
+            default:
+                break;
             }
+
+            // receivePacket(p);
         }
     }
 
@@ -40,6 +40,8 @@ public class HttpTunnelPush extends Thread implements HttpTunnelDefaults {
     private Vector q = null;
     private boolean stopThread = false;
     private boolean shutdownComplete = false;
+    private boolean batching = false;
+    private boolean serverStreaming = false;
 
     /**
      * Set the default push URL and start the push thread.
@@ -70,6 +72,21 @@ public class HttpTunnelPush extends Thread implements HttpTunnelDefaults {
         }
     }
 
+    /**
+     * Send all queued packets, up to MAX_PUSH_BATCH_SIZE bytes, with one push request. Only a servlet that announces
+     * streaming reads more than one packet per push request.
+     */
+    public void setBatching(boolean batching) {
+        this.batching = batching;
+    }
+
+    /**
+     * @return true if the response of the last direct request announced a servlet that supports streaming
+     */
+    public boolean isServerStreaming() {
+        return serverStreaming;
+    }
+
     /**
      * Adds a packet to the push queue and wakes up the push thread. Note that the flow control mechanism automatically
      * limits the maximum queue size.
@@ -90,6 +107,17 @@ public class HttpTunnelPush extends Thread implements HttpTunnelDefaults {
      * Sends a packet to a given URL and optionally reads a single HttpTunnelPacket from the HTTP response stream.
      */
     public HttpTunnelPacket sendPacketDirect(URL u, HttpTunnelPacket p, boolean getResponse) throws Exception {
+        Vector v = new Vector(1);
+        v.addElement(p);
+
+        return sendPacketsDirect(u, v, getResponse);
+    }
+
+    /**
+     * Sends packets with one request to a given URL and optionally reads a single HttpTunnelPacket from the HTTP response
+     * stream.
+     */
+    private HttpTunnelPacket sendPacketsDirect(URL u, Vector v, boolean getResponse) throws Exception {
         URLConnection uc = u.openConnection();
         uc.setDoInput(true);
         uc.setDoOutput(true);
@@ -98,7 +126,11 @@ public class HttpTunnelPush extends Thread implements HttpTunnelDefaults {
         uc.setRequestProperty("content-type", "application/octet-stream");
 
         OutputStream os = uc.getOutputStream();
-        p.writePacket(os);
+
+        for (int i = 0; i < v.size(); i++) {
+            ((HttpTunnelPacket) v.elementAt(i)).writePacket(os);
+        }
+
         os.close();
 
         uc.connect();
@@ -122,6 +154,8 @@ public class HttpTunnelPush extends Thread implements HttpTunnelDefaults {
             return null;
         }
 
+        serverStreaming = Boolean.parseBoolean(uc.getHeaderField(STREAMING_HEADER));
+
         if (response != HttpURLConnection.HTTP_OK) {
             is.close();
             throw new IOException("Failed to receive response");
@@ -137,7 +171,7 @@ public class HttpTunnelPush extends Thread implements HttpTunnelDefaults {
     @Override
     public void run() {
         while (true) {
-            HttpTunnelPacket p = null;
+            Vector v = new Vector();
 
             synchronized (q) {
                 while (q.isEmpty() && (stopThread == false)) {
@@ -151,12 +185,23 @@ public class HttpTunnelPush extends Thread implements HttpTunnelDefaults {
                     break;
                 }
 
-                p = (HttpTunnelPacket) q.elementAt(0);
-                q.removeElementAt(0);
+                int size = 0;
+
+                do {
+                    HttpTunnelPacket p = (HttpTunnelPacket) q.elementAt(0);
+
+                    if (size > 0 && (size + p.getPacketSize()) > MAX_PUSH_BATCH_SIZE) {
+                        break;
+                    }
+
+                    q.removeElementAt(0);
+                    v.addElement(p);
+                    size += p.getPacketSize();
+                } while (batching && !q.isEmpty());
             }
 
             try {
-                sendPacketDirect(pushUrl, p, false);
+                sendPacketsDirect(pushUrl, v, false);
             } catch (Exception e) {
             }
         }
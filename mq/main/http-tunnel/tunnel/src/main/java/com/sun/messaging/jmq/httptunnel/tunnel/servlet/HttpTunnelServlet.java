@@ -116,7 +116,15 @@ public class HttpTunnelServlet extends HttpServlet implements HttpTunnelDefaults
             tmp2 = (String[]) ht.get("ConnId");
 
             String connIdStr = tmp2[0];
-            handlePull(request, response, connIdStr, serverName);
+
+            boolean streaming = false;
+            String[] tmp3 = (String[]) ht.get("Stream");
+
+            if (tmp3 != null) {
+                streaming = Boolean.parseBoolean(tmp3[0]);
+            }
+
+            handlePull(request, response, connIdStr, serverName, streaming);
         } else if (requestType.equals("connect")) {
             handleConnect(request, response, serverName);
         } else {
@@ -192,7 +200,17 @@ public class HttpTunnelServlet extends HttpServlet implements HttpTunnelDefaults
      * that's exactly why we have packet acknowledgements and retransmissions...
      */
     public void handlePull(HttpServletRequest request, HttpServletResponse response, String connIdStr, String serverName) {
-        if (ONE_PACKET_PER_REQUEST) {
+        handlePull(request, response, connIdStr, serverName, false);
+    }
+
+    /**
+     * @param streaming if true, keep the response open and write the packets as they arrive, for up to
+     * MAX_PULL_BLOCK_PERIOD. This saves a round trip per batch of packets sent to the client.
+     */
+    public void handlePull(HttpServletRequest request, HttpServletResponse response, String connIdStr, String serverName, boolean streaming) {
+        if (streaming && !ONE_PACKET_PER_REQUEST) {
+            streamPackets(response, connIdStr, serverName);
+        } else if (ONE_PACKET_PER_REQUEST) {
             HttpTunnelPacket p = linkTable.waitForPacket(connIdStr, serverName);
 
             if (p == null) {
@@ -230,7 +248,60 @@ public class HttpTunnelServlet extends HttpServlet implements HttpTunnelDefaults
     }
 
     /**
-     * Send data from client to server.
+     * Write packets to a chunked response as they arrive. The response ends when no packet arrives within the remaining
+     * streaming period, so that the client renews the request before a web server or proxy times it out.
+     */
+    private void streamPackets(HttpServletResponse response, String connIdStr, String serverName) {
+        long endTime = System.currentTimeMillis() + MAX_PULL_BLOCK_PERIOD;
+        boolean sent = false;
+
+        while (!servletShuttingDown) {
+            long maxwait = endTime - System.currentTimeMillis();
+
+            if (maxwait <= 0) {
+                break;
+            }
+
+            Vector v = linkTable.waitForPackets(connIdStr, serverName, maxwait);
+
+            if (v == null || v.isEmpty()) {
+                break;
+            }
+
+            boolean abort = false;
+
+            try {
+                ServletOutputStream sos = response.getOutputStream();
+
+                for (int i = 0; i < v.size(); i++) {
+                    HttpTunnelPacket p = (HttpTunnelPacket) v.elementAt(i);
+                    p.writePacket(sos);
+
+                    if (p.getPacketType() == CONN_ABORT_PACKET) {
+                        abort = true;
+                    }
+                }
+            } catch (Exception e) {
+                // Obvious failure - resend the packets.
+                linkTable.retrySendPackets(v, connIdStr, serverName);
+
+                return;
+            }
+
+            sent = true;
+
+            if (abort) {
+                break;
+            }
+        }
+
+        if (!sent) {
+            sendNoOp(response);
+        }
+    }
+
+    /**
+     * Send data from client to server. A client that saw the STREAMING_HEADER may send several packets with one request.
      */
     public void handlePush(HttpServletRequest request, HttpServletResponse response, String serverName) {
         int length = request.getContentLength();
@@ -238,10 +309,15 @@ public class HttpTunnelServlet extends HttpServlet implements HttpTunnelDefaults
         if (length > 0) {
             try {
                 ServletInputStream sis = request.getInputStream();
-                HttpTunnelPacket p = new HttpTunnelPacket();
-                p.readPacket(sis);
+                int read = 0;
 
-                linkTable.sendPacket(p, serverName);
+                while (read < length) {
+                    HttpTunnelPacket p = new HttpTunnelPacket();
+                    p.readPacket(sis);
+                    read += p.getPacketSize();
+
+                    linkTable.sendPacket(p, serverName);
+                }
             } catch (Exception e) {
             }
         }
@@ -290,6 +366,10 @@ public class HttpTunnelServlet extends HttpServlet implements HttpTunnelDefaults
             try {
                 p.setPacketBody(("ServerName=" + serverName).getBytes("UTF8"));
 
+                // Tell the client that pull responses can be streamed
+                // and push requests can carry several packets.
+                response.setHeader(STREAMING_HEADER, "true");
+
                 // Echo the connection request back to the client side
                 // driver with the correct connId, so that it can
                 // start sending the pull requests...
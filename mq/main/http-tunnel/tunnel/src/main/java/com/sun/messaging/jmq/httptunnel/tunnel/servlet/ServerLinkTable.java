@@ -580,6 +580,13 @@ public class ServerLinkTable implements HttpTunnelDefaults {
     }
 
     public Vector waitForPackets(String connIdStr, String serverName) {
+        return waitForPackets(connIdStr, serverName, MAX_PULL_BLOCK_PERIOD);
+    }
+
+    /**
+     * @param maxwait maximum time in milliseconds to block while there are no packets
+     */
+    public Vector waitForPackets(String connIdStr, String serverName, long maxwait) {
         int connId = -1;
 
         try {
@@ -623,14 +630,14 @@ public class ServerLinkTable implements HttpTunnelDefaults {
 
         conn.setInUse(true);
 
-        Vector v = waitForPackets(connKey, conn);
+        Vector v = waitForPackets(connKey, conn, maxwait);
 
         conn.setInUse(false);
 
         return v;
     }
 
-    private Vector waitForPackets(ConnKey connKey, Connection conn) {
+    private Vector waitForPackets(ConnKey connKey, Connection conn, long maxwait) {
         Vector pullQ = conn.getPullQ();
         int pullPeriod = conn.getPullPeriod();
 
@@ -645,7 +652,6 @@ public class ServerLinkTable implements HttpTunnelDefaults {
             }
 
             long startTime = System.currentTimeMillis();
-            long maxwait = MAX_PULL_BLOCK_PERIOD;
 
             while (pullQ.isEmpty() && (linkTableState == RUNNING)) {
                 try {
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+
+package com.sun.messaging.jmq.httptunnel.tunnel;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.sun.messaging.jmq.httptunnel.api.share.HttpTunnelDefaults;
+
+class HttpTunnelConnectionTest {
+
+    private static final long RTT = 200;
+
+    /**
+     * Records the packets the connection sends
+     */
+    static class RecordingDriver implements HttpTunnelDriver {
+        final List<HttpTunnelPacket> sent = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void sendPacket(HttpTunnelPacket p) {
+            sent.add(p);
+        }
+
+        @Override
+        public void shutdown(int connId) {
+        }
+
+        @Override
+        public Hashtable getDebugState() {
+            return new Hashtable();
+        }
+
+        int lastAckWindow() {
+            synchronized (sent) {
+                for (int i = sent.size() - 1; i >= 0; i--) {
+                    if (sent.get(i).getPacketType() == HttpTunnelDefaults.ACK) {
+                        return sent.get(i).getWinsize();
+                    }
+                }
+            }
+            return -1;
+        }
+
+        int maxAckWindow() {
+            synchronized (sent) {
+                return sent.stream().filter(p -> p.getPacketType() == HttpTunnelDefaults.ACK).mapToInt(HttpTunnelPacket::getWinsize).max().orElse(-1);
+            }
+        }
+    }
+
+    private final RecordingDriver wire = new RecordingDriver();
+    private final HttpTunnelConnection conn = new HttpTunnelConnection(1, wire);
+
+    private static HttpTunnelPacket data(int seq) {
+        HttpTunnelPacket p = new HttpTunnelPacket();
+        p.setPacketType(HttpTunnelDefaults.DATA_PACKET);
+        p.setPacketBody(new byte[10]);
+        p.setConnId(1);
+        p.setSequence(seq);
+        p.setWinsize(0);
+        p.setChecksum(0);
+        return p;
+    }
+
+    private static HttpTunnelPacket ack(int seq) {
+        HttpTunnelPacket p = new HttpTunnelPacket();
+        p.setPacketType(HttpTunnelDefaults.ACK);
+        p.setPacketBody(null);
+        p.setConnId(1);
+        p.setSequence(seq);
+        p.setWinsize(HttpTunnelDefaults.DEFAULT_WINDOW_SIZE);
+        p.setChecksum(0);
+        return p;
+    }
+
+    /**
+     * Send a packet and acknowledge it after RTT
+     */
+    private void measureRoundTrip() throws Exception {
+        conn.writeData(new byte[10]);
+        Thread.sleep(RTT);
+        conn.receivePacket(ack(0), false);
+    }
+
+    /**
+     * Receive a round of packets that fills 3/4 of the default window, optionally reading each, and then one more packet
+     * after a round trip
+     *
+     * @return the sequence of the next packet
+     */
+    private int receiveRound(int seq, boolean read) throws Exception {
+        byte[] buf = new byte[10];
+        int n = HttpTunnelDefaults.DEFAULT_WINDOW_SIZE * 3 / 4;
+        for (int i = 0; i < n; i++) {
+            conn.receivePacket(data(seq++), false);
+            if (read) {
+                assertThat(conn.readData(buf)).isEqualTo(10);
+            }
+        }
+        Thread.sleep(RTT + 10);
+        conn.receivePacket(data(seq++), false);
+        return seq;
+    }
+
+    @Test
+    void windowGrowsWhenTheSenderFillsItWithinARoundTrip() throws Exception {
+        measureRoundTrip();
+        // ends the round that started with the connection
+        int seq = 0;
+        conn.receivePacket(data(seq++), false);
+        conn.readData(new byte[10]);
+
+        receiveRound(seq, true);
+
+        assertThat(wire.lastAckWindow()).isGreaterThan(HttpTunnelDefaults.DEFAULT_WINDOW_SIZE);
+    }
+
+    @Test
+    void windowDoesNotGrowWhenTheReaderFallsBehind() throws Exception {
+        measureRoundTrip();
+        int seq = 0;
+        conn.receivePacket(data(seq++), false);
+
+        receiveRound(seq, false);
+
+        assertThat(wire.maxAckWindow()).isLessThanOrEqualTo(HttpTunnelDefaults.DEFAULT_WINDOW_SIZE);
+    }
+
+    @Test
+    void windowDoesNotGrowWithoutARoundTripMeasurement() throws Exception {
+        Thread.sleep(RTT);
+        int seq = 0;
+        conn.receivePacket(data(seq++), false);
+        conn.readData(new byte[10]);
+
+        receiveRound(seq, true);
+
+        assertThat(wire.maxAckWindow()).isLessThanOrEqualTo(HttpTunnelDefaults.DEFAULT_WINDOW_SIZE);
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+
+package com.sun.messaging.jmq.httptunnel.tunnel.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sun.messaging.jmq.httptunnel.api.share.HttpTunnelDefaults;
+import com.sun.messaging.jmq.httptunnel.tunnel.HttpTunnelPacket;
+import com.sun.net.httpserver.HttpServer;
+
+class HttpTunnelPushTest {
+
+    private HttpServer server;
+    private URL pushUrl;
+    private final HttpTunnelPush push = new HttpTunnelPush();
+
+    // bytes of each push request, in the order received
+    private final List<byte[]> requests = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch firstReceived = new CountDownLatch(1);
+    private final CountDownLatch releaseFirst = new CountDownLatch(1);
+
+    @BeforeEach
+    void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/tunnel", exchange -> {
+            try (InputStream is = exchange.getRequestBody()) {
+                requests.add(is.readAllBytes());
+            }
+            if (requests.size() == 1) {
+                // hold the push thread so that the next packets queue up
+                firstReceived.countDown();
+                try {
+                    releaseFirst.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.start();
+        pushUrl = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/tunnel?Type=push");
+    }
+
+    @AfterEach
+    void stop() {
+        releaseFirst.countDown();
+        push.shutdown();
+        server.stop(0);
+    }
+
+    private static HttpTunnelPacket packet(int seq, int bodySize) {
+        HttpTunnelPacket p = new HttpTunnelPacket();
+        p.setPacketType(HttpTunnelDefaults.DATA_PACKET);
+        p.setPacketBody(new byte[bodySize]);
+        p.setConnId(1);
+        p.setSequence(seq);
+        p.setWinsize(0);
+        p.setChecksum(0);
+        return p;
+    }
+
+    private static List<HttpTunnelPacket> parse(byte[] body) throws Exception {
+        List<HttpTunnelPacket> l = new ArrayList<>();
+        ByteArrayInputStream is = new ByteArrayInputStream(body);
+        while (true) {
+            HttpTunnelPacket p = new HttpTunnelPacket();
+            try {
+                p.readPacket(is);
+            } catch (EOFException e) {
+                return l;
+            }
+            l.add(p);
+        }
+    }
+
+    /**
+     * Send packet 0, and packets 1 to n while the request of packet 0 is held
+     *
+     * @return the packets of each request
+     */
+    private List<List<HttpTunnelPacket>> push(int n, int bodySize) throws Exception {
+        push.startPushThread(pushUrl);
+        push.sendPacket(packet(0, bodySize));
+        assertThat(firstReceived.await(10, TimeUnit.SECONDS)).isTrue();
+        for (int i = 1; i <= n; i++) {
+            push.sendPacket(packet(i, bodySize));
+        }
+        releaseFirst.countDown();
+
+        long end = System.currentTimeMillis() + 10000;
+        List<List<HttpTunnelPacket>> parsed = new ArrayList<>();
+        while (System.currentTimeMillis() < end) {
+            parsed.clear();
+            int count = 0;
+            synchronized (requests) {
+                for (byte[] b : requests) {
+                    List<HttpTunnelPacket> l = parse(b);
+                    parsed.add(l);
+                    count += l.size();
+                }
+            }
+            if (count == n + 1) {
+                break;
+            }
+            Thread.sleep(10);
+        }
+        return parsed;
+    }
+
+    private static List<Integer> sequences(List<List<HttpTunnelPacket>> parsed) {
+        List<Integer> seqs = new ArrayList<>();
+        for (List<HttpTunnelPacket> l : parsed) {
+            for (HttpTunnelPacket p : l) {
+                seqs.add(p.getSequence());
+            }
+        }
+        return seqs;
+    }
+
+    private static List<Integer> range(int n) {
+        List<Integer> l = new ArrayList<>();
+        for (int i = 0; i <= n; i++) {
+            l.add(i);
+        }
+        return l;
+    }
+
+    @Test
+    void queuedPacketsAreSentWithOneRequest() throws Exception {
+        push.setBatching(true);
+
+        List<List<HttpTunnelPacket>> parsed = push(20, 100);
+
+        assertThat(parsed).hasSize(2);
+        assertThat(parsed.get(1)).hasSize(20);
+        assertThat(sequences(parsed)).isEqualTo(range(20));
+    }
+
+    @Test
+    void batchIsLimitedToMaxPushBatchSize() throws Exception {
+        push.setBatching(true);
+
+        List<List<HttpTunnelPacket>> parsed = push(20, 8000);
+
+        assertThat(parsed.size()).isGreaterThan(2).isLessThan(21);
+        synchronized (requests) {
+            for (byte[] b : requests) {
+                assertThat(b.length).isLessThanOrEqualTo(HttpTunnelDefaults.MAX_PUSH_BATCH_SIZE);
+            }
+        }
+        assertThat(sequences(parsed)).isEqualTo(range(20));
+    }
+
+    @Test
+    void oneRequestPerPacketWithoutBatching() throws Exception {
+        List<List<HttpTunnelPacket>> parsed = push(5, 100);
+
+        assertThat(parsed).hasSize(6).allSatisfy(l -> assertThat(l).hasSize(1));
+        assertThat(sequences(parsed)).isEqualTo(range(5));
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+
+package com.sun.messaging.jmq.httptunnel.tunnel.servlet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Vector;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.sun.messaging.jmq.httptunnel.api.share.HttpTunnelDefaults;
+import com.sun.messaging.jmq.httptunnel.tunnel.HttpTunnelPacket;
+
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+class HttpTunnelServletTest {
+
+    /**
+     * Keeps the bytes written and how many of them were flushed
+     */
+    static class RecordingOutputStream extends ServletOutputStream {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int flushed = 0;
+        boolean fail = false;
+
+        @Override
+        public void write(int b) throws IOException {
+            if (fail) {
+                throw new IOException("test");
+            }
+            bytes.write(b);
+        }
+
+        @Override
+        public void flush() {
+            flushed = bytes.size();
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+        }
+    }
+
+    private final HttpTunnelServlet servlet = new HttpTunnelServlet();
+    private final ServerLinkTable linkTable = mock(ServerLinkTable.class);
+    private final HttpServletResponse response = mock(HttpServletResponse.class);
+    private final RecordingOutputStream out = new RecordingOutputStream();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        servlet.linkTable = linkTable;
+        when(response.getOutputStream()).thenReturn(out);
+    }
+
+    private static HttpTunnelPacket packet(int type, int seq) {
+        HttpTunnelPacket p = new HttpTunnelPacket();
+        p.setPacketType(type);
+        p.setPacketBody(new byte[100]);
+        p.setConnId(1);
+        p.setSequence(seq);
+        p.setWinsize(0);
+        p.setChecksum(0);
+        return p;
+    }
+
+    private static Vector packets(int first, int n) {
+        Vector v = new Vector();
+        for (int i = first; i < first + n; i++) {
+            v.addElement(packet(HttpTunnelDefaults.DATA_PACKET, i));
+        }
+        return v;
+    }
+
+    private static int size(Vector v) {
+        int size = 0;
+        for (Object o : v) {
+            size += ((HttpTunnelPacket) o).getPacketSize();
+        }
+        return size;
+    }
+
+    private static List<HttpTunnelPacket> parse(byte[] body) throws Exception {
+        List<HttpTunnelPacket> l = new ArrayList<>();
+        ByteArrayInputStream is = new ByteArrayInputStream(body);
+        while (true) {
+            HttpTunnelPacket p = new HttpTunnelPacket();
+            try {
+                p.readPacket(is);
+            } catch (EOFException e) {
+                return l;
+            }
+            l.add(p);
+        }
+    }
+
+    @Test
+    void pushRequestCarriesSeveralPackets() throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        Vector v = packets(0, 3);
+        for (Object o : v) {
+            ((HttpTunnelPacket) o).writePacket(bos);
+        }
+        ByteArrayInputStream bis = new ByteArrayInputStream(bos.toByteArray());
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getContentLength()).thenReturn(bos.size());
+        when(request.getInputStream()).thenReturn(new ServletInputStream() {
+            @Override
+            public int read() {
+                return bis.read();
+            }
+
+            @Override
+            public boolean isFinished() {
+                return bis.available() == 0;
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setReadListener(ReadListener readListener) {
+            }
+        });
+
+        servlet.handlePush(request, response, "server");
+
+        ArgumentCaptor<HttpTunnelPacket> sent = ArgumentCaptor.forClass(HttpTunnelPacket.class);
+        verify(linkTable, times(3)).sendPacket(sent.capture(), eq("server"));
+        assertThat(sent.getAllValues()).extracting(HttpTunnelPacket::getSequence).containsExactly(0, 1, 2);
+    }
+
+    @Test
+    void streamedPacketsAreFlushedAsTheyArrive() throws Exception {
+        Vector first = packets(0, 2);
+        Vector second = packets(2, 3);
+        int[] flushedBeforeSecond = { -1 };
+        when(linkTable.waitForPackets(eq("1"), eq("server"), anyLong())).thenReturn(first).thenAnswer(i -> {
+            flushedBeforeSecond[0] = out.flushed;
+            return second;
+        }).thenReturn(null);
+
+        servlet.handlePull(null, response, "1", "server", true);
+
+        // the first batch reached the client while the servlet waited for the second
+        assertThat(flushedBeforeSecond[0]).isEqualTo(size(first));
+        assertThat(out.flushed).isEqualTo(size(first) + size(second));
+        assertThat(parse(out.bytes.toByteArray())).extracting(HttpTunnelPacket::getSequence).containsExactly(0, 1, 2, 3, 4);
+        verify(linkTable, times(3)).waitForPackets(eq("1"), eq("server"), anyLong());
+    }
+
+    @Test
+    void streamWithoutPacketsSendsNoOp() throws Exception {
+        when(linkTable.waitForPackets(eq("1"), eq("server"), anyLong())).thenReturn(null);
+
+        servlet.handlePull(null, response, "1", "server", true);
+
+        List<HttpTunnelPacket> l = parse(out.bytes.toByteArray());
+        assertThat(l).hasSize(1);
+        assertThat(l.get(0).getPacketType()).isEqualTo(HttpTunnelDefaults.NO_OP_PACKET);
+    }
+
+    @Test
+    void streamEndsAfterAbort() throws Exception {
+        Vector v = packets(0, 1);
+        v.addElement(packet(HttpTunnelDefaults.CONN_ABORT_PACKET, 1));
+        when(linkTable.waitForPackets(eq("1"), eq("server"), anyLong())).thenReturn(v, packets(2, 1));
+
+        servlet.handlePull(null, response, "1", "server", true);
+
+        verify(linkTable, times(1)).waitForPackets(eq("1"), eq("server"), anyLong());
+        assertThat(parse(out.bytes.toByteArray())).hasSize(2);
+    }
+
+    @Test
+    void packetsAreResentWhenTheStreamFails() throws Exception {
+        Vector v = packets(0, 2);
+        when(linkTable.waitForPackets(eq("1"), eq("server"), anyLong())).thenReturn(v);
+        out.fail = true;
+
+        servlet.handlePull(null, response, "1", "server", true);
+
+        verify(linkTable).retrySendPackets(v, "1", "server");
+        verify(linkTable, times(1)).waitForPackets(eq("1"), eq("server"), anyLong());
+        verify(linkTable, never()).sendPacket(any(), any());
+    }
+}
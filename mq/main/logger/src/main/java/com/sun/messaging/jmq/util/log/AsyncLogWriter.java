@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.messaging.jmq.util.log;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import com.sun.messaging.jmq.resources.SharedResources;
+
+/**
+ * Writes log messages on a background thread for a Logger running in asynchronous mode.
+ * <P>
+ * Logging threads claim a slot of a bounded ring buffer with a CAS, store the unformatted message (key, arguments and
+ * throwable) in the preallocated slot and return. The writer thread formats the messages and publishes them to the
+ * handlers in batches, so resource bundle lookup, MessageFormat and stack trace printing are off the caller's thread.
+ * <P>
+ * When the ring buffer is full the overflow policy decides what happens to a message below ERROR: it is either
+ * discarded (and counted), or the caller waits for a free slot, or the caller waits until the queued messages are
+ * published and then publishes it synchronously on its own thread. ERROR and FORCE messages are never discarded, the
+ * caller waits for a free slot. Either way a message is not published ahead of the messages queued before it.
+ */
+class AsyncLogWriter implements Runnable {
+
+    enum OverflowPolicy {
+        DISCARD, BLOCK, SYNC;
+
+        static OverflowPolicy parse(String s) throws IllegalArgumentException {
+            return valueOf(s.trim().toUpperCase());
+        }
+    }
+
+    static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private static final int MAX_BATCH = 256;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    /**
+     * A preallocated ring buffer slot
+     */
+    static final class Event {
+        int publishLevel;
+        int level;
+        String key;
+        Object[] args;
+        Throwable ex;
+        boolean printStack;
+
+        void clear() {
+            key = null;
+            args = null;
+            ex = null;
+        }
+    }
+
+    private static final SharedResources myrb = SharedResources.getResources();
+
+    private final Logger logger;
+    private final OverflowPolicy policy;
+
+    private final Event[] events;
+    private final AtomicLongArray sequences;
+    private final int mask;
+
+    private final AtomicLong tail = new AtomicLong(0);
+    // only written by the writer thread
+    private long head = 0;
+
+    // number of messages published, written only by the writer thread
+    private volatile long published = 0;
+
+    private final AtomicLong discarded = new AtomicLong(0);
+
+    private volatile boolean running = true;
+    private volatile boolean idle = false;
+    private final Thread writer;
+
+    AsyncLogWriter(Logger logger, int bufferSize, OverflowPolicy policy) {
+        this.logger = logger;
+        this.policy = policy;
+
+        int size = Integer.highestOneBit(Math.max(2, bufferSize - 1)) << 1;
+        events = new Event[size];
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            events[i] = new Event();
+            sequences.set(i, i);
+        }
+        mask = size - 1;
+
+        writer = new Thread(this, "imqLogWriter");
+        writer.setDaemon(true);
+        writer.setPriority(Thread.NORM_PRIORITY);
+        writer.start();
+    }
+
+    int getBufferSize() {
+        return events.length;
+    }
+
+    OverflowPolicy getOverflowPolicy() {
+        return policy;
+    }
+
+    long getDiscardedCount() {
+        return discarded.get();
+    }
+
+    /**
+     * Queue a message to be formatted and published by the writer thread
+     *
+     * @return false if the caller must publish the message itself
+     */
+    boolean enqueue(int publishLevel, int level, String key, Object[] args, Throwable ex, boolean printStack) {
+        if (!running || Thread.currentThread() == writer) {
+            return false;
+        }
+        long pos = claim();
+        if (pos < 0) {
+            if (publishLevel < Logger.ERROR && policy == OverflowPolicy.SYNC) {
+                // publish after what is queued so far
+                long t = tail.get();
+                while (published < t && running) {
+                    wakeup();
+                    LockSupport.parkNanos(BLOCK_PARK_NANOS);
+                }
+                return false;
+            }
+            if (publishLevel < Logger.ERROR && policy == OverflowPolicy.DISCARD) {
+                discarded.incrementAndGet();
+                return true;
+            }
+            while ((pos = claim()) < 0) {
+                if (!running) {
+                    return false;
+                }
+                wakeup();
+                LockSupport.parkNanos(BLOCK_PARK_NANOS);
+            }
+        }
+        int i = (int) (pos & mask);
+        Event e = events[i];
+        e.publishLevel = publishLevel;
+        e.level = level;
+        e.key = key;
+        e.args = args;
+        e.ex = ex;
+        e.printStack = printStack;
+        sequences.set(i, pos + 1);
+        if (idle) {
+            wakeup();
+        }
+        return true;
+    }
+
+    /**
+     * @return the claimed position or -1 if the buffer is full
+     */
+    private long claim() {
+        long pos = tail.get();
+        while (true) {
+            long seq = sequences.get((int) (pos & mask));
+            long dif = seq - pos;
+            if (dif == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    return pos;
+                }
+                pos = tail.get();
+            } else if (dif < 0) {
+                return -1;
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    private void wakeup() {
+        LockSupport.unpark(writer);
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            if (drain() == 0) {
+                idle = true;
+                // recheck after publishing idle so an enqueue in between is not missed for a whole park period
+                if (!hasNext()) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                idle = false;
+            }
+        }
+        while (drain() > 0) {
+            // publish what is left
+        }
+    }
+
+    private boolean hasNext() {
+        int i = (int) (head & mask);
+        return sequences.get(i) == head + 1;
+    }
+
+    /**
+     * @return number of messages published
+     */
+    private int drain() {
+        int n = 0;
+        while (n < MAX_BATCH && hasNext()) {
+            int i = (int) (head & mask);
+            Event e = events[i];
+            int publishLevel = e.publishLevel;
+            String message = null;
+            try {
+                message = logger.format(e.level, e.key, e.args, e.ex, e.printStack);
+            } catch (RuntimeException ex) {
+                message = e.key + ": " + ex;
+            } finally {
+                e.clear();
+                sequences.lazySet(i, head + mask + 1);
+                head++;
+            }
+            logger.publish(publishLevel, message);
+            published = head;
+            n++;
+        }
+        long d = discarded.get();
+        if (d > 0 && discarded.compareAndSet(d, 0)) {
+            logger.publish(Logger.WARNING, logger.format(Logger.WARNING,
+                    myrb.getKString(SharedResources.W_ASYNC_LOG_DISCARDED, Long.valueOf(d), Integer.valueOf(events.length)), null, null, false));
+        }
+        return n;
+    }
+
+    /**
+     * Stop the writer thread after it has published all queued messages
+     *
+     * @param wait true to wait for the writer thread to exit
+     */
+    void shutdown(boolean wait) {
+        running = false;
+        wakeup();
+        if (!wait || Thread.currentThread() == writer) {
+            return;
+        }
+        try {
+            writer.join(10000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -80,6 +80,9 @@ public class Logger implements LoggerWrapper {
     private Vector deferBuffer = null;
     private boolean closed = false;
 
+    // Writer thread of the asynchronous mode, null if messages are published on the caller's thread
+    private volatile AsyncLogWriter asyncWriter = null;
+
     // Full path to "home" directory for Logger. Any relative paths
     // used by logger will be relative to this directory.
     String logHome = null;
@@ -111,6 +114,14 @@ public class Logger implements LoggerWrapper {
     private static final String ROLLOVERSECS_PROP = "log.file.rolloversecs";
     private static final String ROLLOVERBYTES_PROP = "java.util.logging.FileHandler.limit";
 
+    /**
+     * Properties for the asynchronous mode. In this mode log messages are formatted and published to the handlers by a
+     * background writer thread.
+     */
+    private static final String ASYNC_ENABLED_PROP = ".log.async.enabled";
+    private static final String ASYNC_BUFFERSIZE_PROP = ".log.async.buffersize";
+    private static final String ASYNC_OVERFLOWPOLICY_PROP = ".log.async.overflowpolicy";
+
     // Resource bundle for the Logging code to use to display it's error
     // messages.
     private static SharedResources myrb = SharedResources.getResources();
@@ -276,6 +287,8 @@ public class Logger implements LoggerWrapper {
             newLogger.setLevel(julLevel);
         }
 
+        configureAsync(props, prefix);
+
         // load properties to nucleus when we are not running inside nucleus
         // This is only until we completely moved to nucleus env
         loadPropsToNucleusLogging(props, habitat, inProcess, jmsraManaged);
@@ -427,6 +440,49 @@ public class Logger implements LoggerWrapper {
 //        }
     }
 
+    /**
+     * Start or stop the asynchronous writer thread based on the passed properties
+     */
+    private void configureAsync(Properties props, String prefix) {
+        String property = prefix + ASYNC_ENABLED_PROP;
+        boolean enabled = Boolean.parseBoolean(props.getProperty(property, "false"));
+        if (!enabled) {
+            AsyncLogWriter w = asyncWriter;
+            if (w != null) {
+                asyncWriter = null;
+                w.shutdown(false);
+            }
+            return;
+        }
+        if (asyncWriter != null) {
+            return;
+        }
+
+        int size = AsyncLogWriter.DEFAULT_BUFFER_SIZE;
+        property = prefix + ASYNC_BUFFERSIZE_PROP;
+        String value = props.getProperty(property);
+        if (value != null && !value.trim().equals("")) {
+            try {
+                size = Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                this.log(WARNING, myrb.getString(myrb.W_BAD_NFORMAT, property, value));
+            }
+        }
+        AsyncLogWriter.OverflowPolicy policy = AsyncLogWriter.OverflowPolicy.DISCARD;
+        property = prefix + ASYNC_OVERFLOWPOLICY_PROP;
+        value = props.getProperty(property);
+        if (value != null && !value.trim().equals("")) {
+            try {
+                policy = AsyncLogWriter.OverflowPolicy.parse(value);
+            } catch (IllegalArgumentException e) {
+                this.log(WARNING, myrb.getString(myrb.X_BAD_PROPERTY, property + "=" + value));
+            }
+        }
+        AsyncLogWriter w = new AsyncLogWriter(this, size, policy);
+        asyncWriter = w;
+        this.log(INFO, "Asynchronous logging enabled: buffer size {0}, overflow policy {1}", Integer.valueOf(w.getBufferSize()), policy);
+    }
+
     /**
      * Load properties file to nucleus logging framework. This will allow us to use properties file that is JMS specific
      * instead of nucleus logging.properties
@@ -802,9 +858,19 @@ public class Logger implements LoggerWrapper {
     }
 
     /**
-     * Close all LogHandlers
+     * Close all LogHandlers. In asynchronous mode the writer thread is stopped first so that the queued messages get
+     * published.
      */
-    public synchronized void close() {
+    public void close() {
+        AsyncLogWriter w = asyncWriter;
+        if (w != null) {
+            asyncWriter = null;
+            w.shutdown(true);
+        }
+        closeHandlers();
+    }
+
+    private synchronized void closeHandlers() {
         // Close handlers
         java.util.logging.Handler[] handlers = null;
         if (newLogger.getUseParentHandlers()) {
@@ -933,6 +999,44 @@ public class Logger implements LoggerWrapper {
         }
     }
 
+    /**
+     * Format and publish a message, or queue it to the writer thread in asynchronous mode
+     *
+     * @param publishLevel level to publish the message at
+     * @param level level to format the message with
+     */
+    private void dispatch(int publishLevel, int level, String key, Object[] args, Throwable ex, boolean printStack) {
+        AsyncLogWriter w = asyncWriter;
+        if (w != null && w.enqueue(publishLevel, level, key, snapshot(args), ex, printStack)) {
+            return;
+        }
+        publish(publishLevel, format(level, key, args, ex, printStack));
+    }
+
+    /**
+     * Arguments are formatted later by the writer thread in asynchronous mode. Replace arguments that may change in the
+     * meantime with their string value. Strings, numbers, dates and the like are kept so that MessageFormat formats them
+     * the same way.
+     */
+    private static Object[] snapshot(Object[] args) {
+        if (args == null) {
+            return null;
+        }
+        Object[] copy = args;
+        for (int i = 0; i < args.length; i++) {
+            Object o = args[i];
+            if (o == null || o instanceof String || o instanceof Number || o instanceof Boolean || o instanceof Character || o instanceof Enum
+                    || o instanceof java.util.Date) {
+                continue;
+            }
+            if (copy == args) {
+                copy = args.clone();
+            }
+            copy[i] = String.valueOf(o);
+        }
+        return copy;
+    }
+
     /**
      * Defers a message into a buffer until the buffer is flushed to the handlers. When a Logger is closed, any messages
      * logged are defered until the buffer is opened
@@ -1087,7 +1191,7 @@ public class Logger implements LoggerWrapper {
         if (level < this.level) {
             return;
         }
-        publish(level, format(level, msg, null, null, false));
+        dispatch(level, level, msg, null, null, false);
     }
 
     /**
@@ -1109,10 +1213,10 @@ public class Logger implements LoggerWrapper {
         // third argument is of type Object[], this method
         // is called instead of log(level, String, Object[])
         if (arg instanceof Object[]) {
-            publish(level, format(level, msg, (Object[]) arg, null, false));
+            dispatch(level, level, msg, (Object[]) arg, null, false);
         } else {
             Object[] args = { arg };
-            publish(level, format(level, msg, args, null, false));
+            dispatch(level, level, msg, args, null, false);
         }
     }
 
@@ -1133,7 +1237,7 @@ public class Logger implements LoggerWrapper {
             return;
         }
         Object[] args = { arg1, arg2 };
-        publish(level, format(level, msg, args, null, false));
+        dispatch(level, level, msg, args, null, false);
     }
 
     /**
@@ -1150,7 +1254,7 @@ public class Logger implements LoggerWrapper {
         if (level < this.level) {
             return;
         }
-        publish(level, format(level, msg, args, null, false));
+        dispatch(level, level, msg, args, null, false);
     }
 
     /**
@@ -1170,7 +1274,7 @@ public class Logger implements LoggerWrapper {
 
         // If we are at a DEBUG level, log throwable stack
         boolean logStack = (this.level <= DEBUG);
-        publish(level, format(level, msg, null, ex, logStack));
+        dispatch(level, level, msg, null, ex, logStack);
     }
 
     /**
@@ -1197,10 +1301,10 @@ public class Logger implements LoggerWrapper {
         // third argument is of type Object[], this method
         // is called instead of log(level, String, Object[])
         if (arg instanceof Object[]) {
-            publish(level, format(level, msg, (Object[]) arg, ex, logStack));
+            dispatch(level, level, msg, (Object[]) arg, ex, logStack);
         } else {
             Object[] args = { arg };
-            publish(level, format(level, msg, args, ex, logStack));
+            dispatch(level, level, msg, args, ex, logStack);
         }
     }
 
@@ -1225,7 +1329,7 @@ public class Logger implements LoggerWrapper {
         // If we are at a DEBUG level, log throwable stack
         boolean logStack = (this.level <= DEBUG);
         Object[] args = { arg1, arg2 };
-        publish(level, format(level, msg, args, ex, logStack));
+        dispatch(level, level, msg, args, ex, logStack);
     }
 
     /**
@@ -1244,7 +1348,7 @@ public class Logger implements LoggerWrapper {
         }
         // If we are at a DEBUG level, log throwable stack
         boolean logStack = (this.level <= DEBUG);
-        publish(level, format(level, msg, args, ex, logStack));
+        dispatch(level, level, msg, args, ex, logStack);
     }
 
     /**
@@ -1261,7 +1365,7 @@ public class Logger implements LoggerWrapper {
         if (level < this.level) {
             return;
         }
-        publish(level, format(level, msg, null, ex, true));
+        dispatch(level, level, msg, null, ex, true);
     }
 
     /**
@@ -1285,10 +1389,10 @@ public class Logger implements LoggerWrapper {
         // third argument is of type Object[], this method
         // is called instead of logStack(level, String, Object[])
         if (arg instanceof Object[]) {
-            publish(level, format(level, msg, (Object[]) arg, ex, true));
+            dispatch(level, level, msg, (Object[]) arg, ex, true);
         } else {
             Object[] args = { arg };
-            publish(level, format(level, msg, args, ex, true));
+            dispatch(level, level, msg, args, ex, true);
         }
     }
 
@@ -1311,7 +1415,7 @@ public class Logger implements LoggerWrapper {
             return;
         }
         Object[] args = { arg1, arg2 };
-        publish(level, format(level, msg, args, ex, true));
+        dispatch(level, level, msg, args, ex, true);
     }
 
     /**
@@ -1328,7 +1432,7 @@ public class Logger implements LoggerWrapper {
         if (level < this.level) {
             return;
         }
-        publish(level, format(level, msg, args, ex, true));
+        dispatch(level, level, msg, args, ex, true);
     }
 
     /**
@@ -1343,7 +1447,7 @@ public class Logger implements LoggerWrapper {
      * @param args Array of arguments to substitute into msg.
      */
     public void logToAll(int level, String msg, Object[] args) {
-        publish(FORCE, format(level, msg, args, null, false));
+        dispatch(FORCE, level, msg, args, null, false);
     }
 
     /**
@@ -1356,7 +1460,7 @@ public class Logger implements LoggerWrapper {
      * resource bundle. If that fails then the msg String will be used directly.
      */
     public void logToAll(int level, String msg) {
-        publish(FORCE, format(level, msg, null, null, false));
+        dispatch(FORCE, level, msg, null, null, false);
     }
 
     /**
@@ -1374,7 +1478,7 @@ public class Logger implements LoggerWrapper {
      */
     public void logToAll(int level, String msg, Object arg1, Object arg2) {
         Object[] args = { arg1, arg2 };
-        publish(FORCE, format(level, msg, args, null, false));
+        dispatch(FORCE, level, msg, args, null, false);
     }
 
     /**
@@ -1392,10 +1496,10 @@ public class Logger implements LoggerWrapper {
         // third argument is of type Object[], this method
         // is called instead of log(level, String, Object[])
         if (arg instanceof Object[]) {
-            publish(FORCE, format(level, msg, (Object[]) arg, null, false));
+            dispatch(FORCE, level, msg, (Object[]) arg, null, false);
         } else {
             Object[] args = { arg };
-            publish(FORCE, format(level, msg, args, null, false));
+            dispatch(FORCE, level, msg, args, null, false);
         }
     }
 
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.messaging.jmq.util.log;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+class AsyncLogWriterTest {
+
+    static class CollectingLogger extends Logger {
+        final List<String> published = new CopyOnWriteArrayList<>();
+        final CountDownLatch release;
+
+        CollectingLogger(CountDownLatch release) {
+            super(".");
+            this.release = release;
+        }
+
+        @Override
+        public void publish(int level, String message) {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            published.add(message.trim());
+        }
+    }
+
+    @Test
+    void testMessagesPublishedInOrder() {
+        CollectingLogger logger = new CollectingLogger(new CountDownLatch(0));
+        AsyncLogWriter writer = new AsyncLogWriter(logger, 16, AsyncLogWriter.OverflowPolicy.BLOCK);
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(writer.enqueue(Logger.INFO, Logger.INFO, "message {0}", new Object[] { "m" + i }, null, false));
+        }
+        writer.shutdown(true);
+
+        assertEquals(100, logger.published.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals("message m" + i, logger.published.get(i));
+        }
+    }
+
+    @Test
+    void testDiscardWhenFull() {
+        CountDownLatch release = new CountDownLatch(1);
+        CollectingLogger logger = new CollectingLogger(release);
+        AsyncLogWriter writer = new AsyncLogWriter(logger, 4, AsyncLogWriter.OverflowPolicy.DISCARD);
+
+        int queued = 0;
+        for (int i = 0; i < 20; i++) {
+            if (writer.enqueue(Logger.WARNING, Logger.WARNING, "warning", null, null, false)) {
+                queued++;
+            }
+        }
+        // discarded messages are reported as handled
+        assertEquals(20, queued);
+        assertTrue(writer.getDiscardedCount() > 0);
+
+        release.countDown();
+        writer.shutdown(true);
+        assertTrue(logger.published.get(logger.published.size() - 1).contains("Discarded"));
+    }
+
+    @Test
+    void testErrorWaitsForRoomWhenFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CollectingLogger logger = new CollectingLogger(release);
+        AsyncLogWriter writer = new AsyncLogWriter(logger, 4, AsyncLogWriter.OverflowPolicy.DISCARD);
+
+        // fill the buffer again once the writer thread is stuck publishing the first message
+        for (int i = 0; i < 20; i++) {
+            writer.enqueue(Logger.WARNING, Logger.WARNING, "warning", null, null, false);
+        }
+        Thread.sleep(100);
+        for (int i = 0; i < 20; i++) {
+            writer.enqueue(Logger.WARNING, Logger.WARNING, "warning", null, null, false);
+        }
+        // an error is never discarded nor published ahead of the queued messages, the caller waits for room
+        AtomicBoolean queued = new AtomicBoolean();
+        Thread t = new Thread(() -> queued.set(writer.enqueue(Logger.ERROR, Logger.ERROR, "error", null, null, false)));
+        t.start();
+        t.join(200);
+        assertTrue(t.isAlive());
+
+        release.countDown();
+        t.join(10000);
+        writer.shutdown(true);
+
+        assertTrue(queued.get());
+        int error = -1;
+        int warning = -1;
+        for (int i = 0; i < logger.published.size(); i++) {
+            String m = logger.published.get(i);
+            if (m.endsWith("error")) {
+                error = i;
+            } else if (m.endsWith("warning")) {
+                warning = i;
+            }
+        }
+        assertTrue(error > warning);
+    }
+
+    @Test
+    void testSyncPublishesAfterQueuedMessages() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CollectingLogger logger = new CollectingLogger(release);
+        AsyncLogWriter writer = new AsyncLogWriter(logger, 4, AsyncLogWriter.OverflowPolicy.SYNC);
+
+        // a message that does not fit is published by the caller as the Logger does, but only once the queue is drained
+        Thread t = new Thread(() -> {
+            for (int i = 0; i < 20; i++) {
+                if (!writer.enqueue(Logger.INFO, Logger.INFO, "message {0}", new Object[] { "m" + i }, null, false)) {
+                    logger.published.add("message m" + i);
+                }
+            }
+        });
+        t.start();
+        t.join(200);
+        assertTrue(t.isAlive());
+
+        release.countDown();
+        t.join(10000);
+        writer.shutdown(true);
+
+        assertEquals(20, logger.published.size());
+        for (int i = 0; i < 20; i++) {
+            assertEquals("message m" + i, logger.published.get(i));
+        }
+    }
+}
@@ -606,6 +606,10 @@ public class BrokerCmd implements BrokerCmdOptions, BrokerConstants {
                 value = attrs.getProperty(PROP_NAME_LOCAL_DELIVERY_PREF);
                 if (value != null)
                     checkBooleanValue(brokerCmdProps, PROP_NAME_LOCAL_DELIVERY_PREF, value);
+
+                value = attrs.getProperty(PROP_NAME_ADAPTIVE_DELIVERY);
+                if (value != null)
+                    checkBooleanValue(brokerCmdProps, PROP_NAME_ADAPTIVE_DELIVERY, value);
             }
 
             /*
@@ -1363,6 +1367,10 @@ public class BrokerCmd implements BrokerCmdOptions, BrokerConstants {
                 value = attrs.getProperty(PROP_NAME_LOCAL_DELIVERY_PREF);
                 if (value != null)
                     checkBooleanValue(brokerCmdProps, PROP_NAME_LOCAL_DELIVERY_PREF, value);
+
+                value = attrs.getProperty(PROP_NAME_ADAPTIVE_DELIVERY);
+                if (value != null)
+                    checkBooleanValue(brokerCmdProps, PROP_NAME_ADAPTIVE_DELIVERY, value);
             }
 
             /*
@@ -265,6 +265,10 @@ public class BrokerCmdHelpPrinter implements CommonHelpPrinter, BrokerCmdOptions
         row[1] = ar.getString(ar.I_JMQCMD_DST_LOCAL_DELIVERY_PREF);
         bcp.add(row);
 
+        row[0] = indent + PROP_NAME_ADAPTIVE_DELIVERY;
+        row[1] = ar.getString(ar.I_JMQCMD_DST_ADAPTIVE_DELIVERY);
+        bcp.add(row);
+
         row[0] = indent + PROP_NAME_CONSUMER_FLOW_LIMIT;
         row[1] = ar.getString(ar.I_JMQCMD_DST_CONS_FLOW_LIMIT);
         bcp.add(row);
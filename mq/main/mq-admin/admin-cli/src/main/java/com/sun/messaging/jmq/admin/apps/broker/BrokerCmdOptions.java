@@ -319,6 +319,7 @@ public interface BrokerCmdOptions {
     String PROP_NAME_IS_LOCAL_DEST = "isLocalOnly";
     String PROP_NAME_LIMIT_BEHAVIOUR = "limitBehavior";
     String PROP_NAME_LOCAL_DELIVERY_PREF = "localDeliveryPreferred";
+    String PROP_NAME_ADAPTIVE_DELIVERY = "adaptiveDelivery";
     String PROP_NAME_CONSUMER_FLOW_LIMIT = "consumerFlowLimit";
     String PROP_NAME_MAX_PRODUCERS = "maxNumProducers";
 
@@ -350,6 +351,7 @@ public interface BrokerCmdOptions {
     String PROP_VALUE_METRICS_CONSUMER = "con";
     String PROP_VALUE_METRICS_DISK = "dsk";
     String PROP_VALUE_METRICS_REMOVE = "rem";
+    String PROP_VALUE_METRICS_LATENCY = "lat";
 
     /*
      * String values for pause type
@@ -519,8 +521,8 @@ public interface BrokerCmdOptions {
      */
     String[] CREATE_DST_QUEUE_VALID_ATTRS = { PROP_NAME_OPTION_MAX_MESG_BYTE, PROP_NAME_OPTION_MAX_PER_MESG_SIZE, PROP_NAME_OPTION_MAX_MESG,
             PROP_NAME_MAX_FAILOVER_CONSUMER_COUNT, PROP_NAME_MAX_ACTIVE_CONSUMER_COUNT, PROP_NAME_IS_LOCAL_DEST, PROP_NAME_LIMIT_BEHAVIOUR,
-            PROP_NAME_LOCAL_DELIVERY_PREF, PROP_NAME_CONSUMER_FLOW_LIMIT, PROP_NAME_MAX_PRODUCERS, PROP_NAME_USE_DMQ, PROP_NAME_VALIDATE_XML_SCHEMA_ENABLED,
-            PROP_NAME_XML_SCHEMA_URI_LIST, PROP_NAME_RELOAD_XML_SCHEMA_ON_FAILURE };
+            PROP_NAME_LOCAL_DELIVERY_PREF, PROP_NAME_ADAPTIVE_DELIVERY, PROP_NAME_CONSUMER_FLOW_LIMIT, PROP_NAME_MAX_PRODUCERS, PROP_NAME_USE_DMQ,
+            PROP_NAME_VALIDATE_XML_SCHEMA_ENABLED, PROP_NAME_XML_SCHEMA_URI_LIST, PROP_NAME_RELOAD_XML_SCHEMA_ON_FAILURE };
 
     String[] CREATE_DST_QUEUE_DEPRECATED_ATTRS = { PROP_NAME_QUEUE_FLAVOUR };
 
@@ -553,7 +555,7 @@ public interface BrokerCmdOptions {
 
     String[] UPDATE_DST_QUEUE_VALID_ATTRS = { PROP_NAME_OPTION_MAX_MESG_BYTE, PROP_NAME_OPTION_MAX_PER_MESG_SIZE, PROP_NAME_OPTION_MAX_MESG,
             PROP_NAME_MAX_FAILOVER_CONSUMER_COUNT, PROP_NAME_MAX_ACTIVE_CONSUMER_COUNT, PROP_NAME_LIMIT_BEHAVIOUR, PROP_NAME_LOCAL_DELIVERY_PREF,
-            PROP_NAME_CONSUMER_FLOW_LIMIT, PROP_NAME_MAX_PRODUCERS, PROP_NAME_USE_DMQ, PROP_NAME_VALIDATE_XML_SCHEMA_ENABLED, PROP_NAME_XML_SCHEMA_URI_LIST,
+            PROP_NAME_ADAPTIVE_DELIVERY, PROP_NAME_CONSUMER_FLOW_LIMIT, PROP_NAME_MAX_PRODUCERS, PROP_NAME_USE_DMQ, PROP_NAME_VALIDATE_XML_SCHEMA_ENABLED, PROP_NAME_XML_SCHEMA_URI_LIST,
             PROP_NAME_RELOAD_XML_SCHEMA_ON_FAILURE };
 
     String[] UPDATE_DST_TOPIC_VALID_ATTRS = { PROP_NAME_OPTION_MAX_MESG_BYTE, PROP_NAME_OPTION_MAX_PER_MESG_SIZE, PROP_NAME_OPTION_MAX_MESG,
@@ -565,7 +567,7 @@ public interface BrokerCmdOptions {
     String[] METRIC_TYPE_VALID_VALUES = { PROP_VALUE_METRICS_TOTALS, PROP_VALUE_METRICS_RATES, PROP_VALUE_METRICS_CONNECTIONS };
 
     String[] METRIC_DST_TYPE_VALID_VALUES = { PROP_VALUE_METRICS_TOTALS, PROP_VALUE_METRICS_RATES, PROP_VALUE_METRICS_CONSUMER,
-            PROP_VALUE_METRICS_DISK
+            PROP_VALUE_METRICS_DISK, PROP_VALUE_METRICS_LATENCY
             /*
              * PROP_VALUE_METRICS_REMOVE
              */
@@ -582,7 +584,7 @@ public interface BrokerCmdOptions {
              */
             PROP_NAME_OPTION_MAX_MESG_BYTE, PROP_NAME_OPTION_MAX_PER_MESG_SIZE, PROP_NAME_OPTION_MAX_MESG, PROP_NAME_MAX_FAILOVER_CONSUMER_COUNT,
             PROP_NAME_MAX_ACTIVE_CONSUMER_COUNT, PROP_NAME_IS_LOCAL_DEST, PROP_NAME_LIMIT_BEHAVIOUR, PROP_NAME_LOCAL_DELIVERY_PREF,
-            PROP_NAME_CONSUMER_FLOW_LIMIT, PROP_NAME_MAX_PRODUCERS, PROP_NAME_OPTION_CUR_MESG_BYTE, PROP_NAME_OPTION_CUR_MESG, PROP_NAME_OPTION_CUR_UNACK_MESG,
+            PROP_NAME_ADAPTIVE_DELIVERY, PROP_NAME_CONSUMER_FLOW_LIMIT, PROP_NAME_MAX_PRODUCERS, PROP_NAME_OPTION_CUR_MESG_BYTE, PROP_NAME_OPTION_CUR_MESG, PROP_NAME_OPTION_CUR_UNACK_MESG,
             PROP_NAME_OPTION_CUR_PRODUCERS, PROP_NAME_OPTION_CUR_A_CONSUMERS, PROP_NAME_OPTION_CUR_B_CONSUMERS, PROP_NAME_USE_DMQ,
             PROP_NAME_VALIDATE_XML_SCHEMA_ENABLED, PROP_NAME_XML_SCHEMA_URI_LIST, PROP_NAME_RELOAD_XML_SCHEMA_ON_FAILURE };
 
@@ -75,6 +75,7 @@ public class CmdRunner implements BrokerCmdOptions, BrokerConstants, AdminEventL
     private static final int METRICS_CONSUMER = 3;
     private static final int METRICS_DISK = 4;
     private static final int METRICS_REMOVE = 5;
+    private static final int METRICS_LATENCY = 6;
 
     /*
      * List types
@@ -2212,6 +2213,11 @@ public class CmdRunner implements BrokerCmdOptions, BrokerConstants, AdminEventL
             row[1] = prop;
             bcp.add(row);
         }
+        if ((prop = destAttrs.getProperty(PROP_NAME_ADAPTIVE_DELIVERY)) != null) {
+            row[0] = ar.getString(ar.I_JMQCMD_DST_ADAPTIVE_DELIVERY);
+            row[1] = prop;
+            bcp.add(row);
+        }
         if ((prop = destAttrs.getProperty(PROP_NAME_USE_DMQ)) != null) {
             row[0] = ar.getString(ar.I_JMQCMD_DST_USE_DMQ);
             row[1] = prop;
@@ -2281,8 +2287,9 @@ public class CmdRunner implements BrokerCmdOptions, BrokerConstants, AdminEventL
             if ((prop = destAttrs.getProperty(PROP_NAME_LIMIT_BEHAVIOUR)) != null) {
                 destInfo.setLimitBehavior(getLimitBehavValue(prop));
             }
-            if ((prop = destAttrs.getProperty(PROP_NAME_LOCAL_DELIVERY_PREF)) != null) {
-                destInfo.setClusterDeliveryPolicy(getClusterDeliveryPolicy(prop));
+            if (destAttrs.getProperty(PROP_NAME_LOCAL_DELIVERY_PREF) != null || destAttrs.getProperty(PROP_NAME_ADAPTIVE_DELIVERY) != null) {
+                destInfo.setClusterDeliveryPolicy(
+                        getClusterDeliveryPolicy(destAttrs.getProperty(PROP_NAME_LOCAL_DELIVERY_PREF), destAttrs.getProperty(PROP_NAME_ADAPTIVE_DELIVERY)));
             }
             if ((prop = destAttrs.getProperty(PROP_NAME_CONSUMER_FLOW_LIMIT)) != null) {
                 destInfo.setPrefetch(Integer.parseInt(prop));
@@ -3417,8 +3424,9 @@ public class CmdRunner implements BrokerCmdOptions, BrokerConstants, AdminEventL
             /*
              * localDeliveryPreferred
              */
-            if (propName.equals(PROP_NAME_LOCAL_DELIVERY_PREF)) {
-                di.setClusterDeliveryPolicy(getClusterDeliveryPolicy(value));
+            if (propName.equals(PROP_NAME_LOCAL_DELIVERY_PREF) || propName.equals(PROP_NAME_ADAPTIVE_DELIVERY)) {
+                di.setClusterDeliveryPolicy(
+                        getClusterDeliveryPolicy(destAttrs.getProperty(PROP_NAME_LOCAL_DELIVERY_PREF), destAttrs.getProperty(PROP_NAME_ADAPTIVE_DELIVERY)));
             }
 
             /*
@@ -3710,6 +3718,10 @@ public class CmdRunner implements BrokerCmdOptions, BrokerConstants, AdminEventL
                             row[1] = Boolean.FALSE.toString();
                         }
                         bcp.add(row);
+
+                        row[0] = ar.getString(ar.I_JMQCMD_DST_ADAPTIVE_DELIVERY);
+                        row[1] = Boolean.toString(dInfo.destCDP == ClusterDeliveryPolicy.ADAPTIVE);
+                        bcp.add(row);
                     }
 
                     row[0] = ar.getString(ar.I_JMQCMD_DST_USE_DMQ);
@@ -4765,6 +4777,40 @@ public class CmdRunner implements BrokerCmdOptions, BrokerConstants, AdminEventL
             titleRow[i++] = "Discarded";
             titleRow[i++] = "Purged";
             bcp.addTitle(titleRow);
+        } else if (metricType == METRICS_LATENCY) {
+            bcp = new BrokerCmdPrinter(7, 2, "-", BrokerCmdPrinter.CENTER);
+            bcp.setTitleAlign(BrokerCmdPrinter.CENTER);
+            titleRow = new String[7];
+            int span[] = new int[7];
+
+            int i = 0;
+            span[i++] = 1;
+            span[i++] = 1;
+            span[i++] = 5;
+            span[i++] = 0;
+            span[i++] = 0;
+            span[i++] = 0;
+            span[i++] = 0;
+
+            i = 0;
+            titleRow[i++] = "";
+            titleRow[i++] = "";
+            titleRow[i++] = ar.getString(ar.I_METRICS_LAT_TITLE);
+            titleRow[i++] = "";
+            titleRow[i++] = "";
+            titleRow[i++] = "";
+            titleRow[i++] = "";
+            bcp.addTitle(titleRow, span);
+
+            i = 0;
+            titleRow[i++] = ar.getString(ar.I_METRICS_LAT_STAGE);
+            titleRow[i++] = ar.getString(ar.I_METRICS_LAT_COUNT);
+            titleRow[i++] = ar.getString(ar.I_METRICS_LAT_MEAN);
+            titleRow[i++] = "P50";
+            titleRow[i++] = "P99";
+            titleRow[i++] = "P99.9";
+            titleRow[i++] = ar.getString(ar.I_METRICS_LAT_MAX);
+            bcp.addTitle(titleRow);
         }
 
         return (bcp);
@@ -4934,10 +4980,31 @@ public class CmdRunner implements BrokerCmdOptions, BrokerConstants, AdminEventL
             metricRow[2] = "0";
 
             bcp.add(metricRow);
+        } else if (metricType == METRICS_LATENCY) {
+            for (String stage : DestMetricsCounters.LATENCY_STAGES) {
+                metricRow = new String[7];
+
+                metricRow[0] = stage;
+                metricRow[1] = displayLatency(latestDest.getLatency(stage, DestMetricsCounters.LATENCY_COUNT));
+                metricRow[2] = displayLatency(latestDest.getLatency(stage, DestMetricsCounters.LATENCY_MEAN));
+                metricRow[3] = displayLatency(latestDest.getLatency(stage, DestMetricsCounters.LATENCY_P50));
+                metricRow[4] = displayLatency(latestDest.getLatency(stage, DestMetricsCounters.LATENCY_P99));
+                metricRow[5] = displayLatency(latestDest.getLatency(stage, DestMetricsCounters.LATENCY_P999));
+                metricRow[6] = displayLatency(latestDest.getLatency(stage, DestMetricsCounters.LATENCY_MAX));
+
+                bcp.add(metricRow);
+            }
         }
 
     }
 
+    /*
+     * Latency values are -1 if the broker does not report them
+     */
+    private static String displayLatency(long value) {
+        return (value < 0 ? "-" : Long.toString(value));
+    }
+
     private int runReload(BrokerCmdProperties brokerCmdProps) {
         BrokerAdmin broker;
 
@@ -6146,6 +6213,10 @@ public class CmdRunner implements BrokerCmdOptions, BrokerConstants, AdminEventL
                             }
                             retValue = 0;
 
+                        } else if (PROP_NAME_ADAPTIVE_DELIVERY.equals(attrName)) {
+                            Globals.stdOutPrintln(Boolean.toString(dInfo.destCDP == ClusterDeliveryPolicy.ADAPTIVE));
+                            retValue = 0;
+
                         } else if (PROP_NAME_CONSUMER_FLOW_LIMIT.equals(attrName)) {
                             Globals.stdOutPrintln(Integer.toString(dInfo.maxPrefetch));
                             retValue = 0;
@@ -7421,6 +7492,8 @@ public class CmdRunner implements BrokerCmdOptions, BrokerConstants, AdminEventL
             return (METRICS_DISK);
         } else if (s.equals(PROP_VALUE_METRICS_REMOVE)) {
             return (METRICS_REMOVE);
+        } else if (s.equals(PROP_VALUE_METRICS_LATENCY)) {
+            return (METRICS_LATENCY);
         }
 
         return (METRICS_TOTALS);
@@ -7554,16 +7627,19 @@ public class CmdRunner implements BrokerCmdOptions, BrokerConstants, AdminEventL
         return (ret);
     }
 
-    private int getClusterDeliveryPolicy(String cdp) {
+    private int getClusterDeliveryPolicy(String cdp, String adaptive) {
         int ret = ClusterDeliveryPolicy.UNKNOWN;
 
-        if (cdp == null)
+        if (cdp == null && adaptive == null)
             return (ret);
 
-        boolean b = Boolean.parseBoolean(cdp);
-
-        if (b) {
+        /*
+         * localDeliveryPreferred=true takes precedence over adaptiveDelivery=true
+         */
+        if (Boolean.parseBoolean(cdp)) {
             ret = ClusterDeliveryPolicy.LOCAL_PREFERRED;
+        } else if (Boolean.parseBoolean(adaptive)) {
+            ret = ClusterDeliveryPolicy.ADAPTIVE;
         } else {
             ret = ClusterDeliveryPolicy.DISTRIBUTED;
         }
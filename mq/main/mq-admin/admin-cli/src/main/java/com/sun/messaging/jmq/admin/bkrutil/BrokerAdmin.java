@@ -50,6 +50,8 @@ public class BrokerAdmin extends BrokerAdminConn {
 
     private BrokerCmdStatusEvent statusEvent = null;
 
+    private String nextMessageCursor = null;
+
     public BrokerAdmin(String brokerAddress, String username, String passwd, int timeout, boolean useSSL) throws BrokerAdminException {
         this(brokerAddress, username, passwd, timeout, false, -1, -1, useSSL);
     }
@@ -1706,6 +1708,53 @@ public class BrokerAdmin extends BrokerAdminConn {
         }
     }
 
+    /**
+     * Request a page of the messages of a destination in delivery order. Unlike a start index, the cursor does not
+     * require the broker to sort the messages before it.
+     *
+     * @param cursor the cursor of the previous page as returned by getNextMessageCursor(), or an empty string for the
+     * first page
+     * @param maxNumMsgsRetrieved the page size, null for all messages after the cursor
+     */
+    public void sendGetMessagesPageMessage(String dstName, int dstType, boolean getBody, String cursor, Long maxNumMsgsRetrieved)
+            throws BrokerAdminException {
+        if (getDebug())
+            Globals.stdOutPrintln("***** sendGetMessagesPageMessage *****");
+        ObjectMessage mesg = null;
+
+        checkIfBusy();
+
+        try {
+            mesg = session.createObjectMessage();
+            mesg.setJMSReplyTo(replyQueue);
+            mesg.setIntProperty(MessageType.JMQ_MESSAGE_TYPE, MessageType.GET_MESSAGES);
+            mesg.setStringProperty(MessageType.JMQ_DESTINATION, dstName);
+            mesg.setIntProperty(MessageType.JMQ_DEST_TYPE, dstType);
+            mesg.setBooleanProperty(MessageType.JMQ_GET_MSG_BODY, getBody);
+            mesg.setStringProperty(MessageType.JMQ_MESSAGE_CURSOR, (cursor == null ? "" : cursor));
+            if (maxNumMsgsRetrieved != null) {
+                mesg.setLongProperty(MessageType.JMQ_MAX_NUM_MSGS_RETRIEVED, maxNumMsgsRetrieved.longValue());
+            }
+
+            statusEvent = createStatusEvent(BrokerCmdStatusEvent.GET_MSGS, MessageType.GET_MESSAGES_REPLY, "GET_MESSAGE_REPLY");
+
+            if (getDebug()) {
+                printMsgType(MessageType.GET_MESSAGES, "GET_MESSAGES");
+            }
+            sender.send(mesg);
+        } catch (Exception e) {
+            handleSendExceptions(e);
+        }
+    }
+
+    /**
+     * @return the cursor of the page after the one returned by the last receiveGetMessagesReplyMessage(), or null if
+     * there are no more messages
+     */
+    public String getNextMessageCursor() {
+        return nextMessageCursor;
+    }
+
     public Vector receiveGetMessagesReplyMessage() throws BrokerAdminException {
         return receiveGetMessagesReplyMessage(true);
     }
@@ -1714,6 +1763,7 @@ public class BrokerAdmin extends BrokerAdminConn {
         if (getDebug())
             Globals.stdOutPrintln("***** receiveGetMessagesReplyMessage *****");
         ObjectMessage mesg = null;
+        nextMessageCursor = null;
 
         try {
             mesg = (ObjectMessage) receiveCheckMessageTimeout(false, waitForResponse);
@@ -1722,6 +1772,7 @@ public class BrokerAdmin extends BrokerAdminConn {
             clearStatusEvent();
 
             checkReplyTypeStatus(mesg, MessageType.GET_MESSAGES_REPLY, "GET_MESSAGES_REPLY");
+            nextMessageCursor = mesg.getStringProperty(MessageType.JMQ_MESSAGE_CURSOR);
 
             Object obj;
 
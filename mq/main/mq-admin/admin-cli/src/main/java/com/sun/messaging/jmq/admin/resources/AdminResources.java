@@ -885,6 +885,16 @@ public class AdminResources extends MQResourceBundle {
     final public static String I_JMQCMD_MIGRATE_PARTITION_FAIL_STATUS = "A1821";
     final public static String I_JMQCMD_MIGRATE_PARTITION_NOOP = "A1822";
 
+    /*
+     * Destination metric labels - for metric type 'lat'
+     */
+    final public static String I_METRICS_LAT_STAGE = "A1823";
+    final public static String I_METRICS_LAT_COUNT = "A1824";
+    final public static String I_METRICS_LAT_MEAN = "A1825";
+    final public static String I_METRICS_LAT_MAX = "A1826";
+    final public static String I_METRICS_LAT_TITLE = "A1827";
+    final public static String I_JMQCMD_DST_ADAPTIVE_DELIVERY = "A1828";
+
     // 2000-2999 Warning Messages
     final public static String W_OBJ_ALREADY_EXISTS = "A2000";
     final public static String W_ADD_OBJ_BE_OVERWRITTEN = "A2001";
@@ -673,6 +673,12 @@ public class BrokerResources extends MQResourceBundle {
     final public static String I_CREATED_DB_CONNECTIONS = "B1520";
     final public static String I_UPDATE_BROKER_PROPS = "B1521";
     final public static String I_CREATE_THREADPOOL_FOR_SERVICE = "B1522";
+    final public static String I_FILE_STORE_PARTITION_INFO = "B1523";
+    final public static String I_WEBSOCKET_BATCH_ENABLED = "B1524";
+    final public static String I_CLUSTER_HB_PHI_DETECTOR = "B1525";
+    final public static String I_LOADING_TAKEOVER_MSGS_PARALLEL = "B1526";
+    final public static String I_WAIT_FOR_TAKEOVER_DESTINATION = "B1527";
+    final public static String I_TAKEOVER_DESTINATION_READY_RETRY = "B1528";
 
     // 2000-2999 Warning Messages
     final public static String W_AUTH_FAILED = "B2000";
@@ -989,6 +995,7 @@ public class BrokerResources extends MQResourceBundle {
     final public static String W_STORE_TXN_ACK_EXIST = "B2296";
     final public static String W_CLUSTER_INVALID_PACKET_SIZE_READ = "B2297";
     final public static String W_BROKER_IS_SHUTDOWN = "B2298";
+    final public static String W_TAKEOVER_DESTINATION_NOT_READY = "B2299";
 
     // 3000-3999 Error Messages
     final public static String E_PERSISTENT_OPEN = "B3000";
@@ -1303,6 +1310,7 @@ public class BrokerResources extends MQResourceBundle {
     final public static String E_STOMP_COMMAND_FAILED = "B3313";
     final public static String E_STOMP_UNABLE_SEND_ERROR_MSG = "B3314";
     final public static String E_PORTMAPPER_START = "B3315";
+    final public static String E_STORE_TAKEN_OVER_STOP_BROKER = "B3316";
 
     // 4000-4999 Exception Messages
     final public static String X_NO_FILE = "B4000";
@@ -1794,6 +1802,8 @@ public class BrokerResources extends MQResourceBundle {
     final public static String X_MAX_ROLLBACKS_MSG_NO_ROLLBACK = "B4485";
     final public static String X_NOTIFY_RELEASE_REMOTE_MSG_ACTIVE_CONSUMER = "B4486";
     final public static String X_BAD_SELECTOR = "B4487";
+    final public static String X_FILE_STORE_PARTITION_ID = "B4488";
+    final public static String X_SERVICE_NOT_FOUND_FOR_DIRECT_STOMP = "B4489";
 
     /***************** End of message key constants *******************/
 
@@ -18,6 +18,7 @@
 package com.sun.messaging.jmq.jmsserver;
 
 import java.io.File;
+import java.net.InetSocketAddress;
 import java.util.Properties;
 import java.util.List;
 import java.util.Locale;
@@ -30,7 +31,17 @@ import com.sun.messaging.jmq.jmsserver.config.BrokerConfig;
 import com.sun.messaging.jmq.jmsserver.tlsutil.KeystoreUtil;
 import com.sun.messaging.jmq.jmsserver.tlsutil.SSLPropertyMap;
 import com.sun.messaging.jmq.jmsserver.persist.api.Store;
+import com.sun.messaging.jmq.jmsserver.resources.BrokerResources;
+import com.sun.messaging.jmq.jmsserver.service.Service;
+import com.sun.messaging.jmq.jmsserver.service.imq.IMQService;
+import com.sun.messaging.jmq.jmsserver.service.imq.JMSServiceImpl;
+import com.sun.messaging.jmq.jmsserver.service.imq.websocket.stomp.StompConnectionImpl;
+import com.sun.messaging.jmq.jmsserver.util.BrokerException;
+import com.sun.messaging.jmq.jmsservice.JMSService;
+import com.sun.messaging.jmq.util.ServiceType;
 import com.sun.messaging.bridge.api.BridgeBaseContext;
+import com.sun.messaging.bridge.api.StompConnection;
+import com.sun.messaging.bridge.api.StompProtocolHandler;
 
 /**
  *
@@ -232,6 +243,22 @@ public class BridgeBaseContextAdapter implements BridgeBaseContext, SSLPropertyM
         return Globals.getKnownSSLEnabledProtocols("BridgeService");
     }
 
+    /**
+     * The connection is served by the same code as STOMP over WebSocket, through a JMSService of the named connection
+     * service, so the frames do not go through the JMS client runtime and the loopback protocol
+     *
+     * @param remoteAddress the address of the client, null if not known
+     */
+    @Override
+    public StompConnection createDirectStompConnection(String serviceName, StompProtocolHandler sph, InetSocketAddress remoteAddress) throws Exception {
+        Service svc = Globals.getServiceManager().getService(serviceName);
+        if (!(svc instanceof IMQService) || svc.getServiceType() != ServiceType.NORMAL) {
+            throw new BrokerException(Globals.getBrokerResources().getKString(BrokerResources.X_SERVICE_NOT_FOUND_FOR_DIRECT_STOMP, serviceName));
+        }
+        JMSService jmss = new JMSServiceImpl((IMQService) svc, Globals.getProtocol());
+        return new StompConnectionImpl(sph, jmss, () -> remoteAddress);
+    }
+
     /**
      * Logging methods for Bridge Services Manager
      */
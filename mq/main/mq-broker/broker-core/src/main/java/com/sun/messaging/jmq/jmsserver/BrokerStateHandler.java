@@ -27,6 +27,7 @@ import com.sun.messaging.jmq.io.MQAddress;
 import com.sun.messaging.jmq.util.GoodbyeReason;
 import com.sun.messaging.jmq.util.admin.MessageType;
 import com.sun.messaging.jmq.jmsserver.core.BrokerAddress;
+import com.sun.messaging.jmq.jmsserver.core.DeliveredStateCheckpoint;
 import com.sun.messaging.jmq.jmsserver.common.handlers.InfoRequestHandler;
 import com.sun.messaging.jmq.jmsserver.util.BrokerException;
 import com.sun.messaging.jmq.jmsserver.util.OperationNotAllowedException;
@@ -536,6 +537,7 @@ public class BrokerStateHandler {
                     }
                     storeShutdownStage2 = false;
                     storeShutdownStage1 = true;
+                    DeliveredStateCheckpoint.shutdown();
                     // close down the persistence database
                     Globals.releaseStore();
                 } catch (Exception ex) {
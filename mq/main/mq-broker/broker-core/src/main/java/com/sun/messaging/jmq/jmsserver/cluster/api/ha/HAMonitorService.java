@@ -20,10 +20,12 @@
 
 package com.sun.messaging.jmq.jmsserver.cluster.api.ha;
 
+import java.util.function.Consumer;
 import com.sun.messaging.jmq.util.UID;
 import com.sun.messaging.jmq.io.Packet;
 import com.sun.messaging.jmq.io.MQAddress;
 import com.sun.messaging.jmq.jmsserver.core.Destination;
+import com.sun.messaging.jmq.jmsserver.core.DestinationUID;
 import com.sun.messaging.jmq.jmsserver.util.BrokerException;
 import org.jvnet.hk2.annotations.Contract;
 import jakarta.inject.Singleton;
@@ -41,6 +43,11 @@ public interface HAMonitorService {
      */
     boolean inTakeover();
 
+    /**
+     * @return true if client connections are refused because of a takeover in progress
+     */
+    boolean inTakeoverRejectingClients();
+
     /**
      * @return in seconds
      */
@@ -56,6 +63,15 @@ public interface HAMonitorService {
      */
     boolean checkTakingoverMessage(Packet p);
 
+    /**
+     * If clients are accepted while the destination is being taken over, call back with null once its taken over
+     * messages are loaded or the takeover ends, or with an error message after
+     * imq.cluster.takeover.destinationWaitTimeout
+     *
+     * @return false if the destination is not being taken over, there is no call back
+     */
+    boolean notifyTakingoverDestinationReady(DestinationUID duid, Consumer<String> callback);
+
     /**
      * @return remote broker id running on host:port
      */
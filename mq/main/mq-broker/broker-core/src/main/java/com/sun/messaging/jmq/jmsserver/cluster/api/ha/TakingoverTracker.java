@@ -21,8 +21,13 @@
 
 package com.sun.messaging.jmq.jmsserver.cluster.api.ha;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.List;
+import java.util.Set;
 
 import com.sun.messaging.jmq.io.Packet;
 import com.sun.messaging.jmq.util.UID;
@@ -56,6 +61,12 @@ public final class TakingoverTracker {
     private long lastHeartbeat = 0;
     private List<Long> takeoverStoreSessions = null;
 
+    // destination UID strings whose taken over messages are not loaded yet
+    private Set<String> pendingDestinations = null;
+    private boolean pendingReleased = false;
+    // callbacks of requests parked until their destination is ready, by destination UID string
+    private Map<String, List<Runnable>> destinationWaiters = new HashMap<>();
+
     /**
      */
     public TakingoverTracker(String targetName, Thread runnerThread) {
@@ -138,12 +149,83 @@ public final class TakingoverTracker {
     }
 
     public boolean containDestination(Destination d) {
+        synchronized (this) {
+            if (pendingDestinations != null) {
+                return pendingDestinations.contains(d.getDestinationUID().toString());
+            }
+        }
         if (msgMap == null) {
             return false;
         }
         return msgMap.containsValue(d.getDestinationUID().toString());
     }
 
+    /**
+     * Called before the taken over messages are loaded; from then on a destination is only being taken over until it is
+     * set ready
+     *
+     * @param dsts destination UID strings of the taken over messages
+     */
+    public synchronized void setDestinationsPending(Collection<String> dsts) {
+        pendingDestinations = new HashSet<>(dsts);
+    }
+
+    /**
+     * All taken over messages of the destination have been loaded and routed
+     *
+     * @param dst destination UID string
+     */
+    public void setDestinationReady(String dst) {
+        List<Runnable> waiters = null;
+        synchronized (this) {
+            if (pendingDestinations == null || !pendingDestinations.remove(dst)) {
+                return;
+            }
+            waiters = destinationWaiters.remove(dst);
+        }
+        runWaiters(waiters);
+    }
+
+    /**
+     * Run the callbacks of all parked requests when the takeover ends, whether their destination is ready or not
+     */
+    public void releaseDestinationWaiters() {
+        List<Runnable> waiters = new ArrayList<>();
+        synchronized (this) {
+            pendingReleased = true;
+            for (List<Runnable> l : destinationWaiters.values()) {
+                waiters.addAll(l);
+            }
+            destinationWaiters.clear();
+        }
+        runWaiters(waiters);
+    }
+
+    /**
+     * Run the callback when the taken over messages of the destination are loaded or the takeover ends
+     *
+     * @param dst destination UID string
+     * @return false if the destination is not pending, the callback is not run
+     */
+    public boolean addDestinationWaiter(String dst, Runnable callback) {
+        synchronized (this) {
+            if (pendingReleased || pendingDestinations == null || !pendingDestinations.contains(dst)) {
+                return false;
+            }
+            destinationWaiters.computeIfAbsent(dst, k -> new ArrayList<>()).add(callback);
+            return true;
+        }
+    }
+
+    private static void runWaiters(List<Runnable> waiters) {
+        if (waiters == null) {
+            return;
+        }
+        for (Runnable r : waiters) {
+            r.run();
+        }
+    }
+
     public boolean containMessage(Packet m) {
         if (msgMap == null) {
             return false;
@@ -27,6 +27,7 @@ import com.sun.messaging.jmq.io.*;
 import com.sun.messaging.jmq.util.ServiceType;
 import com.sun.messaging.jmq.jmsserver.service.Connection;
 import com.sun.messaging.jmq.jmsserver.service.ConnectionUID;
+import com.sun.messaging.jmq.jmsserver.service.imq.ConvertPacket;
 import com.sun.messaging.jmq.jmsserver.service.imq.IMQConnection;
 import com.sun.messaging.jmq.jmsserver.service.imq.IMQBasicConnection;
 import com.sun.messaging.jmq.jmsserver.service.imq.IMQService;
@@ -138,6 +139,11 @@ public class HelloHandler extends PacketHandler {
                 reconnectable = haclient;
             }
 
+            Boolean compactBody = (Boolean) hello_props.get("JMQCompactBody");
+            con.setClientCompactBody(compactBody != null && compactBody.booleanValue());
+            Boolean compressedBody = (Boolean) hello_props.get("JMQCompressedBody");
+            con.setClientCompressedBody(compressedBody != null && compressedBody.booleanValue());
+
             String s = (String) hello_props.get("JMQUserAgent");
             if (s != null) {
                 con.addClientData(IMQConnection.USER_AGENT, s);
@@ -311,7 +317,7 @@ public class HelloHandler extends PacketHandler {
         }
 
         HAMonitorService hamonitor = Globals.getHAMonitorService();
-        if (hamonitor != null && hamonitor.inTakeover()) {
+        if (hamonitor != null && hamonitor.inTakeoverRejectingClients()) {
             if (((IMQService) con.getService()).getServiceType() != ServiceType.ADMIN) {
                 status = Status.TIMEOUT;
                 if (oldCID != null) {
@@ -425,6 +431,9 @@ public class HelloHandler extends PacketHandler {
         hash.put("JMQConnectionID", Long.valueOf(con.getConnectionUID().longValue()));
         hash.put("JMQProtocolLevel", Integer.valueOf(supportedProtocol));
         hash.put("JMQVersion", Globals.getVersion().getProductVersion());
+        if (ConvertPacket.COMPACT_BODY) {
+            hash.put("JMQCompactBody", Boolean.TRUE);
+        }
         if (((IMQBasicConnection) con).getDumpPacket() || ((IMQBasicConnection) con).getDumpOutPacket()) {
             hash.put("JMQReqID", msg.getSysMessageID().toString());
         }
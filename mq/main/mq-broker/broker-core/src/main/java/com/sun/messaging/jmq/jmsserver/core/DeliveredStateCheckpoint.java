@@ -0,0 +1,291 @@
+/*
+ * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+
+package com.sun.messaging.jmq.jmsserver.core;
+
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import com.sun.messaging.jmq.jmsserver.Globals;
+import com.sun.messaging.jmq.jmsserver.persist.api.PartitionedStore;
+import com.sun.messaging.jmq.jmsserver.persist.api.Store;
+import com.sun.messaging.jmq.jmsserver.util.BrokerException;
+import com.sun.messaging.jmq.util.log.Logger;
+
+/**
+ * Lazy persistence of the delivered state of stored interests.
+ * <P>
+ * When enabled, PacketReference.delivered() does not write INTEREST_STATE_DELIVERED to the store, the interest is queued
+ * here instead and written in periodic checkpoints without sync. Interests that are acknowledged (or whose message is
+ * destroyed) before the next checkpoint are dropped, so the usual deliver-then-acknowledge cycle costs one store write
+ * instead of two.
+ * <P>
+ * A delivered state that was not yet written is lost if the broker stops abnormally. To keep the redelivered flag
+ * correct, a marker property is stored (with sync) while deferred states may be pending and is cleared after the final
+ * checkpoint of a clean shutdown. If the marker is found at startup, every interest loaded in state
+ * INTEREST_STATE_ROUTED is treated as possibly delivered, so its message is redelivered with JMSRedelivered set.
+ * <P>
+ * The marker property is named after the broker ID, since in a JDBC HA cluster the brokers share the property table.
+ * When a broker takes over the store of a failed broker, the same rule is applied to the taken over messages with the
+ * marker of the failed broker.
+ * <P>
+ * The checkpoints run on their own thread, not on the broker's shared timer, so that store writes do not delay the other
+ * timer tasks.
+ */
+public final class DeliveredStateCheckpoint {
+
+    static final boolean ENABLED = Globals.getConfig().getBooleanProperty(Globals.IMQ + ".persist.store.lazyDeliveredState.enabled", false);
+
+    private static final long INTERVAL = Globals.getConfig().getLongProperty(Globals.IMQ + ".persist.store.lazyDeliveredState.interval", 5000L);
+
+    /**
+     * store property set while delivered states may be pending, followed by the broker ID if there is one
+     */
+    static final String PENDING_PROP = "imq.persist.store.lazyDeliveredState.pending";
+
+    private static final Queue<Entry> pending = new ConcurrentLinkedQueue<>();
+
+    private static boolean initialized = false;
+    private static boolean recovering = false;
+    private static boolean marked = false;
+    private static ScheduledExecutorService executor = null;
+
+    private DeliveredStateCheckpoint() {
+    }
+
+    /**
+     * @return true if the previous run of the broker stopped with delivered states that may not have been written, so
+     * routed interests must be loaded as delivered
+     */
+    static boolean isRecovering() {
+        init();
+        synchronized (DeliveredStateCheckpoint.class) {
+            return recovering;
+        }
+    }
+
+    /**
+     * Queue the delivered state of a stored interest for the next checkpoint
+     *
+     * @return false if lazy delivered state is disabled, the caller must then write the state itself
+     */
+    static boolean defer(PacketReference ref, ConsumerUID storedid) {
+        if (!ENABLED) {
+            return false;
+        }
+        init();
+        pending.add(new Entry(ref, storedid));
+        return true;
+    }
+
+    /**
+     * @return the name of the marker property of the broker
+     */
+    static String getMarkerProperty(String brokerID) {
+        return (brokerID == null ? PENDING_PROP : PENDING_PROP + "." + brokerID);
+    }
+
+    /**
+     * Check the marker of a broker whose store is being taken over. If it is set, the delivered states of the taken over
+     * messages may have been lost, so the marker of this broker is set in its place (the messages are this broker's now)
+     * and the marker of the taken over broker is cleared.
+     *
+     * @return true if routed interests of the taken over messages must be loaded as delivered
+     */
+    static boolean takeover(String brokerID) {
+        if (brokerID == null) {
+            return false;
+        }
+        init();
+        try {
+            return takeover(Globals.getStore(), Globals.getBrokerID(), brokerID);
+        } catch (Exception e) {
+            Globals.getLogger().logStack(Logger.WARNING, "Failed to access delivered state checkpoint marker " + getMarkerProperty(brokerID), e);
+            // can not tell, so assume the states were lost
+            return true;
+        }
+    }
+
+    static synchronized boolean takeover(Store store, String myBrokerID, String brokerID) throws BrokerException {
+        String prop = getMarkerProperty(brokerID);
+        if (!Boolean.TRUE.equals(store.getProperty(prop))) {
+            return false;
+        }
+        Globals.getLogger().log(Logger.INFO,
+                "Broker " + brokerID + " did not complete its delivered state checkpoint, its undelivered messages will be marked redelivered");
+        if (!marked) {
+            store.updateProperty(getMarkerProperty(myBrokerID), Boolean.TRUE, true);
+            marked = true;
+        }
+        store.updateProperty(prop, Boolean.FALSE, true);
+        return true;
+    }
+
+    /**
+     * Load the interests in state INTEREST_STATE_ROUTED as delivered, their delivered state may have been lost
+     *
+     * @param states the stored interest states, updated in place
+     * @return which interests were changed, or null if none was
+     */
+    static boolean[] recoverStates(int[] states) {
+        boolean[] recovered = null;
+        for (int i = 0; i < states.length; i++) {
+            if (states[i] == PartitionedStore.INTEREST_STATE_ROUTED) {
+                states[i] = PartitionedStore.INTEREST_STATE_DELIVERED;
+                if (recovered == null) {
+                    recovered = new boolean[states.length];
+                }
+                recovered[i] = true;
+            }
+        }
+        return recovered;
+    }
+
+    /**
+     * Queue the delivered states of the interests that were loaded as possibly delivered, so that they are written by the
+     * next checkpoint (at the latest at shutdown) and the message is still marked redelivered after the marker is
+     * cleared. Called after the states are set on the reference.
+     *
+     * @param recovered as returned by recoverStates, may be null
+     */
+    static void recovered(PacketReference ref, ConsumerUID[] consumers, boolean[] recovered) {
+        for (int i = 0; recovered != null && i < recovered.length; i++) {
+            if (recovered[i]) {
+                pending.add(new Entry(ref, consumers[i]));
+            }
+        }
+    }
+
+    private static synchronized void init() {
+        if (initialized) {
+            return;
+        }
+        initialized = true;
+        Logger logger = Globals.getLogger();
+        String prop = getMarkerProperty(Globals.getBrokerID());
+        try {
+            Store store = Globals.getStore();
+            recovering = Boolean.TRUE.equals(store.getProperty(prop));
+            if (recovering) {
+                logger.log(Logger.INFO, "Previous broker run did not complete its delivered state checkpoint, undelivered messages will be marked redelivered");
+            }
+            if (ENABLED) {
+                store.updateProperty(prop, Boolean.TRUE, true);
+                marked = true;
+            }
+        } catch (Exception e) {
+            logger.logStack(Logger.WARNING, "Failed to access delivered state checkpoint marker " + prop, e);
+        }
+        if (ENABLED) {
+            executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "DeliveredStateCheckpoint");
+                t.setDaemon(true);
+                return t;
+            });
+            executor.scheduleWithFixedDelay(() -> {
+                try {
+                    checkpoint();
+                } catch (RuntimeException e) {
+                    logger.logStack(Logger.WARNING, "Delivered state checkpoint failed", e);
+                }
+            }, INTERVAL, INTERVAL, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Write the pending delivered states
+     *
+     * @return the number of states written
+     */
+    static synchronized int checkpoint() {
+        Set<Entry> batch = new HashSet<>();
+        Entry e;
+        while ((e = pending.poll()) != null) {
+            batch.add(e);
+        }
+        int n = 0;
+        for (Entry entry : batch) {
+            try {
+                if (entry.ref.storeDelivered(entry.storedid)) {
+                    n++;
+                }
+            } catch (Exception ex) {
+                Globals.getLogger().log(Logger.DEBUG, "Failed to checkpoint delivered state of " + entry.ref + " for " + entry.storedid + ": " + ex);
+            }
+        }
+        if (n > 0) {
+            Globals.getLogger().log(Logger.DEBUG, "Checkpointed delivered state of " + n + " interests");
+        }
+        return n;
+    }
+
+    /**
+     * Write the pending delivered states and clear the marker, called at broker shutdown before the store is closed
+     */
+    public static void shutdown() {
+        synchronized (DeliveredStateCheckpoint.class) {
+            if (!initialized) {
+                return;
+            }
+            if (executor != null) {
+                executor.shutdown();
+                executor = null;
+            }
+        }
+        checkpoint();
+        synchronized (DeliveredStateCheckpoint.class) {
+            if (marked || recovering) {
+                String prop = getMarkerProperty(Globals.getBrokerID());
+                try {
+                    Globals.getStore().updateProperty(prop, Boolean.FALSE, true);
+                    marked = false;
+                } catch (Exception e) {
+                    Globals.getLogger().logStack(Logger.WARNING, "Failed to clear delivered state checkpoint marker " + prop, e);
+                }
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final PacketReference ref;
+        private final ConsumerUID storedid;
+
+        Entry(PacketReference ref, ConsumerUID storedid) {
+            this.ref = ref;
+            this.storedid = storedid;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            Entry other = (Entry) o;
+            return ref == other.ref && storedid.equals(other.storedid);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(ref), storedid);
+        }
+    }
+}
@@ -35,6 +35,7 @@ import com.sun.messaging.jmq.jmsserver.plugin.spi.ProducerSpi;
 import com.sun.messaging.jmq.jmsserver.plugin.spi.DestinationSpi;
 import com.sun.messaging.jmq.jmsserver.BrokerStateHandler;
 import com.sun.messaging.jmq.jmsserver.service.ConnectionUID;
+import com.sun.messaging.jmq.jmsserver.service.LatencyMetrics;
 import com.sun.messaging.jmq.jmsserver.service.Connection;
 import com.sun.messaging.jmq.jmsserver.service.imq.IMQConnection;
 import com.sun.messaging.jmq.jmsserver.util.BrokerException;
@@ -50,6 +51,7 @@ import com.sun.messaging.jmq.jmsserver.persist.api.Store;
 import com.sun.messaging.jmq.jmsserver.persist.api.DiskFileStore;
 import com.sun.messaging.jmq.jmsserver.persist.api.PartitionedStore;
 import com.sun.messaging.jmq.jmsserver.persist.api.ChangeRecordInfo;
+import com.sun.messaging.jmq.jmsserver.persist.api.StoreCompression;
 import com.sun.messaging.jmq.jmsserver.cluster.api.ClusterBroadcast;
 import com.sun.messaging.jmq.jmsserver.cluster.api.ha.HAMonitorService;
 import com.sun.messaging.jmq.util.log.Logger;
@@ -63,6 +65,9 @@ import com.sun.messaging.jmq.jmsserver.management.agent.Agent;
 import com.sun.messaging.jmq.util.lists.*;
 
 import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.io.*;
 
 /**
@@ -92,6 +97,8 @@ public abstract class Destination implements DestinationSpi, Serializable, com.s
     protected transient SimpleNFLHashMap<SysMessageID, PacketReference> destMessages = null;
     private transient HashMap destMessagesInRemoving = null;
     private transient Object _removeMessageLock = null;
+    // held for read while a new message is written to the store, for write while bulk purge deletes all of them
+    private transient ReentrantReadWriteLock storeLock = null;
     private boolean dest_inited = false;
 
     private transient int refCount = 0;
@@ -175,10 +182,15 @@ public abstract class Destination implements DestinationSpi, Serializable, com.s
 
     private static final int LOAD_COUNT = Globals.getConfig().getIntProperty(Globals.IMQ + ".destination.verbose.cnt", 10000);
 
+    // largest batch of messages selected at a time by getPage
+    private static final int PAGE_SCAN_MAX = 64 * 1024;
+
     private static final boolean EXPIRE_DELIVERED_MSG = Globals.getConfig().getBooleanProperty(Globals.IMQ + ".destination.expireDeliveredMessages", false);
 
     private static final boolean PURGE_DELIVERED_MSG = Globals.getConfig().getBooleanProperty(Globals.IMQ + ".destination.purgeDeliveredMessages", false);
 
+    private static final boolean BULK_PURGE = Globals.getConfig().getBooleanProperty(Globals.IMQ + ".destination.purge.bulk", true);
+
     public static final boolean PERSIST_SYNC = DestinationList.PERSIST_SYNC;
 
     protected static final int NONE = 0;
@@ -928,6 +940,7 @@ public abstract class Destination implements DestinationSpi, Serializable, com.s
 
     protected transient Filter filter = new DestFilter();
     protected transient DestMetricsCounters dmc = new DestMetricsCounters();
+    protected transient LatencyMetrics latencyMetrics = new LatencyMetrics();
 
     protected transient MessageDeliveryTimeTimer deliveryTimeTimer = null;
 
@@ -999,6 +1012,7 @@ public abstract class Destination implements DestinationSpi, Serializable, com.s
         destMessages = new SimpleNFLHashMap<>();
         destMessagesInRemoving = new HashMap();
         _removeMessageLock = new Object();
+        storeLock = new ReentrantReadWriteLock();
         consumers = new SimpleNFLHashMap();
         producers = new SimpleNFLHashMap();
         if (maxConsumerLimit > DestinationList.UNLIMITED) {
@@ -1010,6 +1024,11 @@ public abstract class Destination implements DestinationSpi, Serializable, com.s
         filter = new DestFilter();
         unloadfilter = new UnloadFilter();
         dmc = new DestMetricsCounters();
+        latencyMetrics = new LatencyMetrics();
+        msgsIn = new LongAdder();
+        msgsOut = new LongAdder();
+        msgBytesIn = new LongAdder();
+        msgBytesOut = new LongAdder();
         stored = true;
         setMaxPrefetch(maxPrefetch);
         logsuffix = "";
@@ -1085,6 +1104,7 @@ public abstract class Destination implements DestinationSpi, Serializable, com.s
         destMessages = new SimpleNFLHashMap<>();
         destMessagesInRemoving = new HashMap();
         _removeMessageLock = new Object();
+        storeLock = new ReentrantReadWriteLock();
         destMessages.enforceLimits(true);
         if (autocreate) {
             if (!DestType.isAdmin(type)) {
@@ -1332,17 +1352,18 @@ public abstract class Destination implements DestinationSpi, Serializable, com.s
     }
 
     transient long lastMetricsTime;
-    transient long msgsIn = 0L;
-    transient long msgsOut = 0L;
+    // incremented for every message in and out without locking, summed when metrics are read
+    transient LongAdder msgsIn = new LongAdder();
+    transient LongAdder msgsOut = new LongAdder();
     transient long lastMsgsIn = 0L;
     transient long lastMsgsOut = 0L;
-    transient long msgBytesIn = 0;
-    transient long msgBytesOut = 0;
+    transient LongAdder msgBytesIn = new LongAdder();
+    transient LongAdder msgBytesOut = new LongAdder();
     transient long lastMsgBytesIn = 0;
     transient long lastMsgBytesOut = 0;
-    transient long msgsInInternal = 0;
-    transient long msgsOutInternal = 0;
-    transient long msgsInOutLastResetTime = 0;
+    // msgsIn/msgsOut counted before the last resetMetrics, for the in/out rate check
+    transient long msgsInBeforeReset = 0L;
+    transient long msgsOutBeforeReset = 0L;
 
     public void resetMetrics() {
         synchronized (dmc) {
@@ -1352,19 +1373,24 @@ public abstract class Destination implements DestinationSpi, Serializable, com.s
             discardedCnt = 0;
             overflowCnt = 0;
             errorCnt = 0;
-            msgsIn = 0L;
-            msgsOut = 0L;
+            msgsInBeforeReset += msgsIn.sumThenReset();
+            msgsOutBeforeReset += msgsOut.sumThenReset();
             lastMsgsIn = 0L;
             lastMsgsOut = 0L;
-            msgBytesIn = 0L;
-            msgBytesOut = 0;
+            msgBytesIn.reset();
+            msgBytesOut.reset();
             lastMsgBytesIn = 0;
             lastMsgBytesOut = 0;
             destMessages.reset();
             consumers.reset();
+            latencyMetrics.reset();
         }
     }
 
+    public LatencyMetrics getLatencyMetrics() {
+        return latencyMetrics;
+    }
+
     public DestMetricsCounters getMetrics() {
         synchronized (dmc) {
 
@@ -1377,10 +1403,14 @@ public abstract class Destination implements DestinationSpi, Serializable, com.s
             dmc.timeStamp = currentTime;
 
             // total messages sent to the destination
-            dmc.setMessagesIn(msgsIn);
+            long in = msgsIn.sum();
+            long out = msgsOut.sum();
+            long bytesIn = msgBytesIn.sum();
+            long bytesOut = msgBytesOut.sum();
+            dmc.setMessagesIn(in);
 
             // total messages sent from the destination
-            dmc.setMessagesOut(msgsOut);
+            dmc.setMessagesOut(out);
 
             // largest size of destination since broker started
             // retrieved from destination
@@ -1416,10 +1446,10 @@ public abstract class Destination implements DestinationSpi, Serializable, com.s
             dmc.setAvgFailoverConsumers(0);
 
             // total messages bytes sent to the destination
-            dmc.setMessageBytesIn(msgBytesIn);
+            dmc.setMessageBytesIn(bytesIn);
 
             // total messages bytes sent from the destination
-            dmc.setMessageBytesOut(msgBytesOut);
+            dmc.setMessageBytesOut(bytesOut);
 
             // current size of the destination
             dmc.setCurrentMessages(destMessages.size());
@@ -1463,11 +1493,14 @@ public abstract class Destination implements DestinationSpi, Serializable, com.s
             dmc.setRejectedMsgCnt(overflowCnt + errorCnt);
             dmc.setRollbackMsgCnt(rollbackCnt);
 
+            latencyMetrics.getMetrics(dmc);
+            StoreCompression.getMetrics(uid.toString(), dmc);
+
             lastMetricsTime = currentTime;
-            lastMsgsIn = msgsIn;
-            lastMsgsOut = msgsOut;
-            lastMsgBytesIn = msgBytesIn;
-            lastMsgBytesOut = msgBytesOut;
+            lastMsgsIn = in;
+            lastMsgsOut = out;
+            lastMsgBytesIn = bytesIn;
+            lastMsgBytesOut = bytesOut;
 
             return dmc;
 
@@ -1478,8 +1511,8 @@ public abstract class Destination implements DestinationSpi, Serializable, com.s
     public int checkIfMsgsInRateGTOutRate(long[] holder, boolean sampleOnly) {
         if (sampleOnly) {
             synchronized (dmc) {
-                holder[0] = msgsInInternal;
-                holder[1] = msgsOutInternal;
+                holder[0] = msgsInBeforeReset + msgsIn.sum();
+                holder[1] = msgsOutBeforeReset + msgsOut.sum();
             }
             holder[2] = System.currentTimeMillis();
             holder[3] = -1;
@@ -1503,11 +1536,8 @@ public abstract class Destination implements DestinationSpi, Serializable, com.s
 
         holder[2] = currtime;
         synchronized (dmc) {
-            holder[0] = msgsInInternal;
-            holder[1] = msgsOutInternal;
-        }
-        if (msgsInOutLastResetTime >= mylastTimeStamp) {
-            return 1;
+            holder[0] = msgsInBeforeReset + msgsIn.sum();
+            holder[1] = msgsOutBeforeReset + msgsOut.sum();
         }
         long mt = holder[2] - mylastTimeStamp;
         long st = mt / 1000L;
@@ -1947,46 +1977,89 @@ public abstract class Destination implements DestinationSpi, Serializable, com.s
             throw new BrokerException(errMsg);
         }
 
-        long maxIndex = startMsgIndex.longValue() + maxMsgsRetrieved.longValue();
+        long maxIndex = Math.min(numMsgs, startMsgIndex.longValue() + maxMsgsRetrieved.longValue());
 
-        SortedSet s = new TreeSet(new RefCompare());
+        // only the messages up to maxIndex are selected and sorted
+        List<PacketReference> s = getNext(null, (int) maxIndex);
 
-        try {
-            Set<PacketReference> msgset = null;
-            synchronized (destMessages) {
-                msgset = new HashSet<>(destMessages.values());
-            }
-            Iterator<PacketReference> itr = msgset.iterator();
-            while (itr.hasNext()) {
-                PacketReference pr = itr.next();
-                s.add(pr);
-            }
-        } catch (Throwable ex) {
-            logger.log(Logger.DEBUG, "Error getting msg IDs ", ex);
+        ArrayList idsAl = new ArrayList();
+        for (int i = startMsgIndex.intValue(); i < s.size(); i++) {
+            idsAl.add(s.get(i).getSysMessageID());
         }
 
-        ArrayList idsAl = new ArrayList();
+        ids = (SysMessageID[]) idsAl.toArray(ids);
 
-        long i = 0;
-        Iterator itr = s.iterator();
-        while (itr.hasNext()) {
-            PacketReference pr = (PacketReference) itr.next();
+        return (ids);
+    }
 
-            if ((i >= startMsgIndex.longValue()) && (i < maxIndex)) {
-                SysMessageID id = pr.getSysMessageID();
-                idsAl.add(id);
+    /**
+     * Returns a page of the messages of the destination in delivery order without copying or sorting the whole
+     * destination.
+     * <P>
+     * The destination is scanned under its lock only to select the next messages after the cursor. The filter, which may
+     * have to load a message to evaluate a selector, is applied to them one at a time outside the lock. When the filter
+     * rejects messages the scan is repeated from the last message examined, with a larger batch each time. A queue keeps
+     * a sorted snapshot for the pages that follow instead.
+     *
+     * @param after position of the last message of the previous page or null for the first page
+     * @param limit max number of messages returned
+     * @param f filter the messages must match or null
+     * @return up to limit messages in delivery order, fewer only if the end of the destination was reached
+     */
+    public List<PacketReference> getPage(MessageCursor after, int limit, Filter f) {
+        if (!loaded) {
+            try {
+                load();
+            } catch (Exception ex) {
             }
-
-            if (i >= maxIndex) {
-                break;
+        }
+        List<PacketReference> page = new ArrayList<>();
+        MessageCursor from = after;
+        int batch = limit;
+        while (page.size() < limit) {
+            List<PacketReference> next = getNext(from, batch);
+            for (PacketReference ref : next) {
+                if (page.size() == limit) {
+                    break;
+                }
+                if (f == null || f.matches(ref)) {
+                    page.add(ref);
+                }
             }
-
-            ++i;
+            if (next.size() < batch) {
+                break; // end of destination
+            }
+            from = MessageCursor.of(next.get(next.size() - 1));
+            batch = Math.max(limit, Math.min(batch * 2, PAGE_SCAN_MAX));
         }
+        return page;
+    }
 
-        ids = (SysMessageID[]) idsAl.toArray(ids);
-
-        return (ids);
+    /**
+     * @return the first count messages after the cursor in delivery order
+     */
+    private List<PacketReference> getNext(MessageCursor after, int count) {
+        if (count <= 0) {
+            return new ArrayList<>();
+        }
+        // max-heap of the best count messages seen so far
+        PriorityQueue<PacketReference> heap = new PriorityQueue<>(Math.min(count, 1024), MessageCursor.ORDER.reversed());
+        synchronized (destMessages) {
+            for (PacketReference ref : destMessages.values()) {
+                if (after != null && !after.isBefore(ref)) {
+                    continue;
+                }
+                if (heap.size() < count) {
+                    heap.add(ref);
+                } else if (MessageCursor.ORDER.compare(ref, heap.peek()) < 0) {
+                    heap.poll();
+                    heap.add(ref);
+                }
+            }
+        }
+        List<PacketReference> l = new ArrayList<>(heap);
+        l.sort(MessageCursor.ORDER);
+        return l;
     }
 
     public String getName() {
@@ -2050,6 +2123,14 @@ public abstract class Destination implements DestinationSpi, Serializable, com.s
             boolean oomed = false;
             List<SysMessageID> list = null;
             int count = 0;
+            if (BULK_PURGE && maxpurge > 0 && (mm == null || mm.getCurrentLevel() == 0)) {
+                removedCount = bulkPurge();
+                if (removedCount >= 0) {
+                    count = maxpurge;
+                } else {
+                    removedCount = 0L;
+                }
+            }
             while (maxpurge > 0 && count < maxpurge) {
                 do1 = false;
                 if (oomed) {
@@ -2110,6 +2191,88 @@ public abstract class Destination implements DestinationSpi, Serializable, com.s
         }
     }
 
+    /**
+     * Held for read while a new message of this destination is written to the store
+     */
+    Lock getStoreLock() {
+        return storeLock.readLock();
+    }
+
+    /**
+     * Purge all messages with one store call (removeMessages) instead of one store call per message. The messages are
+     * then removed from memory as usual, without store I/O, so that consumers and the cluster see the same PURGED
+     * removals as before. Only the messages of the snapshot are removed from the store, messages of the destination that
+     * are not loaded (e.g. of a broker being taken over) stay in the store.
+     *
+     * @return the number of messages purged, or -1 if the messages have to be purged one at a time because some can
+     * not be purged (in delivery, locked by a takeover, ...) or the store can not remove them in one operation
+     */
+    long bulkPurge() throws BrokerException {
+        List<PacketReference> refs;
+        synchronized (destMessages) {
+            refs = new ArrayList<>(destMessages.values());
+        }
+        for (PacketReference ref : refs) {
+            if (ref.getLBitSet()) {
+                return -1L;
+            }
+        }
+        synchronized (destMessagesInRemoving) {
+            if (!destMessagesInRemoving.isEmpty()) {
+                return -1L;
+            }
+        }
+
+        // from here on every return of -1 must undo the in removal marks
+        List<PacketReference> marked = new ArrayList<>(refs.size());
+        boolean done = false;
+        try {
+            List<SysMessageID> stored = new ArrayList<>(refs.size());
+            for (PacketReference ref : refs) {
+                // same check as _removeMessage, a message that passes is not delivered anymore
+                if (isValid() && !ref.checkDeliveryAndSetInRemoval() && !PURGE_DELIVERED_MSG) {
+                    return -1L;
+                }
+                marked.add(ref);
+                if (ref.isStored()) {
+                    stored.add(ref.getSysMessageID());
+                }
+            }
+
+            storeLock.writeLock().lock();
+            try {
+                if (!stored.isEmpty()) {
+                    pstore.removeMessages(this, stored, PERSIST_SYNC);
+                }
+                for (PacketReference ref : refs) {
+                    ref.clearStored();
+                }
+            } catch (UnsupportedOperationException e) {
+                return -1L;
+            } catch (Exception e) {
+                logger.logStack(Logger.WARNING, "Unable to remove the messages of " + this + " from " + pstore + ", purging one message at a time", e);
+                return -1L;
+            } finally {
+                storeLock.writeLock().unlock();
+            }
+            done = true;
+        } finally {
+            if (!done) {
+                for (PacketReference ref : marked) {
+                    ref.clearInRemoval();
+                }
+            }
+        }
+
+        long removed = 0L;
+        for (PacketReference ref : refs) {
+            if (_removeMessage(ref.getSysMessageID(), RemoveReason.PURGED, null, null, true).removed) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
     public void purgeDestination(Filter criteria) throws BrokerException {
         if (!loaded) {
             load();
@@ -2580,6 +2743,14 @@ public abstract class Destination implements DestinationSpi, Serializable, com.s
         throw new UnsupportedOperationException("setting max failover consumers not supported on this destination type");
     }
 
+    public boolean isMessageGroupsEnabled() {
+        return false;
+    }
+
+    public void setMessageGroupsEnabled(boolean enabled) throws BrokerException {
+        throw new UnsupportedOperationException("message groups not supported on this destination type");
+    }
+
     @Override
     public int hashCode() {
         return uid.hashCode();
@@ -2604,16 +2775,8 @@ public abstract class Destination implements DestinationSpi, Serializable, com.s
         if (!DL.isValid()) {
             throw new BrokerException(br.getKString(BrokerResources.I_DST_SHUTDOWN_DESTROY, getName()));
         }
-        synchronized (dmc) {
-            msgsIn += 1;
-            msgBytesIn += pkt.byteSize();
-            msgsInInternal += 1;
-            if (msgsInInternal >= Long.MAX_VALUE) {
-                msgsInOutLastResetTime = System.currentTimeMillis();
-                msgsInInternal = 0;
-                msgsOutInternal = 0;
-            }
-        }
+        msgsIn.increment();
+        msgBytesIn.add(pkt.byteSize());
         PacketListDMPair dmp = null;
         try {
 
@@ -3003,16 +3166,8 @@ public abstract class Destination implements DestinationSpi, Serializable, com.s
 
             ref.destroy();
 
-            synchronized (dmc) {
-                msgsOut += 1;
-                msgBytesOut += ref.byteSize();
-                msgsOutInternal += 1;
-                if (msgsOutInternal >= Long.MAX_VALUE) {
-                    msgsInOutLastResetTime = System.currentTimeMillis();
-                    msgsInInternal = 0L;
-                    msgsOutInternal = 0L;
-                }
-            }
+            msgsOut.increment();
+            msgBytesOut.add(ref.byteSize());
             if (ei != null && r != RemoveReason.EXPIRED) {
                 MsgExpirationReaper er = expireReaper;
                 if (er != null) {
@@ -3309,6 +3464,8 @@ public abstract class Destination implements DestinationSpi, Serializable, com.s
             enforceLimit = destMessages.getEnforceLimits();
             destMessages.enforceLimits(false);
 
+            boolean recoverDelivered = DeliveredStateCheckpoint.isRecovering();
+
             Enumeration msgs = null;
             try {
                 msgs = pstore.messageEnumeration(this);
@@ -3521,10 +3678,13 @@ public abstract class Destination implements DestinationSpi, Serializable, com.s
                 for (int i = 0; i < consumers.length; i++) {
                     states[i] = pstore.getInterestState(getDestinationUID(), pr.getSysMessageID(), consumers[i]);
                 }
+                // the delivered state may have been lost with the last checkpoint
+                boolean[] recovered = (recoverDelivered ? DeliveredStateCheckpoint.recoverStates(states) : null);
 
                 if (consumers.length > 0) {
                     pr.update(consumers, states);
                 }
+                DeliveredStateCheckpoint.recovered(pr, consumers, recovered);
                 try {
                     putMessage(pr, AddReason.LOADED);
                 } catch (IllegalStateException | OutOfLimitsException ex) {
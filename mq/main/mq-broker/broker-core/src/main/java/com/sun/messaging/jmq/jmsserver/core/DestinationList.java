@@ -18,8 +18,10 @@
 
 package com.sun.messaging.jmq.jmsserver.core;
 
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -110,6 +112,8 @@ public final class DestinationList implements ConnToPartitionStrategyContext {
     private static final int TEMP_DESTINATIONS_MASK = DestType.DEST_TEMP;
 
     private static final String AUTO_QUEUE_STR = Globals.IMQ + ".autocreate.queue";
+    private static final String TAKEOVER_LOAD_THREADS_PROP = Globals.IMQ + ".cluster.takeover.loadThreads";
+    private static final int TAKEOVER_LOAD_THREADS_DEFAULT = Math.min(8, Runtime.getRuntime().availableProcessors());
     private static final String AUTO_TOPIC_STR = Globals.IMQ + ".autocreate.topic";
     private static final String DST_REAP_STR = Globals.IMQ + ".autocreate.reaptime";
     private static final String MSG_REAP_STR = Globals.IMQ + ".message.expiration.interval";
@@ -784,13 +788,39 @@ public final class DestinationList implements ConnToPartitionStrategyContext {
         }
     }
 
-    public synchronized static void loadTakeoverMsgs(PartitionedStore storep, Map<String, String> msgs, List txns, Map txacks) throws BrokerException {
+    /**
+     * Notified when all taken over messages of a destination have been loaded and routed
+     */
+    public interface TakeoverDestinationListener {
+        /**
+         * @param destination the destination UID string as in the message map of the takeover
+         */
+        void destinationReady(String destination);
+    }
+
+    public static void loadTakeoverMsgs(PartitionedStore storep, Map<String, String> msgs, List txns, Map txacks) throws BrokerException {
+        loadTakeoverMsgs(storep, msgs, txns, txacks, null, null);
+    }
+
+    /**
+     * Load and route the messages of a taken over store. The destinations are independent of each other, so they are
+     * processed by up to imq.cluster.takeover.loadThreads threads in parallel and the listener is notified as each one
+     * is done.
+     *
+     * @param msgs map of message ID to destination UID string of the taken over messages
+     * @param brokerID the ID of the taken over broker, may be null
+     * @param listener notified when a destination is ready, may be null
+     */
+    public synchronized static void loadTakeoverMsgs(PartitionedStore storep, Map<String, String> msgs, List txns, Map txacks, String brokerID,
+            TakeoverDestinationListener listener) throws BrokerException {
 
         DestinationList dl = destinationListList.get(storep);
 
-        Map m = new HashMap();
         Logger logger = Globals.getLogger();
 
+        // the delivered states of the taken over broker may have been lost with its last checkpoint
+        boolean recoverDelivered = DeliveredStateCheckpoint.takeover(brokerID);
+
         Map ackLookup = new HashMap();
 
         // ok create a hashtable for looking up txns
@@ -809,6 +839,80 @@ public final class DestinationList implements ConnToPartitionStrategyContext {
             }
         }
 
+        Map<String, List<String>> dstMsgs = new LinkedHashMap<>();
+        for (Map.Entry<String, String> me : msgs.entrySet()) {
+            dstMsgs.computeIfAbsent(me.getValue(), k -> new ArrayList<>()).add(me.getKey());
+        }
+
+        int nthreads = Math.min(dstMsgs.size(), Globals.getConfig().getIntProperty(TAKEOVER_LOAD_THREADS_PROP, TAKEOVER_LOAD_THREADS_DEFAULT));
+        if (nthreads <= 1) {
+            for (Map.Entry<String, List<String>> e : dstMsgs.entrySet()) {
+                loadTakeoverDestination(dl, storep, msgs, e.getKey(), e.getValue(), txns, ackLookup, recoverDelivered);
+                if (listener != null) {
+                    listener.destinationReady(e.getKey());
+                }
+            }
+            return;
+        }
+
+        logger.log(Logger.INFO, Globals.getBrokerResources().getKString(BrokerResources.I_LOADING_TAKEOVER_MSGS_PARALLEL, String.valueOf(dstMsgs.size()),
+                String.valueOf(nthreads)));
+
+        ExecutorService loaders = Executors.newFixedThreadPool(nthreads, r -> {
+            Thread t = new Thread(r, "TakeoverMessageLoader");
+            t.setDaemon(true);
+            return t;
+        });
+        List<Future<?>> results = new ArrayList<>(dstMsgs.size());
+        try {
+            for (Map.Entry<String, List<String>> e : dstMsgs.entrySet()) {
+                results.add(loaders.submit(() -> {
+                    loadTakeoverDestination(dl, storep, msgs, e.getKey(), e.getValue(), txns, ackLookup, recoverDelivered);
+                    if (listener != null) {
+                        listener.destinationReady(e.getKey());
+                    }
+                    return null;
+                }));
+            }
+        } finally {
+            loaders.shutdown();
+        }
+
+        BrokerException error = null;
+        for (Future<?> f : results) {
+            try {
+                f.get();
+            } catch (ExecutionException e) {
+                Throwable t = e.getCause();
+                if (error == null) {
+                    error = (t instanceof BrokerException ? (BrokerException) t : new BrokerException(t.getMessage(), t));
+                } else {
+                    logger.logStack(Logger.ERROR, t.getMessage(), t);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                loaders.shutdownNow();
+                throw new BrokerException(e.getMessage(), e);
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Load and route the taken over messages of one destination
+     *
+     * @param dst the destination UID string of the messages
+     * @param msgIDs the message IDs of the destination
+     * @param recoverDelivered true to load routed interests as delivered
+     */
+    private static void loadTakeoverDestination(DestinationList dl, PartitionedStore storep, Map<String, String> msgs, String dstName, List<String> msgIDs,
+            List txns, Map ackLookup, boolean recoverDelivered) throws BrokerException {
+
+        Map m = new HashMap();
+        Logger logger = Globals.getLogger();
+
         // Alright ...
         // all acks fail once takeover begins
         // we expect all transactions to rollback
@@ -821,24 +925,22 @@ public final class DestinationList implements ConnToPartitionStrategyContext {
         //
         // OK, first get msgs and sort by destination
         HashMap openMessages = new HashMap();
-        Iterator itr = msgs.entrySet().iterator();
-        while (itr.hasNext()) {
-            Map.Entry me = (Map.Entry) itr.next();
-            String msgID = (String) me.getKey();
-            String dst = (String) me.getValue();
-            DestinationUID dUID = new DestinationUID(dst);
+        for (String msgID : msgIDs) {
+            DestinationUID dUID = new DestinationUID(dstName);
             Packet p = null;
             try {
                 p = storep.getMessage(dUID, msgID);
             } catch (BrokerException ex) {
                 Throwable cause = ex.getCause();
                 if (cause instanceof InvalidPacketException) {
-                    String[] args = { msgID, dst, cause.toString() };
+                    String[] args = { msgID, dstName, cause.toString() };
                     String emsg = Globals.getBrokerResources().getKString(BrokerResources.X_MSG_CORRUPTED_IN_STORE, args);
                     logger.logStack(Logger.ERROR, emsg, ex);
 
-                    handleInvalidPacket(msgID, dst, emsg, (InvalidPacketException) cause, storep);
-                    itr.remove();
+                    handleInvalidPacket(msgID, dstName, emsg, (InvalidPacketException) cause, storep);
+                    synchronized (msgs) {
+                        msgs.remove(msgID);
+                    }
                     continue;
                 }
 
@@ -847,7 +949,7 @@ public final class DestinationList implements ConnToPartitionStrategyContext {
                     Destination[] ds = getDestination(storep, dUID);
                     Destination d = ds[0];
                     if (d == null) {
-                        String args[] = { msgID, dst, Globals.getBrokerResources().getString(BrokerResources.E_DESTINATION_NOT_FOUND_IN_STORE, dst) };
+                        String args[] = { msgID, dstName, Globals.getBrokerResources().getString(BrokerResources.E_DESTINATION_NOT_FOUND_IN_STORE, dstName) };
                         logger.log(Logger.ERROR, BrokerResources.W_CAN_NOT_LOAD_MSG, args, ex);
                     }
                 }
@@ -1031,6 +1133,7 @@ public final class DestinationList implements ConnToPartitionStrategyContext {
                     }
 
                     int states[] = null;
+                    boolean[] recovered = null;
                     if (consumers.length == 0 && deliveryDelays.get(pr) == null) {
                         // route the message, it depends on the type of
                         // message
@@ -1064,9 +1167,13 @@ public final class DestinationList implements ConnToPartitionStrategyContext {
                         for (int i = 0; i < consumers.length; i++) {
                             states[i] = storep.getInterestState(dst, pr.getSysMessageID(), consumers[i]);
                         }
+                        if (recoverDelivered) {
+                            recovered = DeliveredStateCheckpoint.recoverStates(states);
+                        }
                     }
 
                     pr.update(consumers, states, false);
+                    DeliveredStateCheckpoint.recovered(pr, consumers, recovered);
 
                     // OK deal w/ transsactions
                     // LKS - XXX
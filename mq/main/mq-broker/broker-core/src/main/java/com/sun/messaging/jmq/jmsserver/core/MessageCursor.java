@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.messaging.jmq.jmsserver.core;
+
+import java.util.Comparator;
+
+/**
+ * Position of a message in the delivery order of a destination (priority, then timestamp, then sequence as in
+ * RefCompare, then message ID so that no two messages have the same position).
+ * <P>
+ * A cursor only holds the sort key of the message, not the message itself, so it stays valid when the message is
+ * consumed before the next page is read. The string form is what is passed to clients and admin tools.
+ */
+public final class MessageCursor {
+
+    /**
+     * The order in which pages are returned
+     */
+    public static final Comparator<PacketReference> ORDER = (ref1, ref2) -> {
+        int dif = compare(ref1.getPriority(), ref1.getTimestamp(), ref1.getSequence(), ref2);
+        if (dif == 0) {
+            dif = ref1.getSysMessageID().toString().compareTo(ref2.getSysMessageID().toString());
+        }
+        return dif;
+    };
+
+    private final int priority;
+    private final long timestamp;
+    private final long sequence;
+    private final String msgid;
+
+    private MessageCursor(int priority, long timestamp, long sequence, String msgid) {
+        this.priority = priority;
+        this.timestamp = timestamp;
+        this.sequence = sequence;
+        this.msgid = msgid;
+    }
+
+    /**
+     * @return the cursor positioned on the message
+     */
+    public static MessageCursor of(PacketReference ref) {
+        return new MessageCursor(ref.getPriority(), ref.getTimestamp(), ref.getSequence(), ref.getSysMessageID().toString());
+    }
+
+    /**
+     * @param cursor the string form of a cursor or null
+     * @return the cursor, or null if the string is null or empty
+     * @throws IllegalArgumentException if the string is not a cursor
+     */
+    public static MessageCursor parse(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        String[] s = cursor.split(":", 4);
+        if (s.length != 4) {
+            throw new IllegalArgumentException("Invalid message cursor " + cursor);
+        }
+        try {
+            return new MessageCursor(Integer.parseInt(s[0]), Long.parseLong(s[1]), Long.parseLong(s[2]), s[3]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid message cursor " + cursor, e);
+        }
+    }
+
+    /**
+     * @return true if the message comes after the cursor
+     */
+    public boolean isBefore(PacketReference ref) {
+        int dif = compare(priority, timestamp, sequence, ref);
+        if (dif == 0) {
+            dif = msgid.compareTo(ref.getSysMessageID().toString());
+        }
+        return dif < 0;
+    }
+
+    private static int compare(int priority, long timestamp, long sequence, PacketReference ref) {
+        // higher priority first
+        int dif = Integer.compare(ref.getPriority(), priority);
+        if (dif == 0) {
+            dif = Long.compare(timestamp, ref.getTimestamp());
+        }
+        if (dif == 0) {
+            dif = Long.compare(sequence, ref.getSequence());
+        }
+        return dif;
+    }
+
+    @Override
+    public String toString() {
+        return priority + ":" + timestamp + ":" + sequence + ":" + msgid;
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.messaging.jmq.jmsserver.core;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import com.sun.messaging.jmq.io.SysMessageID;
+import com.sun.messaging.jmq.util.lists.ClaimingFilter;
+import com.sun.messaging.jmq.util.lists.Filter;
+
+/**
+ * Assignment table of the message groups (JMSXGroupID) of a queue.
+ * <P>
+ * A message of an unassigned group is matched by the views of all consuming consumers. The group is assigned to the
+ * consumer that takes the first of its messages from the pending list, i.e. that has room for it and pulls it, and all
+ * later messages of the group are only matched by that consumer, so the messages of one group are consumed in order
+ * while different groups are consumed in parallel and follow the consumers that keep up. Matching a message assigns
+ * nothing, so adding a message or looking at the views does not. The groups of a consumer are released when it is
+ * removed or stops consuming messages, and are taken over by the next consumer that pulls one of their messages.
+ * <P>
+ * The table only holds the groups that have messages in the queue: a group is dropped with its assignment once its
+ * last message is removed, so the size of the table is bounded by the number of messages of the queue. A later message
+ * of the group starts it over and it may then be assigned to another consumer.
+ * <P>
+ * The table is kept by each broker for the messages it stores. Remote consumers pull from it like local consumers, so
+ * the messages of a group produced to one broker stay together, but a group whose messages are produced to several
+ * brokers of a cluster is assigned on each of them independently.
+ */
+class MessageGroups {
+
+    static final String JMSX_GROUP_ID = "JMSXGroupID";
+
+    static final class Group {
+        ConsumerUID owner = null;
+        int messages = 0;
+    }
+
+    private final Map<String, Group> table = new HashMap<>();
+    private final Map<SysMessageID, String> members = new HashMap<>();
+    private final Map<ConsumerUID, Set<String>> groups = new HashMap<>();
+    private final Set<ConsumerUID> consuming = new HashSet<>();
+
+    /**
+     * @return the group of the message or null if it is not part of a group
+     */
+    static String getGroupID(PacketReference ref) {
+        try {
+            Object group = ref.getProperties().get(JMSX_GROUP_ID);
+            return (group == null ? null : group.toString());
+        } catch (ClassNotFoundException ex) {
+            // this is not a valid error
+            assert false : ref;
+            throw new RuntimeException("error with properties", ex);
+        }
+    }
+
+    /**
+     * Count a message added to the queue in its group
+     */
+    synchronized void messageAdded(SysMessageID id, String group) {
+        if (group == null || members.putIfAbsent(id, group) != null) {
+            return;
+        }
+        table.computeIfAbsent(group, k -> new Group()).messages++;
+    }
+
+    /**
+     * Uncount a message removed from the queue, the group is dropped after its last message
+     */
+    synchronized void messageRemoved(SysMessageID id) {
+        String group = members.remove(id);
+        if (group == null) {
+            return;
+        }
+        Group g = table.get(group);
+        if (g == null || --g.messages > 0) {
+            return;
+        }
+        table.remove(group);
+        if (g.owner != null) {
+            Set<String> s = groups.get(g.owner);
+            if (s != null) {
+                s.remove(group);
+                if (s.isEmpty()) {
+                    groups.remove(g.owner);
+                }
+            }
+        }
+    }
+
+    /**
+     * Set whether the consumer is consuming messages, only consuming consumers are assigned groups
+     *
+     * @return true if the state changed, groups may then have to be matched again
+     */
+    synchronized boolean setConsuming(ConsumerUID uid, boolean isConsuming) {
+        if (!isConsuming) {
+            release(uid);
+            return consuming.remove(uid);
+        }
+        return consuming.add(uid);
+    }
+
+    /**
+     * @return true if the group is assigned to the consumer, or is unassigned and the consumer is consuming
+     */
+    synchronized boolean isAvailable(String group, ConsumerUID uid) {
+        Group g = table.get(group);
+        if (g == null || g.owner == null) {
+            return consuming.contains(uid);
+        }
+        return g.owner.equals(uid);
+    }
+
+    /**
+     * Assign the group to the consumer unless it is already assigned to another consumer. A group without messages in
+     * the queue is not assigned.
+     *
+     * @return true if the group is assigned to the consumer or has no messages and the consumer is consuming
+     */
+    synchronized boolean claim(String group, ConsumerUID uid) {
+        Group g = table.get(group);
+        if (g == null) {
+            return consuming.contains(uid);
+        }
+        if (g.owner == null) {
+            if (!consuming.contains(uid)) {
+                return false;
+            }
+            g.owner = uid;
+            groups.computeIfAbsent(uid, k -> new HashSet<>()).add(group);
+            return true;
+        }
+        return g.owner.equals(uid);
+    }
+
+    synchronized ConsumerUID getOwner(String group) {
+        Group g = table.get(group);
+        return (g == null ? null : g.owner);
+    }
+
+    /**
+     * Release the groups assigned to the consumer
+     *
+     * @return the number of groups released
+     */
+    synchronized int release(ConsumerUID uid) {
+        Set<String> s = groups.remove(uid);
+        if (s == null) {
+            return 0;
+        }
+        for (String group : s) {
+            Group g = table.get(group);
+            if (g != null) {
+                g.owner = null;
+            }
+        }
+        return s.size();
+    }
+
+    /**
+     * @return the number of assigned groups
+     */
+    synchronized int size() {
+        int n = 0;
+        for (Set<String> s : groups.values()) {
+            n += s.size();
+        }
+        return n;
+    }
+
+    /**
+     * @return the number of groups with messages in the queue
+     */
+    synchronized int getGroupCount() {
+        return table.size();
+    }
+
+    /**
+     * @param selector filter of the consumer's selector or null
+     * @return a filter that matches the messages of the consumer's groups and of unassigned groups, and assigns the
+     * group of a message to the consumer when the consumer pulls the message
+     */
+    Filter newFilter(ConsumerUID uid, Filter selector) {
+        return new GroupFilter(uid, selector);
+    }
+
+    class GroupFilter implements ClaimingFilter {
+        private final ConsumerUID uid;
+        private final Filter selector;
+
+        GroupFilter(ConsumerUID uid, Filter selector) {
+            this.uid = uid;
+            this.selector = selector;
+        }
+
+        @Override
+        public boolean matches(Object o) {
+            if (selector != null && !selector.matches(o)) {
+                return false;
+            }
+            String group = getGroupID((PacketReference) o);
+            return group == null || isAvailable(group, uid);
+        }
+
+        @Override
+        public boolean claim(Object o) {
+            String group = getGroupID((PacketReference) o);
+            return group == null || MessageGroups.this.claim(group, uid);
+        }
+
+        @Override
+        public String toString() {
+            return "GroupFilter[" + uid + ", " + selector + "]";
+        }
+    }
+}
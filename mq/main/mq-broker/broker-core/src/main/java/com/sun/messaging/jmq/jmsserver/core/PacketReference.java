@@ -21,6 +21,7 @@ import java.util.*;
 import java.lang.ref.*;
 import java.io.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
 import com.sun.messaging.jmq.io.*;
 import com.sun.messaging.jmq.jmsserver.Globals;
 import com.sun.messaging.jmq.jmsserver.DMQ;
@@ -30,6 +31,7 @@ import com.sun.messaging.jmq.jmsserver.data.TransactionState;
 import com.sun.messaging.jmq.jmsserver.data.TransactionList;
 import com.sun.messaging.jmq.jmsserver.data.TransactionBroker;
 import com.sun.messaging.jmq.jmsserver.service.ConnectionUID;
+import com.sun.messaging.jmq.jmsserver.service.LatencyMetrics;
 import com.sun.messaging.jmq.jmsserver.service.imq.IMQConnection;
 import com.sun.messaging.jmq.jmsserver.util.*;
 import com.sun.messaging.jmq.jmsserver.persist.api.Store;
@@ -103,6 +105,16 @@ public class PacketReference implements Sized, Ordered {
      */
     private long creationtime;
 
+    /**
+     * System.nanoTime() when the packet reference was created, for latency metrics
+     */
+    private transient long creationnanos;
+
+    /**
+     * true if creationnanos was set, System.nanoTime() may return any value so 0 can not be used as unset
+     */
+    private transient boolean hasCreationNanos = false;
+
     /**
      * time the packet reference was last accessed
      */
@@ -423,17 +435,30 @@ public class PacketReference implements Sized, Ordered {
             newLoc.isStoredWithInterest = false;
             return;
         }
-        if (oldLoc.isStored && oldLoc.persist && !oldLoc.neverStore) {
-            storep.moveMessage(newLoc.getPacket(), oldLoc.getDestinationUID(), newLoc.getDestinationUID(), info.uids, info.states, Destination.PERSIST_SYNC);
-            newLoc.isStored = true;
-            newLoc.isStoredWithInterest = true;
-            oldLoc.isStored = false;
-            oldLoc.isStoredWithInterest = false;
-        } else if (oldLoc.persist) {
-            storep.storeMessage(newLoc.getDestinationUID(), newLoc.getPacket(), info.uids, info.states, Destination.PERSIST_SYNC);
-            newLoc.isStored = true;
-            newLoc.isStoredWithInterest = true;
-            newLoc.neverStore = false;
+        if (oldLoc.persist) {
+            Lock lock = newLoc.getStoreLock();
+            if (lock != null) {
+                lock.lock();
+            }
+            try {
+                if (oldLoc.isStored && !oldLoc.neverStore) {
+                    storep.moveMessage(newLoc.getPacket(), oldLoc.getDestinationUID(), newLoc.getDestinationUID(), info.uids, info.states,
+                            Destination.PERSIST_SYNC);
+                    newLoc.isStored = true;
+                    newLoc.isStoredWithInterest = true;
+                    oldLoc.isStored = false;
+                    oldLoc.isStoredWithInterest = false;
+                } else {
+                    storep.storeMessage(newLoc.getDestinationUID(), newLoc.getPacket(), info.uids, info.states, Destination.PERSIST_SYNC);
+                    newLoc.isStored = true;
+                    newLoc.isStoredWithInterest = true;
+                    newLoc.neverStore = false;
+                }
+            } finally {
+                if (lock != null) {
+                    lock.unlock();
+                }
+            }
         } else {
             newLoc.isStored = false;
             newLoc.isStoredWithInterest = false;
@@ -501,6 +526,10 @@ public class PacketReference implements Sized, Ordered {
     private PacketReference(PartitionedStore ps, Packet pkt, DestinationUID duid, Connection con) throws BrokerException {
         this.pstore = ps;
         this.creationtime = System.currentTimeMillis();
+        if (LatencyMetrics.ENABLED) {
+            this.creationnanos = System.nanoTime();
+            this.hasCreationNanos = true;
+        }
         this.lastaccesstime = creationtime;
         this.msgid = (SysMessageID) pkt.getSysMessageID().clone();
         this.isQueue = pkt.getIsQueue();
@@ -1152,6 +1181,27 @@ public class PacketReference implements Sized, Ordered {
         return creationtime;
     }
 
+    /**
+     * @return System.nanoTime() when the packet reference was created
+     */
+    public long getCreateNanos() {
+        return creationnanos;
+    }
+
+    /**
+     * @return true if getCreateNanos() is valid, false if latency metrics were disabled when the reference was created
+     */
+    public boolean hasCreateNanos() {
+        return hasCreationNanos;
+    }
+
+    private void recordStoreLatency(long start) {
+        Destination d = getDestination();
+        if (d != null) {
+            d.getLatencyMetrics().record(LatencyMetrics.STORE_WRITE, System.nanoTime() - start);
+        }
+    }
+
     public long getLastAccessTime() {
         return lastaccesstime;
     }
@@ -1210,6 +1260,15 @@ public class PacketReference implements Sized, Ordered {
         return true;
     }
 
+    /**
+     * Undo checkDeliveryAndSetInRemoval for a message that is not removed after all
+     */
+    synchronized void clearInRemoval() {
+        if (!destroyed) {
+            inRemoval = false;
+        }
+    }
+
     protected synchronized boolean checkDeliveryAndSetInReplacing() {
         if (destroyed || invalid || inRemoval || isExpired() || inReplacing) {
             return false;
@@ -1322,7 +1381,22 @@ public class PacketReference implements Sized, Ordered {
      * stores the persistent message (if necessary) (may be called by transactions to store the message)
      */
 
-    public synchronized void store() throws BrokerException {
+    public void store() throws BrokerException {
+        // taken before the reference lock, see Destination.bulkPurge
+        Lock lock = getStoreLock();
+        if (lock != null) {
+            lock.lock();
+        }
+        try {
+            storeLocked();
+        } finally {
+            if (lock != null) {
+                lock.unlock();
+            }
+        }
+    }
+
+    private synchronized void storeLocked() throws BrokerException {
 
         if (!destroyed && persist && !neverStore && !isStored) {
             // persist indicated IF we want to
@@ -1331,7 +1405,11 @@ public class PacketReference implements Sized, Ordered {
             // state on the message
             assert pktPtr instanceof Packet;
             try {
+                long start = (LatencyMetrics.ENABLED ? System.nanoTime() : 0L);
                 pstore.storeMessage(destination, getPacket(), Destination.PERSIST_SYNC);
+                if (LatencyMetrics.ENABLED) {
+                    recordStoreLatency(start);
+                }
                 makePacketSoftRef();
             } catch (IOException ex) {
                 throw new BrokerException(ex.toString(), ex);
@@ -1347,6 +1425,19 @@ public class PacketReference implements Sized, Ordered {
         isStored = true;
     }
 
+    /**
+     * Called once the message has been removed from the store by a bulk remove
+     */
+    void clearStored() {
+        isStored = false;
+        isStoredWithInterest = false;
+    }
+
+    private Lock getStoreLock() {
+        Destination dst = getDestination();
+        return (dst == null ? null : dst.getStoreLock());
+    }
+
     public void store(Collection consumers) throws BrokerException {
 
         if (destroyed || pktPtr == null) {
@@ -1380,9 +1471,27 @@ public class PacketReference implements Sized, Ordered {
             if (isStored && !neverStore && persist) {
                 pstore.storeInterestStates(destination, msgid, info.uids, info.states, Destination.PERSIST_SYNC, getPacket());
             } else {
-                pstore.storeMessage(destination, (Packet) pktPtr, info.uids, info.states, Destination.PERSIST_SYNC);
-                synchronized (this) {
-                    makePacketSoftRef();
+                Lock lock = getStoreLock();
+                if (lock != null) {
+                    lock.lock();
+                }
+                try {
+                    if (destroyed) {
+                        return;
+                    }
+                    long start = (LatencyMetrics.ENABLED ? System.nanoTime() : 0L);
+                    pstore.storeMessage(destination, (Packet) pktPtr, info.uids, info.states, Destination.PERSIST_SYNC);
+                    if (LatencyMetrics.ENABLED) {
+                        recordStoreLatency(start);
+                    }
+                    synchronized (this) {
+                        makePacketSoftRef();
+                    }
+                    isStored = true;
+                } finally {
+                    if (lock != null) {
+                        lock.unlock();
+                    }
                 }
             }
         } catch (IOException ex) {
@@ -1727,7 +1836,7 @@ public class PacketReference implements Sized, Ordered {
             }
         }
         cmp.setStateIfLess(DELIVERED, DELIVERED);
-        if (cmp.isStored() && store) {
+        if (cmp.isStored() && store && !DeliveredStateCheckpoint.defer(this, storedid)) {
             pstore.updateInterestState(destination, msgid, storedid, PartitionedStore.INTEREST_STATE_DELIVERED, Destination.PERSIST_SYNC && sync, null, false);
         }
 
@@ -1742,6 +1851,30 @@ public class PacketReference implements Sized, Ordered {
         return false;
     }
 
+    /**
+     * Write the delivered state of an interest deferred by DeliveredStateCheckpoint, unless the interest was
+     * acknowledged in the meantime
+     *
+     * @return true if the state was written
+     */
+    boolean storeDelivered(ConsumerUID storedid) throws BrokerException {
+        if (destroyed || invalid) {
+            return false;
+        }
+        ConsumerMessagePair cmp = getAck(storedid);
+        if (cmp == null || !cmp.isStored()) {
+            return false;
+        }
+        // hold the pair so that a concurrent acknowledge is written after the delivered state
+        synchronized (cmp) {
+            if (cmp.compareStateLT(DELIVERED) || cmp.compareStateGT(CONSUMED)) {
+                return false;
+            }
+            pstore.updateInterestState(destination, msgid, storedid, PartitionedStore.INTEREST_STATE_DELIVERED, false, null, false);
+        }
+        return true;
+    }
+
     public int getRedeliverCount(ConsumerUID intid) {
         try {
             ConsumerMessagePair cmp = getAck(intid);
@@ -1814,7 +1947,7 @@ public class PacketReference implements Sized, Ordered {
             return;
         }
         if (cmp.setStateIfLess(DELIVERED, DELIVERED)) {
-            if (cmp.isStored() && destination != null) {
+            if (cmp.isStored() && destination != null && !DeliveredStateCheckpoint.defer(this, suid)) {
                 if (DEBUG) {
                     Globals.getLogger().log(Logger.INFO, "updateForJMSXDeliveryCount(" + suid + ", " + n + ", " + set + ") for ref@" + this.hashCode() + "="
                             + this + "[" + destination + "]: update delivered in store");
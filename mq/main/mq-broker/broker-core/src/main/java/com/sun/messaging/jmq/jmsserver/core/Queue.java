@@ -24,6 +24,7 @@ import com.sun.messaging.jmq.jmsserver.Globals;
 import com.sun.messaging.jmq.jmsserver.util.BrokerException;
 import com.sun.messaging.jmq.util.DestType;
 import com.sun.messaging.jmq.io.Status;
+import com.sun.messaging.jmq.io.SysMessageID;
 import com.sun.messaging.jmq.util.ClusterDeliveryPolicy;
 import com.sun.messaging.jmq.util.lists.*;
 import com.sun.messaging.jmq.util.log.*;
@@ -51,7 +52,18 @@ public class Queue extends Destination {
 
     protected transient Map<String, SubSet> views = null;
 
+    // per consumer views when message groups are enabled
+    private transient volatile MessageGroups messageGroups = null;
+    private transient Map<ConsumerUID, SubSet> groupViews = null;
+
+    // sorted snapshots of the messages kept for the next page of a browse, by the cursor of the page
+    private static final int PAGE_SNAPSHOT_MAX = 16;
+    private static final long PAGE_SNAPSHOT_TIMEOUT = 60 * 1000L;
+    private transient Map<String, PageSnapshot> pageSnapshots = null;
+
     private boolean localDeliveryPreferred = false;
+    private boolean adaptiveDelivery = false;
+    private boolean messageGroupsEnabled = false;
     private int maxActiveCount = 1;
     private int maxFailoverCount = 0;
     private int maxSize = (maxActiveCount < 0 || maxFailoverCount < 0) ? -1 : maxActiveCount + maxFailoverCount;
@@ -78,6 +90,8 @@ public class Queue extends Destination {
     public static final String MAX_ACTIVE = "max_active";
     public static final String MAX_FAILOVER = "max_failover";
     public static final String LOCAL_DELIVERY = "local_delivery_preferred";
+    public static final String ADAPTIVE_DELIVERY = "adaptive_delivery";
+    public static final String MESSAGE_GROUPS = "message_groups";
 
     public static final int DEFAULT_MAX_ACTIVE_CONSUMERS = -1;
 
@@ -94,6 +108,10 @@ public class Queue extends Destination {
 
     private static boolean QUEUE_LDP = Globals.getConfig().getBooleanProperty(Globals.IMQ + ".autocreate.queue.localDeliveryPreferred", false);
 
+    private static boolean QUEUE_ADAPTIVE = Globals.getConfig().getBooleanProperty(Globals.IMQ + ".autocreate.queue.adaptiveDelivery", false);
+
+    private static boolean QUEUE_MESSAGE_GROUPS = Globals.getConfig().getBooleanProperty(Globals.IMQ + ".autocreate.queue.messageGroups", false);
+
     @Override
     public void unload(boolean refs) {
         super.unload(refs);
@@ -142,6 +160,7 @@ public class Queue extends Destination {
         ht.put("maxNumBackupConsumers", String.valueOf(defaultMaxFailoverCount));
         ht.put("consumerFlowLimit", String.valueOf(QUEUE_DEFAULT_PREFETCH));
         ht.put("localDeliveryPreferred", String.valueOf(QUEUE_LDP));
+        ht.put("messageGroups", String.valueOf(QUEUE_MESSAGE_GROUPS));
         return ht;
     }
 
@@ -176,6 +195,13 @@ public class Queue extends Destination {
         }
         ht.put("deliveredCnt", String.valueOf(delivered.size()));
         ht.put("localDeliveryPreferred", String.valueOf(localDeliveryPreferred));
+        ht.put("adaptiveDelivery", String.valueOf(adaptiveDelivery));
+        ht.put("messageGroupsEnabled", String.valueOf(messageGroupsEnabled));
+        MessageGroups mg = messageGroups;
+        if (mg != null) {
+            ht.put("messageGroupCnt", String.valueOf(mg.getGroupCount()));
+            ht.put("assignedMessageGroupCnt", String.valueOf(mg.size()));
+        }
         ht.put("maxActiveCount", String.valueOf(maxActiveCount));
         ht.put("maxFailoverCount", String.valueOf(maxFailoverCount));
         ht.put("maxSize", String.valueOf(maxSize));
@@ -252,6 +278,8 @@ public class Queue extends Destination {
         if (autocreate) {
             maxPrefetch = QUEUE_DEFAULT_PREFETCH;
             localDeliveryPreferred = QUEUE_LDP;
+            adaptiveDelivery = !QUEUE_LDP && QUEUE_ADAPTIVE;
+            messageGroupsEnabled = QUEUE_MESSAGE_GROUPS;
         }
         pending = new NFLPriorityFifoSet<>(11, false);
         delivered = new HashSet();
@@ -260,6 +288,8 @@ public class Queue extends Destination {
         consumerPositions = new Vector();
         allConsumers = new LinkedHashMap();
         views = new WeakValueHashMap<>("Views");
+        initMessageGroups();
+        pageSnapshots = createPageSnapshots();
 
         destMessages.addEventListener(this, EventType.SET_CHANGED, this);
         setDefaultCounts(type, autocreate);
@@ -298,6 +328,8 @@ public class Queue extends Destination {
         m.put(MAX_ACTIVE, Integer.valueOf(maxActiveCount));
         m.put(MAX_FAILOVER, Integer.valueOf(maxFailoverCount));
         m.put(LOCAL_DELIVERY, Boolean.valueOf(localDeliveryPreferred));
+        m.put(ADAPTIVE_DELIVERY, Boolean.valueOf(adaptiveDelivery));
+        m.put(MESSAGE_GROUPS, Boolean.valueOf(messageGroupsEnabled));
     }
 
     @Override
@@ -321,7 +353,14 @@ public class Queue extends Destination {
         }
         if (m.get(LOCAL_DELIVERY) != null) {
             boolean local = ((Boolean) m.get(LOCAL_DELIVERY)).booleanValue();
-            setClusterDeliveryPolicy(local ? ClusterDeliveryPolicy.LOCAL_PREFERRED : ClusterDeliveryPolicy.DISTRIBUTED);
+            // brokers of older versions do not send ADAPTIVE_DELIVERY
+            boolean adaptive = Boolean.TRUE.equals(m.get(ADAPTIVE_DELIVERY));
+            setClusterDeliveryPolicy(
+                    local ? ClusterDeliveryPolicy.LOCAL_PREFERRED : (adaptive ? ClusterDeliveryPolicy.ADAPTIVE : ClusterDeliveryPolicy.DISTRIBUTED));
+        }
+        // brokers of older versions do not send MESSAGE_GROUPS
+        if (m.get(MESSAGE_GROUPS) != null) {
+            setMessageGroupsEnabled(((Boolean) m.get(MESSAGE_GROUPS)).booleanValue());
         }
         super.setDestinationProperties(m);
     }
@@ -368,6 +407,76 @@ public class Queue extends Destination {
         }
     }
 
+    private void initMessageGroups() {
+        if (messageGroupsEnabled) {
+            MessageGroups mg = new MessageGroups();
+            groupViews = new HashMap<>();
+            // publish before counting the messages already in the queue
+            // so that no message removed meanwhile is missed
+            messageGroups = mg;
+            List<PacketReference> refs = null;
+            synchronized (destMessages) {
+                refs = new ArrayList<>(destMessages.values());
+            }
+            for (PacketReference ref : refs) {
+                mg.messageAdded(ref.getSysMessageID(), MessageGroups.getGroupID(ref));
+                if (!destMessages.containsKey(ref.getSysMessageID())) {
+                    mg.messageRemoved(ref.getSysMessageID());
+                }
+            }
+        }
+    }
+
+    MessageGroups getMessageGroups() {
+        return messageGroups;
+    }
+
+    @Override
+    public boolean isMessageGroupsEnabled() {
+        return messageGroupsEnabled;
+    }
+
+    /**
+     * Enable or disable message groups (JMSXGroupID) on this queue, the consumers are moved to the views of the new
+     * setting
+     */
+    @Override
+    public void setMessageGroupsEnabled(boolean enabled) throws BrokerException {
+        Map<ConsumerUID, SubSet> oldViews = null;
+        synchronized (this) {
+            if (enabled == messageGroupsEnabled) {
+                return;
+            }
+            messageGroupsEnabled = enabled;
+            oldViews = groupViews;
+            if (enabled) {
+                initMessageGroups();
+            } else {
+                messageGroups = null;
+                groupViews = null;
+            }
+            MessageGroups mg = messageGroups;
+            synchronized (allConsumers) {
+                Iterator itr = allConsumers.values().iterator();
+                while (itr.hasNext()) {
+                    QueueInfo qi = (QueueInfo) itr.next();
+                    if (mg != null) {
+                        mg.setConsuming(qi.consumer.getConsumerUID(), qi.consumingMsgs);
+                    }
+                    makeActive(qi.consumer);
+                }
+            }
+        }
+        if (oldViews != null) {
+            synchronized (oldViews) {
+                for (SubSet set : oldViews.values()) {
+                    set.destroy();
+                }
+                oldViews.clear();
+            }
+        }
+    }
+
     /**
      * handles transient data when class is deserialized
      */
@@ -378,6 +487,8 @@ public class Queue extends Destination {
         consumerPositions = new Vector();
         allConsumers = new LinkedHashMap();
         views = new WeakValueHashMap<>("views");
+        initMessageGroups();
+        pageSnapshots = createPageSnapshots();
         destMessages.addEventListener(this, EventType.SET_CHANGED, null);
 
         if (maxActiveCount == 0 && maxFailoverCount == 0) {
@@ -501,13 +612,27 @@ public class Queue extends Destination {
                 pending.remove(me.getValue());
                 delivered.remove(me.getValue());
             }
+            MessageGroups mg = messageGroups;
+            if (mg != null) {
+                // the groups are only kept while they have messages
+                if (oldval != null) {
+                    mg.messageRemoved((SysMessageID) ((Map.Entry) oldval).getKey());
+                }
+                if (newval != null) {
+                    PacketReference ref = (PacketReference) ((Map.Entry) newval).getValue();
+                    mg.messageAdded(ref.getSysMessageID(), MessageGroups.getGroupID(ref));
+                }
+            }
         }
         super.eventOccured(type, r, target, oldval, newval, userdata);
     }
 
     @Override
     public int getClusterDeliveryPolicy() {
-        return (localDeliveryPreferred ? ClusterDeliveryPolicy.LOCAL_PREFERRED : ClusterDeliveryPolicy.DISTRIBUTED);
+        if (localDeliveryPreferred) {
+            return ClusterDeliveryPolicy.LOCAL_PREFERRED;
+        }
+        return (adaptiveDelivery ? ClusterDeliveryPolicy.ADAPTIVE : ClusterDeliveryPolicy.DISTRIBUTED);
     }
 
     public static int getDefaultMaxActiveConsumers() {
@@ -605,9 +730,16 @@ public class Queue extends Destination {
         boolean oldpolicy = localDeliveryPreferred;
         if (policy == ClusterDeliveryPolicy.LOCAL_PREFERRED) {
             localDeliveryPreferred = true;
+            adaptiveDelivery = false;
+        } else if (policy == ClusterDeliveryPolicy.ADAPTIVE) {
+            // consumers are selected as for DISTRIBUTED, the cluster
+            // router limits how far each remote consumer may run ahead
+            localDeliveryPreferred = false;
+            adaptiveDelivery = true;
         } else {
             assert policy == ClusterDeliveryPolicy.DISTRIBUTED;
             localDeliveryPreferred = false;
+            adaptiveDelivery = false;
         }
         try {
             consumerListChanged();
@@ -757,6 +889,10 @@ public class Queue extends Destination {
             } else {
                 qinfo.consumingMsgs = qinfo.active;
             }
+            MessageGroups mg = messageGroups;
+            if (mg != null) {
+                mg.setConsuming(consumer.getConsumerUID(), qinfo.consumingMsgs);
+            }
 
             // OK .. we now have a position assigned .. set up the
             // consumer to start pulling messages
@@ -799,6 +935,25 @@ public class Queue extends Destination {
         synchronized (this) {
             makeInactive();
         }
+        MessageGroups mg = null;
+        Map<ConsumerUID, SubSet> gviews = null;
+        synchronized (this) {
+            mg = messageGroups;
+            gviews = groupViews;
+        }
+        if (mg != null) {
+            SubSet set = null;
+            synchronized (gviews) {
+                set = gviews.remove(cid);
+            }
+            if (set != null) {
+                set.destroy();
+            }
+            // messages of the consumer's groups can now go to others
+            if (mg.setConsuming(cid, false)) {
+                pending.resetSubSets(null);
+            }
+        }
 
         if (c.local && !getIsLocal()) {
             Globals.getClusterBroadcast().unlockConsumer(cid, getDestinationUID(), c.position);
@@ -823,7 +978,25 @@ public class Queue extends Destination {
     }
 
     private void makeActive(Consumer consumer) {
-        if (consumer.getSelector() == null) {
+        MessageGroups mg = messageGroups;
+        Map<ConsumerUID, SubSet> gviews = groupViews;
+        if (mg != null && gviews != null) {
+            // each consumer needs its own view, a message of a group
+            // only matches the consumer the group is assigned to
+            SubSet set = null;
+            synchronized (gviews) {
+                set = gviews.get(consumer.getConsumerUID());
+                if (set == null) {
+                    SelectorFilter sf = null;
+                    if (consumer.getSelector() != null) {
+                        sf = new SelectorFilter(consumer.getSelectorStr(), consumer.getSelector());
+                    }
+                    set = pending.subSet(mg.newFilter(consumer.getConsumerUID(), sf));
+                    gviews.put(consumer.getConsumerUID(), set);
+                }
+            }
+            consumer.setParentList(pstore, set);
+        } else if (consumer.getSelector() == null) {
             if (pendingSubset == null) {
                 pendingSubset = pending.subSet((Filter) null);
             }
@@ -853,6 +1026,7 @@ public class Queue extends Destination {
             return;
         }
         boolean lookRemote = !localDeliveryPreferred || localActiveConsumerCnt == 0;
+        boolean groupsChanged = false;
         synchronized (allConsumers) {
             Iterator itr = allConsumers.values().iterator();
             while (itr.hasNext()) {
@@ -945,7 +1119,23 @@ public class Queue extends Destination {
                     }
                 }
             } // end iterator
+
+            MessageGroups mg = messageGroups;
+            if (mg != null) {
+                itr = allConsumers.values().iterator();
+                while (itr.hasNext()) {
+                    QueueInfo qi = (QueueInfo) itr.next();
+                    if (mg.setConsuming(qi.consumer.getConsumerUID(), qi.consumingMsgs)) {
+                        groupsChanged = true;
+                    }
+                }
+            }
         } // end sync
+        if (groupsChanged) {
+            // groups were released or there is a new consumer to
+            // assign groups to which nobody could take before
+            pending.resetSubSets(null);
+        }
     }
 
     private synchronized void updateActive(boolean increment) {
@@ -979,6 +1169,84 @@ public class Queue extends Destination {
         return getMaxPrefetch();
     }
 
+    /**
+     * Returns a page of the messages of the queue, delivered or not, in delivery order.
+     * <P>
+     * The first page sorts a snapshot of the messages after the cursor. The rest of the snapshot is kept for the page
+     * that follows, under the cursor of the last message of the page, so reading a whole queue sorts it once instead of
+     * scanning it for every page. Messages removed since the snapshot are skipped, and once the snapshot is read to its
+     * end the messages sent since are looked up with a scan of the destination. The filter is applied outside the lock.
+     */
+    @Override
+    public List<PacketReference> getPage(MessageCursor after, int limit, Filter f) {
+        if (!loaded) {
+            try {
+                load();
+            } catch (Exception ex) {
+            }
+        }
+        PageSnapshot snapshot = (after == null ? null : pageSnapshots.remove(after.toString()));
+        if (snapshot == null || snapshot.isExpired()) {
+            snapshot = new PageSnapshot(after);
+        }
+        List<PacketReference> page = new ArrayList<>();
+        PacketReference last = null;
+        while (page.size() < limit && snapshot.next < snapshot.refs.length) {
+            PacketReference ref = snapshot.refs[snapshot.next++];
+            last = ref;
+            if (destMessages.get(ref.getSysMessageID()) != ref) {
+                continue; // consumed since the snapshot
+            }
+            if (f == null || f.matches(ref)) {
+                page.add(ref);
+            }
+        }
+        if (page.size() < limit) {
+            // end of the snapshot, messages sent since then
+            MessageCursor from = (last == null ? after : MessageCursor.of(last));
+            page.addAll(super.getPage(from, limit - page.size(), f));
+        } else {
+            pageSnapshots.put(MessageCursor.of(page.get(page.size() - 1)).toString(), snapshot);
+        }
+        return page;
+    }
+
+    /**
+     * The messages of the queue after a cursor, sorted in delivery order, and the position of the next page in them
+     */
+    private final class PageSnapshot {
+        final PacketReference[] refs;
+        final long created = System.currentTimeMillis();
+        int next = 0;
+
+        PageSnapshot(MessageCursor after) {
+            List<PacketReference> l = null;
+            synchronized (destMessages) {
+                l = new ArrayList<>(destMessages.values());
+            }
+            if (after != null) {
+                l.removeIf(ref -> !after.isBefore(ref));
+            }
+            l.sort(MessageCursor.ORDER);
+            refs = l.toArray(new PacketReference[0]);
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() - created > PAGE_SNAPSHOT_TIMEOUT;
+        }
+    }
+
+    private static Map<String, PageSnapshot> createPageSnapshots() {
+        return Collections.synchronizedMap(new LinkedHashMap<String, PageSnapshot>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PageSnapshot> eldest) {
+                return size() > PAGE_SNAPSHOT_MAX || eldest.getValue().isExpired();
+            }
+        });
+    }
+
     @Override
     public void purgeDestination(boolean noerrnotfound) throws BrokerException {
         super.purgeDestination(noerrnotfound);
@@ -44,6 +44,8 @@ import com.sun.messaging.jmq.jmsserver.data.TransactionBroker;
 import com.sun.messaging.jmq.jmsserver.Globals;
 import com.sun.messaging.jmq.jmsserver.util.lists.*;
 import com.sun.messaging.jmq.jmsserver.service.Connection;
+import com.sun.messaging.jmq.jmsserver.service.LatencyMetrics;
+import com.sun.messaging.jmq.jmsserver.service.Service;
 import com.sun.messaging.jmq.jmsserver.service.imq.IMQConnection;
 import com.sun.messaging.jmq.jmsserver.resources.*;
 import com.sun.messaging.jmq.jmsserver.data.TransactionList;
@@ -62,6 +64,9 @@ public class SessionOp extends SessionOpSpi {
     private Map storeMap = new HashMap();
     private DestinationList DL = Globals.getDestinationList();
 
+    // service of the session's connection, for latency metrics
+    private Service service = null;
+
     private SessionOp(Session s) {
         super(s);
         deliveredMessages = Collections.synchronizedMap(new LinkedHashMap());
@@ -80,6 +85,8 @@ public class SessionOp extends SessionOpSpi {
         TransactionUID tuid = null;
         int hc = 0;
         boolean markConsumed = false;
+        long deliveredNanos = 0L;
+        boolean hasDeliveredNanos = false;
 
         ackEntry(SysMessageID id, ConsumerUID uid) {
             assert id != null;
@@ -150,6 +157,10 @@ public class SessionOp extends SessionOpSpi {
             id = ref.getSysMessageID();
             storedcid = storedUID;
             this.uid = uid;
+            if (LatencyMetrics.ENABLED) {
+                deliveredNanos = System.nanoTime();
+                hasDeliveredNanos = true;
+            }
         }
 
         public PacketReference acknowledged(boolean notify) throws BrokerException {
@@ -190,6 +201,9 @@ public class SessionOp extends SessionOpSpi {
                     throw new BrokerException(emsg, Status.CONFLICT);
                 }
                 rm = ref.acknowledged(uid, storedcid, !session.isUnsafeAck(uid), notify, tid, translist, remoteNotified, ackack);
+                if (hasDeliveredNanos) {
+                    recordLatency(ref, LatencyMetrics.DELIVER_TO_ACK, System.nanoTime() - deliveredNanos);
+                }
                 Consumer c = (Consumer) session.getConsumerOnSession(uid);
                 if (c != null) {
                     c.setLastAckTime(System.currentTimeMillis());
@@ -230,6 +244,23 @@ public class SessionOp extends SessionOpSpi {
         }
     }
 
+    private void recordLatency(PacketReference ref, int stage, long nanos) {
+        Destination d = ref.getDestination();
+        if (d != null) {
+            d.getLatencyMetrics().record(stage, nanos);
+        }
+        Service svc = service;
+        if (svc == null) {
+            Connection conn = Globals.getConnectionManager().getConnection(session.getConnectionUID());
+            if (conn == null) {
+                return;
+            }
+            svc = conn.getService();
+            service = svc;
+        }
+        LatencyMetrics.recordService(svc, stage, nanos);
+    }
+
     public ConsumerUID getStoredIDForDetatchedConsumer(ConsumerUID cuid) {
         return (ConsumerUID) storeMap.get(cuid);
     }
@@ -329,6 +360,10 @@ public class SessionOp extends SessionOpSpi {
         ConsumerUID cuid = consumer.getConsumerUID();
         ConsumerUID suid = consumer.getStoredConsumerUID();
 
+        if (ref.hasCreateNanos()) {
+            recordLatency(ref, LatencyMetrics.QUEUED, System.nanoTime() - ref.getCreateNanos());
+        }
+
         ackEntry entry = null;
         if (!consumer.getConsumerUID().isNoAck()) {
             entry = new ackEntry(ref, cuid, suid);
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.messaging.jmq.jmsserver.data;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.sun.messaging.jmq.io.SysMessageID;
+
+/**
+ * Maps a message consumed in a transaction to the transactions that acknowledged it, so that a consumed message can be
+ * resolved to its transaction without visiting every TransactionInformation in the TransactionList.
+ * <P>
+ * The index is a hint only: an entry may still be present after the acknowledgement it was created for has been
+ * rolled back or removed from the transaction, so a caller must verify every candidate against the
+ * TransactionInformation it resolves to.
+ */
+class ConsumedMessageIndex {
+
+    private final ConcurrentHashMap<SysMessageID, Set<TransactionUID>> index;
+
+    ConsumedMessageIndex(int initialCapacity) {
+        index = new ConcurrentHashMap<>(initialCapacity);
+    }
+
+    void add(SysMessageID sysid, TransactionUID tid) {
+        index.compute(sysid, (k, tids) -> {
+            Set<TransactionUID> s = tids;
+            if (s == null) {
+                s = ConcurrentHashMap.newKeySet(2);
+            }
+            s.add(tid);
+            return s;
+        });
+    }
+
+    void remove(SysMessageID sysid, TransactionUID tid) {
+        index.computeIfPresent(sysid, (k, tids) -> {
+            tids.remove(tid);
+            return (tids.isEmpty() ? null : tids);
+        });
+    }
+
+    /**
+     * @return the transactions that may have consumed the message, never null
+     */
+    Set<TransactionUID> get(SysMessageID sysid) {
+        Set<TransactionUID> tids = index.get(sysid);
+        if (tids == null) {
+            return Collections.emptySet();
+        }
+        return tids;
+    }
+
+    int size() {
+        return index.size();
+    }
+}
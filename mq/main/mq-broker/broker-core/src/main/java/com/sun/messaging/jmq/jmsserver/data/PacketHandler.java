@@ -33,6 +33,7 @@ import com.sun.messaging.jmq.jmsserver.Globals;
 import com.sun.messaging.jmq.jmsserver.plugin.spi.CoreLifecycleSpi;
 import com.sun.messaging.jmq.jmsserver.plugin.spi.DestinationSpi;
 import com.sun.messaging.jmq.jmsserver.GlobalProperties;
+import com.sun.messaging.jmq.jmsserver.cluster.api.ha.HAMonitorService;
 import com.sun.messaging.jmq.util.admin.MessageType;
 import com.sun.messaging.jmq.jmsserver.core.DestinationUID;
 import com.sun.messaging.jmq.jmsserver.core.DestinationList;
@@ -236,6 +237,9 @@ public abstract class PacketHandler {
         if (id != PacketType.CREATE_DESTINATION && id != PacketType.ADD_CONSUMER && id != PacketType.ADD_PRODUCER) {
             return;
         }
+        if (id == PacketType.ADD_CONSUMER) {
+            checkTakingoverDestination(msg, con, defhandler);
+        }
         ServiceRestriction[] srs = service.getServiceRestrictions();
         if (srs == null) {
             return;
@@ -289,6 +293,45 @@ public abstract class PacketHandler {
         }
     }
 
+    /**
+     * Park an ADD_CONSUMER request while the taken over messages of its destination are being loaded instead of blocking
+     * the packet thread. The client is told to retry once the destination is ready.
+     */
+    private void checkTakingoverDestination(Packet msg, IMQConnection con, ErrHandler defhandler) throws BrokerException, IOException, ClassNotFoundException {
+        HAMonitorService hamonitor = Globals.getHAMonitorService();
+        if (hamonitor == null || !hamonitor.inTakeover()) {
+            return;
+        }
+        if (con.getClientProtocolVersion() < Connection.MQ450_PROTOCOL) {
+            // does not retry on Status.RETRY
+            return;
+        }
+        Hashtable prop = msg.getProperties();
+        String dest = (String) prop.get("JMQDestination");
+        Integer dtype = (Integer) prop.get("JMQDestType");
+        if (dest == null || dtype == null || DestinationUID.isWildcard(dest)) {
+            return;
+        }
+        DestinationUID duid = DestinationUID.getUID(dest, DestType.isQueue(dtype.intValue()));
+        boolean sendack = msg.getSendAcknowledge();
+        int pktype = msg.getPacketType();
+        long consumerID = msg.getConsumerID();
+        boolean parked = hamonitor.notifyTakingoverDestinationReady(duid, (errmsg) -> {
+            if (con.getConnectionState() >= Connection.STATE_CLOSED) {
+                return;
+            }
+            if (errmsg == null) {
+                defhandler.sendError(con, sendack, pktype, consumerID, br.getKString(BrokerResources.I_TAKEOVER_DESTINATION_READY_RETRY, duid),
+                        Status.RETRY);
+            } else {
+                defhandler.sendError(con, sendack, pktype, consumerID, errmsg, Status.UNAVAILABLE);
+            }
+        });
+        if (parked) {
+            throw new ServiceRestrictionWaitException(br.getKString(BrokerResources.I_WAIT_FOR_TAKEOVER_DESTINATION, duid), Status.UNAVAILABLE);
+        }
+    }
+
     private boolean waitForMasterBrokerSync(IMQConnection con, Packet pkt, String retrymsg, String errmsg, ErrHandler defhandler) throws BrokerException {
 
         if (con.getClientProtocolVersion() < Connection.MQ450_PROTOCOL) {
@@ -341,6 +341,14 @@ class TransactionInformation {
         return l.contains(id);
     }
 
+    public synchronized boolean checkConsumedMessage(SysMessageID sysid) {
+        return consumed.containsKey(sysid);
+    }
+
+    public synchronized List<SysMessageID> getConsumedMessageIDs() {
+        return new ArrayList<SysMessageID>(consumed.keySet());
+    }
+
     public synchronized boolean isConsumedMessage(SysMessageID sysid, ConsumerUID id) {
         if (state == null) {
             return false;
@@ -28,7 +28,9 @@ import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -94,10 +96,13 @@ public class TransactionList implements ClusterListener, PartitionListener {
     TransactionReaper txnReaper = null;
     DetachedTransactionReaper detachedTxnReaper = null;
 
-    HashSet inuse_translist = null;
-    HashMap translist = null;
-    HashMap remoteTranslist = null;
-    HashMap xidTable = null; // Maps XIDs to UIDs
+    // lookups go to the concurrent maps directly, the lock below only
+    // makes updates that span several of them atomic
+    Set inuse_translist = null;
+    ConcurrentHashMap translist = null;
+    ConcurrentHashMap remoteTranslist = null;
+    ConcurrentHashMap xidTable = null; // Maps XIDs to UIDs
+    ConsumedMessageIndex consumedIndex = null;
 
     private ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
     private Lock shareLock = lock.readLock();
@@ -134,10 +139,11 @@ public class TransactionList implements ClusterListener, PartitionListener {
         if (Globals.getStore().getPartitionModeEnabled()) {
             logsuffix = " [" + pstore + "]";
         }
-        this.translist = new HashMap(1000);
-        this.remoteTranslist = new HashMap(1000);
-        this.xidTable = new HashMap(1000);
-        this.inuse_translist = new HashSet(1000);
+        this.translist = new ConcurrentHashMap(1000);
+        this.remoteTranslist = new ConcurrentHashMap(1000);
+        this.xidTable = new ConcurrentHashMap(1000);
+        this.inuse_translist = ConcurrentHashMap.newKeySet(1000);
+        this.consumedIndex = new ConsumedMessageIndex(1000);
         this.txnReaper = new TransactionReaper(this);
         this.detachedTxnReaper = new DetachedTransactionReaper(this);
 
@@ -390,6 +396,20 @@ public class TransactionList implements ClusterListener, PartitionListener {
         return remoteTranslist;
     }
 
+    private TransactionInformation getTransactionInformation(TransactionUID id) {
+        if (id == null) {
+            return null;
+        }
+        return (TransactionInformation) translist.get(id);
+    }
+
+    private RemoteTransactionInformation getRemoteTransactionInformation(TransactionUID id) {
+        if (id == null) {
+            return null;
+        }
+        return (RemoteTransactionInformation) remoteTranslist.get(id);
+    }
+
     protected boolean isLoadComplete() {
         return loadComplete;
     }
@@ -412,16 +432,8 @@ public class TransactionList implements ClusterListener, PartitionListener {
 
     public Hashtable getDebugState(TransactionUID id) {
 
-        TransactionInformation ti = null;
-        RemoteTransactionInformation rti = null;
-
-        shareLock.lock();
-        try {
-            ti = (TransactionInformation) translist.get(id);
-            rti = (RemoteTransactionInformation) remoteTranslist.get(id);
-        } finally {
-            shareLock.unlock();
-        }
+        TransactionInformation ti = getTransactionInformation(id);
+        RemoteTransactionInformation rti = getRemoteTransactionInformation(id);
 
         Hashtable ht = new Hashtable();
         if (ti == null && rti == null) {
@@ -447,12 +459,7 @@ public class TransactionList implements ClusterListener, PartitionListener {
                 continue;
             }
 
-            shareLock.lock();
-            try {
-                ti = (TransactionInformation) translist.get(tid);
-            } finally {
-                shareLock.unlock();
-            }
+            ti = getTransactionInformation(tid);
 
             if (ti == null) {
                 continue;
@@ -613,19 +620,14 @@ public class TransactionList implements ClusterListener, PartitionListener {
 
     public TransactionUID getTransaction(String id) {
 
-        shareLock.lock();
-        try {
-            Iterator itr = translist.values().iterator();
-            while (itr.hasNext()) {
-                TransactionInformation info = (TransactionInformation) itr.next();
-                TransactionState ts = info.getState();
-                String creator = ts.getCreator();
-                if (creator != null && creator.equals(id)) {
-                    return info.getTID();
-                }
+        Iterator itr = translist.values().iterator();
+        while (itr.hasNext()) {
+            TransactionInformation info = (TransactionInformation) itr.next();
+            TransactionState ts = info.getState();
+            String creator = ts.getCreator();
+            if (creator != null && creator.equals(id)) {
+                return info.getTID();
             }
-        } finally {
-            shareLock.unlock();
         }
         return null;
     }
@@ -692,14 +694,7 @@ public class TransactionList implements ClusterListener, PartitionListener {
 
     public boolean isXATransaction(TransactionUID id) throws BrokerException {
         TransactionState ts = null;
-        TransactionInformation ti = null;
-
-        shareLock.lock();
-        try {
-            ti = (TransactionInformation) translist.get(id);
-        } finally {
-            shareLock.unlock();
-        }
+        TransactionInformation ti = getTransactionInformation(id);
 
         if (ti != null) {
             ts = ti.getState();
@@ -724,14 +719,7 @@ public class TransactionList implements ClusterListener, PartitionListener {
 
     private void removeTransactionID(TransactionUID id, boolean noremove, boolean fromReaper, boolean persist) throws BrokerException {
         TransactionState ts = null;
-        TransactionInformation ti = null;
-
-        shareLock.lock();
-        try {
-            ti = (TransactionInformation) translist.get(id);
-        } finally {
-            shareLock.unlock();
-        }
+        TransactionInformation ti = getTransactionInformation(id);
 
         if (ti != null) {
             ts = ti.getState();
@@ -775,6 +763,13 @@ public class TransactionList implements ClusterListener, PartitionListener {
         } finally {
             exclusiveLock.unlock();
         }
+
+        if (ti != null) {
+            Iterator<SysMessageID> itr = ti.getConsumedMessageIDs().iterator();
+            while (itr.hasNext()) {
+                consumedIndex.remove(itr.next(), id);
+            }
+        }
     }
 
     public void removeRemoteTransactionAck(TransactionUID id) throws BrokerException {
@@ -831,14 +826,7 @@ public class TransactionList implements ClusterListener, PartitionListener {
 
     public void addMessage(TransactionUID id, SysMessageID sysid, boolean anyState) throws BrokerException {
 
-        TransactionInformation info = null;
-
-        shareLock.lock();
-        try {
-            info = (TransactionInformation) translist.get(id);
-        } finally {
-            shareLock.unlock();
-        }
+        TransactionInformation info = getTransactionInformation(id);
 
         if (info == null) {
             throw new BrokerException(Globals.getBrokerResources().getKString(br.X_RECEIVED_MSG_WITH_UNKNOWN_TID, sysid, id), Status.GONE);
@@ -867,14 +855,7 @@ public class TransactionList implements ClusterListener, PartitionListener {
     }
 
     public Hashtable getTransactionMap(TransactionUID tid, boolean ext) throws BrokerException {
-        TransactionInformation info = null;
-
-        shareLock.lock();
-        try {
-            info = (TransactionInformation) translist.get(tid);
-        } finally {
-            shareLock.unlock();
-        }
+        TransactionInformation info = getTransactionInformation(tid);
 
         if (info == null) {
             throw new BrokerException(
@@ -906,14 +887,7 @@ public class TransactionList implements ClusterListener, PartitionListener {
     }
 
     public boolean checkAcknowledgement(TransactionUID tid, SysMessageID sysid, ConsumerUID cuid) throws BrokerException {
-        TransactionInformation info = null;
-
-        shareLock.lock();
-        try {
-            info = (TransactionInformation) translist.get(tid);
-        } finally {
-            shareLock.unlock();
-        }
+        TransactionInformation info = getTransactionInformation(tid);
 
         if (info == null) {
             throw new BrokerException(br.getKString(br.X_TRAN_NOT_FOUND_FOR_ACK, tid, "[" + sysid + ", " + cuid + "]"), Status.GONE);
@@ -930,22 +904,15 @@ public class TransactionList implements ClusterListener, PartitionListener {
     }
 
     public TransactionUID getConsumedInTransaction(SysMessageID sysid, ConsumerUID id) {
-        TransactionInformation info = null;
-
-        shareLock.lock();
-        try {
-            Iterator itr = translist.values().iterator();
-            while (itr.hasNext()) {
-                info = (TransactionInformation) itr.next();
-                if (info == null) {
-                    continue;
-                }
-                if (info.isConsumedMessage(sysid, id)) {
-                    return info.getTID();
-                }
+        Iterator<TransactionUID> itr = consumedIndex.get(sysid).iterator();
+        while (itr.hasNext()) {
+            TransactionInformation info = getTransactionInformation(itr.next());
+            if (info == null) {
+                continue;
+            }
+            if (info.isConsumedMessage(sysid, id)) {
+                return info.getTID();
             }
-        } finally {
-            shareLock.unlock();
         }
         return null;
     }
@@ -973,14 +940,7 @@ public class TransactionList implements ClusterListener, PartitionListener {
     public boolean addAcknowledgement(TransactionUID tid, SysMessageID sysid, ConsumerUID intid, ConsumerUID sid, boolean anystate, boolean persist)
             throws BrokerException {
         boolean isXA = false;
-        TransactionInformation info = null;
-
-        shareLock.lock();
-        try {
-            info = (TransactionInformation) translist.get(tid);
-        } finally {
-            shareLock.unlock();
-        }
+        TransactionInformation info = getTransactionInformation(tid);
 
         if (info == null) {
             throw new BrokerException(
@@ -1008,6 +968,7 @@ public class TransactionList implements ClusterListener, PartitionListener {
 
             }
             info.addConsumedMessage(sysid, intid, sid);
+            consumedIndex.add(sysid, tid);
             isXA = info.getState().isXA();
         }
 
@@ -1031,14 +992,7 @@ public class TransactionList implements ClusterListener, PartitionListener {
     }
 
     public void setAckBrokerAddress(TransactionUID tid, SysMessageID sysid, ConsumerUID id, BrokerAddress addr) throws BrokerException {
-        TransactionInformation info = null;
-
-        shareLock.lock();
-        try {
-            info = (TransactionInformation) translist.get(tid);
-        } finally {
-            shareLock.unlock();
-        }
+        TransactionInformation info = getTransactionInformation(tid);
 
         if (info == null) {
             throw new BrokerException(Globals.getBrokerResources().getString(BrokerResources.X_INTERNAL_EXCEPTION,
@@ -1064,14 +1018,7 @@ public class TransactionList implements ClusterListener, PartitionListener {
     }
 
     public BrokerAddress getAckBrokerAddress(TransactionUID tid, SysMessageID sysid, ConsumerUID id) throws BrokerException {
-        TransactionInformation info = null;
-
-        shareLock.lock();
-        try {
-            info = (TransactionInformation) translist.get(tid);
-        } finally {
-            shareLock.unlock();
-        }
+        TransactionInformation info = getTransactionInformation(tid);
 
         if (info == null) {
             throw new BrokerException(Globals.getBrokerResources().getString(BrokerResources.X_INTERNAL_EXCEPTION,
@@ -1085,14 +1032,7 @@ public class TransactionList implements ClusterListener, PartitionListener {
     }
 
     public List retrieveSentMessages(TransactionUID id) {
-        TransactionInformation ti = null;
-
-        shareLock.lock();
-        try {
-            ti = (TransactionInformation) translist.get(id);
-        } finally {
-            shareLock.unlock();
-        }
+        TransactionInformation ti = getTransactionInformation(id);
 
         if (ti == null) {
             return null;
@@ -1101,14 +1041,7 @@ public class TransactionList implements ClusterListener, PartitionListener {
     }
 
     public int retrieveNSentMessages(TransactionUID id) {
-        TransactionInformation ti = null;
-
-        shareLock.lock();
-        try {
-            ti = (TransactionInformation) translist.get(id);
-        } finally {
-            shareLock.unlock();
-        }
+        TransactionInformation ti = getTransactionInformation(id);
 
         if (ti == null) {
             return 0;
@@ -1121,14 +1054,7 @@ public class TransactionList implements ClusterListener, PartitionListener {
     }
 
     public HashMap retrieveConsumedMessages(TransactionUID id, boolean inrollback) {
-        TransactionInformation ti = null;
-
-        shareLock.lock();
-        try {
-            ti = (TransactionInformation) translist.get(id);
-        } finally {
-            shareLock.unlock();
-        }
+        TransactionInformation ti = getTransactionInformation(id);
 
         if (ti == null) {
             return null;
@@ -1140,14 +1066,7 @@ public class TransactionList implements ClusterListener, PartitionListener {
     // the stored consumerUId is the ID we use to store ack info
     // for a durable
     public HashMap retrieveStoredConsumerUIDs(TransactionUID id) {
-        TransactionInformation ti = null;
-
-        shareLock.lock();
-        try {
-            ti = (TransactionInformation) translist.get(id);
-        } finally {
-            shareLock.unlock();
-        }
+        TransactionInformation ti = getTransactionInformation(id);
 
         if (ti == null) {
             return null;
@@ -1156,14 +1075,7 @@ public class TransactionList implements ClusterListener, PartitionListener {
     }
 
     public HashMap retrieveAckBrokerAddresses(TransactionUID id) {
-        TransactionInformation ti = null;
-
-        shareLock.lock();
-        try {
-            ti = (TransactionInformation) translist.get(id);
-        } finally {
-            shareLock.unlock();
-        }
+        TransactionInformation ti = getTransactionInformation(id);
 
         if (ti == null) {
             return null;
@@ -1172,14 +1084,7 @@ public class TransactionList implements ClusterListener, PartitionListener {
     }
 
     public int retrieveNConsumedMessages(TransactionUID id) {
-        TransactionInformation ti = null;
-
-        shareLock.lock();
-        try {
-            ti = (TransactionInformation) translist.get(id);
-        } finally {
-            shareLock.unlock();
-        }
+        TransactionInformation ti = getTransactionInformation(id);
 
         if (ti == null) {
             return 0;
@@ -1188,14 +1093,7 @@ public class TransactionList implements ClusterListener, PartitionListener {
     }
 
     public int retrieveNRemoteConsumedMessages(TransactionUID id) {
-        RemoteTransactionInformation ti = null;
-
-        shareLock.lock();
-        try {
-            ti = (RemoteTransactionInformation) remoteTranslist.get(id);
-        } finally {
-            shareLock.unlock();
-        }
+        RemoteTransactionInformation ti = getRemoteTransactionInformation(id);
 
         if (ti == null) {
             return 0;
@@ -1212,14 +1110,7 @@ public class TransactionList implements ClusterListener, PartitionListener {
         if (id == null) {
             return null;
         }
-        TransactionInformation ti = null;
-
-        shareLock.lock();
-        try {
-            ti = (TransactionInformation) translist.get(id);
-        } finally {
-            shareLock.unlock();
-        }
+        TransactionInformation ti = getTransactionInformation(id);
 
         if (ti == null) {
             return null;
@@ -1388,14 +1279,7 @@ public class TransactionList implements ClusterListener, PartitionListener {
     public TransactionState updateState(TransactionUID id, int state, int oldstate, boolean onephasePrepare, int failToState, boolean persist,
             TransactionWork txnwork) throws BrokerException {
 
-        TransactionInformation ti = null;
-
-        shareLock.lock();
-        try {
-            ti = (TransactionInformation) translist.get(id);
-        } finally {
-            shareLock.unlock();
-        }
+        TransactionInformation ti = getTransactionInformation(id);
 
         if (ti == null) {
             throw new UnknownTransactionException("Update state " + TransactionState.toString(state) + " for unknown transaction: " + id);
@@ -1474,12 +1358,10 @@ public class TransactionList implements ClusterListener, PartitionListener {
      */
     public TransactionUID xidToUID(JMQXid xid) {
 
-        shareLock.lock();
-        try {
-            return (TransactionUID) xidTable.get(xid);
-        } finally {
-            shareLock.unlock();
+        if (xid == null) {
+            return null;
         }
+        return (TransactionUID) xidTable.get(xid);
     }
 
     /**
@@ -1535,36 +1417,31 @@ public class TransactionList implements ClusterListener, PartitionListener {
         TransactionState ts = null;
         Vector v = new Vector();
 
-        // Note: list param is either translist or remoteTranslist so we'll
-        // need to get a share lock while iterating over it
-
-        shareLock.lock();
-        try {
-            Iterator<Map.Entry> iter = list.entrySet().iterator();
-            Map.Entry pair = null;
-            while (iter.hasNext()) {
-                pair = iter.next();
-                tid = (TransactionUID) pair.getKey();
-                TransactionInformation ti = (TransactionInformation) pair.getValue();
-                if (state < 0 && (type == TransactionInfo.TXN_NOFLAG || ti.getType() == type)) {
-                    if (ti.isProcessed()) {
-                        if (type == TransactionInfo.TXN_LOCAL || type == TransactionInfo.TXN_NOFLAG) {
-                            continue;
-                        }
-                        if (type == TransactionInfo.TXN_CLUSTER && ti.isClusterTransactionBrokersCompleted()) {
-                            continue;
-                        }
+        // Note: list param is either translist or remoteTranslist, both are
+        // concurrent maps so no lock is needed while iterating over it
+
+        Iterator<Map.Entry> iter = list.entrySet().iterator();
+        Map.Entry pair = null;
+        while (iter.hasNext()) {
+            pair = iter.next();
+            tid = (TransactionUID) pair.getKey();
+            TransactionInformation ti = (TransactionInformation) pair.getValue();
+            if (state < 0 && (type == TransactionInfo.TXN_NOFLAG || ti.getType() == type)) {
+                if (ti.isProcessed()) {
+                    if (type == TransactionInfo.TXN_LOCAL || type == TransactionInfo.TXN_NOFLAG) {
+                        continue;
                     }
-                    v.add(tid);
-                } else {
-                    ts = retrieveState(tid);
-                    if (ts != null && ts.getState() == state && (type == TransactionInfo.TXN_NOFLAG || ti.getType() == type)) {
-                        v.add(tid);
+                    if (type == TransactionInfo.TXN_CLUSTER && ti.isClusterTransactionBrokersCompleted()) {
+                        continue;
                     }
                 }
+                v.add(tid);
+            } else {
+                ts = retrieveState(tid);
+                if (ts != null && ts.getState() == state && (type == TransactionInfo.TXN_NOFLAG || ti.getType() == type)) {
+                    v.add(tid);
+                }
             }
-        } finally {
-            shareLock.unlock();
         }
 
         return v;
@@ -1575,14 +1452,7 @@ public class TransactionList implements ClusterListener, PartitionListener {
     }
 
     public void addOrphanAck(TransactionUID id, SysMessageID sysid, ConsumerUID sid, ConsumerUID cid) {
-        TransactionInformation ti = null;
-
-        shareLock.lock();
-        try {
-            ti = (TransactionInformation) translist.get(id);
-        } finally {
-            shareLock.unlock();
-        }
+        TransactionInformation ti = getTransactionInformation(id);
 
         if (ti != null) {
             ti.addOrphanAck(sysid, sid, cid);
@@ -1594,14 +1464,7 @@ public class TransactionList implements ClusterListener, PartitionListener {
     }
 
     public void removeOrphanAck(TransactionUID id, SysMessageID sysid, ConsumerUID sid, ConsumerUID cid) {
-        TransactionInformation ti = null;
-
-        shareLock.lock();
-        try {
-            ti = (TransactionInformation) translist.get(id);
-        } finally {
-            shareLock.unlock();
-        }
+        TransactionInformation ti = getTransactionInformation(id);
 
         if (ti != null) {
             ti.removeOrphanAck(sysid, sid, cid);
@@ -1609,14 +1472,7 @@ public class TransactionList implements ClusterListener, PartitionListener {
     }
 
     public Map getOrphanAck(TransactionUID id) {
-        TransactionInformation ti = null;
-
-        shareLock.lock();
-        try {
-            ti = (TransactionInformation) translist.get(id);
-        } finally {
-            shareLock.unlock();
-        }
+        TransactionInformation ti = getTransactionInformation(id);
 
         if (ti != null) {
             return ti.getOrphanAck();
@@ -1882,6 +1738,7 @@ public class TransactionList implements ClusterListener, PartitionListener {
                         }
                         if (openTransactions.get(tid) == Boolean.TRUE) {
                             ti.addConsumedMessage(sysid, cuid, scuid);
+                            consumedIndex.add(sysid, tid);
                         }
                         ti.addOrphanAck(sysid, scuid);
                     }
@@ -2072,14 +1929,7 @@ public class TransactionList implements ClusterListener, PartitionListener {
     public void logClusterTransaction(TransactionUID id, TransactionState ts, TransactionBroker[] brokers, boolean exist, boolean persist,
             ClusterTransaction clusterTxn) throws BrokerException {
         boolean added = false;
-        TransactionInformation ti = null;
-
-        shareLock.lock();
-        try {
-            ti = (TransactionInformation) translist.get(id);
-        } finally {
-            shareLock.unlock();
-        }
+        TransactionInformation ti = getTransactionInformation(id);
 
         if (ti == null) {
             if (exist) {
@@ -2121,14 +1971,7 @@ public class TransactionList implements ClusterListener, PartitionListener {
     public void completeClusterTransactionBrokerState(TransactionUID id, int expectedTranState, BrokerAddress broker, boolean persist) throws BrokerException {
         boolean changed = false;
         TransactionBroker b = null;
-        TransactionInformation ti = null;
-
-        shareLock.lock();
-        try {
-            ti = (TransactionInformation) translist.get(id);
-        } finally {
-            shareLock.unlock();
-        }
+        TransactionInformation ti = getTransactionInformation(id);
 
         if (ti == null) {
             throw new BrokerException(br.getKString(br.X_TXN_NOT_FOUND, id), Status.NOT_FOUND);
@@ -2156,14 +1999,7 @@ public class TransactionList implements ClusterListener, PartitionListener {
     public boolean updateRemoteTransactionState(TransactionUID id, int state, boolean recovery, boolean sync, boolean persist) throws BrokerException {
         boolean updated = false;
         TransactionState ts = null;
-        RemoteTransactionInformation ti = null;
-
-        shareLock.lock();
-        try {
-            ti = (RemoteTransactionInformation) remoteTranslist.get(id);
-        } finally {
-            shareLock.unlock();
-        }
+        RemoteTransactionInformation ti = getRemoteTransactionInformation(id);
 
         if (ti == null) {
             if (state == TransactionState.COMMITTED) {
@@ -2212,14 +2048,7 @@ public class TransactionList implements ClusterListener, PartitionListener {
     }
 
     public RemoteTransactionAckEntry[] getRecoveryRemoteTransactionAcks(TransactionUID id) throws BrokerException {
-        RemoteTransactionInformation ti = null;
-
-        shareLock.lock();
-        try {
-            ti = (RemoteTransactionInformation) remoteTranslist.get(id);
-        } finally {
-            shareLock.unlock();
-        }
+        RemoteTransactionInformation ti = getRemoteTransactionInformation(id);
 
         if (ti == null) {
             return null;
@@ -2334,14 +2163,7 @@ public class TransactionList implements ClusterListener, PartitionListener {
     }
 
     public RemoteTransactionAckEntry getRemoteTransactionAcks(TransactionUID id) throws BrokerException {
-        RemoteTransactionInformation rti = null;
-
-        shareLock.lock();
-        try {
-            rti = (RemoteTransactionInformation) remoteTranslist.get(id);
-        } finally {
-            shareLock.unlock();
-        }
+        RemoteTransactionInformation rti = getRemoteTransactionInformation(id);
 
         if (rti == null) {
             return null;
@@ -2351,14 +2173,7 @@ public class TransactionList implements ClusterListener, PartitionListener {
 
     public void removeRemoteTransactionID(TransactionUID id, boolean persist) throws BrokerException {
 
-        RemoteTransactionInformation rti = null;
-
-        shareLock.lock();
-        try {
-            rti = (RemoteTransactionInformation) remoteTranslist.get(id);
-        } finally {
-            shareLock.unlock();
-        }
+        RemoteTransactionInformation rti = getRemoteTransactionInformation(id);
 
         if (rti == null) {
             throw new BrokerException(Globals.getBrokerResources().getKString(BrokerResources.X_REMOTE_TXN_UNKOWN, id.toString()), Status.NOT_FOUND);
@@ -2389,14 +2204,7 @@ public class TransactionList implements ClusterListener, PartitionListener {
 
     public TransactionBroker[] getClusterTransactionBrokers(TransactionUID id) throws BrokerException {
 
-        TransactionInformation ti = null;
-
-        shareLock.lock();
-        try {
-            ti = (TransactionInformation) translist.get(id);
-        } finally {
-            shareLock.unlock();
-        }
+        TransactionInformation ti = getTransactionInformation(id);
 
         if (ti == null) {
             throw new BrokerException(br.getKString(br.X_TXN_NOT_FOUND, id), Status.NOT_FOUND);
@@ -2405,14 +2213,7 @@ public class TransactionList implements ClusterListener, PartitionListener {
     }
 
     public TransactionBroker getClusterTransactionBroker(TransactionUID id, BrokerAddress broker) {
-        TransactionInformation ti = null;
-
-        shareLock.lock();
-        try {
-            ti = (TransactionInformation) translist.get(id);
-        } finally {
-            shareLock.unlock();
-        }
+        TransactionInformation ti = getTransactionInformation(id);
 
         if (ti == null) {
             return null;
@@ -2421,14 +2222,7 @@ public class TransactionList implements ClusterListener, PartitionListener {
     }
 
     public boolean isClusterTransactionBroker(TransactionUID id, UID ssid) {
-        TransactionInformation ti = null;
-
-        shareLock.lock();
-        try {
-            ti = (TransactionInformation) translist.get(id);
-        } finally {
-            shareLock.unlock();
-        }
+        TransactionInformation ti = getTransactionInformation(id);
 
         if (ti == null) {
             return false;
@@ -2437,14 +2231,7 @@ public class TransactionList implements ClusterListener, PartitionListener {
     }
 
     public boolean hasRemoteBroker(TransactionUID id) {
-        TransactionInformation ti = null;
-
-        shareLock.lock();
-        try {
-            ti = (TransactionInformation) translist.get(id);
-        } finally {
-            shareLock.unlock();
-        }
+        TransactionInformation ti = getTransactionInformation(id);
 
         if (ti == null) {
             return false;
@@ -2454,14 +2241,7 @@ public class TransactionList implements ClusterListener, PartitionListener {
     }
 
     public TransactionState getRemoteTransactionState(TransactionUID id) {
-        RemoteTransactionInformation rti = null;
-
-        shareLock.lock();
-        try {
-            rti = (RemoteTransactionInformation) remoteTranslist.get(id);
-        } finally {
-            shareLock.unlock();
-        }
+        RemoteTransactionInformation rti = getRemoteTransactionInformation(id);
 
         if (rti != null) {
             return rti.getState();
@@ -2479,14 +2259,7 @@ public class TransactionList implements ClusterListener, PartitionListener {
     }
 
     public TransactionBroker getRemoteTransactionHomeBroker(TransactionUID id) {
-        RemoteTransactionInformation rti = null;
-
-        shareLock.lock();
-        try {
-            rti = (RemoteTransactionInformation) remoteTranslist.get(id);
-        } finally {
-            shareLock.unlock();
-        }
+        RemoteTransactionInformation rti = getRemoteTransactionInformation(id);
 
         if (rti == null) {
             return null;
@@ -2500,75 +2273,50 @@ public class TransactionList implements ClusterListener, PartitionListener {
         TransactionState ts = null;
         RemoteTransactionInformation rti = null;
 
-        shareLock.lock();
-        try {
-            Iterator itr = remoteTranslist.entrySet().iterator();
-            while (itr.hasNext()) {
-                Map.Entry entry = (Map.Entry) itr.next();
-                tid = (TransactionUID) entry.getKey();
-                rti = (RemoteTransactionInformation) entry.getValue();
-                if (rti == null) {
-                    continue;
-                }
-                ts = rti.getState();
-                if (ts != null && ts.getState() == TransactionState.PREPARED) {
-                    if (timeout == null || rti.isPendingTimeout(timeout.longValue())) {
-                        tids.add(tid);
-                    }
+        Iterator itr = remoteTranslist.entrySet().iterator();
+        while (itr.hasNext()) {
+            Map.Entry entry = (Map.Entry) itr.next();
+            tid = (TransactionUID) entry.getKey();
+            rti = (RemoteTransactionInformation) entry.getValue();
+            if (rti == null) {
+                continue;
+            }
+            ts = rti.getState();
+            if (ts != null && ts.getState() == TransactionState.PREPARED) {
+                if (timeout == null || rti.isPendingTimeout(timeout.longValue())) {
+                    tids.add(tid);
                 }
             }
-        } finally {
-            shareLock.unlock();
         }
 
         return tids;
     }
 
     public void pendingStartedForRemotePreparedTransaction(TransactionUID id) {
-        RemoteTransactionInformation rti = null;
-        TransactionState ts = null;
-
-        shareLock.lock();
-        try {
-            rti = (RemoteTransactionInformation) remoteTranslist.get(id);
-            if (rti != null) {
-                ts = rti.getState();
-                if (ts != null && ts.getState() == TransactionState.PREPARED) {
-                    rti.pendingStarted();
-                }
+        RemoteTransactionInformation rti = getRemoteTransactionInformation(id);
+        if (rti != null) {
+            TransactionState ts = rti.getState();
+            if (ts != null && ts.getState() == TransactionState.PREPARED) {
+                rti.pendingStarted();
             }
-            return;
-        } finally {
-            shareLock.unlock();
         }
     }
 
     public void removeAcknowledgement(TransactionUID tid, SysMessageID sysid, ConsumerUID id, boolean rerouted) throws BrokerException {
-        TransactionInformation ti = null;
-
-        shareLock.lock();
-        try {
-            ti = (TransactionInformation) translist.get(tid);
-        } finally {
-            shareLock.unlock();
-        }
+        TransactionInformation ti = getTransactionInformation(tid);
 
         if (ti == null) {
             throw new BrokerException(Globals.getBrokerResources().getString(BrokerResources.X_INTERNAL_EXCEPTION,
                     "Removing acknowledgement with Unknown Transaction ID " + tid));
         }
         ti.removeConsumedMessage(sysid, id, rerouted);
+        if (!ti.checkConsumedMessage(sysid)) {
+            consumedIndex.remove(sysid, tid);
+        }
     }
 
     public HashMap retrieveRemovedConsumedMessages(TransactionUID id, boolean rerouted) {
-        TransactionInformation ti = null;
-
-        shareLock.lock();
-        try {
-            ti = (TransactionInformation) translist.get(id);
-        } finally {
-            shareLock.unlock();
-        }
+        TransactionInformation ti = getTransactionInformation(id);
 
         if (ti == null) {
             return null;
@@ -2577,14 +2325,7 @@ public class TransactionList implements ClusterListener, PartitionListener {
     }
 
     public void reapTakeoverCommittedTransaction(TransactionUID id) {
-        TransactionInformation ti = null;
-
-        shareLock.lock();
-        try {
-            ti = (TransactionInformation) translist.get(id);
-        } finally {
-            shareLock.unlock();
-        }
+        TransactionInformation ti = getTransactionInformation(id);
 
         if (ti != null) {
             if (ti.getType() == TransactionInfo.TXN_CLUSTER) {
@@ -2596,14 +2337,7 @@ public class TransactionList implements ClusterListener, PartitionListener {
     }
 
     public boolean isLocalTransaction(TransactionUID id) {
-        TransactionInformation ti = null;
-
-        shareLock.lock();
-        try {
-            ti = (TransactionInformation) translist.get(id);
-        } finally {
-            shareLock.unlock();
-        }
+        TransactionInformation ti = getTransactionInformation(id);
 
         if (ti == null) {
             return false;
@@ -2612,25 +2346,12 @@ public class TransactionList implements ClusterListener, PartitionListener {
     }
 
     public String getTransactionAsString(TransactionUID id) {
-        shareLock.lock();
-        try {
-            TransactionInformation ti = (TransactionInformation) translist.get(id);
-            return (ti == null ? "null" : ti.toString());
-        } finally {
-            shareLock.unlock();
-        }
-
+        TransactionInformation ti = getTransactionInformation(id);
+        return (ti == null ? "null" : ti.toString());
     }
 
     public boolean isClusterTransaction(TransactionUID id) {
-        TransactionInformation ti = null;
-
-        shareLock.lock();
-        try {
-            ti = (TransactionInformation) translist.get(id);
-        } finally {
-            shareLock.unlock();
-        }
+        TransactionInformation ti = getTransactionInformation(id);
 
         if (ti == null) {
             return false;
@@ -2639,14 +2360,7 @@ public class TransactionList implements ClusterListener, PartitionListener {
     }
 
     public boolean isRemoteTransaction(TransactionUID id) {
-        RemoteTransactionInformation rti = null;
-
-        shareLock.lock();
-        try {
-            rti = (RemoteTransactionInformation) remoteTranslist.get(id);
-        } finally {
-            shareLock.unlock();
-        }
+        RemoteTransactionInformation rti = getRemoteTransactionInformation(id);
 
         if (rti == null) {
             return false;
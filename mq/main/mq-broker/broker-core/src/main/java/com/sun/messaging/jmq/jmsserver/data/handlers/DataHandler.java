@@ -34,6 +34,7 @@ import com.sun.messaging.jmq.jmsserver.persist.api.PartitionedStore;
 import com.sun.messaging.jmq.io.*;
 import com.sun.messaging.jmq.jmsserver.service.imq.IMQConnection;
 import com.sun.messaging.jmq.jmsserver.service.imq.IMQBasicConnection;
+import com.sun.messaging.jmq.jmsserver.service.LatencyMetrics;
 import com.sun.messaging.jmq.jmsserver.util.BrokerException;
 import com.sun.messaging.jmq.jmsserver.core.PacketReference;
 import com.sun.messaging.jmq.jmsserver.resources.BrokerResources;
@@ -70,6 +71,7 @@ public class DataHandler extends PacketHandler {
      */
     protected boolean handle(IMQConnection con, Packet msg, boolean isadmin) throws BrokerException {
 
+        long start = (LatencyMetrics.ENABLED ? System.nanoTime() : 0L);
         Hashtable props = null; // used for fault injection
         if (!isadmin && fi.FAULT_INJECTION) {
             msgProcessCnt++; // for fault injection
@@ -213,6 +215,12 @@ public class DataHandler extends PacketHandler {
 
                         Set s = routeMessage(con.getPartitionedStore(), transacted, ref, route, d, deliveryDelayReadyList);
 
+                        if (LatencyMetrics.ENABLED) {
+                            long elapsed = System.nanoTime() - start;
+                            d.getLatencyMetrics().record(LatencyMetrics.PRODUCE_TO_ROUTE, elapsed);
+                            LatencyMetrics.recordService(con.getService(), LatencyMetrics.PRODUCE_TO_ROUTE, elapsed);
+                        }
+
                         if (s != null && !s.isEmpty()) {
                             if (routedSet == null) {
                                 routedSet = new HashMap();
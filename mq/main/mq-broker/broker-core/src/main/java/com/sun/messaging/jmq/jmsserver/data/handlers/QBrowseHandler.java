@@ -33,6 +33,7 @@ import com.sun.messaging.jmq.jmsserver.core.Destination;
 import com.sun.messaging.jmq.jmsserver.core.DestinationList;
 import com.sun.messaging.jmq.jmsserver.util.BrokerException;
 import com.sun.messaging.jmq.jmsserver.core.SelectorFilter;
+import com.sun.messaging.jmq.jmsserver.core.MessageCursor;
 import com.sun.messaging.jmq.jmsserver.core.PacketReference;
 import com.sun.messaging.jmq.util.selector.*;
 import com.sun.messaging.jmq.util.lists.*;
@@ -55,59 +56,76 @@ public class QBrowseHandler extends PacketHandler {
 
     public ArrayList getQBrowseList(Destination d, String selectorstr) throws BrokerException, SelectorFormatException {
 
-        Collection msgs = null;
+        SelectorFilter f = null;
+        if (selectorstr != null) {
+            f = new SelectorFilter(selectorstr);
+        }
+        TransactionList[] tls = DL.getTransactionList(d.getPartitionedStore());
+        BrowseFilter bf = new BrowseFilter(f, tls[0]);
 
-        if (selectorstr == null) {
-            msgs = d.getAll((Filter) null).values();
-        } else {
-            SelectorFilter f = new SelectorFilter(selectorstr);
-            Map m = d.getAll(f);
-            msgs = m.values();
+        // sort the messages once, the filter may load a message
+        // so it is applied outside the destination lock
+        ArrayList<PacketReference> sorted = new ArrayList<>(d.getAll((Filter) null).values());
+        sorted.sort(MessageCursor.ORDER);
+
+        ArrayList returnmsgs = new ArrayList();
+        for (PacketReference p : sorted) {
+            if (bf.matches(p)) {
+                returnmsgs.add(p.getSysMessageID());
+            }
         }
+        return returnmsgs;
+    }
 
-        // sort the messages
-        ArrayList sorted = new ArrayList(msgs);
-        Collections.sort(sorted, new RefCompare());
+    /**
+     * @param cursor position of the last message of the previous page or null for the first page
+     * @param limit max number of messages returned
+     * @return the next browsable messages in delivery order
+     */
+    public List<PacketReference> getQBrowsePage(Destination d, String selectorstr, MessageCursor cursor, int limit)
+            throws BrokerException, SelectorFormatException {
 
+        SelectorFilter f = null;
+        if (selectorstr != null) {
+            f = new SelectorFilter(selectorstr);
+        }
         TransactionList[] tls = DL.getTransactionList(d.getPartitionedStore());
-        TransactionList tlist = tls[0];
-
-        // remove any expired messages or messages in open txn
-        Iterator itr = sorted.iterator();
-        while (itr.hasNext()) {
-            PacketReference p = (PacketReference) itr.next();
-            if (p.isExpired()) {
-                itr.remove();
-            }
-            if (!p.isDeliveryDue()) {
-                itr.remove();
+        return d.getPage(cursor, limit, new BrowseFilter(f, tls[0]));
+    }
+
+    /**
+     * Skips expired messages, messages not yet due, messages in an open transaction and messages in takeover
+     * processing, then evaluates the selector if any
+     */
+    static class BrowseFilter implements Filter {
+        private final Filter selector;
+        private final TransactionList tlist;
+
+        BrowseFilter(Filter selector, TransactionList tlist) {
+            this.selector = selector;
+            this.tlist = tlist;
+        }
+
+        @Override
+        public boolean matches(Object o) {
+            PacketReference p = (PacketReference) o;
+            if (p.isExpired() || !p.isDeliveryDue()) {
+                return false;
             }
             if (p.getTransactionID() != null) {
                 // look up txn
                 TransactionState ts = tlist.retrieveState(p.getTransactionID());
                 if (ts != null && ts.getState() != TransactionState.COMMITTED) {
-                    // open txn, remove
-                    itr.remove();
+                    // open txn
+                    return false;
                 }
             }
             // check in takeover processing
             if (p.checkLock(false) == null) {
-                itr.remove();
-            }
-        }
-
-        ArrayList returnmsgs = new ArrayList();
-
-        itr = sorted.iterator();
-        while (itr.hasNext()) {
-            PacketReference p = (PacketReference) itr.next();
-            if (p == null) {
-                continue;
+                return false;
             }
-            returnmsgs.add(p.getSysMessageID());
+            return selector == null || selector.matches(p);
         }
-        return returnmsgs;
-
     }
 
     /**
@@ -181,7 +199,23 @@ public class QBrowseHandler extends PacketHandler {
             } else {
                 logger.log(Logger.DEBUG, "QueueBrowser created: destination =  " + destination + "  selector = " + selectorstr);
 
-                ArrayList returnmsgs = getQBrowseList(d, selectorstr); // PART
+                // a client that reads the queue in pages sends a limit
+                // and the cursor returned with the previous page
+                Integer limit = (Integer) props.get("JMQBrowseLimit");
+                List returnmsgs = null;
+                if (limit != null && limit.intValue() > 0) {
+                    MessageCursor cursor = MessageCursor.parse((String) props.get("JMQBrowseCursor"));
+                    List<PacketReference> page = getQBrowsePage(d, selectorstr, cursor, limit.intValue());
+                    returnmsgs = new ArrayList(page.size());
+                    for (PacketReference p : page) {
+                        returnmsgs.add(p.getSysMessageID());
+                    }
+                    if (page.size() == limit.intValue()) {
+                        hash.put("JMQBrowseCursor", MessageCursor.of(page.get(page.size() - 1)).toString());
+                    }
+                } else {
+                    returnmsgs = getQBrowseList(d, selectorstr); // PART
+                }
 
                 if (DEBUG) {
                     logger.log(Logger.DEBUG, "QBrowse request: current queue size is " + returnmsgs.size());
@@ -206,6 +240,10 @@ public class QBrowseHandler extends PacketHandler {
             logger.logStack(Logger.ERROR, BrokerResources.E_INTERNAL_BROKER_ERROR, "Unable to verify destination -bad class", ex);
             reason = ex.getMessage();
             status = Status.ERROR;
+        } catch (IllegalArgumentException ex) {
+            // invalid cursor
+            reason = ex.getMessage();
+            status = Status.BAD_REQUEST;
         } catch (SelectorFormatException ex) {
             reason = ex.getMessage();
             status = Status.BAD_REQUEST;
@@ -25,16 +25,20 @@ import java.io.ObjectInputStream;
 import java.util.Vector;
 import java.util.Hashtable;
 import java.util.HashMap;
+import java.util.List;
 import java.nio.ByteBuffer;
 import com.sun.messaging.jmq.jmsserver.service.imq.IMQConnection;
 import com.sun.messaging.jmq.util.DestType;
 import com.sun.messaging.jmq.io.*;
 import com.sun.messaging.jmq.util.admin.MessageType;
+import com.sun.messaging.jmq.util.io.CompactBodyCodec;
 import com.sun.messaging.jmq.util.io.FilteringObjectInputStream;
 import com.sun.messaging.jmq.util.log.Logger;
 import com.sun.messaging.jmq.jmsserver.Globals;
 import com.sun.messaging.jmq.jmsserver.core.Destination;
+import com.sun.messaging.jmq.jmsserver.core.MessageCursor;
 import com.sun.messaging.jmq.jmsserver.core.PacketReference;
+import com.sun.messaging.jmq.jmsserver.persist.api.StoreCompression;
 
 public class GetMessagesHandler extends AdminCmdHandler {
 
@@ -67,6 +71,8 @@ public class GetMessagesHandler extends AdminCmdHandler {
         Long startIndex = (Long) cmd_props.get(MessageType.JMQ_START_MESSAGE_INDEX), maxNumMsgs = (Long) cmd_props.get(MessageType.JMQ_MAX_NUM_MSGS_RETRIEVED);
         Boolean getBody = (Boolean) cmd_props.get(MessageType.JMQ_GET_MSG_BODY);
         String msgID = (String) cmd_props.get(MessageType.JMQ_MESSAGE_ID);
+        String cursor = (String) cmd_props.get(MessageType.JMQ_MESSAGE_CURSOR);
+        Hashtable replyProps = null;
         HashMap destNameType = new HashMap();
 
         if ((destination == null) || (destType == null)) {
@@ -111,6 +117,21 @@ public class GetMessagesHandler extends AdminCmdHandler {
                             errMsg = "Could not locate message " + msgID + " in destination " + destination;
                             status = Status.NOT_FOUND;
                         }
+                    } else if (cursor != null) {
+                        int limit = (maxNumMsgs == null || maxNumMsgs.longValue() > Integer.MAX_VALUE ? Integer.MAX_VALUE : maxNumMsgs.intValue());
+                        List<PacketReference> page = d.getPage(MessageCursor.parse(cursor), limit, null);
+
+                        for (PacketReference pr : page) {
+                            HashMap h = constructMessageInfo(pr.getSysMessageID(), getBody.booleanValue(), destNameType);
+                            if (h == null) {
+                                continue;
+                            }
+                            v.add(h);
+                        }
+                        if (!page.isEmpty() && page.size() == limit) {
+                            replyProps = new Hashtable();
+                            replyProps.put(MessageType.JMQ_MESSAGE_CURSOR, MessageCursor.of(page.get(page.size() - 1)).toString());
+                        }
                     } else {
                         SysMessageID sysMsgIDs[] = d.getSysMessageIDs(startIndex, maxNumMsgs);
 
@@ -138,7 +159,7 @@ public class GetMessagesHandler extends AdminCmdHandler {
         Packet reply = new Packet(con.useDirectBuffers());
         reply.setPacketType(PacketType.OBJECT_MESSAGE);
 
-        setProperties(reply, MessageType.GET_MESSAGES_REPLY, status, errMsg);
+        setProperties(reply, MessageType.GET_MESSAGES_REPLY, status, errMsg, replyProps);
 
         setBodyObject(reply, v);
         parent.sendReply(con, cmd_msg, reply);
@@ -278,7 +299,14 @@ public class GetMessagesHandler extends AdminCmdHandler {
 
         byte[] msgBody = null;
         if (getBody) {
-            ByteBuffer bb = pr.getPacket().getMessageBodyByteBuffer();
+            ByteBuffer bb = null;
+            try {
+                // compressed by its producer or reloaded from a compressed store
+                bb = StoreCompression.uncompressedCopy(pr.getPacket()).getMessageBodyByteBuffer();
+            } catch (Exception e) {
+                errMsg = "Caught exception while decompressing message body";
+                logger.log(Logger.ERROR, errMsg, e);
+            }
             if (bb != null && bb.hasArray()) {
                 msgBody = bb.array();
             }
@@ -298,15 +326,22 @@ public class GetMessagesHandler extends AdminCmdHandler {
                 break;
 
             case PacketType.BYTES_MESSAGE:
-            case PacketType.STREAM_MESSAGE:
                 h.put("MessageBody", msgBody);
                 break;
 
+            case PacketType.STREAM_MESSAGE:
+                try {
+                    // admin clients read the serialized format
+                    h.put("MessageBody", CompactBodyCodec.toSerializedStream(msgBody));
+                } catch (Exception e) {
+                    errMsg = "Caught exception while creating stream message body";
+                    logger.log(Logger.ERROR, errMsg, e);
+                }
+                break;
+
             case PacketType.MAP_MESSAGE:
                 try {
-                    ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(msgBody);
-                    ObjectInputStream objectInputStream = new FilteringObjectInputStream(byteArrayInputStream);
-                    HashMap mapMsg = (HashMap) objectInputStream.readObject();
+                    HashMap mapMsg = new HashMap(CompactBodyCodec.readMap(msgBody));
 
                     h.put("MessageBody", mapMsg);
                 } catch (Exception e) {
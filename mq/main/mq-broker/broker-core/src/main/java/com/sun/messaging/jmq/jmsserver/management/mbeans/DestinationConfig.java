@@ -87,7 +87,10 @@ public class DestinationConfig extends MQMBeanReadWrite {
                     true, false),
 
             new MBeanAttributeInfo(DestinationAttributes.RELOAD_XML_SCHEMA_ON_FAILURE, Boolean.class.getName(),
-                    mbr.getString(mbr.I_DST_ATTR_RELOAD_XML_SCHEMA_ON_FAILURE), true, true, false) };
+                    mbr.getString(mbr.I_DST_ATTR_RELOAD_XML_SCHEMA_ON_FAILURE), true, true, false),
+
+            new MBeanAttributeInfo(DestinationAttributes.MESSAGE_GROUPS_ENABLED, Boolean.class.getName(),
+                    mbr.getString(mbr.I_DST_ATTR_MESSAGE_GROUPS_ENABLED), true, true, false) };
 
     private static MBeanParameterInfo[] pauseSignature = {
             new MBeanParameterInfo("pauseType", String.class.getName(), mbr.getString(mbr.I_DST_OP_PAUSE_PARAM_PAUSE_TYPE)) };
@@ -171,14 +174,12 @@ public class DestinationConfig extends MQMBeanReadWrite {
 
     public void setLocalDeliveryPreferred(Boolean b) throws MBeanException {
         try {
-            int cdp;
+            int current = d.getClusterDeliveryPolicy();
+            int cdp = DestinationUtil.toClusterDeliveryPolicy(b.booleanValue(), current);
 
-            if (b.booleanValue()) {
-                cdp = ClusterDeliveryPolicy.LOCAL_PREFERRED;
-            } else {
-                cdp = ClusterDeliveryPolicy.DISTRIBUTED;
+            if (cdp == current) {
+                return;
             }
-
             d.setClusterDeliveryPolicy(cdp);
             d.update();
         } catch (Exception e) {
@@ -364,6 +365,19 @@ public class DestinationConfig extends MQMBeanReadWrite {
         return (Boolean.valueOf(d.reloadXMLSchemaOnFailure()));
     }
 
+    public void setMessageGroupsEnabled(Boolean b) throws MBeanException {
+        try {
+            d.setMessageGroupsEnabled(b.booleanValue());
+            d.update();
+        } catch (Exception e) {
+            handleSetterException(DestinationAttributes.MESSAGE_GROUPS_ENABLED, e);
+        }
+    }
+
+    public Boolean getMessageGroupsEnabled() {
+        return (Boolean.valueOf(d.isMessageGroupsEnabled()));
+    }
+
     public void compact() throws MBeanException {
         try {
             if (!d.isPaused()) {
@@ -30,9 +30,11 @@ import javax.management.MBeanOperationInfo;
 import javax.management.MBeanNotificationInfo;
 import javax.management.MBeanParameterInfo;
 import javax.management.MBeanException;
+import javax.management.openmbean.CompositeData;
 
 import com.sun.messaging.jmq.util.DestMetricsCounters;
 import com.sun.messaging.jmq.jmsserver.management.util.DestinationUtil;
+import com.sun.messaging.jmq.jmsserver.management.util.LatencyUtil;
 import com.sun.messaging.jmq.jmsserver.core.Destination;
 import com.sun.messaging.jmq.jmsserver.core.PacketReference;
 import com.sun.messaging.jmq.jmsserver.plugin.spi.ProducerSpi;
@@ -74,6 +76,9 @@ public class DestinationMonitor extends MQMBeanReadOnly {
             new MBeanAttributeInfo(DestinationAttributes.DISK_UTILIZATION_RATIO, Integer.class.getName(), mbr.getString(mbr.I_DST_ATTR_DISK_UTILIZATION_RATIO),
                     true, false, false),
 
+            new MBeanAttributeInfo(DestinationAttributes.STORE_COMPRESSION_RATIO, Double.class.getName(), mbr.getString(mbr.I_DST_ATTR_STORE_COMPRESSION_RATIO),
+                    true, false, false),
+
             new MBeanAttributeInfo(DestinationAttributes.MSG_BYTES_IN, Long.class.getName(), mbr.getString(mbr.I_DST_ATTR_MSG_BYTES_IN), true, false, false),
 
             new MBeanAttributeInfo(DestinationAttributes.MSG_BYTES_OUT, Long.class.getName(), mbr.getString(mbr.I_DST_ATTR_MSG_BYTES_OUT), true, false, false),
@@ -191,7 +196,10 @@ public class DestinationMonitor extends MQMBeanReadOnly {
                     String[].class.getName(), MBeanOperationInfo.INFO),
 
             new MBeanOperationInfo(DestinationOperations.GET_NUM_WILDCARD_PRODUCERS, mbr.getString(mbr.I_DST_OP_GET_NUM_WILDCARD_PRODUCERS),
-                    numWildcardProducersSignature, Integer.class.getName(), MBeanOperationInfo.INFO) };
+                    numWildcardProducersSignature, Integer.class.getName(), MBeanOperationInfo.INFO),
+
+            new MBeanOperationInfo(DestinationOperations.GET_LATENCY_INFO, mbr.getString(mbr.I_DST_OP_GET_LATENCY_INFO), null,
+                    CompositeData[].class.getName(), MBeanOperationInfo.INFO) };
 
     private static String[] dstNotificationTypes = { DestinationNotification.DESTINATION_COMPACT, DestinationNotification.DESTINATION_PAUSE,
             DestinationNotification.DESTINATION_PURGE, DestinationNotification.DESTINATION_RESUME };
@@ -269,6 +277,11 @@ public class DestinationMonitor extends MQMBeanReadOnly {
         return (Integer.valueOf(dmc.getDiskUtilizationRatio()));
     }
 
+    public Double getStoreCompressionRatio() {
+        DestMetricsCounters dmc = d.getMetrics();
+        return (Double.valueOf(dmc.getStoreCompressionRatio()));
+    }
+
     public Long getMsgBytesIn() {
         DestMetricsCounters dmc = d.getMetrics();
         return (Long.valueOf(dmc.getMessageBytesIn()));
@@ -503,6 +516,18 @@ public class DestinationMonitor extends MQMBeanReadOnly {
         return (list);
     }
 
+    public CompositeData[] getLatencyInfo() throws MBeanException {
+        CompositeData cds[] = null;
+
+        try {
+            cds = LatencyUtil.getLatencyInfo(d.getLatencyMetrics());
+        } catch (Exception e) {
+            handleOperationException(DestinationOperations.GET_LATENCY_INFO, e);
+        }
+
+        return (cds);
+    }
+
     public String[] getProducerWildcards() throws MBeanException {
         ArrayList<String> al = new ArrayList<>();
         String[] list = null;
@@ -38,7 +38,9 @@ import com.sun.messaging.jms.management.server.*;
 import com.sun.messaging.jmq.jmsserver.Globals;
 import com.sun.messaging.jmq.jmsserver.core.Destination;
 import com.sun.messaging.jmq.jmsserver.core.PacketReference;
+import com.sun.messaging.jmq.jmsserver.persist.api.StoreCompression;
 import com.sun.messaging.jmq.jmsserver.util.BrokerException;
+import com.sun.messaging.jmq.util.io.CompactBodyCodec;
 import com.sun.messaging.jmq.util.io.FilteringObjectInputStream;
 
 public class MessageManagerMonitor extends MQMBeanReadOnly {
@@ -257,7 +259,14 @@ public class MessageManagerMonitor extends MQMBeanReadOnly {
         h.put("MessageBodyType", Integer.valueOf(packetType));
 
         if (getBody) {
-            ByteBuffer bb = pr.getPacket().getMessageBodyByteBuffer();
+            ByteBuffer bb = null;
+            try {
+                // compressed by its producer or reloaded from a compressed store
+                bb = StoreCompression.uncompressedCopy(pr.getPacket()).getMessageBodyByteBuffer();
+            } catch (Exception e) {
+                errMsg = "Caught exception while decompressing message body";
+                throw new BrokerException(errMsg);
+            }
             byte[] msgBody = null;
 
             if (bb.hasArray()) {
@@ -277,15 +286,22 @@ public class MessageManagerMonitor extends MQMBeanReadOnly {
                 break;
 
             case PacketType.BYTES_MESSAGE:
-            case PacketType.STREAM_MESSAGE:
                 h.put("MessageBody", msgBody);
                 break;
 
+            case PacketType.STREAM_MESSAGE:
+                try {
+                    // admin clients read the serialized format
+                    h.put("MessageBody", CompactBodyCodec.toSerializedStream(msgBody));
+                } catch (Exception e) {
+                    errMsg = "Caught exception while creating stream message body";
+                    throw new BrokerException(errMsg);
+                }
+                break;
+
             case PacketType.MAP_MESSAGE:
                 try {
-                    ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(msgBody);
-                    ObjectInputStream objectInputStream = new FilteringObjectInputStream(byteArrayInputStream);
-                    HashMap mapMsg = (HashMap) objectInputStream.readObject();
+                    HashMap mapMsg = new HashMap(CompactBodyCodec.readMap(msgBody));
 
                     h.put("MessageBody", mapMsg);
                 } catch (Exception e) {
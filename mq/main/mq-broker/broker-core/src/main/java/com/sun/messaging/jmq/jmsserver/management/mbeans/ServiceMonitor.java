@@ -29,6 +29,7 @@ import javax.management.MBeanAttributeInfo;
 import javax.management.MBeanOperationInfo;
 import javax.management.MBeanNotificationInfo;
 import javax.management.MBeanException;
+import javax.management.openmbean.CompositeData;
 
 import com.sun.messaging.jms.management.server.*;
 import com.sun.messaging.jmq.util.MetricCounters;
@@ -36,6 +37,9 @@ import com.sun.messaging.jmq.jmsserver.core.ConsumerUID;
 import com.sun.messaging.jmq.jmsserver.core.ProducerUID;
 import com.sun.messaging.jmq.jmsserver.management.util.ServiceUtil;
 import com.sun.messaging.jmq.jmsserver.management.util.ConnectionUtil;
+import com.sun.messaging.jmq.jmsserver.management.util.LatencyUtil;
+import com.sun.messaging.jmq.jmsserver.service.MetricManager;
+import com.sun.messaging.jmq.jmsserver.Globals;
 import com.sun.messaging.jmq.util.admin.ServiceInfo;
 import com.sun.messaging.jmq.util.admin.ConnectionInfo;
 
@@ -91,7 +95,10 @@ public class ServiceMonitor extends MQMBeanReadOnly {
                     MBeanOperationInfo.INFO),
 
             new MBeanOperationInfo(ServiceOperations.GET_PRODUCER_IDS, mbr.getString(mbr.I_SVC_OP_GET_PRODUCER_IDS), null, String[].class.getName(),
-                    MBeanOperationInfo.INFO) };
+                    MBeanOperationInfo.INFO),
+
+            new MBeanOperationInfo(ServiceOperations.GET_LATENCY_INFO, mbr.getString(mbr.I_SVC_OP_GET_LATENCY_INFO), null,
+                    CompositeData[].class.getName(), MBeanOperationInfo.INFO) };
 
     private static String[] cxnNotificationTypes = { ConnectionNotification.CONNECTION_OPEN, ConnectionNotification.CONNECTION_CLOSE,
             ConnectionNotification.CONNECTION_REJECT };
@@ -316,6 +323,23 @@ public class ServiceMonitor extends MQMBeanReadOnly {
         return (ids);
     }
 
+    public CompositeData[] getLatencyInfo() throws MBeanException {
+        CompositeData cds[] = null;
+        MetricManager mm = Globals.getMetricManager();
+
+        if (mm == null) {
+            return (null);
+        }
+
+        try {
+            cds = LatencyUtil.getLatencyInfo(mm.getLatencyMetrics(service));
+        } catch (Exception e) {
+            handleOperationException(ServiceOperations.GET_LATENCY_INFO, e);
+        }
+
+        return (cds);
+    }
+
     public ObjectName[] getConnections() throws MBeanException {
         List connections = ConnectionUtil.getConnectionInfoList(service);
 
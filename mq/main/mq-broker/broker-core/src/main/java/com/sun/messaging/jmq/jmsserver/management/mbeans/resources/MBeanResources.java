@@ -377,6 +377,11 @@ public class MBeanResources extends MQResourceBundle {
     final public static String I_LOG_ATTR_LOG_DIRECTORY = "MB1274";
     final public static String I_LOG_ATTR_LOG_FILE_NAME = "MB1275";
 
+    final public static String I_DST_OP_GET_LATENCY_INFO = "MB1276";
+    final public static String I_SVC_OP_GET_LATENCY_INFO = "MB1277";
+    final public static String I_DST_ATTR_MESSAGE_GROUPS_ENABLED = "MB1278";
+    final public static String I_DST_ATTR_STORE_COMPRESSION_RATIO = "MB1279";
+
     // 2000-2999 Warning Messages
     final public static String W_DUMMY = "MB2000";
 
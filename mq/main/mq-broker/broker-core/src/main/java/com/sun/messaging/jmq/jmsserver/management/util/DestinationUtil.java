@@ -184,6 +184,22 @@ public class DestinationUtil {
         }
     }
 
+    /**
+     * @param localDeliveryPreferred value of the LocalDeliveryPreferred attribute
+     * @param current the cluster delivery policy of the destination
+     * @return the cluster delivery policy for the attribute value, an ADAPTIVE policy is kept unless local delivery is
+     * preferred
+     */
+    public static int toClusterDeliveryPolicy(boolean localDeliveryPreferred, int current) {
+        if (localDeliveryPreferred) {
+            return (ClusterDeliveryPolicy.LOCAL_PREFERRED);
+        }
+        if (current == ClusterDeliveryPolicy.ADAPTIVE) {
+            return (current);
+        }
+        return (ClusterDeliveryPolicy.DISTRIBUTED);
+    }
+
     public static int toInternalDestLimitBehavior(String externalDestLimitBehavior) {
         if (externalDestLimitBehavior.equals(DestinationLimitBehavior.FLOW_CONTROL)) {
             return (DestLimitBehavior.FLOW_CONTROL);
@@ -583,14 +599,7 @@ public class DestinationUtil {
             }
 
             if (name.equals(DestinationAttributes.LOCAL_DELIVERY_PREFERRED)) {
-                int cdp;
-
-                if (((Boolean) value).booleanValue()) {
-                    cdp = ClusterDeliveryPolicy.LOCAL_PREFERRED;
-                } else {
-                    cdp = ClusterDeliveryPolicy.DISTRIBUTED;
-                }
-                info.setClusterDeliveryPolicy(cdp);
+                info.setClusterDeliveryPolicy(toClusterDeliveryPolicy(((Boolean) value).booleanValue(), ClusterDeliveryPolicy.UNKNOWN));
             }
 
             if (name.equals(DestinationAttributes.MAX_BYTES_PER_MSG)) {
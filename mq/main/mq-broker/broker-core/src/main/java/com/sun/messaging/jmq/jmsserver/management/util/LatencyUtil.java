@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.messaging.jmq.jmsserver.management.util;
+
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.OpenDataException;
+
+import com.sun.messaging.jms.management.server.LatencyInfo;
+
+import com.sun.messaging.jmq.jmsserver.service.LatencyMetrics;
+import com.sun.messaging.jmq.util.LatencyHistogram;
+
+public class LatencyUtil {
+    /*
+     * Latency Info item names for Monitor MBeans
+     */
+    private static final String[] latencyInfoItemNames = { LatencyInfo.STAGE, LatencyInfo.COUNT, LatencyInfo.MEAN, LatencyInfo.P50, LatencyInfo.P90,
+            LatencyInfo.P99, LatencyInfo.P999, LatencyInfo.MAX };
+
+    /*
+     * Latency Info item types for Monitor MBeans
+     */
+    private static final OpenType[] latencyInfoItemTypes = { SimpleType.STRING, // stage
+            SimpleType.LONG, // count
+            SimpleType.LONG, // mean
+            SimpleType.LONG, // p50
+            SimpleType.LONG, // p90
+            SimpleType.LONG, // p99
+            SimpleType.LONG, // p99.9
+            SimpleType.LONG // max
+    };
+
+    /*
+     * Latency Info composite type for Monitor MBeans
+     */
+    private static volatile CompositeType monitorCompType = null;
+
+    private static final LatencyHistogram EMPTY = new LatencyHistogram();
+
+    /**
+     * @return one CompositeData per stage, null if lm is null
+     */
+    public static CompositeData[] getLatencyInfo(LatencyMetrics lm) throws OpenDataException {
+        if (lm == null) {
+            return (null);
+        }
+
+        if (monitorCompType == null) {
+            monitorCompType = new CompositeType("LatencyMonitorInfo", "LatencyMonitorInfo", latencyInfoItemNames, latencyInfoItemNames,
+                    latencyInfoItemTypes);
+        }
+
+        CompositeData cds[] = new CompositeData[LatencyMetrics.getNumStages()];
+
+        for (int i = 0; i < cds.length; ++i) {
+            LatencyHistogram h = lm.getHistogram(i);
+            if (h == null) {
+                h = EMPTY;
+            }
+            Object[] values = { LatencyMetrics.getStageName(i), Long.valueOf(h.getCount()), Long.valueOf(h.getMean()),
+                    Long.valueOf(h.getValueAtPercentile(50.0)), Long.valueOf(h.getValueAtPercentile(90.0)), Long.valueOf(h.getValueAtPercentile(99.0)),
+                    Long.valueOf(h.getValueAtPercentile(99.9)), Long.valueOf(h.getMax()) };
+            cds[i] = new CompositeDataSupport(monitorCompType, latencyInfoItemNames, values);
+        }
+
+        return (cds);
+    }
+}
@@ -24,6 +24,7 @@ import com.sun.messaging.jmq.jmsserver.Globals;
 import com.sun.messaging.jmq.jmsserver.resources.*;
 import com.sun.messaging.jmq.util.log.*;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.lang.reflect.Constructor;
 import com.sun.messaging.jmq.jmsserver.management.agent.Agent;
 
@@ -176,6 +177,8 @@ public class MemoryManager implements DiagManager.Data {
     private static int THRESHOLD_DELTA = Globals.getConfig().getIntProperty(Globals.IMQ + ".memory.hysteresis", THRESHOLD_DELTA_DEFAULT);
 
     private HashMap callbacklist = new HashMap();
+
+    private List<MemoryLevelListener> levelListeners = new CopyOnWriteArrayList<>();
     private List pausedList = new ArrayList();
 
     private boolean active = false;
@@ -447,6 +450,19 @@ public class MemoryManager implements DiagManager.Data {
         }
     }
 
+    /**
+     * request notification of every change of the memory level
+     *
+     * @param l listener to notify
+     */
+    public void addMemoryLevelListener(MemoryLevelListener l) {
+        levelListeners.add(l);
+    }
+
+    public void removeMemoryLevelListener(MemoryLevelListener l) {
+        levelListeners.remove(l);
+    }
+
     public int getCurrentLevel() {
         synchronized (stateChangeLock) {
             return currentLevel;
@@ -809,6 +825,13 @@ public class MemoryManager implements DiagManager.Data {
                 if (agent != null) {
                     agent.notifyResourceStateChange(levelHandlers[oldLevel].localizedLevelName(), levelHandlers[newState].localizedLevelName(), null);
                 }
+                for (MemoryLevelListener l : levelListeners) {
+                    try {
+                        l.memoryLevelChanged(oldLevel, newState);
+                    } catch (Exception e) {
+                        logger.logStack(Logger.WARNING, "Memory level listener " + l + " failed", e);
+                    }
+                }
 
                 currentLevel = newState;
                 currentHandler = newHandler;
@@ -18,6 +18,7 @@
 package com.sun.messaging.jmq.jmsserver.persist.api;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Hashtable;
@@ -133,6 +134,22 @@ public interface PartitionedStore {
      */
     void removeMessage(DestinationUID dID, SysMessageID mID, boolean sync, boolean onRollback) throws IOException, BrokerException;
 
+    /**
+     * Remove the given messages of the specified destination, and their interest lists, from the persistent store in one
+     * operation. Other messages of the destination in the store, e.g. messages of a broker being taken over that are not
+     * loaded yet, are kept.
+     *
+     * @param destination the destination whose messages are to be removed
+     * @param ids the messages to remove
+     * @param sync if true, will synchronize data to disk
+     * @exception IOException if an error occurs while removing the messages
+     * @exception BrokerException if the destination is not found in the store
+     * @exception UnsupportedOperationException if the store can not remove these messages in one operation
+     */
+    default void removeMessages(Destination destination, Collection<SysMessageID> ids, boolean sync) throws IOException, BrokerException {
+        throw new UnsupportedOperationException(getClass().getName() + ":removeMessages");
+    }
+
     /**
      * Move the message from one destination to another. The message will be stored in the target destination with the
      * passed in consumers and their corresponding states. After the message is persisted successfully, the message in the
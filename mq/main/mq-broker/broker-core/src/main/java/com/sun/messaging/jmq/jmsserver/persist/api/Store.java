@@ -139,6 +139,21 @@ public abstract class Store implements JMSBridgeStore {
         }
     }
 
+    /**
+     * Constructor for an additional partition of a store that takes its settings from the primary partition, the
+     * configuration has been checked and logged by the primary already
+     *
+     * @param primary the primary partition
+     */
+    protected Store(Store primary) {
+        createStore = primary.createStore;
+        removeStore = primary.removeStore;
+        resetStore = primary.resetStore;
+        resetMessage = primary.resetMessage;
+        resetInterest = primary.resetInterest;
+        upgradeNoBackup = primary.upgradeNoBackup;
+    }
+
     public void checkPartitionMode() throws BrokerException {
         if (StoreManager.isConfiguredPartitionMode(false)) {
             throw new BrokerException(br.getKString(br.X_PARTITION_MODE_NOT_SUPPORTED, getStoreType()));
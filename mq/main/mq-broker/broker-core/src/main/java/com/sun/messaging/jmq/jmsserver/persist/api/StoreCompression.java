@@ -0,0 +1,319 @@
+/*
+ * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+
+package com.sun.messaging.jmq.jmsserver.persist.api;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import com.sun.messaging.jmq.io.Packet;
+import com.sun.messaging.jmq.io.PacketFlag;
+import com.sun.messaging.jmq.jmsserver.Globals;
+import com.sun.messaging.jmq.util.DestMetricsCounters;
+import com.sun.messaging.jmq.util.DiagDictionaryEntry;
+import com.sun.messaging.jmq.util.DiagManager;
+
+/**
+ * Compression of message bodies at rest.
+ * <P>
+ * When enabled, the stores call compress() before a message is written, and message bodies of at least
+ * imq.persist.store.compression.threshold bytes are written deflated. The compressed message uses the same format as
+ * client side compression (Z_FLAG set, JMS_SUN_UNCOMPRESSED_SIZE and JMS_SUN_COMPRESSED_SIZE properties), so a message
+ * loaded from the store is delivered as is to clients that read compressed bodies, and the client decompresses it when
+ * the body is first accessed. For other clients the body is decompressed by decompress() when it is delivered.
+ * <P>
+ * The message in memory is not changed, only the copy written to the store is compressed. After a broker restart the
+ * message is loaded from the store, so consumers then see the JMS_SUN_UNCOMPRESSED_SIZE and JMS_SUN_COMPRESSED_SIZE
+ * properties added here, as they do for a message compressed by its producer. decompress() does not remove them.
+ * <P>
+ * The imq.persist.store.compression properties are read once, when the class is loaded, so changing them takes effect
+ * at the next broker start.
+ */
+public final class StoreCompression implements DiagManager.Data {
+
+    public static final boolean ENABLED = Globals.getConfig().getBooleanProperty(Globals.IMQ + ".persist.store.compression.enabled", false);
+
+    static final int THRESHOLD = Globals.getConfig().getIntProperty(Globals.IMQ + ".persist.store.compression.threshold", 1024);
+
+    static final int LEVEL = Globals.getConfig().getIntProperty(Globals.IMQ + ".persist.store.compression.level", Deflater.BEST_SPEED);
+
+    static final String UNCOMPRESSED_SIZE = "JMS_SUN_UNCOMPRESSED_SIZE";
+    static final String COMPRESSED_SIZE = "JMS_SUN_COMPRESSED_SIZE";
+
+    private static final StoreCompression instance = new StoreCompression();
+
+    private static final ThreadLocal<Deflater> deflaters = ThreadLocal.withInitial(() -> new Deflater(LEVEL));
+
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+
+    // Diagnostic counters, summed over all destinations
+    private long messages = 0;
+    private long skipped = 0;
+    private long bytesIn = 0;
+    private long bytesOut = 0;
+
+    private List diagDictionary = null;
+
+    static {
+        if (ENABLED) {
+            DiagManager.register(instance);
+        }
+    }
+
+    private StoreCompression() {
+    }
+
+    /**
+     * @param dst the destination the message is stored in, used for the statistics
+     * @return a compressed copy of the message to write to the store, or the message itself if compression is disabled,
+     * the body is smaller than the threshold, already compressed or would not shrink
+     */
+    public static Packet compress(String dst, Packet message) throws IOException {
+        if (!ENABLED) {
+            return message;
+        }
+        return compress(dst, message, THRESHOLD);
+    }
+
+    static Packet compress(String dst, Packet message, int threshold) throws IOException {
+        if (message.getFlag(PacketFlag.Z_FLAG) || message.getMessageBodySize() < threshold) {
+            return message;
+        }
+        ByteBuffer bb = message.getMessageBodyByteBuffer();
+        if (bb == null) {
+            return message;
+        }
+        byte[] body = new byte[bb.remaining()];
+        bb.duplicate().get(body);
+
+        Stats s = instance.stats.computeIfAbsent(String.valueOf(dst), k -> new Stats());
+        Deflater def = deflaters.get();
+        def.reset();
+        def.setInput(body);
+        def.finish();
+        byte[] zipped = new byte[body.length];
+        int n = 0;
+        while (!def.finished() && n < zipped.length) {
+            n += def.deflate(zipped, n, zipped.length - n);
+        }
+        if (!def.finished()) {
+            s.skipped.increment();
+            return message;
+        }
+
+        Packet copy = new Packet(false);
+        copy.fill(message);
+        Hashtable props = null;
+        try {
+            props = copy.getProperties();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unable to read properties of " + message.getSysMessageID(), e);
+        }
+        props = (props == null ? new Hashtable() : new Hashtable(props));
+        props.put(UNCOMPRESSED_SIZE, Integer.valueOf(body.length));
+        props.put(COMPRESSED_SIZE, Integer.valueOf(n));
+        copy.setProperties(props);
+        copy.setMessageBody(Arrays.copyOf(zipped, n));
+        copy.setFlag(PacketFlag.Z_FLAG, true);
+
+        s.messages.increment();
+        s.bytesIn.add(body.length);
+        s.bytesOut.add(n);
+        return copy;
+    }
+
+    /**
+     * Replace a compressed message body with the uncompressed one, for a client that did not announce that it reads
+     * compressed bodies
+     */
+    public static void decompress(Packet message) throws IOException {
+        if (!message.getFlag(PacketFlag.Z_FLAG)) {
+            return;
+        }
+        Object size = null;
+        try {
+            Hashtable props = message.getProperties();
+            size = (props == null ? null : props.get(UNCOMPRESSED_SIZE));
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unable to read properties of " + message.getSysMessageID(), e);
+        }
+        if (!(size instanceof Integer)) {
+            throw new IOException("Missing " + UNCOMPRESSED_SIZE + " in compressed message " + message.getSysMessageID());
+        }
+        ByteBuffer bb = message.getMessageBodyByteBuffer();
+        byte[] zipped = new byte[bb == null ? 0 : bb.remaining()];
+        if (bb != null) {
+            bb.duplicate().get(zipped);
+        }
+        byte[] body = new byte[((Integer) size).intValue()];
+        Inflater inf = new Inflater();
+        try {
+            inf.setInput(zipped);
+            int n = 0;
+            while (!inf.finished() && n < body.length) {
+                int count = inf.inflate(body, n, body.length - n);
+                if (count == 0 && (inf.needsInput() || inf.needsDictionary())) {
+                    break;
+                }
+                n += count;
+            }
+            if (n != body.length) {
+                throw new IOException("Compressed message " + message.getSysMessageID() + " has " + n + " bytes, expected " + body.length);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Unable to decompress message " + message.getSysMessageID(), e);
+        } finally {
+            inf.end();
+        }
+        message.setMessageBody(body);
+        message.setFlag(PacketFlag.Z_FLAG, false);
+    }
+
+    /**
+     * @return the message itself if its body is not compressed, else a copy with the uncompressed body, for admin tools
+     * that read the body in the broker
+     */
+    public static Packet uncompressedCopy(Packet message) throws IOException {
+        if (!message.getFlag(PacketFlag.Z_FLAG)) {
+            return message;
+        }
+        Packet copy = new Packet(false);
+        copy.fill(message);
+        decompress(copy);
+        return copy;
+    }
+
+    /**
+     * @return the compression statistics of the destination or null if no message of the destination was compressed
+     */
+    public static Stats getStats(String dst) {
+        return instance.stats.get(dst);
+    }
+
+    /**
+     * Add the compression statistics of the destination to a metrics snapshot, nothing if compression is disabled
+     */
+    public static void getMetrics(String dst, DestMetricsCounters dmc) {
+        if (!ENABLED) {
+            return;
+        }
+        Stats s = getStats(dst);
+        if (s == null) {
+            dmc.setStoreCompression(0, 0, 0);
+        } else {
+            dmc.setStoreCompression(s.getMessages(), s.bytesIn.sum(), s.bytesOut.sum());
+        }
+    }
+
+    /**
+     * @return a line per destination with its compression statistics
+     */
+    public static String toDiagString() {
+        StringBuilder sb = new StringBuilder("StoreCompression[level=" + LEVEL + ", threshold=" + THRESHOLD + "]");
+        for (Map.Entry<String, Stats> e : instance.stats.entrySet()) {
+            sb.append("\n\t").append(e.getKey()).append(": ").append(e.getValue());
+        }
+        return sb.toString();
+    }
+
+    // Methods to support diagnostics
+    @Override
+    public synchronized List getDictionary() {
+        if (diagDictionary == null) {
+            diagDictionary = new ArrayList();
+
+            diagDictionary.add(new DiagDictionaryEntry("messages", DiagManager.COUNTER));
+            diagDictionary.add(new DiagDictionaryEntry("skipped", DiagManager.COUNTER));
+            diagDictionary.add(new DiagDictionaryEntry("bytesIn", DiagManager.COUNTER));
+            diagDictionary.add(new DiagDictionaryEntry("bytesOut", DiagManager.COUNTER));
+        }
+
+        return diagDictionary;
+    }
+
+    @Override
+    public synchronized void update() {
+        long m = 0, sk = 0, in = 0, out = 0;
+        for (Stats s : stats.values()) {
+            m += s.messages.sum();
+            sk += s.skipped.sum();
+            in += s.bytesIn.sum();
+            out += s.bytesOut.sum();
+        }
+        messages = m;
+        skipped = sk;
+        bytesIn = in;
+        bytesOut = out;
+    }
+
+    @Override
+    public String getPrefix() {
+        return "storezip";
+    }
+
+    @Override
+    public String getTitle() {
+        return "StoreCompression";
+    }
+
+    /**
+     * Compression statistics of a destination
+     */
+    public static final class Stats {
+        final LongAdder messages = new LongAdder();
+        final LongAdder skipped = new LongAdder();
+        final LongAdder bytesIn = new LongAdder();
+        final LongAdder bytesOut = new LongAdder();
+
+        /**
+         * @return the number of messages written compressed
+         */
+        public long getMessages() {
+            return messages.sum();
+        }
+
+        /**
+         * @return the number of messages over the threshold that were written uncompressed because they would not shrink
+         */
+        public long getSkipped() {
+            return skipped.sum();
+        }
+
+        /**
+         * @return compressed size / uncompressed size of the compressed messages, 1 if none
+         */
+        public double getRatio() {
+            long in = bytesIn.sum();
+            return (in == 0 ? 1.0 : (double) bytesOut.sum() / in);
+        }
+
+        @Override
+        public String toString() {
+            return "messages=" + messages + ", skipped=" + skipped + ", bytesIn=" + bytesIn + ", bytesOut=" + bytesOut + ", ratio="
+                    + String.format("%.3f", getRatio());
+        }
+    }
+}
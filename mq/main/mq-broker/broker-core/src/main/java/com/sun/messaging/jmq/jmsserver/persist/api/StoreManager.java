@@ -263,6 +263,9 @@ public class StoreManager {
                 store.close(cleanup);
             }
             store = null;
+            if (StoreCompression.ENABLED) {
+                Globals.getLogger().log(Logger.INFO, StoreCompression.toDiagString());
+            }
         }
 
         if (shareccStore != null) {
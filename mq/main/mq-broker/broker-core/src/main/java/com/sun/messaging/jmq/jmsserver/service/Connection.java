@@ -108,6 +108,16 @@ public abstract class Connection {
      */
     protected int clientProtocolVersion = -1;
 
+    /**
+     * Whether the client reads compact MapMessage and StreamMessage bodies. This is set when we process the HELLO message
+     */
+    protected boolean clientCompactBody = false;
+
+    /**
+     * Whether the client reads compressed message bodies. This is set when we process the HELLO message
+     */
+    protected boolean clientCompressedBody = false;
+
     /**
      * Additional data tagged onto the connection
      */
@@ -245,6 +255,22 @@ public abstract class Connection {
         return clientProtocolVersion;
     }
 
+    public void setClientCompactBody(boolean compact) {
+        clientCompactBody = compact;
+    }
+
+    public boolean getClientCompactBody() {
+        return clientCompactBody;
+    }
+
+    public void setClientCompressedBody(boolean compressed) {
+        clientCompressedBody = compressed;
+    }
+
+    public boolean getClientCompressedBody() {
+        return clientCompressedBody;
+    }
+
     /**
      * Gets the AccessController for this connection. An AccessController encapsulates a AuthenticationProtocolHandler and
      * AccessControlContext. The later is obtained as result of authentication.
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.messaging.jmq.jmsserver.service;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.sun.messaging.jmq.jmsserver.Globals;
+import com.sun.messaging.jmq.util.DestMetricsCounters;
+import com.sun.messaging.jmq.util.LatencyHistogram;
+
+/**
+ * Latency histograms of the stages a message goes through in the broker, kept per destination and per service.
+ * <P>
+ * Values are recorded in nanoseconds and kept in microseconds. A histogram is only allocated when the first value for
+ * its stage is recorded, so destinations without traffic cost nothing.
+ */
+public class LatencyMetrics {
+
+    public static final String ENABLED_PROPERTY = Globals.IMQ + ".metrics.latency.enabled";
+
+    /**
+     * Off by default: recording takes a System.nanoTime() call at every stage of every message
+     */
+    public static final boolean ENABLED = Globals.getConfig().getBooleanProperty(ENABLED_PROPERTY, false);
+
+    /**
+     * from the broker receiving a message from a producer until it is routed to the consumers
+     */
+    public static final int PRODUCE_TO_ROUTE = 0;
+
+    /**
+     * writing a persistent message to the store, including a sync to disk if the store does one
+     */
+    public static final int STORE_WRITE = 1;
+
+    /**
+     * syncing a destination's message store to disk
+     */
+    public static final int FSYNC = 2;
+
+    /**
+     * from the broker receiving a message until it is delivered to a consumer
+     */
+    public static final int QUEUED = 3;
+
+    /**
+     * from delivering a message to a consumer until the consumer acknowledges it
+     */
+    public static final int DELIVER_TO_ACK = 4;
+
+    private static final int STAGES = DestMetricsCounters.LATENCY_STAGES.length;
+
+    private static final LatencyHistogram EMPTY = new LatencyHistogram();
+
+    private final AtomicReferenceArray<LatencyHistogram> histograms = new AtomicReferenceArray<>(STAGES);
+
+    public static String getStageName(int stage) {
+        return DestMetricsCounters.LATENCY_STAGES[stage];
+    }
+
+    public static int getNumStages() {
+        return STAGES;
+    }
+
+    /**
+     * @param stage one of the stage constants
+     * @param nanos elapsed time in nanoseconds
+     */
+    public void record(int stage, long nanos) {
+        LatencyHistogram h = histograms.get(stage);
+        if (h == null) {
+            histograms.compareAndSet(stage, null, new LatencyHistogram());
+            h = histograms.get(stage);
+        }
+        h.recordValue(nanos / 1000L);
+    }
+
+    /**
+     * Record a value in the latency metrics of a service
+     *
+     * @param service the service, ignored if null
+     */
+    public static void recordService(Service service, int stage, long nanos) {
+        MetricManager mm = Globals.getMetricManager();
+        if (service == null || mm == null) {
+            return;
+        }
+        mm.getLatencyMetrics(service.getName()).record(stage, nanos);
+    }
+
+    /**
+     * @return the histogram in microseconds or null if nothing was recorded for the stage
+     */
+    public LatencyHistogram getHistogram(int stage) {
+        return histograms.get(stage);
+    }
+
+    public void reset() {
+        for (int i = 0; i < STAGES; i++) {
+            LatencyHistogram h = histograms.get(i);
+            if (h != null) {
+                h.reset();
+            }
+        }
+    }
+
+    /**
+     * Add the latency statistics of all stages to a metrics snapshot, nothing if latency metrics are disabled
+     */
+    public void getMetrics(DestMetricsCounters dmc) {
+        if (!ENABLED) {
+            return;
+        }
+        for (int i = 0; i < STAGES; i++) {
+            String stage = getStageName(i);
+            LatencyHistogram h = histograms.get(i);
+            if (h == null) {
+                h = EMPTY;
+            }
+            dmc.setLatency(stage, DestMetricsCounters.LATENCY_COUNT, h.getCount());
+            dmc.setLatency(stage, DestMetricsCounters.LATENCY_MEAN, h.getMean());
+            dmc.setLatency(stage, DestMetricsCounters.LATENCY_P50, h.getValueAtPercentile(50.0));
+            dmc.setLatency(stage, DestMetricsCounters.LATENCY_P90, h.getValueAtPercentile(90.0));
+            dmc.setLatency(stage, DestMetricsCounters.LATENCY_P99, h.getValueAtPercentile(99.0));
+            dmc.setLatency(stage, DestMetricsCounters.LATENCY_P999, h.getValueAtPercentile(99.9));
+            dmc.setLatency(stage, DestMetricsCounters.LATENCY_MAX, h.getMax());
+        }
+    }
+}
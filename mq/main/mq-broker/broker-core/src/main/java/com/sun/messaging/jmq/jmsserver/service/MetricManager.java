@@ -21,6 +21,7 @@
 package com.sun.messaging.jmq.jmsserver.service;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import com.sun.messaging.jmq.util.MetricCounters;
 import com.sun.messaging.jmq.util.MetricData;
 import com.sun.messaging.jmq.util.timer.MQTimer;
@@ -42,6 +43,9 @@ public class MetricManager implements ConfigListener {
     // Holds totals for that service's connections that have gone away.
     private Hashtable deadTotalsByService = new Hashtable();
 
+    // LatencyMetrics by service name
+    private Map<String, LatencyMetrics> latencyByService = new ConcurrentHashMap<>();
+
     private MetricTask task = null;
 
     private long lastSampleTime = 0;
@@ -78,6 +82,20 @@ public class MetricManager implements ConfigListener {
     public synchronized void reset() {
         deadTotalsByService.clear();
         lastSample = new MetricCounters();
+        for (LatencyMetrics lm : latencyByService.values()) {
+            lm.reset();
+        }
+    }
+
+    /**
+     * Get the latency histograms of the specified service
+     */
+    public LatencyMetrics getLatencyMetrics(String serviceName) {
+        LatencyMetrics lm = latencyByService.get(serviceName);
+        if (lm == null) {
+            lm = latencyByService.computeIfAbsent(serviceName, k -> new LatencyMetrics());
+        }
+        return lm;
     }
 
     public synchronized void setInterval(long interval) {
@@ -22,9 +22,12 @@ package com.sun.messaging.jmq.jmsserver.service.imq;
 
 import java.util.*;
 import java.io.*;
+import java.nio.ByteBuffer;
 import com.sun.messaging.jmq.io.*;
+import com.sun.messaging.jmq.util.io.CompactBodyCodec;
 import com.sun.messaging.jmq.util.log.*;
 import com.sun.messaging.jmq.jmsserver.Globals;
+import com.sun.messaging.jmq.jmsserver.persist.api.StoreCompression;
 import com.sun.messaging.jmq.jmsserver.data.handlers.*;
 import com.sun.messaging.jmq.jmsserver.core.ConsumerUID;
 
@@ -36,6 +39,12 @@ import com.sun.messaging.jmq.jmsserver.core.ConsumerUID;
 // LKS - XXX update to handle both protocol and packet version
 
 public class ConvertPacket {
+    /**
+     * Whether MapMessage and StreamMessage bodies may be written in the compact format: offered to clients in HELLO and
+     * used by direct mode. Brokers in the cluster that do not read the compact format get such bodies converted.
+     */
+    public static final boolean COMPACT_BODY = Globals.getConfig().getBooleanProperty(Globals.IMQ + ".message.compactBody.enabled", true);
+
     private Logger logger = Globals.getLogger();
 
     Hashtable consumer_to_interest = new Hashtable();
@@ -112,6 +121,40 @@ public class ConvertPacket {
         }
     }
 
+    /**
+     * Convert a compact MapMessage or StreamMessage body back to the serialized format, for a client that did not announce
+     * that it reads compact bodies
+     */
+    public static void convertCompactBody(Packet msg) {
+        int type = msg.getPacketType();
+        if ((type != PacketType.MAP_MESSAGE && type != PacketType.STREAM_MESSAGE) || msg.getFlag(PacketFlag.Z_FLAG)) {
+            return;
+        }
+        ByteBuffer bb = msg.getMessageBodyByteBuffer();
+        if (!CompactBodyCodec.isCompact(bb)) {
+            return;
+        }
+        byte[] body = new byte[bb.remaining()];
+        bb.duplicate().get(body);
+        try {
+            msg.setMessageBody(type == PacketType.MAP_MESSAGE ? CompactBodyCodec.toSerializedMap(body) : CompactBodyCodec.toSerializedStream(body));
+        } catch (IOException ex) {
+            Globals.getLogger().logStack(Logger.WARNING, "Unable to convert compact message body of " + msg.getSysMessageID(), ex);
+        }
+    }
+
+    /**
+     * Decompress a message body that was compressed in the store, for a client that did not announce that it reads
+     * compressed bodies
+     */
+    public static void decompressBody(Packet msg) {
+        try {
+            StoreCompression.decompress(msg);
+        } catch (IOException ex) {
+            Globals.getLogger().logStack(Logger.WARNING, "Unable to decompress message body of " + msg.getSysMessageID(), ex);
+        }
+    }
+
     static final int OLD_ACK_BLOCK_SIZE = 4 + SysMessageID.ID_SIZE;
 
     private void handleAcknowledgeRead(Packet msg) {
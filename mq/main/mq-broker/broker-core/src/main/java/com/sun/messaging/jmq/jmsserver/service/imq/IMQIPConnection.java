@@ -29,6 +29,7 @@ import java.io.*;
 
 import com.sun.messaging.jmq.jmsserver.service.*;
 import com.sun.messaging.jmq.jmsserver.Globals;
+import com.sun.messaging.jmq.jmsserver.persist.api.StoreCompression;
 import com.sun.messaging.jmq.util.log.Logger;
 import com.sun.messaging.jmq.jmsserver.resources.BrokerResources;
 
@@ -1371,6 +1372,12 @@ public class IMQIPConnection extends IMQBasicConnection implements Operation, Me
                     // LKS - XXX
                     convertPkt.handleWritePacket(waitingWritePkt);
                 }
+                if (!clientCompressedBody && StoreCompression.ENABLED) {
+                    ConvertPacket.decompressBody(waitingWritePkt);
+                }
+                if (!clientCompactBody) {
+                    ConvertPacket.convertCompactBody(waitingWritePkt);
+                }
 
                 // check for connection flow control
                 sent_count++;
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+
+package com.sun.messaging.jmq.jmsserver.service.imq.websocket;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import com.sun.messaging.jmq.util.log.Logger;
+import com.sun.messaging.jmq.jmsserver.Globals;
+
+/**
+ * Sends the delivery batches of the STOMP and JSON websocket connections of a service that are not sent before their
+ * max delay.
+ * <P>
+ * A connection adds its flush task once when it starts a batch. One thread runs the added tasks at most the max delay
+ * after they are added, in one sweep for all connections, and only while there are batches. So the wakeups do not grow
+ * with the number of connections and nothing is scheduled on the broker timer.
+ */
+public class BatchFlusher {
+
+    private static final Logger logger = Globals.getLogger();
+
+    private final long maxDelay;
+    private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private final ScheduledExecutorService executor;
+
+    /**
+     * @param name name of the flusher thread
+     * @param maxDelay the longest time in milliseconds a batch waits
+     */
+    public BatchFlusher(String name, long maxDelay) {
+        this.maxDelay = maxDelay;
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Run a flush task within the max delay, called once for each batch
+     */
+    public void add(Runnable flush) {
+        pending.add(flush);
+        if (scheduled.compareAndSet(false, true)) {
+            try {
+                executor.schedule(this::sweep, maxDelay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // shut down with the service, its connections are closed
+                pending.clear();
+            }
+        }
+    }
+
+    private void sweep() {
+        // a task added from now on schedules the next sweep
+        scheduled.set(false);
+        Runnable r = null;
+        while ((r = pending.poll()) != null) {
+            try {
+                r.run();
+            } catch (RuntimeException e) {
+                logger.logStack(Logger.WARNING, "Failed to flush websocket batch", e);
+            }
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+        pending.clear();
+    }
+}
@@ -77,6 +77,35 @@ public class MQWebSocketServiceApp extends WebSocketApplication {
         return service;
     }
 
+    /**
+     * @return true if deliveries to STOMP and JSON clients are coalesced into one websocket frame
+     */
+    public boolean isBatchEnabled() {
+        return service.isBatchEnabled();
+    }
+
+    /**
+     * @return the longest time in milliseconds a delivery waits in a batch
+     */
+    public int getBatchMaxDelay() {
+        return service.getBatchMaxDelay();
+    }
+
+    /**
+     * @return the size in bytes at which a batch is sent without waiting
+     */
+    public int getBatchMaxBytes() {
+        return service.getBatchMaxBytes();
+    }
+
+    /**
+     * @return the flusher that sends the batches of all connections of the service at their max delay, null if batches
+     * are sent right away
+     */
+    public BatchFlusher getBatchFlusher() {
+        return service.getBatchFlusher();
+    }
+
     public Class getBase64Class() {
         synchronized (java8checkLock) {
             return base64Class;
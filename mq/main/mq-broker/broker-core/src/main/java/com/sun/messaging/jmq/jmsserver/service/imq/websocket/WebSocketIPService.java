@@ -76,6 +76,11 @@ public class WebSocketIPService extends IMQService implements GrizzlyService, No
 
     private static final String ALLOWED_ORIGINS_PROP_SUFFIX = ".allowedOrigins";
     private static final String ALL_ORIGIN = "*";
+    private static final String BATCH_ENABLED_PROP_SUFFIX = ".batch.enabled";
+    private static final String BATCH_MAXDELAY_PROP_SUFFIX = ".batch.maxDelay";
+    private static final String BATCH_MAXBYTES_PROP_SUFFIX = ".batch.maxBytes";
+    private static final int DEFAULT_BATCH_MAXDELAY = 10; // millisecs
+    private static final int DEFAULT_BATCH_MAXBYTES = 64 * 1024;
 
     protected PacketRouter router = null;
     private WebSocketProtocolImpl protocol = null;
@@ -93,6 +98,12 @@ public class WebSocketIPService extends IMQService implements GrizzlyService, No
     private List<String> enabledSubServices = new ArrayList<>();
     private List<URL> allowedOrigins = null;
 
+    // coalesce deliveries to STOMP and JSON clients into one websocket frame
+    private boolean batchEnabled = false;
+    private int batchMaxDelay = DEFAULT_BATCH_MAXDELAY;
+    private int batchMaxBytes = DEFAULT_BATCH_MAXBYTES;
+    private BatchFlusher batchFlusher = null;
+
     private URL myurl = null;
 
     @SuppressWarnings("deprecation")
@@ -139,6 +150,18 @@ public class WebSocketIPService extends IMQService implements GrizzlyService, No
             throw new BrokerException(br.getKString(br.X_BAD_PROPERTY_VALUE, key + "=" + val));
         }
 
+        key = WebSocketIPServiceFactory.SERVICE_PREFIX + name;
+        batchEnabled = Globals.getConfig().getBooleanProperty(key + BATCH_ENABLED_PROP_SUFFIX, false);
+        if (batchEnabled) {
+            batchMaxDelay = Math.max(0, Globals.getConfig().getIntProperty(key + BATCH_MAXDELAY_PROP_SUFFIX, DEFAULT_BATCH_MAXDELAY));
+            batchMaxBytes = Math.max(1, Globals.getConfig().getIntProperty(key + BATCH_MAXBYTES_PROP_SUFFIX, DEFAULT_BATCH_MAXBYTES));
+            if (batchMaxDelay > 0) {
+                batchFlusher = new BatchFlusher("WebSocketBatchFlusher-" + name, batchMaxDelay);
+            }
+            String[] args = { name, String.valueOf(batchMaxDelay), String.valueOf(batchMaxBytes) };
+            logger.log(logger.INFO, br.getKString(br.I_WEBSOCKET_BATCH_ENABLED, args));
+        }
+
         key = WebSocketIPServiceFactory.SERVICE_PREFIX + name + ".protocoltype";
         String p = Globals.getConfig().getProperty(key);
         if (p == null || (!p.equals("ws") && !p.equals("wss"))) {
@@ -258,6 +281,22 @@ public class WebSocketIPService extends IMQService implements GrizzlyService, No
         return enabledSubServices.contains(subserv);
     }
 
+    protected boolean isBatchEnabled() {
+        return batchEnabled;
+    }
+
+    protected int getBatchMaxDelay() {
+        return batchMaxDelay;
+    }
+
+    protected int getBatchMaxBytes() {
+        return batchMaxBytes;
+    }
+
+    protected BatchFlusher getBatchFlusher() {
+        return batchFlusher;
+    }
+
     protected boolean useDedicatedWriter() {
         return dedicatedWriter;
     }
@@ -503,6 +542,9 @@ public class WebSocketIPService extends IMQService implements GrizzlyService, No
         } catch (Exception e) {
             logger.logStack(Logger.WARNING, br.getKString(br.W_CANT_STOP_SERVICE, name + "[" + getProtocol() + "]"), e);
         }
+        if (batchFlusher != null) {
+            batchFlusher.shutdown();
+        }
 
         synchronized (this) {
             setState(ServiceState.STOPPED);
@@ -28,7 +28,9 @@ import jakarta.json.JsonString;
 import jakarta.json.JsonReader;
 import jakarta.json.JsonObjectBuilder;
 import jakarta.json.JsonBuilderFactory;
+import org.glassfish.grizzly.GrizzlyFuture;
 import org.glassfish.grizzly.http.HttpRequestPacket;
+import org.glassfish.grizzly.websockets.DataFrame;
 import org.glassfish.grizzly.websockets.ProtocolHandler;
 import org.glassfish.grizzly.websockets.WebSocketListener;
 import com.sun.messaging.jmq.util.BASE64Encoder;
@@ -43,8 +45,13 @@ import com.sun.messaging.jmq.jmsserver.service.imq.websocket.stomp.StompFrameMes
  */
 public class JSONWebSocket extends STOMPWebSocket {
 
+    private static final JsonBuilderFactory jsonfactory = Json.createBuilderFactory(null);
+
     private Class base64Class = null;
 
+    // JSON array text of the current batch, guarded by closeLock
+    private StringBuilder batchText = null;
+
     public JSONWebSocket(MQWebSocketServiceApp app, ProtocolHandler protocolHandler, HttpRequestPacket request, WebSocketListener... listeners) {
         super(app, protocolHandler, request, listeners);
         base64Class = app.getBase64Class();
@@ -123,7 +130,47 @@ public class JSONWebSocket extends STOMPWebSocket {
 
     @Override
     protected void doSend(StompFrameMessage frame) throws Exception {
-        JsonBuilderFactory jsonfactory = Json.createBuilderFactory(null);
+        JsonObject jo = toJsonObject(frame);
+        send(jo.toString());
+        if (DEBUG) {
+            logger.log(logger.INFO, toString() + " SENT JsonObject[" + jo + "]");
+        }
+    }
+
+    /**
+     * A batch is sent as a JSON array of the frame objects
+     */
+    @Override
+    protected int appendToBatch(StompFrameMessage frame) throws Exception {
+        if (batchText == null) {
+            batchText = new StringBuilder(1024).append('[');
+        } else {
+            batchText.append(',');
+        }
+        batchText.append(toJsonObject(frame).toString());
+        return batchText.length();
+    }
+
+    @Override
+    protected GrizzlyFuture<DataFrame> sendBatch() throws Exception {
+        if (batchText == null) {
+            return null;
+        }
+        String text = batchText.append(']').toString();
+        batchText = null;
+        if (DEBUG) {
+            logger.log(logger.INFO, toString() + " SENT JsonArray[" + text + "]");
+        }
+        return send(text);
+    }
+
+    @Override
+    protected void discardBatch() {
+        batchText = null;
+        super.discardBatch();
+    }
+
+    private JsonObject toJsonObject(StompFrameMessage frame) throws Exception {
         JsonObjectBuilder obuilder = jsonfactory.createObjectBuilder();
         JsonObjectBuilder hbuilder = jsonfactory.createObjectBuilder();
         JsonObjectBuilder bbuilder = jsonfactory.createObjectBuilder();
@@ -174,10 +221,6 @@ public class JSONWebSocket extends STOMPWebSocket {
                 bbuilder.add(JsonMessage.BodySubKey.TEXT, "");
             }
         }
-        JsonObject jo = obuilder.add(JsonMessage.Key.BODY, bbuilder.build()).build();
-        send(jo.toString());
-        if (DEBUG) {
-            logger.log(logger.INFO, toString() + " SENT JsonObject[" + jo + "]");
-        }
+        return obuilder.add(JsonMessage.Key.BODY, bbuilder.build()).build();
     }
 }
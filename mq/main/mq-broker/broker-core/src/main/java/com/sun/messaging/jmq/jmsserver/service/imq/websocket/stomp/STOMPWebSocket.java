@@ -16,8 +16,11 @@
 
 package com.sun.messaging.jmq.jmsserver.service.imq.websocket.stomp;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.EmptyCompletionHandler;
+import org.glassfish.grizzly.GrizzlyFuture;
 import org.glassfish.grizzly.memory.Buffers;
 import org.glassfish.grizzly.http.HttpRequestPacket;
 import org.glassfish.grizzly.websockets.DataFrame;
@@ -31,6 +34,7 @@ import com.sun.messaging.jmq.jmsserver.Globals;
 import com.sun.messaging.jmq.jmsservice.JMSService;
 import com.sun.messaging.jmq.jmsserver.cluster.api.ClusterBroadcast;
 import com.sun.messaging.jmq.jmsserver.service.imq.JMSServiceImpl;
+import com.sun.messaging.jmq.jmsserver.service.imq.websocket.BatchFlusher;
 import com.sun.messaging.jmq.jmsserver.service.imq.websocket.MQWebSocket;
 import com.sun.messaging.jmq.jmsserver.service.imq.websocket.MQWebSocketServiceApp;
 import com.sun.messaging.jmq.jmsserver.util.BrokerException;
@@ -49,6 +53,23 @@ public class STOMPWebSocket extends MQWebSocket implements StompOutputHandler {
     private final FrameParseState parseState = new FrameParseState();
     private StompProtocolHandler stompProtocolHandler = null;
 
+    /*
+     * In batch mode MESSAGE frames are collected and sent in one websocket frame when the batch reaches the max size,
+     * when the service's batch flusher runs the flush task of the connection or before any other frame is sent. The
+     * flush task is added to the flusher once per batch.
+     * The batch is guarded by closeLock
+     */
+    private final boolean batchEnabled;
+    private final int batchMaxDelay;
+    private final int batchMaxBytes;
+    private final BatchFlusher batchFlusher;
+    private ByteArrayOutputStream batchOut = null;
+    private int batchCount = 0;
+    private boolean batchFlushQueued = false;
+    private final Runnable batchFlushTask = this::flushQueuedBatch;
+
+    private final StompFlowControl flowControl = new StompFlowControl();
+
     static class FrameParseState {
         public Buffer buf = null;
         public StompFrameMessageImpl message = null;
@@ -63,6 +84,10 @@ public class STOMPWebSocket extends MQWebSocket implements StompOutputHandler {
         super(app, protocolHandler, request, listeners);
         JMSService jmss = new JMSServiceImpl(app.getMQService(), Globals.getProtocol());
         stompProtocolHandler = new StompProtocolHandlerImpl(this, jmss);
+        batchEnabled = app.isBatchEnabled();
+        batchMaxDelay = app.getBatchMaxDelay();
+        batchMaxBytes = app.getBatchMaxBytes();
+        batchFlusher = app.getBatchFlusher();
     }
 
     @Override
@@ -81,6 +106,10 @@ public class STOMPWebSocket extends MQWebSocket implements StompOutputHandler {
             stompProtocolHandler.close(false);
         } finally {
             super.onClose(frame);
+            synchronized (closeLock) {
+                discardBatch();
+            }
+            flowControl.clear();
         }
     }
 
@@ -256,12 +285,30 @@ public class STOMPWebSocket extends MQWebSocket implements StompOutputHandler {
                     closechannel = true;
                 }
             }
+            boolean batch = (batchEnabled && msg.getCommand() == StompFrameMessage.Command.MESSAGE);
+            StompSubscriberSession sub = null;
+            if (batch && ctx instanceof StompSubscriberSession) {
+                sub = (StompSubscriberSession) ctx;
+            }
+            boolean pause = false;
             synchronized (closeLock) {
                 if (isClosed()) {
                     logger.log(logger.INFO, toString() + " closed");
                     return;
                 }
-                doSend(msg);
+                if (batch) {
+                    addToBatch(msg);
+                    if (sub != null && flowControl.isLimitReached(sub)) {
+                        flushBatch();
+                        pause = true;
+                    }
+                } else {
+                    flushBatch();
+                    doSend(msg);
+                }
+            }
+            if (pause) {
+                flowControl.pause(sub);
             }
         } catch (Exception e) {
             if (e instanceof java.nio.channels.ClosedChannelException || e.getCause() instanceof java.nio.channels.ClosedChannelException) {
@@ -279,15 +326,119 @@ public class STOMPWebSocket extends MQWebSocket implements StompOutputHandler {
     }
 
     protected void doSend(StompFrameMessage frame) throws Exception {
-        Buffer buf = (Buffer) frame.marshall(memManager).getWrapped();
-        byte[] bb = new byte[buf.remaining()]; // XXopt
-        buf.get(bb);
+        byte[] bb = frame.marshallToBytes();
         send(bb);
         if (DEBUG) {
             logger.log(logger.INFO, getClass().getSimpleName() + "@" + hashCode() + " SENT " + bb.length + " bytes");
         }
     }
 
+    /**
+     * Add a frame to the current batch, called with closeLock held
+     *
+     * @return size of the batch
+     */
+    protected int appendToBatch(StompFrameMessage frame) throws Exception {
+        if (batchOut == null) {
+            batchOut = new ByteArrayOutputStream(Math.min(batchMaxBytes, 8192));
+        }
+        batchOut.write(frame.marshallToBytes());
+        return batchOut.size();
+    }
+
+    /**
+     * Send the current batch as one websocket frame and start a new batch, called with closeLock held
+     */
+    protected GrizzlyFuture<DataFrame> sendBatch() throws Exception {
+        if (batchOut == null) {
+            return null;
+        }
+        byte[] bb = batchOut.toByteArray();
+        batchOut = null;
+        if (DEBUG) {
+            logger.log(logger.INFO, getClass().getSimpleName() + "@" + hashCode() + " SENT batch of " + bb.length + " bytes");
+        }
+        return send(bb);
+    }
+
+    /**
+     * Drop the current batch, called with closeLock held
+     */
+    protected void discardBatch() {
+        batchOut = null;
+        flowControl.release(batchCount);
+        batchCount = 0;
+    }
+
+    private void addToBatch(StompFrameMessage msg) throws Exception {
+        int size = appendToBatch(msg);
+        batchCount++;
+        flowControl.add(1);
+        if (size >= batchMaxBytes || batchMaxDelay == 0 || batchFlusher == null) {
+            flushBatch();
+            return;
+        }
+        if (!batchFlushQueued) {
+            batchFlushQueued = true;
+            batchFlusher.add(batchFlushTask);
+        }
+    }
+
+    /**
+     * Run by the batch flusher at the max delay of a batch
+     */
+    private void flushQueuedBatch() {
+        synchronized (closeLock) {
+            batchFlushQueued = false;
+            if (isClosed() || batchCount == 0) {
+                return;
+            }
+            try {
+                flushBatch();
+            } catch (Exception e) {
+                logger.logStack(logger.WARNING, e.getMessage() + "[" + this + "]", e);
+            }
+        }
+    }
+
+    /**
+     * Send the batch if there is one, called with closeLock held
+     */
+    private void flushBatch() throws Exception {
+        final int n = batchCount;
+        if (n == 0) {
+            return;
+        }
+        batchCount = 0;
+        GrizzlyFuture<DataFrame> f = null;
+        try {
+            f = sendBatch();
+        } finally {
+            if (f == null) {
+                flowControl.release(n);
+            }
+        }
+        if (f == null) {
+            return;
+        }
+        f.addCompletionHandler(new EmptyCompletionHandler<DataFrame>() {
+            @Override
+            public void completed(DataFrame result) {
+                flowControl.release(n);
+            }
+
+            @Override
+            public void failed(Throwable t) {
+                flowControl.release(n);
+            }
+
+            @Override
+            public void cancelled() {
+                flowControl.release(n);
+            }
+        });
+    }
+
     @Override
     public void sendToClient(StompFrameMessage msg) throws Exception {
         sendToClient(msg, null, null);
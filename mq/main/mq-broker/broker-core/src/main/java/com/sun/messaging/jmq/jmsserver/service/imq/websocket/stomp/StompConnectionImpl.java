@@ -17,9 +17,12 @@
 
 package com.sun.messaging.jmq.jmsserver.service.imq.websocket.stomp;
 
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.Collections;
+import java.util.function.Supplier;
 import com.sun.messaging.jmq.io.Packet;
 import com.sun.messaging.jmq.util.log.Logger;
 import com.sun.messaging.jmq.jmsservice.JMSService;
@@ -47,8 +50,9 @@ public class StompConnectionImpl implements StompConnection, ConnectionClosedLis
     private static final Logger logger = Globals.getLogger();
     private static final BrokerResources br = Globals.getBrokerResources();
 
-    private StompProtocolHandlerImpl sph = null;
+    private StompProtocolHandler sph = null;
     private JMSService jmsservice = null;
+    private Supplier<InetSocketAddress> remoteAddress = null;
     private String clientID = null;
     private Long connectionID = null;
 
@@ -63,8 +67,18 @@ public class StompConnectionImpl implements StompConnection, ConnectionClosedLis
     private boolean closing = false, closed = true;
 
     public StompConnectionImpl(StompProtocolHandlerImpl h) {
+        this(h, h.getJMSService(), () -> new InetSocketAddress(h.getRemoteAddress(), h.getRemotePort()));
+    }
+
+    /**
+     * A STOMP connection served directly by the broker for a protocol handler other than the WebSocket one
+     *
+     * @param remoteAddress supplies the remote address of the STOMP client, it may supply null if the address is not known
+     */
+    public StompConnectionImpl(StompProtocolHandler h, JMSService jmss, Supplier<InetSocketAddress> remoteAddress) {
         sph = h;
-        jmsservice = sph.getJMSService();
+        jmsservice = jmss;
+        this.remoteAddress = remoteAddress;
     }
 
     protected boolean getDEBUG() {
@@ -81,13 +95,32 @@ public class StompConnectionImpl implements StompConnection, ConnectionClosedLis
 
     protected synchronized String getIdForTemporaryDestination() throws Exception {
         checkConnection();
-        return sph.getRemoteAddress().getHostAddress() + (clientID == null ? "" : "/" + clientID) + "/" + connectionID + "/" + nextTempDestIndex++;
+        return getRemoteInetAddress().getHostAddress() + (clientID == null ? "" : "/" + clientID) + "/" + connectionID + "/" + nextTempDestIndex++;
     }
 
     protected synchronized void fillRemoteIPAndPort(Packet pkt) throws Exception {
         checkConnection();
-        pkt.setIP(sph.getRemoteAddress().getAddress());
-        pkt.setPort(sph.getRemotePort());
+        pkt.setIP(getRemoteInetAddress().getAddress());
+        pkt.setPort(getRemotePort());
+    }
+
+    /**
+     * @return the address of the STOMP client, the loopback address if it is not known
+     */
+    InetAddress getRemoteInetAddress() {
+        InetSocketAddress addr = remoteAddress.get();
+        if (addr == null || addr.getAddress() == null) {
+            return InetAddress.getLoopbackAddress();
+        }
+        return addr.getAddress();
+    }
+
+    /**
+     * @return the port of the STOMP client, 0 if it is not known
+     */
+    int getRemotePort() {
+        InetSocketAddress addr = remoteAddress.get();
+        return (addr == null ? 0 : addr.getPort());
     }
 
     /**
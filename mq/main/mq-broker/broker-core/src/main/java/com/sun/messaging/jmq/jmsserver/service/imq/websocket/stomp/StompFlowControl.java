@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+
+package com.sun.messaging.jmq.jmsserver.service.imq.websocket.stomp;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import com.sun.messaging.jmq.util.log.Logger;
+import com.sun.messaging.jmq.jmsserver.Globals;
+
+/**
+ * Backpressure for the subscribers of a STOMP websocket connection in batch mode.
+ * <P>
+ * Counts the MESSAGE frames that are batched or handed to the transport and not written yet. A subscriber whose flow
+ * limit is reached is paused, so its delivery thread returns instead of waiting, and is resumed when enough frames
+ * have been written.
+ */
+class StompFlowControl {
+
+    private static final Logger logger = Globals.getLogger();
+
+    private final AtomicInteger pending = new AtomicInteger(0);
+    private final Set<StompSubscriberSession> paused = ConcurrentHashMap.newKeySet();
+
+    void add(int n) {
+        pending.addAndGet(n);
+    }
+
+    int getPending() {
+        return pending.get();
+    }
+
+    boolean isPaused(StompSubscriberSession sub) {
+        return paused.contains(sub);
+    }
+
+    /**
+     * @return true if the pending frames reached the flow limit of the subscriber
+     */
+    boolean isLimitReached(StompSubscriberSession sub) {
+        int limit = sub.getFlowLimit();
+        return (limit > 0 && pending.get() >= limit);
+    }
+
+    /**
+     * Pause the subscriber until the pending frames drop below its flow limit
+     */
+    void pause(StompSubscriberSession sub) throws Exception {
+        sub.pauseDelivery();
+        paused.add(sub);
+        // the frames may have been written before the subscriber was added
+        if (!isLimitReached(sub)) {
+            resume(sub);
+        }
+    }
+
+    /**
+     * Called when frames are written or dropped, resumes the paused subscribers that are below their flow limit
+     */
+    void release(int n) {
+        pending.addAndGet(-n);
+        if (paused.isEmpty()) {
+            return;
+        }
+        for (StompSubscriberSession sub : paused) {
+            if (!isLimitReached(sub)) {
+                resume(sub);
+            }
+        }
+    }
+
+    private void resume(StompSubscriberSession sub) {
+        if (!paused.remove(sub)) {
+            return;
+        }
+        try {
+            sub.resumeDelivery();
+        } catch (Exception e) {
+            logger.logStack(logger.WARNING, "Unable to resume delivery to " + sub + ": " + e.getMessage(), e);
+        }
+    }
+
+    void clear() {
+        paused.clear();
+    }
+}
@@ -24,6 +24,7 @@ import java.util.Collections;
 import com.sun.messaging.jmq.io.Packet;
 import com.sun.messaging.jmq.io.JMSPacket;
 import com.sun.messaging.jmq.io.SysMessageID;
+import com.sun.messaging.jmq.jmsserver.core.DestinationList;
 import com.sun.messaging.jmq.jmsservice.JMSAck;
 import com.sun.messaging.jmq.jmsservice.Consumer;
 import com.sun.messaging.jmq.jmsservice.Destination;
@@ -49,6 +50,7 @@ public class StompSubscriberSession extends StompSessionImpl implements StompSub
     private String duraname = null;
     private String stompdest = null;
     private long consumerId = 0L;
+    private int flowLimit = -1;
 
     private List<SysMessageID> unackedMessages = Collections.synchronizedList(new ArrayList<SysMessageID>());
 
@@ -113,12 +115,52 @@ public class StompSubscriberSession extends StompSessionImpl implements StompSub
         reply = jmsservice.startConnection(connectionId);
         reply = jmsservice.addConsumer(connectionId, sessionId, dest, selector, duraname, (duraname != null), false, false, stompconn.getClientID(), nolocal);
         consumerId = reply.getJMQConsumerID();
+        flowLimit = getFlowLimit(dest);
         if (getDEBUG()) {
             logger.log(logger.INFO, "Created " + this);
         }
         return this;
     }
 
+    /**
+     * @return the consumer flow limit of the destination, -1 if unlimited
+     */
+    private static int getFlowLimit(Destination dest) {
+        try {
+            com.sun.messaging.jmq.jmsserver.core.Destination[] ds = DestinationList.findDestination(null, dest.getName(),
+                    dest.getType() == Destination.Type.QUEUE);
+            if (ds != null && ds[0] != null) {
+                return ds[0].getMaxPrefetch();
+            }
+        } catch (Exception e) {
+            logger.log(logger.DEBUG, "Unable to get flow limit of " + dest + ": " + e);
+        }
+        return -1;
+    }
+
+    /**
+     * @return number of messages that may be delivered and not yet written to the client, -1 if unlimited
+     */
+    int getFlowLimit() {
+        return flowLimit;
+    }
+
+    /**
+     * Stop delivery to this subscriber without waiting for the delivery in progress
+     */
+    void pauseDelivery() throws Exception {
+        jmsservice.stopSession(connectionId, sessionId, false);
+    }
+
+    /**
+     * Restart delivery to this subscriber after pauseDelivery, unless it is closing
+     */
+    void resumeDelivery() throws Exception {
+        if (!isClosing()) {
+            jmsservice.startSession(connectionId, sessionId);
+        }
+    }
+
     @Override
     public void startDelivery() throws Exception {
         jmsservice.setConsumerAsync(connectionId, sessionId, consumerId, this);
@@ -192,11 +234,11 @@ public class StompSubscriberSession extends StompSessionImpl implements StompSub
                 logger.log(logger.INFO, " SEND message " + msg + " for " + toString());
             }
             if (ackMode != SessionAckMode.CLIENT_ACKNOWLEDGE) {
-                out.sendToClient(msg, stompconn.getProtocolHandler(), null);
+                out.sendToClient(msg, stompconn.getProtocolHandler(), this);
                 return new Ack(msgpkt.getPacket(), MessageAckType.ACKNOWLEDGE);
             } else {
                 unackedMessages.add(msgpkt.getPacket().getSysMessageID());
-                out.sendToClient(msg, stompconn.getProtocolHandler(), null);
+                out.sendToClient(msg, stompconn.getProtocolHandler(), this);
             }
 
         } catch (Exception e) {
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+
+package com.sun.messaging.jmq.jmsserver.cluster.api.ha;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.jupiter.api.Test;
+
+class TakingoverTrackerTest {
+
+    private final TakingoverTracker tracker = new TakingoverTracker("broker1", Thread.currentThread());
+
+    @Test
+    void testWaiterRunsWhenItsDestinationIsReady() {
+        tracker.setDestinationsPending(Arrays.asList("q:Q1", "q:Q2"));
+        AtomicInteger q1 = new AtomicInteger();
+        AtomicInteger q2 = new AtomicInteger();
+
+        assertTrue(tracker.addDestinationWaiter("q:Q1", q1::incrementAndGet));
+        assertTrue(tracker.addDestinationWaiter("q:Q2", q2::incrementAndGet));
+
+        tracker.setDestinationReady("q:Q1");
+        assertEquals(1, q1.get());
+        assertEquals(0, q2.get());
+
+        // a destination is set ready once
+        tracker.setDestinationReady("q:Q1");
+        assertEquals(1, q1.get());
+    }
+
+    @Test
+    void testNoWaiterForDestinationNotPending() {
+        AtomicInteger n = new AtomicInteger();
+        assertFalse(tracker.addDestinationWaiter("q:Q1", n::incrementAndGet));
+
+        tracker.setDestinationsPending(Arrays.asList("q:Q1"));
+        tracker.setDestinationReady("q:Q1");
+        assertFalse(tracker.addDestinationWaiter("q:Q1", n::incrementAndGet));
+        assertFalse(tracker.addDestinationWaiter("t:T1", n::incrementAndGet));
+        assertEquals(0, n.get());
+    }
+
+    @Test
+    void testReleaseRunsAllWaiters() {
+        tracker.setDestinationsPending(Arrays.asList("q:Q1", "q:Q2"));
+        AtomicInteger n = new AtomicInteger();
+        tracker.addDestinationWaiter("q:Q1", n::incrementAndGet);
+        tracker.addDestinationWaiter("q:Q1", n::incrementAndGet);
+        tracker.addDestinationWaiter("q:Q2", n::incrementAndGet);
+
+        tracker.releaseDestinationWaiters();
+        assertEquals(3, n.get());
+
+        // the takeover has ended
+        assertFalse(tracker.addDestinationWaiter("q:Q2", n::incrementAndGet));
+        tracker.setDestinationReady("q:Q2");
+        assertEquals(3, n.get());
+    }
+
+    @Test
+    void testDestinationsReadyInParallel() throws Exception {
+        final int destinations = 64;
+        final int waitersPerDestination = 8;
+        List<String> dsts = new ArrayList<>();
+        for (int i = 0; i < destinations; i++) {
+            dsts.add("q:Q" + i);
+        }
+        tracker.setDestinationsPending(dsts);
+        AtomicIntegerArray runs = new AtomicIntegerArray(destinations);
+
+        ExecutorService es = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> fs = new ArrayList<>();
+        try {
+            for (int i = 0; i < destinations; i++) {
+                final int d = i;
+                for (int j = 0; j < waitersPerDestination; j++) {
+                    fs.add(es.submit(() -> {
+                        start.await();
+                        if (!tracker.addDestinationWaiter(dsts.get(d), () -> runs.incrementAndGet(d))) {
+                            // ready before parked, the request goes ahead
+                            runs.incrementAndGet(d);
+                        }
+                        return null;
+                    }));
+                }
+                fs.add(es.submit(() -> {
+                    start.await();
+                    tracker.setDestinationReady(dsts.get(d));
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> f : fs) {
+                f.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            es.shutdownNow();
+        }
+
+        for (int i = 0; i < destinations; i++) {
+            assertEquals(waitersPerDestination, runs.get(i), dsts.get(i));
+        }
+        tracker.releaseDestinationWaiters();
+        for (int i = 0; i < destinations; i++) {
+            assertEquals(waitersPerDestination, runs.get(i), dsts.get(i));
+        }
+    }
+}
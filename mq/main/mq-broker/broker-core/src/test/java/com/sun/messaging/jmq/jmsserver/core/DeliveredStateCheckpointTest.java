@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+
+package com.sun.messaging.jmq.jmsserver.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import com.sun.messaging.jmq.jmsserver.Globals;
+import com.sun.messaging.jmq.jmsserver.persist.api.PartitionedStore;
+import com.sun.messaging.jmq.jmsserver.persist.api.Store;
+
+class DeliveredStateCheckpointTest {
+
+    @BeforeAll
+    static void initConfig() throws Exception {
+        System.setProperty("imq.varhome", Files.createTempDirectory("checkpoint").toString());
+        Globals.pathinit(null);
+    }
+
+    @BeforeEach
+    void resetMarked() throws Exception {
+        Field f = DeliveredStateCheckpoint.class.getDeclaredField("marked");
+        f.setAccessible(true);
+        f.setBoolean(null, false);
+        DeliveredStateCheckpoint.checkpoint();
+    }
+
+    @Test
+    void testMarkerIsPerBroker() {
+        assertThat(DeliveredStateCheckpoint.getMarkerProperty("broker1")).isNotEqualTo(DeliveredStateCheckpoint.getMarkerProperty("broker2"))
+                .startsWith(DeliveredStateCheckpoint.PENDING_PROP);
+        assertThat(DeliveredStateCheckpoint.getMarkerProperty(null)).isEqualTo(DeliveredStateCheckpoint.PENDING_PROP);
+    }
+
+    @Test
+    void testTakeoverWithoutMarker() throws Exception {
+        Store store = mock(Store.class);
+
+        assertThat(DeliveredStateCheckpoint.takeover(store, "broker1", "broker2")).isFalse();
+        verify(store).getProperty(DeliveredStateCheckpoint.getMarkerProperty("broker2"));
+        verify(store, never()).updateProperty(anyString(), any(), anyBoolean());
+    }
+
+    @Test
+    void testTakeoverMovesMarker() throws Exception {
+        Store store = mock(Store.class);
+        String mine = DeliveredStateCheckpoint.getMarkerProperty("broker1");
+        String theirs = DeliveredStateCheckpoint.getMarkerProperty("broker2");
+        when(store.getProperty(theirs)).thenReturn(Boolean.TRUE);
+
+        assertThat(DeliveredStateCheckpoint.takeover(store, "broker1", "broker2")).isTrue();
+
+        // the taken over messages stay covered by a marker until their states are written
+        InOrder order = inOrder(store);
+        order.verify(store).updateProperty(mine, Boolean.TRUE, true);
+        order.verify(store).updateProperty(theirs, Boolean.FALSE, true);
+    }
+
+    @Test
+    void testRecoverStates() {
+        int[] states = { PartitionedStore.INTEREST_STATE_ROUTED, PartitionedStore.INTEREST_STATE_DELIVERED, PartitionedStore.INTEREST_STATE_ROUTED,
+                PartitionedStore.INTEREST_STATE_ACKNOWLEDGED };
+
+        boolean[] recovered = DeliveredStateCheckpoint.recoverStates(states);
+
+        assertThat(states).containsExactly(PartitionedStore.INTEREST_STATE_DELIVERED, PartitionedStore.INTEREST_STATE_DELIVERED,
+                PartitionedStore.INTEREST_STATE_DELIVERED, PartitionedStore.INTEREST_STATE_ACKNOWLEDGED);
+        assertThat(recovered).containsExactly(true, false, true, false);
+    }
+
+    @Test
+    void testRecoverStatesWithoutRoutedInterests() {
+        int[] states = { PartitionedStore.INTEREST_STATE_DELIVERED, PartitionedStore.INTEREST_STATE_ACKNOWLEDGED };
+
+        assertThat(DeliveredStateCheckpoint.recoverStates(states)).isNull();
+        assertThat(states).containsExactly(PartitionedStore.INTEREST_STATE_DELIVERED, PartitionedStore.INTEREST_STATE_ACKNOWLEDGED);
+    }
+
+    @Test
+    void testRecoveredStatesAreCheckpointed() throws Exception {
+        PacketReference ref = mock(PacketReference.class);
+        ConsumerUID[] consumers = { new ConsumerUID(1), new ConsumerUID(2), new ConsumerUID(3) };
+        for (ConsumerUID c : consumers) {
+            when(ref.storeDelivered(c)).thenReturn(true);
+        }
+
+        DeliveredStateCheckpoint.recovered(ref, consumers, new boolean[] { true, false, true });
+        DeliveredStateCheckpoint.recovered(ref, consumers, null);
+
+        assertThat(DeliveredStateCheckpoint.checkpoint()).isEqualTo(2);
+        verify(ref).storeDelivered(consumers[0]);
+        verify(ref, never()).storeDelivered(consumers[1]);
+        verify(ref).storeDelivered(consumers[2]);
+        assertThat(DeliveredStateCheckpoint.checkpoint()).isZero();
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+
+package com.sun.messaging.jmq.jmsserver.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.sun.messaging.jmq.io.SysMessageID;
+import com.sun.messaging.jmq.jmsserver.Globals;
+import com.sun.messaging.jmq.jmsserver.persist.api.PartitionedStore;
+import com.sun.messaging.jmq.util.DestType;
+
+class DestinationBulkPurgeTest {
+
+    private Queue queue;
+    private PartitionedStore pstore;
+    private int seq = 0;
+
+    @BeforeAll
+    static void initConfig() throws Exception {
+        System.setProperty("imq.varhome", Files.createTempDirectory("purge").toString());
+        Globals.pathinit(null);
+        // a broker without store partitions, as DestinationList.init() leaves it
+        Field f = DestinationList.class.getDeclaredField("partitionModeInited");
+        f.setAccessible(true);
+        f.setBoolean(null, true);
+    }
+
+    @BeforeEach
+    void createQueue() throws Exception {
+        queue = new Queue("purge", DestType.DEST_TYPE_QUEUE, false, null, false, new DestinationList(DestinationList.getAdminPartition()));
+        pstore = mock(PartitionedStore.class);
+        queue.pstore = pstore;
+    }
+
+    private PacketReference send(boolean stored) {
+        seq++;
+        SysMessageID id = new SysMessageID();
+        id.setSequence(seq);
+        id.setTimestamp(1000L + seq);
+        PacketReference ref = mock(PacketReference.class);
+        when(ref.getSysMessageID()).thenReturn(id);
+        when(ref.getTimestamp()).thenReturn(1000L + seq);
+        when(ref.getSequence()).thenReturn((long) seq);
+        when(ref.isStored()).thenReturn(stored);
+        queue.destMessages.put(id, ref);
+        return ref;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testOnlySnapshotMessagesAreRemovedFromStore() throws Exception {
+        PacketReference a = send(true);
+        PacketReference b = send(false);
+        PacketReference c = send(true);
+        for (PacketReference ref : List.of(a, b, c)) {
+            // passes the purge check, then is found in delivery when removed from memory
+            when(ref.checkDeliveryAndSetInRemoval()).thenReturn(true, false);
+        }
+
+        assertEquals(0L, queue.bulkPurge());
+
+        ArgumentCaptor<Collection<SysMessageID>> ids = ArgumentCaptor.forClass(Collection.class);
+        verify(pstore).removeMessages(eq(queue), ids.capture(), anyBoolean());
+        assertEquals(Set.of(a.getSysMessageID(), c.getSysMessageID()), Set.copyOf(ids.getValue()));
+        assertEquals(2, ids.getValue().size());
+        for (PacketReference ref : List.of(a, b, c)) {
+            verify(ref).clearStored();
+            verify(ref, never()).clearInRemoval();
+        }
+    }
+
+    @Test
+    void testMessageInDeliveryUndoesRemovalMarks() throws Exception {
+        PacketReference a = send(true);
+        PacketReference b = send(true);
+        PacketReference c = send(true);
+        Set<PacketReference> marked = new HashSet<>();
+        when(a.checkDeliveryAndSetInRemoval()).thenAnswer(i -> marked.add(a));
+        when(b.checkDeliveryAndSetInRemoval()).thenReturn(false);
+        when(c.checkDeliveryAndSetInRemoval()).thenAnswer(i -> marked.add(c));
+
+        assertEquals(-1L, queue.bulkPurge());
+
+        verifyNoInteractions(pstore);
+        verify(b, never()).clearInRemoval();
+        for (PacketReference ref : List.of(a, c)) {
+            // only the messages checked before b are marked
+            verify(ref, times(marked.contains(ref) ? 1 : 0)).clearInRemoval();
+            verify(ref, never()).clearStored();
+        }
+    }
+
+    @Test
+    void testLockedMessageIsNotMarked() throws Exception {
+        PacketReference a = send(true);
+        PacketReference b = send(true);
+        when(b.getLBitSet()).thenReturn(true);
+
+        assertEquals(-1L, queue.bulkPurge());
+
+        verifyNoInteractions(pstore);
+        verify(a, never()).checkDeliveryAndSetInRemoval();
+        verify(b, never()).checkDeliveryAndSetInRemoval();
+    }
+
+    @Test
+    void testStoreRefusalUndoesRemovalMarks() throws Exception {
+        PacketReference a = send(true);
+        PacketReference b = send(true);
+        when(a.checkDeliveryAndSetInRemoval()).thenReturn(true);
+        when(b.checkDeliveryAndSetInRemoval()).thenReturn(true);
+        doThrow(new UnsupportedOperationException()).when(pstore).removeMessages(eq(queue), any(), anyBoolean());
+
+        assertEquals(-1L, queue.bulkPurge());
+
+        for (PacketReference ref : List.of(a, b)) {
+            verify(ref).clearInRemoval();
+            verify(ref, never()).clearStored();
+        }
+    }
+}
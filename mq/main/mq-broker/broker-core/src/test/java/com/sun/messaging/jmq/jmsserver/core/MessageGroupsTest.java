@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.messaging.jmq.jmsserver.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Hashtable;
+
+import org.junit.jupiter.api.Test;
+
+import com.sun.messaging.jmq.io.SysMessageID;
+import com.sun.messaging.jmq.util.lists.NFLPriorityFifoSet;
+import com.sun.messaging.jmq.util.lists.SubSet;
+
+class MessageGroupsTest {
+
+    private final ConsumerUID a = new ConsumerUID(1);
+    private final ConsumerUID b = new ConsumerUID(2);
+
+    private int seq = 0;
+
+    private SysMessageID newID() {
+        SysMessageID id = new SysMessageID();
+        id.setSequence(++seq);
+        return id;
+    }
+
+    private PacketReference newRef(String group) throws Exception {
+        Hashtable props = new Hashtable();
+        if (group != null) {
+            props.put(MessageGroups.JMSX_GROUP_ID, group);
+        }
+        PacketReference ref = mock(PacketReference.class);
+        when(ref.getSysMessageID()).thenReturn(newID());
+        when(ref.getProperties()).thenReturn(props);
+        return ref;
+    }
+
+    @Test
+    void testGroupStaysWithFirstConsumer() {
+        MessageGroups groups = new MessageGroups();
+        groups.setConsuming(a, true);
+        groups.setConsuming(b, true);
+        groups.messageAdded(newID(), "g1");
+        groups.messageAdded(newID(), "g2");
+
+        assertTrue(groups.claim("g1", a));
+        assertFalse(groups.claim("g1", b));
+        assertTrue(groups.claim("g1", a));
+        assertTrue(groups.claim("g2", b));
+        assertEquals(a, groups.getOwner("g1"));
+        assertEquals(2, groups.size());
+    }
+
+    @Test
+    void testOnlyConsumingConsumersGetGroups() {
+        MessageGroups groups = new MessageGroups();
+        groups.setConsuming(b, true);
+        groups.messageAdded(newID(), "g1");
+
+        assertFalse(groups.claim("g1", a));
+        assertNull(groups.getOwner("g1"));
+        assertTrue(groups.claim("g1", b));
+    }
+
+    @Test
+    void testGroupsReleasedWhenConsumerStops() {
+        MessageGroups groups = new MessageGroups();
+        groups.setConsuming(a, true);
+        groups.setConsuming(b, true);
+        groups.messageAdded(newID(), "g1");
+        groups.messageAdded(newID(), "g2");
+        groups.claim("g1", a);
+        groups.claim("g2", a);
+
+        assertTrue(groups.setConsuming(a, false));
+        assertFalse(groups.setConsuming(a, false));
+        assertEquals(0, groups.size());
+        assertTrue(groups.claim("g1", b));
+        assertFalse(groups.claim("g2", a));
+    }
+
+    @Test
+    void testGroupDroppedWithItsLastMessage() {
+        MessageGroups groups = new MessageGroups();
+        groups.setConsuming(a, true);
+        groups.setConsuming(b, true);
+        SysMessageID m1 = newID();
+        SysMessageID m2 = newID();
+        groups.messageAdded(m1, "g1");
+        groups.messageAdded(m2, "g1");
+        // counted once
+        groups.messageAdded(m2, "g1");
+        assertTrue(groups.claim("g1", a));
+
+        groups.messageRemoved(m1);
+        assertEquals(1, groups.getGroupCount());
+        assertEquals(a, groups.getOwner("g1"));
+
+        groups.messageRemoved(m2);
+        groups.messageRemoved(m2);
+        assertEquals(0, groups.getGroupCount());
+        assertEquals(0, groups.size());
+        assertNull(groups.getOwner("g1"));
+
+        // the group starts over with its next message
+        groups.messageAdded(newID(), "g1");
+        assertTrue(groups.claim("g1", b));
+        assertEquals(b, groups.getOwner("g1"));
+    }
+
+    @Test
+    void testTableBoundedByQueuedMessages() {
+        MessageGroups groups = new MessageGroups();
+        groups.setConsuming(a, true);
+        for (int i = 0; i < 1000; i++) {
+            SysMessageID id = newID();
+            groups.messageAdded(id, "g" + i);
+            assertTrue(groups.claim("g" + i, a));
+            groups.messageRemoved(id);
+        }
+        assertEquals(0, groups.getGroupCount());
+        assertEquals(0, groups.size());
+    }
+
+    @Test
+    void testViewsOfPendingListKeepGroupsTogether() throws Exception {
+        MessageGroups groups = new MessageGroups();
+        groups.setConsuming(a, true);
+        groups.setConsuming(b, true);
+        NFLPriorityFifoSet<PacketReference> pending = new NFLPriorityFifoSet<>(11, false);
+        SubSet<PacketReference> viewA = pending.subSet(groups.newFilter(a, null));
+        SubSet<PacketReference> viewB = pending.subSet(groups.newFilter(b, null));
+
+        PacketReference g1m1 = newRef("g1");
+        PacketReference g2m1 = newRef("g2");
+        PacketReference g1m2 = newRef("g1");
+        PacketReference none = newRef(null);
+        for (PacketReference ref : new PacketReference[] { g1m1, g2m1, g1m2, none }) {
+            groups.messageAdded(ref.getSysMessageID(), MessageGroups.getGroupID(ref));
+            pending.add(4, ref);
+        }
+        // adding the messages assigned nothing
+        assertEquals(0, groups.size());
+
+        // the group goes to the consumer that pulls its first message
+        assertSame(g1m1, viewA.removeNext());
+        assertEquals(a, groups.getOwner("g1"));
+        assertNull(groups.getOwner("g2"));
+        // the next message of g1 is held for a, b gets the other group
+        assertSame(g2m1, viewB.removeNext());
+        assertSame(none, viewB.removeNext());
+        assertNull(viewB.removeNext());
+        assertSame(g1m2, viewA.removeNext());
+        assertEquals(a, groups.getOwner("g1"));
+        assertEquals(b, groups.getOwner("g2"));
+
+        // once acknowledged the groups are gone
+        for (PacketReference ref : new PacketReference[] { g1m1, g2m1, g1m2, none }) {
+            groups.messageRemoved(ref.getSysMessageID());
+        }
+        assertEquals(0, groups.getGroupCount());
+        assertNull(groups.getOwner("g1"));
+
+        // a stops consuming, the next message of g1 goes to b
+        groups.setConsuming(a, false);
+        PacketReference g1m3 = newRef("g1");
+        groups.messageAdded(g1m3.getSysMessageID(), "g1");
+        pending.add(4, g1m3);
+        assertSame(g1m3, viewB.removeNext());
+        assertEquals(b, groups.getOwner("g1"));
+    }
+
+    @Test
+    void testMatchingDoesNotAssignGroups() throws Exception {
+        MessageGroups groups = new MessageGroups();
+        groups.setConsuming(a, true);
+        groups.setConsuming(b, true);
+        NFLPriorityFifoSet<PacketReference> pending = new NFLPriorityFifoSet<>(11, false);
+        SubSet<PacketReference> viewA = pending.subSet(groups.newFilter(a, null));
+        SubSet<PacketReference> viewB = pending.subSet(groups.newFilter(b, null));
+
+        PacketReference g1m1 = newRef("g1");
+        PacketReference g1m2 = newRef("g1");
+        PacketReference other = newRef("g2");
+        for (PacketReference ref : new PacketReference[] { g1m1, g1m2 }) {
+            groups.messageAdded(ref.getSysMessageID(), "g1");
+            pending.add(4, ref);
+        }
+
+        // both views reach the messages of the unassigned group
+        assertFalse(viewA.isEmpty());
+        assertFalse(viewB.isEmpty());
+        assertSame(g1m1, viewA.peekNext());
+        assertSame(g1m1, viewB.peekNext());
+        assertTrue(viewA.contains(g1m2));
+        assertTrue(viewB.contains(g1m2));
+        // an unrelated add, contains and remove
+        groups.messageAdded(other.getSysMessageID(), "g2");
+        pending.add(4, other);
+        assertTrue(viewB.contains(other));
+        assertTrue(viewA.remove(other));
+        groups.messageRemoved(other.getSysMessageID());
+
+        assertEquals(0, groups.size());
+        assertNull(groups.getOwner("g1"));
+
+        // b pulls first, the message a had looked at is now b's
+        assertSame(g1m1, viewB.removeNext());
+        assertEquals(b, groups.getOwner("g1"));
+        assertNull(viewA.removeNext());
+        assertTrue(viewA.isEmpty());
+        assertSame(g1m2, viewB.removeNext());
+    }
+
+    @Test
+    void testConsumerThatDoesNotPullGetsNoGroup() throws Exception {
+        MessageGroups groups = new MessageGroups();
+        groups.setConsuming(a, true);
+        groups.setConsuming(b, true);
+        NFLPriorityFifoSet<PacketReference> pending = new NFLPriorityFifoSet<>(11, false);
+        SubSet<PacketReference> viewA = pending.subSet(groups.newFilter(a, null));
+        SubSet<PacketReference> viewB = pending.subSet(groups.newFilter(b, null));
+
+        // a is full and does not pull, b takes every group
+        for (int i = 0; i < 10; i++) {
+            PacketReference ref = newRef("g" + i);
+            groups.messageAdded(ref.getSysMessageID(), "g" + i);
+            pending.add(4, ref);
+            assertFalse(viewA.isEmpty());
+            assertSame(ref, viewB.removeNext());
+            assertEquals(b, groups.getOwner("g" + i));
+        }
+        assertNull(viewA.removeNext());
+    }
+}
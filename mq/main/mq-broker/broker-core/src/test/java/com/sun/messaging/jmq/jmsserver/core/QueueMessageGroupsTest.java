@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.messaging.jmq.jmsserver.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sun.messaging.jmq.io.SysMessageID;
+import com.sun.messaging.jmq.jmsserver.Globals;
+import com.sun.messaging.jmq.util.DestType;
+
+class QueueMessageGroupsTest {
+
+    private Queue queue;
+    private int seq = 0;
+
+    @BeforeAll
+    static void initConfig() throws Exception {
+        System.setProperty("imq.varhome", Files.createTempDirectory("queue").toString());
+        Globals.pathinit(null);
+        // a broker without store partitions, as DestinationList.init() leaves it
+        Field f = DestinationList.class.getDeclaredField("partitionModeInited");
+        f.setAccessible(true);
+        f.setBoolean(null, true);
+    }
+
+    @BeforeEach
+    void createQueue() throws Exception {
+        queue = new Queue("groups", DestType.DEST_TYPE_QUEUE, false, null, false, new DestinationList(DestinationList.getAdminPartition()));
+    }
+
+    private PacketReference newRef(String group) throws Exception {
+        Hashtable props = new Hashtable();
+        props.put(MessageGroups.JMSX_GROUP_ID, group);
+        SysMessageID id = new SysMessageID();
+        id.setSequence(++seq);
+        PacketReference ref = mock(PacketReference.class);
+        when(ref.getSysMessageID()).thenReturn(id);
+        when(ref.getProperties()).thenReturn(props);
+        return ref;
+    }
+
+    @Test
+    void testDisabledByDefault() {
+        assertFalse(queue.isMessageGroupsEnabled());
+        assertNull(queue.getMessageGroups());
+        Map m = new HashMap();
+        queue.getDestinationProps(m);
+        assertEquals(Boolean.FALSE, m.get(Queue.MESSAGE_GROUPS));
+    }
+
+    @Test
+    void testEnabledFromDestinationProperties() throws Exception {
+        Map m = new HashMap();
+        m.put(Queue.MESSAGE_GROUPS, Boolean.TRUE);
+        queue.setDestinationProperties(m);
+        assertTrue(queue.isMessageGroupsEnabled());
+        assertNotNull(queue.getMessageGroups());
+
+        m.clear();
+        queue.getDestinationProps(m);
+        assertEquals(Boolean.TRUE, m.get(Queue.MESSAGE_GROUPS));
+
+        // older brokers do not send the property
+        m.remove(Queue.MESSAGE_GROUPS);
+        queue.setDestinationProperties(m);
+        assertTrue(queue.isMessageGroupsEnabled());
+
+        queue.setMessageGroupsEnabled(false);
+        assertNull(queue.getMessageGroups());
+    }
+
+    @Test
+    void testGroupsFollowTheMessagesOfTheQueue() throws Exception {
+        PacketReference before = newRef("g1");
+        queue.destMessages.put(before.getSysMessageID(), before);
+        queue.setMessageGroupsEnabled(true);
+        MessageGroups groups = queue.getMessageGroups();
+        // messages already queued are counted when groups are enabled
+        assertEquals(1, groups.getGroupCount());
+
+        PacketReference r1 = newRef("g1");
+        PacketReference r2 = newRef("g2");
+        queue.destMessages.put(r1.getSysMessageID(), r1);
+        queue.destMessages.put(r2.getSysMessageID(), r2);
+        assertEquals(2, groups.getGroupCount());
+
+        ConsumerUID uid = new ConsumerUID(1);
+        groups.setConsuming(uid, true);
+        assertTrue(groups.claim("g1", uid));
+
+        queue.destMessages.remove(before.getSysMessageID());
+        assertEquals(uid, groups.getOwner("g1"));
+        queue.destMessages.remove(r1.getSysMessageID());
+        queue.destMessages.remove(r2.getSysMessageID());
+        assertEquals(0, groups.getGroupCount());
+        assertNull(groups.getOwner("g1"));
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.messaging.jmq.jmsserver.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sun.messaging.jmq.io.SysMessageID;
+import com.sun.messaging.jmq.jmsserver.Globals;
+import com.sun.messaging.jmq.util.DestType;
+import com.sun.messaging.jmq.util.lists.Filter;
+
+class QueuePageTest {
+
+    private Queue queue;
+    private int seq = 0;
+
+    @BeforeAll
+    static void initConfig() throws Exception {
+        System.setProperty("imq.varhome", Files.createTempDirectory("queue").toString());
+        Globals.pathinit(null);
+        // a broker without store partitions, as DestinationList.init() leaves it
+        Field f = DestinationList.class.getDeclaredField("partitionModeInited");
+        f.setAccessible(true);
+        f.setBoolean(null, true);
+    }
+
+    @BeforeEach
+    void createQueue() throws Exception {
+        queue = new Queue("pages", DestType.DEST_TYPE_QUEUE, false, null, false, new DestinationList(DestinationList.getAdminPartition()));
+    }
+
+    private List<PacketReference> send(int count, int priority) throws Exception {
+        List<PacketReference> l = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            seq++;
+            SysMessageID id = new SysMessageID();
+            id.setSequence(seq);
+            id.setTimestamp(1000L + seq);
+            PacketReference ref = mock(PacketReference.class);
+            when(ref.getSysMessageID()).thenReturn(id);
+            when(ref.getPriority()).thenReturn(priority);
+            when(ref.getTimestamp()).thenReturn(1000L + seq);
+            when(ref.getSequence()).thenReturn((long) seq);
+            queue.destMessages.put(id, ref);
+            queue.routeNewMessage(ref);
+            l.add(ref);
+        }
+        return l;
+    }
+
+    private List<PacketReference> readAll(int limit, Filter f) {
+        List<PacketReference> all = new ArrayList<>();
+        MessageCursor cursor = null;
+        List<PacketReference> page = null;
+        do {
+            page = queue.getPage(cursor, limit, f);
+            assertTrue(page.size() <= limit);
+            all.addAll(page);
+            if (!page.isEmpty()) {
+                // the cursor goes through its string form as with clients
+                cursor = MessageCursor.parse(MessageCursor.of(page.get(page.size() - 1)).toString());
+            }
+        } while (page.size() == limit);
+        return all;
+    }
+
+    @Test
+    void testPagesFollowDeliveryOrder() throws Exception {
+        List<PacketReference> low = send(15, 4);
+        List<PacketReference> high = send(10, 7);
+
+        List<PacketReference> expected = new ArrayList<>(high);
+        expected.addAll(low);
+        assertEquals(expected, readAll(10, null));
+        assertEquals(expected, readAll(25, null));
+        assertEquals(expected, readAll(1, null));
+    }
+
+    @Test
+    void testCursorContinuesAfterItsMessageIsConsumed() throws Exception {
+        List<PacketReference> refs = send(30, 4);
+
+        List<PacketReference> first = queue.getPage(null, 10, null);
+        assertEquals(refs.subList(0, 10), first);
+
+        // the last message of the page and the one before it are consumed
+        queue.destMessages.remove(refs.get(9).getSysMessageID());
+        queue.destMessages.remove(refs.get(8).getSysMessageID());
+        MessageCursor cursor = MessageCursor.of(first.get(9));
+        List<PacketReference> second = queue.getPage(cursor, 10, null);
+        assertEquals(refs.subList(10, 20), second);
+
+        // messages sent meanwhile are found at the end
+        List<PacketReference> more = send(5, 4);
+        List<PacketReference> rest = queue.getPage(MessageCursor.of(second.get(9)), 100, null);
+        List<PacketReference> expected = new ArrayList<>(refs.subList(20, 30));
+        expected.addAll(more);
+        assertEquals(expected, rest);
+    }
+
+    @Test
+    void testFilterFillsPagesFromLaterBatches() throws Exception {
+        List<PacketReference> refs = send(100, 4);
+        List<PacketReference> expected = new ArrayList<>();
+        for (int i = 0; i < refs.size(); i += 7) {
+            expected.add(refs.get(i));
+        }
+        Filter every7th = o -> expected.contains(o);
+
+        List<PacketReference> first = queue.getPage(null, 5, every7th);
+        assertEquals(expected.subList(0, 5), first);
+        assertEquals(expected, readAll(5, every7th));
+        assertEquals(expected, readAll(3, every7th));
+    }
+
+    @Test
+    void testDeliveredMessagesAreListed() throws Exception {
+        List<PacketReference> refs = send(5, 4);
+        // removed from the pending list as when delivered to a consumer
+        // that has not acknowledged it yet
+        queue.unrouteLoadedTransactionAckMessage(refs.get(2), null);
+
+        assertEquals(refs, readAll(2, null));
+        assertEquals(refs, readAll(5, null));
+        // as many as a browse without pages
+        assertEquals(queue.getAll((Filter) null).size(), readAll(1, null).size());
+    }
+
+    @Test
+    void testMessagesSentAfterTheSnapshotAreListed() throws Exception {
+        List<PacketReference> refs = send(6, 4);
+        List<PacketReference> first = queue.getPage(null, 3, null);
+        assertEquals(refs.subList(0, 3), first);
+
+        List<PacketReference> more = send(2, 4);
+        List<PacketReference> expected = new ArrayList<>(refs.subList(3, 6));
+        expected.addAll(more);
+        assertEquals(expected, queue.getPage(MessageCursor.of(first.get(2)), 10, null));
+    }
+}
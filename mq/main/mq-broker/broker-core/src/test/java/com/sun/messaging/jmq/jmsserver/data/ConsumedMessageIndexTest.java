@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.messaging.jmq.jmsserver.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.messaging.jmq.io.SysMessageID;
+
+import org.junit.jupiter.api.Test;
+
+class ConsumedMessageIndexTest {
+
+    private static final int THREADS = 16;
+    private static final int TRANSACTIONS_PER_THREAD = 200;
+    private static final int MESSAGES_PER_TRANSACTION = 10;
+
+    private static SysMessageID messageID(int seq) {
+        SysMessageID sysid = new SysMessageID();
+        sysid.setSequence(seq);
+        sysid.setTimestamp(1L);
+        return sysid;
+    }
+
+    @Test
+    void testAddGetRemove() {
+        ConsumedMessageIndex index = new ConsumedMessageIndex(16);
+        SysMessageID sysid = messageID(1);
+        TransactionUID tid1 = new TransactionUID(1L);
+        TransactionUID tid2 = new TransactionUID(2L);
+
+        assertTrue(index.get(sysid).isEmpty());
+        index.add(sysid, tid1);
+        index.add(sysid, tid2);
+        assertEquals(2, index.get(sysid).size());
+
+        index.remove(sysid, tid1);
+        assertEquals(1, index.get(sysid).size());
+        assertTrue(index.get(sysid).contains(tid2));
+
+        index.remove(sysid, tid2);
+        assertTrue(index.get(sysid).isEmpty());
+        assertEquals(0, index.size());
+    }
+
+    /**
+     * Many threads acknowledge, look up and complete transactions on an overlapping set of messages at the same time, the
+     * way concurrent XA transactions use the TransactionList. Every lookup must see the thread's own transaction and the
+     * index must be empty once all transactions have completed.
+     */
+    @Test
+    void testConcurrentTransactions() throws Exception {
+        ConsumedMessageIndex index = new ConsumedMessageIndex(1000);
+        int nmessages = TRANSACTIONS_PER_THREAD * MESSAGES_PER_TRANSACTION;
+        SysMessageID[] sysids = new SysMessageID[nmessages];
+        for (int i = 0; i < nmessages; i++) {
+            sysids[i] = messageID(i);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            results.add(executor.submit(() -> {
+                start.await();
+                int found = 0;
+                for (int n = 0; n < TRANSACTIONS_PER_THREAD; n++) {
+                    TransactionUID tid = new TransactionUID((long) thread * TRANSACTIONS_PER_THREAD + n);
+                    // every thread walks the messages from a different offset so the threads collide on the same keys
+                    int first = ((n + thread * 7) % TRANSACTIONS_PER_THREAD) * MESSAGES_PER_TRANSACTION;
+                    for (int m = 0; m < MESSAGES_PER_TRANSACTION; m++) {
+                        index.add(sysids[first + m], tid);
+                    }
+                    for (int m = 0; m < MESSAGES_PER_TRANSACTION; m++) {
+                        if (index.get(sysids[first + m]).contains(tid)) {
+                            found++;
+                        }
+                    }
+                    for (int m = 0; m < MESSAGES_PER_TRANSACTION; m++) {
+                        index.remove(sysids[first + m], tid);
+                    }
+                }
+                return found;
+            }));
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(60, TimeUnit.SECONDS));
+
+        for (Future<Integer> f : results) {
+            assertEquals(TRANSACTIONS_PER_THREAD * MESSAGES_PER_TRANSACTION, f.get().intValue());
+        }
+        assertEquals(0, index.size());
+    }
+}
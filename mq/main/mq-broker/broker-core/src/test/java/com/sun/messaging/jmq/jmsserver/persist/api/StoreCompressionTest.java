@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+
+package com.sun.messaging.jmq.jmsserver.persist.api;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.sun.messaging.jmq.io.Packet;
+import com.sun.messaging.jmq.io.PacketFlag;
+import com.sun.messaging.jmq.io.PacketType;
+import com.sun.messaging.jmq.jmsserver.Globals;
+import com.sun.messaging.jmq.util.DestMetricsCounters;
+import com.sun.messaging.jmq.util.io.CompactBodyCodec;
+
+class StoreCompressionTest {
+
+    private static final int THRESHOLD = 1024;
+
+    @BeforeAll
+    static void initConfig() throws Exception {
+        System.setProperty("imq.varhome", Files.createTempDirectory("storezip").toString());
+        Globals.pathinit(null);
+    }
+
+    private static Packet message(byte[] body) {
+        Packet pkt = new Packet(false);
+        pkt.setPacketType(PacketType.BYTES_MESSAGE);
+        Hashtable<String, Object> props = new Hashtable<>();
+        props.put("color", "red");
+        pkt.setProperties(props);
+        pkt.setMessageBody(body);
+        return pkt;
+    }
+
+    private static byte[] body(Packet pkt) {
+        ByteBuffer bb = pkt.getMessageBodyByteBuffer();
+        byte[] b = new byte[bb.remaining()];
+        bb.duplicate().get(b);
+        return b;
+    }
+
+    private static byte[] text(int size) {
+        byte[] b = new byte[size];
+        for (int i = 0; i < size; i++) {
+            b[i] = (byte) ('a' + i % 7);
+        }
+        return b;
+    }
+
+    @Test
+    void testRoundTrip() throws Exception {
+        byte[] original = text(4096);
+        Packet pkt = message(original);
+
+        Packet stored = StoreCompression.compress("roundtrip", pkt, THRESHOLD);
+
+        assertThat(stored).isNotSameAs(pkt);
+        assertThat(stored.getFlag(PacketFlag.Z_FLAG)).isTrue();
+        assertThat(stored.getMessageBodySize()).isLessThan(original.length);
+        assertThat(stored.getProperties()).containsEntry("color", "red").containsEntry(StoreCompression.UNCOMPRESSED_SIZE, original.length)
+                .containsEntry(StoreCompression.COMPRESSED_SIZE, stored.getMessageBodySize());
+        // the message in memory is unchanged
+        assertThat(pkt.getFlag(PacketFlag.Z_FLAG)).isFalse();
+        assertThat(body(pkt)).isEqualTo(original);
+        assertThat(pkt.getProperties()).doesNotContainKey(StoreCompression.UNCOMPRESSED_SIZE);
+
+        StoreCompression.decompress(stored);
+
+        assertThat(stored.getFlag(PacketFlag.Z_FLAG)).isFalse();
+        assertThat(body(stored)).isEqualTo(original);
+
+        StoreCompression.Stats stats = StoreCompression.getStats("roundtrip");
+        assertThat(stats.getMessages()).isEqualTo(1);
+        assertThat(stats.getSkipped()).isZero();
+        assertThat(stats.getRatio()).isLessThan(1.0);
+    }
+
+    @Test
+    void testUncompressedCopyOfAReloadedMapMessage() throws Exception {
+        Map<String, Object> map = new HashMap<>();
+        map.put("text", new String(text(4096), "UTF8"));
+        map.put("count", Integer.valueOf(3));
+        Packet pkt = message(CompactBodyCodec.encodeMap(map));
+        pkt.setPacketType(PacketType.MAP_MESSAGE);
+        // as loaded from a compressed store
+        Packet stored = StoreCompression.compress("map", pkt, THRESHOLD);
+
+        Packet copy = StoreCompression.uncompressedCopy(stored);
+
+        assertThat(CompactBodyCodec.readMap(body(copy))).isEqualTo(map);
+        // the message itself is left compressed
+        assertThat(stored.getFlag(PacketFlag.Z_FLAG)).isTrue();
+        assertThat(body(stored)).hasSizeLessThan(body(copy).length);
+        assertThat(StoreCompression.uncompressedCopy(pkt)).isSameAs(pkt);
+    }
+
+    @Test
+    void testMetricsOmittedWhenDisabled() {
+        DestMetricsCounters dmc = new DestMetricsCounters();
+
+        StoreCompression.getMetrics("roundtrip", dmc);
+
+        assertThat(StoreCompression.ENABLED).isFalse();
+        assertThat(dmc).doesNotContainKey(DestMetricsCounters.STORE_COMPRESSED_MSGS);
+        assertThat(dmc.getStoreCompressionRatio()).isEqualTo(-1.0);
+    }
+
+    @Test
+    void testBodyBelowThresholdIsNotCompressed() throws Exception {
+        Packet pkt = message(text(THRESHOLD - 1));
+
+        assertThat(StoreCompression.compress("small", pkt, THRESHOLD)).isSameAs(pkt);
+        assertThat(pkt.getFlag(PacketFlag.Z_FLAG)).isFalse();
+        assertThat(StoreCompression.getStats("small")).isNull();
+    }
+
+    @Test
+    void testBodyThatWouldNotShrinkIsNotCompressed() throws Exception {
+        byte[] random = new byte[4096];
+        new Random(1).nextBytes(random);
+        Packet pkt = message(random);
+
+        assertThat(StoreCompression.compress("random", pkt, THRESHOLD)).isSameAs(pkt);
+        assertThat(body(pkt)).isEqualTo(random);
+        assertThat(StoreCompression.getStats("random").getSkipped()).isEqualTo(1);
+        assertThat(StoreCompression.getStats("random").getMessages()).isZero();
+    }
+
+    @Test
+    void testCompressedBodyIsNotCompressedAgain() throws Exception {
+        Packet pkt = message(text(4096));
+        pkt.setFlag(PacketFlag.Z_FLAG, true);
+
+        assertThat(StoreCompression.compress("zipped", pkt, THRESHOLD)).isSameAs(pkt);
+    }
+
+    @Test
+    void testDecompressWithoutUncompressedSize() {
+        Packet pkt = message(text(100));
+        pkt.setFlag(PacketFlag.Z_FLAG, true);
+
+        assertThatThrownBy(() -> StoreCompression.decompress(pkt)).isInstanceOf(IOException.class).hasMessageContaining(StoreCompression.UNCOMPRESSED_SIZE);
+    }
+
+    @Test
+    void testDecompressUncompressedBody() throws Exception {
+        byte[] original = text(100);
+        Packet pkt = message(original);
+
+        StoreCompression.decompress(pkt);
+
+        assertThat(body(pkt)).isEqualTo(original);
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+
+package com.sun.messaging.jmq.jmsserver.service.imq.websocket;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class BatchFlusherTest {
+
+    private final BatchFlusher flusher = new BatchFlusher("BatchFlusherTest", 200);
+
+    @AfterEach
+    void shutdown() {
+        flusher.shutdown();
+    }
+
+    @Test
+    void testTasksRunInOneSweepAfterTheDelay() throws Exception {
+        int n = 1000;
+        CountDownLatch done = new CountDownLatch(n);
+        List<String> threads = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < n; i++) {
+            flusher.add(() -> {
+                threads.add(Thread.currentThread().getName());
+                done.countDown();
+            });
+        }
+        assertEquals(n, done.getCount());
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(n, threads.size());
+        assertTrue(threads.stream().allMatch("BatchFlusherTest"::equals));
+    }
+
+    @Test
+    void testTaskAddedAfterASweepIsRun() throws Exception {
+        CountDownLatch first = new CountDownLatch(1);
+        flusher.add(first::countDown);
+        assertTrue(first.await(10, TimeUnit.SECONDS));
+
+        CountDownLatch second = new CountDownLatch(1);
+        flusher.add(second::countDown);
+        assertTrue(second.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testFailingTaskDoesNotStopTheSweep() throws Exception {
+        CountDownLatch done = new CountDownLatch(1);
+        flusher.add(() -> {
+            throw new IllegalStateException("test");
+        });
+        flusher.add(done::countDown);
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testNothingRunsAfterShutdown() throws Exception {
+        flusher.shutdown();
+        CountDownLatch done = new CountDownLatch(1);
+        flusher.add(done::countDown);
+
+        assertFalse(done.await(500, TimeUnit.MILLISECONDS));
+    }
+}
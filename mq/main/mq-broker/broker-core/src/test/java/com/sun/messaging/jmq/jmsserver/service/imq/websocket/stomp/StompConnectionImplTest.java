@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+
+package com.sun.messaging.jmq.jmsserver.service.imq.websocket.stomp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+import org.junit.jupiter.api.Test;
+
+import com.sun.messaging.bridge.api.StompProtocolHandler;
+import com.sun.messaging.jmq.jmsservice.JMSService;
+
+class StompConnectionImplTest {
+
+    private final StompProtocolHandler sph = mock(StompProtocolHandler.class);
+    private final JMSService jmss = mock(JMSService.class);
+
+    @Test
+    void testDirectConnectionWithRemoteAddress() throws Exception {
+        InetAddress ip = InetAddress.getByAddress(new byte[] { 10, 0, 0, 1 });
+        StompConnectionImpl conn = new StompConnectionImpl(sph, jmss, () -> new InetSocketAddress(ip, 61613));
+
+        assertEquals(ip, conn.getRemoteInetAddress());
+        assertEquals(61613, conn.getRemotePort());
+    }
+
+    @Test
+    void testDirectConnectionWithoutRemoteAddress() {
+        StompConnectionImpl conn = new StompConnectionImpl(sph, jmss, () -> null);
+
+        assertEquals(InetAddress.getLoopbackAddress(), conn.getRemoteInetAddress());
+        assertEquals(0, conn.getRemotePort());
+    }
+
+    @Test
+    void testDirectConnectionWithUnresolvedRemoteAddress() {
+        StompConnectionImpl conn = new StompConnectionImpl(sph, jmss, () -> InetSocketAddress.createUnresolved("client.invalid", 61613));
+
+        assertEquals(InetAddress.getLoopbackAddress(), conn.getRemoteInetAddress());
+        assertEquals(61613, conn.getRemotePort());
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+
+package com.sun.messaging.jmq.jmsserver.service.imq.websocket.stomp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.jupiter.api.Test;
+
+class StompFlowControlTest {
+
+    private final StompFlowControl flow = new StompFlowControl();
+
+    private static StompSubscriberSession subscriber(int flowLimit) {
+        StompSubscriberSession sub = mock(StompSubscriberSession.class);
+        when(sub.getFlowLimit()).thenReturn(flowLimit);
+        return sub;
+    }
+
+    @Test
+    void testUnlimitedSubscriberIsNeverPaused() {
+        StompSubscriberSession sub = subscriber(-1);
+        flow.add(100000);
+
+        assertFalse(flow.isLimitReached(sub));
+    }
+
+    @Test
+    void testPausedAtLimitAndResumedBelow() throws Exception {
+        StompSubscriberSession sub = subscriber(3);
+        flow.add(2);
+        assertFalse(flow.isLimitReached(sub));
+        flow.add(1);
+        assertTrue(flow.isLimitReached(sub));
+
+        flow.pause(sub);
+        verify(sub).pauseDelivery();
+        assertTrue(flow.isPaused(sub));
+        verify(sub, never()).resumeDelivery();
+
+        flow.release(1);
+        assertFalse(flow.isPaused(sub));
+        verify(sub, times(1)).resumeDelivery();
+
+        flow.release(2);
+        assertEquals(0, flow.getPending());
+        verify(sub, times(1)).resumeDelivery();
+    }
+
+    @Test
+    void testOnlySubscribersBelowTheirLimitAreResumed() throws Exception {
+        StompSubscriberSession small = subscriber(2);
+        StompSubscriberSession large = subscriber(4);
+        flow.add(5);
+        flow.pause(small);
+        flow.pause(large);
+
+        flow.release(2);
+        verify(large).resumeDelivery();
+        verify(small, never()).resumeDelivery();
+        assertTrue(flow.isPaused(small));
+
+        flow.release(2);
+        verify(small).resumeDelivery();
+        assertFalse(flow.isPaused(small));
+    }
+
+    @Test
+    void testReleaseWhilePausingResumes() throws Exception {
+        StompSubscriberSession sub = subscriber(2);
+        flow.add(2);
+        // the batch is written before the subscriber is registered as paused
+        doAnswer(invocation -> {
+            flow.release(2);
+            return null;
+        }).when(sub).pauseDelivery();
+
+        flow.pause(sub);
+        verify(sub).resumeDelivery();
+        assertFalse(flow.isPaused(sub));
+    }
+
+    @Test
+    void testResumeFailureDoesNotPropagate() throws Exception {
+        StompSubscriberSession sub = subscriber(1);
+        doAnswer(invocation -> {
+            throw new IllegalStateException("closed");
+        }).when(sub).resumeDelivery();
+        flow.add(1);
+        flow.pause(sub);
+
+        flow.release(1);
+        assertFalse(flow.isPaused(sub));
+    }
+}
@@ -20,7 +20,9 @@ package com.sun.messaging.jmq.jmsserver.cluster.manager.ha;
 import java.util.*;
 import java.io.*;
 import java.net.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import com.sun.messaging.jmq.io.MQAddress;
 import com.sun.messaging.jmq.io.PortMapperTable;
 import com.sun.messaging.jmq.io.PortMapperEntry;
@@ -36,6 +38,7 @@ import com.sun.messaging.jmq.jmsserver.util.BrokerException;
 import com.sun.messaging.jmq.jmsserver.util.StoreBeingTakenOverException;
 import com.sun.messaging.jmq.jmsserver.core.Destination;
 import com.sun.messaging.jmq.jmsserver.core.DestinationList;
+import com.sun.messaging.jmq.jmsserver.core.DestinationUID;
 import com.sun.messaging.jmq.jmsserver.core.BrokerAddress;
 import com.sun.messaging.jmq.jmsserver.core.BrokerMQAddress;
 import com.sun.messaging.jmq.jmsserver.cluster.api.*;
@@ -98,6 +101,16 @@ public class HAMonitorServiceImpl implements HAMonitorService, ClusterListener {
      */
     private int reaperTimeout = Globals.getConfig().getIntProperty(Globals.IMQ + ".cluster.reaptime", 300) * 1000;
 
+    /**
+     * Accept client connections once the store of a down broker is owned, while its messages are still being loaded
+     */
+    private boolean takeoverEarlyReconnect = Globals.getConfig().getBooleanProperty(Globals.IMQ + ".cluster.takeover.earlyReconnect", false);
+
+    /**
+     * How long a new consumer waits for the taken over messages of its destination to be loaded, in seconds
+     */
+    private int takeoverDestinationWaitTimeout = Globals.getConfig().getIntProperty(Globals.IMQ + ".cluster.takeover.destinationWaitTimeout", 60);
+
     /**
      * Configuration information
      */
@@ -534,7 +547,12 @@ public class HAMonitorServiceImpl implements HAMonitorService, ClusterListener {
             cb.updateHeartbeat();
             heartbeatMissedCnt.set(0); // Reset count back to 0
         } catch (BrokerException ex) {
-            if (Globals.getJDBCHAEnabled()) {
+            if (ex instanceof StoreBeingTakenOverException) {
+                // the takeover lock has replaced our heartbeat timestamp, another broker owns the store now
+                String errorMsg = Globals.getBrokerResources().getKString(BrokerResources.E_STORE_TAKEN_OVER_STOP_BROKER, ex.getMessage());
+                logger.logStack(logger.ERROR, errorMsg, ex);
+                Broker.getBroker().exit(BrokerStateHandler.getRestartCode(), errorMsg, BrokerEvent.Type.RESTART, ex, true, false, false);
+            } else if (Globals.getJDBCHAEnabled()) {
                 if (heartbeatMissedCnt.incrementAndGet() < MAX_HEARTBEAT) {
                     logger.logStack(logger.WARNING, Globals.getBrokerResources().getKString(BrokerResources.W_UPDATE_HEARTBEAT_TS_EXCEPTION, ex.getMessage()),
                             ex);
@@ -701,6 +719,23 @@ public class HAMonitorServiceImpl implements HAMonitorService, ClusterListener {
         }
     }
 
+    /**
+     * With imq.cluster.takeover.earlyReconnect clients are accepted as soon as the store of the down broker is owned by
+     * this broker, and consumers wait for their destination only
+     */
+    @Override
+    public boolean inTakeoverRejectingClients() {
+        synchronized (takeoverRunnableLock) {
+            if (takeoverMEInprogress) {
+                return true;
+            }
+            if (takeoverRunnable == null) {
+                return false;
+            }
+            return !(takeoverEarlyReconnect && ((TakeoverThread) takeoverRunnable).isProcessingData());
+        }
+    }
+
     /**
      * @return host:port string of the broker that takes over this broker
      *
@@ -780,6 +815,45 @@ public class HAMonitorServiceImpl implements HAMonitorService, ClusterListener {
         return false;
     }
 
+    @Override
+    public boolean notifyTakingoverDestinationReady(DestinationUID duid, Consumer<String> callback) {
+        if (!takeoverEarlyReconnect || takingoverTargets.size() == 0) {
+            return false;
+        }
+        TakingoverTracker[] targets = null;
+        synchronized (takingoverTargets) {
+            targets = (TakingoverTracker[]) takingoverTargets.toArray(new TakingoverTracker[takingoverTargets.size()]);
+        }
+        String dst = duid.toString();
+        for (int i = 0; i < targets.length; i++) {
+            AtomicBoolean done = new AtomicBoolean(false);
+            TimerTask timeout = new TimerTask() {
+                @Override
+                public void run() {
+                    if (done.compareAndSet(false, true)) {
+                        String emsg = Globals.getBrokerResources().getKString(BrokerResources.W_TAKEOVER_DESTINATION_NOT_READY, duid,
+                                String.valueOf(takeoverDestinationWaitTimeout));
+                        logger.log(Logger.WARNING, emsg);
+                        callback.accept(emsg);
+                    }
+                }
+            };
+            Globals.getTimer().schedule(timeout, takeoverDestinationWaitTimeout * 1000L);
+            boolean added = targets[i].addDestinationWaiter(dst, () -> {
+                if (done.compareAndSet(false, true)) {
+                    timeout.cancel();
+                    callback.accept(null);
+                }
+            });
+            if (added) {
+                logger.log(Logger.INFO, Globals.getBrokerResources().getKString(BrokerResources.I_WAIT_FOR_TAKEOVER_DESTINATION, duid));
+                return true;
+            }
+            timeout.cancel();
+        }
+        return false;
+    }
+
     @Override
     public boolean checkTakingoverMessage(Packet p) {
         TakingoverTracker target = null;
@@ -828,6 +902,13 @@ public class HAMonitorServiceImpl implements HAMonitorService, ClusterListener {
         boolean force = false;
         boolean throwex = false;
 
+        // the store of the broker being taken over is owned and its messages are being loaded
+        private volatile boolean processingData = false;
+
+        boolean isProcessingData() {
+            return processingData;
+        }
+
         /**
          * create an instance of TakeoverThread.
          *
@@ -1032,7 +1113,9 @@ public class HAMonitorServiceImpl implements HAMonitorService, ClusterListener {
                             Map m = translist.loadTakeoverTxns(txn, remoteTxn, msgs);
                             logger.logToAll(Logger.INFO, BrokerResources.I_TAKEOVER_MSGS, tracker.getTargetName(), String.valueOf(msgs.size()));
 
-                            DestinationList.loadTakeoverMsgs(pstore, msgs, txn, m);
+                            tracker.setDestinationsPending(msgs.values());
+                            processingData = true;
+                            DestinationList.loadTakeoverMsgs(pstore, msgs, txn, m, tracker.getTargetName(), tracker::setDestinationReady);
                             tracker.setStage_AFTER_PROCESSING();
                             takingoverTargets.remove(tracker);
 
@@ -1119,6 +1202,8 @@ public class HAMonitorServiceImpl implements HAMonitorService, ClusterListener {
                             mbus.postTakeover(tracker.getTargetName(), (takeoverComplete ? tracker.getStoreSessionUID() : tracker.getDownStoreSessionUID()),
                                     !takeoverComplete, true);
                         } finally {
+                            processingData = false;
+                            tracker.releaseDestinationWaiters();
                             if (tracker.getStage() < TakingoverTracker.AFTER_DB_SWITCH_OWNER) {
                                 takingoverTargets.remove(tracker);
                             }
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.messaging.jmq.jmsserver.cluster.router;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Flow window of a remote consumer on a queue with the ADAPTIVE cluster delivery policy.
+ * <P>
+ * The window is the number of unacknowledged messages the consumer may have in flight. It starts at the cluster consumer
+ * flow limit and shrinks
+ * <UL>
+ * <LI>in proportion to how much slower the consumer acknowledges than the remote consumers of the same queue on
+ * average, and
+ * <LI>by half for each memory level the broker of the consumer is above green.
+ * </UL>
+ * A consumer with a full window is passed over, so the messages go to the consumers that keep up, until enough of its
+ * messages are acknowledged. The window never shrinks below one message, so a slow consumer is still served and its
+ * latency can recover.
+ */
+class AdaptiveDeliveryWindow {
+
+    // weight of a new sample in the ack latency moving averages
+    static final double ALPHA = 0.1;
+
+    /**
+     * Ack latency of all remote consumers of one queue
+     */
+    static class Group {
+        private double avgAckNanos = 0;
+
+        // number of open windows in the group, only changed in a compute of the groups map
+        private int windows = 0;
+
+        synchronized void sample(long nanos) {
+            avgAckNanos = (avgAckNanos == 0 ? nanos : avgAckNanos + ALPHA * (nanos - avgAckNanos));
+        }
+
+        synchronized double getAverageAckNanos() {
+            return avgAckNanos;
+        }
+    }
+
+    private final Group group;
+    // key of the group in the groups map, null if the window was not opened from one
+    private final Object groupKey;
+    private final AtomicInteger inflight = new AtomicInteger(0);
+    private double avgAckNanos = 0;
+    private volatile boolean held = false;
+
+    AdaptiveDeliveryWindow(Group group) {
+        this(group, null);
+    }
+
+    private AdaptiveDeliveryWindow(Group group, Object groupKey) {
+        this.group = group;
+        this.groupKey = groupKey;
+    }
+
+    /**
+     * Open a window in the group of a queue, the group is created with its first window
+     *
+     * @param groups the groups by queue
+     * @param key the queue
+     */
+    static <K> AdaptiveDeliveryWindow open(ConcurrentMap<K, Group> groups, K key) {
+        Group g = groups.compute(key, (k, v) -> {
+            Group n = (v == null ? new Group() : v);
+            n.windows++;
+            return n;
+        });
+        return new AdaptiveDeliveryWindow(g, key);
+    }
+
+    /**
+     * Close a window opened from the groups, the group is removed with its last window
+     */
+    @SuppressWarnings("unchecked")
+    <K> void close(ConcurrentMap<K, Group> groups) {
+        if (groupKey == null) {
+            return;
+        }
+        groups.computeIfPresent((K) groupKey, (k, v) -> (v != group || --v.windows > 0) ? v : null);
+    }
+
+    /**
+     * Called when a message is sent to the consumer
+     */
+    void sent() {
+        inflight.incrementAndGet();
+    }
+
+    /**
+     * Called when a message sent to the consumer is no longer in flight
+     *
+     * @param ackNanos time from sending to acknowledgement, -1 if the message was not acknowledged
+     * @return true if the consumer was held back and may get messages again
+     */
+    boolean done(long ackNanos) {
+        inflight.decrementAndGet();
+        if (ackNanos >= 0) {
+            synchronized (this) {
+                avgAckNanos = (avgAckNanos == 0 ? ackNanos : avgAckNanos + ALPHA * (ackNanos - avgAckNanos));
+            }
+            group.sample(ackNanos);
+        }
+        if (held) {
+            held = false;
+            return true;
+        }
+        return false;
+    }
+
+    int getInFlight() {
+        return inflight.get();
+    }
+
+    synchronized double getAverageAckNanos() {
+        return avgAckNanos;
+    }
+
+    /**
+     * @param flowLimit the cluster consumer flow limit
+     * @param memoryLevel memory level index of the broker of the consumer, 0 is green
+     */
+    int getSize(int flowLimit, int memoryLevel) {
+        double size = flowLimit;
+        double mine = getAverageAckNanos();
+        double all = group.getAverageAckNanos();
+        if (mine > all && all > 0) {
+            size = size * all / mine;
+        }
+        if (memoryLevel > 0) {
+            size = size / (1 << Math.min(memoryLevel, 30));
+        }
+        return Math.max(1, (int) size);
+    }
+
+    /**
+     * @return true if the consumer must not get another message now, it is then marked held until a message is done
+     */
+    boolean isFull(int flowLimit, int memoryLevel) {
+        if (inflight.get() < getSize(flowLimit, memoryLevel)) {
+            return false;
+        }
+        held = true;
+        // a message may have been done since the size was checked
+        return inflight.get() >= getSize(flowLimit, memoryLevel);
+    }
+
+    @Override
+    public String toString() {
+        return "[inflight=" + inflight.get() + ", avgAckMillis=" + (long) (getAverageAckNanos() / 1000000) + ", queueAvgAckMillis="
+                + (long) (group.getAverageAckNanos() / 1000000) + (held ? ", held" : "") + "]";
+    }
+}
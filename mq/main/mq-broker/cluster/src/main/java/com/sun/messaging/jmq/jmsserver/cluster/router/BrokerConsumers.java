@@ -33,6 +33,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 import com.sun.messaging.jmq.io.Status;
 import com.sun.messaging.jmq.io.SysMessageID;
 import com.sun.messaging.jmq.util.timer.WakeupableTimer;
@@ -63,8 +64,8 @@ import com.sun.messaging.jmq.jmsserver.service.ConnectionUID;
 import com.sun.messaging.jmq.jmsserver.util.AckEntryNotFoundException;
 import com.sun.messaging.jmq.jmsserver.util.BrokerException;
 import com.sun.messaging.jmq.jmsserver.util.ConsumerAlreadyAddedException;
-import com.sun.messaging.jmq.util.MQThread;
 import com.sun.messaging.jmq.jmsserver.util.lists.RemoveReason;
+import com.sun.messaging.jmq.util.ClusterDeliveryPolicy;
 import com.sun.messaging.jmq.util.DestType;
 import com.sun.messaging.jmq.util.lists.EventType;
 import com.sun.messaging.jmq.util.lists.Prioritized;
@@ -79,14 +80,12 @@ import com.sun.messaging.jmq.jmsserver.persist.api.NoPersistPartitionedStoreImpl
 /**
  * This class represents the remote Consumers associated with the brokers in this cluster.
  */
-class BrokerConsumers implements Runnable, com.sun.messaging.jmq.util.lists.EventListener {
-    Thread thr = null;
+class BrokerConsumers implements com.sun.messaging.jmq.util.lists.EventListener {
 
     Logger logger = Globals.getLogger();
     BrokerResources br = Globals.getBrokerResources();
     Protocol protocol = null;
     boolean valid = true;
-    Set activeConsumers = Collections.synchronizedSet(new LinkedHashSet());
     Map consumers = Collections.synchronizedMap(new HashMap());
     Map listeners = Collections.synchronizedMap(new HashMap());
 
@@ -94,6 +93,19 @@ class BrokerConsumers implements Runnable, com.sun.messaging.jmq.util.lists.Even
 
     public static int BTOBFLOW = Globals.getConfig().getIntProperty(Globals.IMQ + ".cluster.consumerFlowLimit", 1000);
 
+    // number of threads delivering messages to remote consumers
+    public static final int DELIVERY_THREADS = Math.max(1, Globals.getConfig().getIntProperty(Globals.IMQ + ".cluster.remoteDeliveryThreads",
+            Math.min(4, Runtime.getRuntime().availableProcessors())));
+
+    // each remote consumer is pinned to one worker and one remove lock by its ConsumerUID
+    private RemoteDeliveryWorker<Consumer>[] workers = null;
+    private Object[] removeConsumerLocks = null;
+
+    // flow windows of the remote consumers of queues with the ADAPTIVE cluster delivery policy
+    private Map<com.sun.messaging.jmq.jmsserver.core.ConsumerUID, AdaptiveDeliveryWindow> adaptiveWindows = new ConcurrentHashMap<>();
+    // ack latency groups by queue, a group is removed with the last window of its queue
+    private ConcurrentHashMap<DestinationUID, AdaptiveDeliveryWindow.Group> adaptiveGroups = new ConcurrentHashMap<>();
+
     DestinationList DL = Globals.getDestinationList();
     Map deliveredMessages = new LinkedHashMap();
     Map cleanupList = new HashMap();
@@ -118,9 +130,29 @@ class BrokerConsumers implements Runnable, com.sun.messaging.jmq.util.lists.Even
             pendingCheckInterval = p.getClusterAckWaitTimeout();
         }
         this.fi = FaultInjection.getInjection();
-        Thread thr = new MQThread(this, "Cluster-BrokerConsumers");
-        thr.setDaemon(true);
-        thr.start();
+        workers = new RemoteDeliveryWorker[DELIVERY_THREADS];
+        removeConsumerLocks = new Object[DELIVERY_THREADS];
+        for (int i = 0; i < workers.length; i++) {
+            removeConsumerLocks[i] = new Object();
+            workers[i] = new RemoteDeliveryWorker<>("Cluster-BrokerConsumers" + (i == 0 ? "" : "-" + i), Consumer::isBusy, this::deliverNext,
+                    this::isAdaptiveWindowFull);
+            workers[i].start();
+        }
+    }
+
+    private int getIndex(com.sun.messaging.jmq.jmsserver.core.ConsumerUID uid) {
+        return Math.floorMod(Long.hashCode(uid.longValue()), workers.length);
+    }
+
+    private RemoteDeliveryWorker<Consumer> getWorker(com.sun.messaging.jmq.jmsserver.core.ConsumerUID uid) {
+        return workers[getIndex(uid)];
+    }
+
+    /**
+     * Lock held while a message is delivered to a consumer, so the consumer is not removed in between
+     */
+    private Object getRemoveConsumerLock(com.sun.messaging.jmq.jmsserver.core.ConsumerUID uid) {
+        return removeConsumerLocks[getIndex(uid)];
     }
 
     public void notifyPendingCheckTimer() {
@@ -230,6 +262,8 @@ class BrokerConsumers implements Runnable, com.sun.messaging.jmq.util.lists.Even
         TransactionUID tuid = null;
         long pendingStartTime = 0L;
         boolean markConsumed = false;
+        AdaptiveDeliveryWindow window = null;
+        long sentNanos = 0L;
 
         AckEntry(SysMessageID id, com.sun.messaging.jmq.jmsserver.core.ConsumerUID uid, com.sun.messaging.jmq.jmsserver.core.BrokerAddress address) {
             assert id != null;
@@ -244,6 +278,25 @@ class BrokerConsumers implements Runnable, com.sun.messaging.jmq.util.lists.Even
             markConsumed = true;
         }
 
+        /**
+         * Called when this entry is removed from deliveredMessages
+         *
+         * @param acked true if the message was acknowledged by the remote consumer
+         */
+        void released(boolean acked) {
+            AdaptiveDeliveryWindow w = window;
+            if (w == null) {
+                return;
+            }
+            window = null;
+            if (w.done(acked ? System.nanoTime() - sentNanos : -1L)) {
+                Consumer c = (Consumer) consumers.get(uid);
+                if (c != null) {
+                    getWorker(uid).signal(c);
+                }
+            }
+        }
+
         public boolean hasMarkConsumed() {
             return markConsumed;
         }
@@ -377,9 +430,19 @@ class BrokerConsumers implements Runnable, com.sun.messaging.jmq.util.lists.Even
             }
         }
 
-        synchronized (activeConsumers) {
-            l = new ArrayList(activeConsumers);
+        l = new ArrayList();
+        Vector wv = new Vector();
+        for (RemoteDeliveryWorker<Consumer> w : workers) {
+            List<Consumer> ready = w.getReadyConsumers();
+            l.addAll(ready);
+            wv.add(w.toString() + ", active=" + ready.size());
+        }
+        ht.put("deliveryWorkers", wv);
+        Hashtable aw = new Hashtable();
+        for (Map.Entry<com.sun.messaging.jmq.jmsserver.core.ConsumerUID, AdaptiveDeliveryWindow> e : adaptiveWindows.entrySet()) {
+            aw.put(e.getKey().toString(), e.getValue().toString() + ", memoryLevel=" + protocol.getMemoryLevel(e.getKey().getBrokerAddress()));
         }
+        ht.put("adaptiveWindows", aw);
         ht.put("activeConsumersCount", l.size());
         Vector v = new Vector();
         itr = l.iterator();
@@ -452,8 +515,8 @@ class BrokerConsumers implements Runnable, com.sun.messaging.jmq.util.lists.Even
 
     public void destroy() {
         valid = false;
-        synchronized (activeConsumers) {
-            activeConsumers.notifyAll();
+        for (RemoteDeliveryWorker<Consumer> w : workers) {
+            w.shutdown();
         }
         synchronized (pendingCheckTimerLock) {
             pendingCheckTimerShutdown = true;
@@ -471,12 +534,7 @@ class BrokerConsumers implements Runnable, com.sun.messaging.jmq.util.lists.Even
         // OK .. add to busy list
         Consumer c = (Consumer) target;
 
-        synchronized (activeConsumers) {
-            if (c.isBusy()) {
-                activeConsumers.add(c);
-            }
-            activeConsumers.notifyAll();
-        }
+        getWorker(c.getConsumerUID()).signal(c);
     }
 
     public void brokerDown(com.sun.messaging.jmq.jmsserver.core.BrokerAddress address) throws BrokerException {
@@ -536,7 +594,7 @@ class BrokerConsumers implements Runnable, com.sun.messaging.jmq.util.lists.Even
                 continue;
             }
 
-            synchronized (removeConsumerLock) {
+            synchronized (getRemoveConsumerLock(uid)) {
                 if (consumers.get(uid) == null) {
                     if (getDEBUG()) {
                         Globals.getLogger().log(Logger.INFO, "BrokerConsumers.forwardMessageToRemote(): " + ref + ", ignore removed consumer: " + consumer);
@@ -597,8 +655,6 @@ class BrokerConsumers implements Runnable, com.sun.messaging.jmq.util.lists.Even
         }
     }
 
-    private Object removeConsumerLock = new Object();
-
     public void removeConsumer(com.sun.messaging.jmq.jmsserver.core.ConsumerUID uid, boolean cleanup) throws BrokerException {
         removeConsumer(uid, null, cleanup);
     }
@@ -610,9 +666,10 @@ class BrokerConsumers implements Runnable, com.sun.messaging.jmq.util.lists.Even
             logger.log(logger.INFO, "BrokerConsumers.removeConsumer(" + uid + ", " + pendingMsgs + ", " + cleanup + ")");
         }
         Consumer c = null;
-        synchronized (removeConsumerLock) {
+        synchronized (getRemoveConsumerLock(uid)) {
             c = (Consumer) consumers.remove(uid);
         }
+        removeAdaptiveWindow(uid);
         if (c == null && !cleanup) {
             return;
         }
@@ -631,7 +688,7 @@ class BrokerConsumers implements Runnable, com.sun.messaging.jmq.util.lists.Even
             }
 
             // remove it from the active list
-            activeConsumers.remove(c);
+            getWorker(uid).remove(c);
         }
 
         Set destroySet = new LinkedHashSet();
@@ -706,6 +763,7 @@ class BrokerConsumers implements Runnable, com.sun.messaging.jmq.util.lists.Even
                     logger.log(logger.DEBUG, "BrokerConsumers.removeConsumer:" + uid + ", remove AckEntry=" + e + ", c=" + c);
                 }
                 itr.remove();
+                e.released(false);
                 if (cleanup) {
                     updateConsumed(e, Integer.valueOf(1), true);
                 }
@@ -937,10 +995,10 @@ class BrokerConsumers implements Runnable, com.sun.messaging.jmq.util.lists.Even
                             }
                         }
                         if (value != null) {
-                            value = (AckEntry) deliveredMessages.remove(entry);
+                            value = removeDelivered(entry, false);
                         }
                     } else {
-                        value = (AckEntry) deliveredMessages.remove(entry);
+                        value = removeDelivered(entry, false);
                         cleanupPendingConsumerUID(cuid, sysid);
                     }
                 }
@@ -1001,7 +1059,7 @@ class BrokerConsumers implements Runnable, com.sun.messaging.jmq.util.lists.Even
                         logger.log(Logger.INFO, "Cleanup dead message (not remote delivered): " + value);
                     }
                     synchronized (deliveredMessages) {
-                        deliveredMessages.remove(entry);
+                        removeDelivered(entry, false);
                     }
                 }
                 return true;
@@ -1021,7 +1079,7 @@ class BrokerConsumers implements Runnable, com.sun.messaging.jmq.util.lists.Even
 
         if (ackType == ClusterBroadcast.MSG_ACKNOWLEDGED) {
             synchronized (deliveredMessages) {
-                value = (AckEntry) deliveredMessages.remove(entry);
+                value = removeDelivered(entry, true);
                 cleanupPendingConsumerUID(cuid, sysid);
             }
             if (value == null) {
@@ -1031,7 +1089,7 @@ class BrokerConsumers implements Runnable, com.sun.messaging.jmq.util.lists.Even
         }
 
         synchronized (deliveredMessages) {
-            value = (AckEntry) deliveredMessages.remove(entry);
+            value = removeDelivered(entry, false);
             cleanupPendingConsumerUID(cuid, sysid);
 
             if (ackType == ClusterBroadcast.MSG_DEAD || ackType == ClusterBroadcast.MSG_UNDELIVERABLE) {
@@ -1095,6 +1153,7 @@ class BrokerConsumers implements Runnable, com.sun.messaging.jmq.util.lists.Even
                                 logger.log(Logger.INFO, "Cleanup remote dead ack entries(" + (i++) + "th): " + e);
                             }
                             itr.remove();
+                            e.released(false);
                         }
                     }
                     return true;
@@ -1222,7 +1281,7 @@ class BrokerConsumers implements Runnable, com.sun.messaging.jmq.util.lists.Even
                     }
                     PacketReference ref = value.getReference();
                     if (ref == null) {
-                        deliveredMessages.remove(entry);
+                        removeDelivered(entry, false);
                         String emsg = "Unable to prepare [" + sysids[i] + ":" + cuids[i] + "]TID=" + tid + " because the message has been removed";
                         if (ae == null) {
                             ae = new AckEntryNotFoundException(emsg);
@@ -1244,7 +1303,7 @@ class BrokerConsumers implements Runnable, com.sun.messaging.jmq.util.lists.Even
                         TransactionList[] tls = Globals.getDestinationList().getTransactionList(refpstore);
                         tl = tls[0];
                         if (tl == null) {
-                            deliveredMessages.remove(entry);
+                            removeDelivered(entry, false);
                             String emsg = "Unable to prepare [" + sysids[i] + ":" + cuids[i] + "]TID=" + tid + " because transaction list for partition "
                                     + refpstore + " not found";
                             if (ae == null) {
@@ -1326,7 +1385,7 @@ class BrokerConsumers implements Runnable, com.sun.messaging.jmq.util.lists.Even
                         }
                     }
                     if (e != null) {
-                        deliveredMessages.remove(e);
+                        removeDelivered(e, false);
                         cleanupPendingConsumerUID(e.getConsumerUID(), e.getSysMessageID());
                     }
                 }
@@ -1405,7 +1464,7 @@ class BrokerConsumers implements Runnable, com.sun.messaging.jmq.util.lists.Even
                                 continue;
                             }
                             if (consumers.get(uid) == null) {
-                                deliveredMessages.remove(entry);
+                                removeDelivered(entry, false);
                                 cleanupPendingConsumerUID(uid, sysid);
                                 s.add(tas[i]);
                             } else {
@@ -1826,10 +1885,7 @@ class BrokerConsumers implements Runnable, com.sun.messaging.jmq.util.lists.Even
 
                 if (!(c instanceof Subscription)) {
                     if (c.isBusy()) {
-                        synchronized (activeConsumers) {
-                            activeConsumers.add(c);
-                            activeConsumers.notifyAll();
-                        }
+                        getWorker(cuid).signal(c);
                     }
                 }
             } finally {
@@ -1845,62 +1901,100 @@ class BrokerConsumers implements Runnable, com.sun.messaging.jmq.util.lists.Even
         }
     }
 
-    @Override
-    public void run() {
-        while (valid) {
-            Consumer c = null;
-            synchronized (activeConsumers) {
-                while (valid && activeConsumers.isEmpty()) {
-                    try {
-                        activeConsumers.wait();
-                    } catch (InterruptedException ex) {
-                    }
-                }
-                if (valid) {
-                    Iterator itr = activeConsumers.iterator();
-                    c = (Consumer) itr.next();
-                    itr.remove();
-                    if (c.isBusy()) {
-                        activeConsumers.add(c);
-                    }
-                }
-            }
-            if (c == null) {
-                continue;
+    /**
+     * Remove an entry from deliveredMessages, caller must hold the deliveredMessages lock
+     *
+     * @param acked true if the message was acknowledged by the remote consumer
+     * @return the removed entry or null
+     */
+    private AckEntry removeDelivered(AckEntry entry, boolean acked) {
+        AckEntry value = (AckEntry) deliveredMessages.remove(entry);
+        if (value != null) {
+            value.released(acked);
+        }
+        return value;
+    }
+
+    /**
+     * @return the flow window of a remote consumer if the queue of the message has the ADAPTIVE cluster delivery policy
+     */
+    private AdaptiveDeliveryWindow getAdaptiveWindow(Consumer c, PacketReference ref) {
+        com.sun.messaging.jmq.jmsserver.core.ConsumerUID cuid = c.getConsumerUID();
+        Destination d = ref.getDestination();
+        if (d == null || d.getClusterDeliveryPolicy() != ClusterDeliveryPolicy.ADAPTIVE) {
+            if (!adaptiveWindows.isEmpty()) {
+                removeAdaptiveWindow(cuid);
             }
+            return null;
+        }
+        return adaptiveWindows.computeIfAbsent(cuid, k -> AdaptiveDeliveryWindow.open(adaptiveGroups, d.getDestinationUID()));
+    }
 
-            PacketReference ref = null;
-            HashSet s = null;
-            boolean cb = false;
-            synchronized (removeConsumerLock) {
-                if (consumers.get(c.getConsumerUID()) == null) {
-                    if (getDEBUG()) {
-                        Globals.getLogger().log(Logger.INFO, "BrokerConsumers.run(): ignore removed consumer: " + c);
-                    }
-                    continue;
-                }
+    private void removeAdaptiveWindow(com.sun.messaging.jmq.jmsserver.core.ConsumerUID cuid) {
+        AdaptiveDeliveryWindow w = adaptiveWindows.remove(cuid);
+        if (w != null) {
+            w.close(adaptiveGroups);
+        }
+    }
 
-                ref = (PacketReference) c.getAndFillNextPacket(null);
-                if (ref == null) {
-                    continue;
+    /**
+     * @return true if the remote consumer has as many unacknowledged messages in flight as its adaptive flow window allows
+     */
+    private boolean isAdaptiveWindowFull(Consumer c) {
+        if (adaptiveWindows.isEmpty()) {
+            return false;
+        }
+        com.sun.messaging.jmq.jmsserver.core.ConsumerUID cuid = c.getConsumerUID();
+        AdaptiveDeliveryWindow w = adaptiveWindows.get(cuid);
+        if (w == null) {
+            return false;
+        }
+        return w.isFull(BTOBFLOW, protocol.getMemoryLevel(cuid.getBrokerAddress()));
+    }
+
+    /**
+     * Deliver the next message of a remote consumer, called by the consumer's delivery worker
+     *
+     * @return false if there was no message to deliver
+     */
+    private boolean deliverNext(Consumer c) {
+        PacketReference ref = null;
+        HashSet s = null;
+        boolean cb = false;
+        synchronized (getRemoveConsumerLock(c.getConsumerUID())) {
+            if (consumers.get(c.getConsumerUID()) == null) {
+                if (getDEBUG()) {
+                    Globals.getLogger().log(Logger.INFO, "BrokerConsumers.deliverNext(): ignore removed consumer: " + c);
                 }
+                return false;
+            }
 
-                s = new HashSet();
-                s.add(c);
-                cb = ref.getMessageDeliveredAck(c.getConsumerUID()) || c.isPaused();
+            ref = (PacketReference) c.getAndFillNextPacket(null);
+            if (ref == null) {
+                return false;
+            }
 
-                if (!c.getConsumerUID().isNoAck()) {
-                    AckEntry entry = new AckEntry(ref, c.getConsumerUID(), c.getStoredConsumerUID());
-                    synchronized (deliveredMessages) {
-                        deliveredMessages.put(entry, entry);
-                        if (getDEBUG()) {
-                            logger.log(logger.DEBUG, "deliveredMessages:" + entry);
-                        }
+            s = new HashSet();
+            s.add(c);
+            cb = ref.getMessageDeliveredAck(c.getConsumerUID()) || c.isPaused();
+
+            if (!c.getConsumerUID().isNoAck()) {
+                AckEntry entry = new AckEntry(ref, c.getConsumerUID(), c.getStoredConsumerUID());
+                AdaptiveDeliveryWindow w = getAdaptiveWindow(c, ref);
+                if (w != null) {
+                    entry.window = w;
+                    entry.sentNanos = System.nanoTime();
+                    w.sent();
+                }
+                synchronized (deliveredMessages) {
+                    deliveredMessages.put(entry, entry);
+                    if (getDEBUG()) {
+                        logger.log(logger.DEBUG, "deliveredMessages:" + entry);
                     }
                 }
             }
-            protocol.sendMessage(ref, s, cb);
         }
+        protocol.sendMessage(ref, s, cb);
+        return true;
     }
 }
-
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.messaging.jmq.jmsserver.cluster.router;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+import com.sun.messaging.jmq.util.MQThread;
+
+/**
+ * One of the threads delivering messages to remote consumers. Each remote consumer is pinned to one worker, so the
+ * messages of a consumer are always sent in order by the same thread, while different consumers are served in
+ * parallel.
+ * <P>
+ * A consumer is signalled to its worker when it becomes busy (has messages it can take). The worker delivers one message
+ * at a time to each of its busy consumers in turn and waits on its own monitor when none of them is busy.
+ * <P>
+ * A busy consumer may also be held back (e.g. its adaptive flow window is full). It is then set aside until it is
+ * signalled again, or at the latest until the worker rechecks the held consumers after HOLD_RECHECK_MILLIS.
+ */
+class RemoteDeliveryWorker<T> implements Runnable {
+
+    private final String name;
+    private final Predicate<T> busy;
+    private final Predicate<T> deliver;
+    private final Predicate<T> hold;
+
+    static final long HOLD_RECHECK_MILLIS = 50L;
+
+    // busy consumers in delivery order, guarded by this
+    private final LinkedHashSet<T> ready = new LinkedHashSet<>();
+    // busy consumers held back, guarded by this
+    private final LinkedHashSet<T> held = new LinkedHashSet<>();
+    private boolean valid = true;
+    private Thread thread = null;
+
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder emptyPolls = new LongAdder();
+    private final LongAdder wakeups = new LongAdder();
+    private final LongAdder holds = new LongAdder();
+
+    /**
+     * @param busy true if the consumer has messages it can take
+     * @param deliver deliver the next message to the consumer, false if there was none
+     */
+    RemoteDeliveryWorker(String name, Predicate<T> busy, Predicate<T> deliver) {
+        this(name, busy, deliver, c -> false);
+    }
+
+    /**
+     * @param hold true if the busy consumer must not get a message now
+     */
+    RemoteDeliveryWorker(String name, Predicate<T> busy, Predicate<T> deliver, Predicate<T> hold) {
+        this.name = name;
+        this.busy = busy;
+        this.deliver = deliver;
+        this.hold = hold;
+    }
+
+    synchronized void start() {
+        thread = new MQThread(this, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Called when the busy state of a consumer pinned to this worker may have changed
+     */
+    synchronized void signal(T c) {
+        if (busy.test(c)) {
+            held.remove(c);
+            ready.add(c);
+        }
+        notifyAll();
+    }
+
+    synchronized void remove(T c) {
+        ready.remove(c);
+        held.remove(c);
+    }
+
+    synchronized void shutdown() {
+        valid = false;
+        notifyAll();
+    }
+
+    synchronized List<T> getReadyConsumers() {
+        return new ArrayList<>(ready);
+    }
+
+    long getDeliveredCount() {
+        return delivered.sum();
+    }
+
+    long getEmptyPollCount() {
+        return emptyPolls.sum();
+    }
+
+    long getWakeupCount() {
+        return wakeups.sum();
+    }
+
+    long getHoldCount() {
+        return holds.sum();
+    }
+
+    synchronized List<T> getHeldConsumers() {
+        return new ArrayList<>(held);
+    }
+
+    private synchronized T next() {
+        while (valid) {
+            if (ready.isEmpty()) {
+                try {
+                    if (held.isEmpty()) {
+                        wait();
+                    } else {
+                        wait(HOLD_RECHECK_MILLIS);
+                        if (ready.isEmpty()) {
+                            ready.addAll(held);
+                            held.clear();
+                        }
+                    }
+                    wakeups.increment();
+                } catch (InterruptedException ex) {
+                }
+                continue;
+            }
+            Iterator<T> itr = ready.iterator();
+            T c = itr.next();
+            itr.remove();
+            boolean isbusy = busy.test(c);
+            if (hold.test(c)) {
+                holds.increment();
+                if (isbusy) {
+                    held.add(c);
+                }
+                continue;
+            }
+            if (isbusy) {
+                // to the end of the line
+                ready.add(c);
+            }
+            return c;
+        }
+        return null;
+    }
+
+    @Override
+    public void run() {
+        T c = null;
+        while ((c = next()) != null) {
+            if (deliver.test(c)) {
+                delivered.increment();
+            } else {
+                emptyPolls.increment();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name + "[delivered=" + getDeliveredCount() + ", emptyPolls=" + getEmptyPollCount() + ", wakeups=" + getWakeupCount() + ", holds="
+                + getHoldCount() + "]";
+    }
+}
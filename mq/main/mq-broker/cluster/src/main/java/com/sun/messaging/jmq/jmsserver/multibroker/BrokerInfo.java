@@ -42,9 +42,14 @@ public class BrokerInfo implements Serializable {
     private String heartbeatHostAddress = null;
     private int heartbeatPort = -1;
     private int heartbeatInterval = 0;
+    // 0 from a broker that only has second intervals
+    private long heartbeatIntervalMillis = 0;
 
     private Integer clusterProtocolVersion = null;
 
+    // false from a broker that does not read compact MapMessage and StreamMessage bodies
+    private boolean compactBody = false;
+
     private transient String realRemote = null;
 
     public Integer getClusterProtocolVersion() {
@@ -112,6 +117,31 @@ public class BrokerInfo implements Serializable {
         return heartbeatInterval;
     }
 
+    public void setHeartbeatIntervalMillis(long ms) {
+        heartbeatIntervalMillis = ms;
+    }
+
+    /**
+     * @return the heartbeat interval in milliseconds
+     */
+    public long getHeartbeatIntervalMillis() {
+        if (heartbeatIntervalMillis > 0) {
+            return heartbeatIntervalMillis;
+        }
+        return heartbeatInterval * 1000L;
+    }
+
+    public void setCompactBody(boolean compact) {
+        compactBody = compact;
+    }
+
+    /**
+     * @return true if the broker reads compact MapMessage and StreamMessage bodies
+     */
+    public boolean getCompactBody() {
+        return compactBody;
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder("\n\tAddress = " + brokerAddr + "\n\tStartTime = " + startTime
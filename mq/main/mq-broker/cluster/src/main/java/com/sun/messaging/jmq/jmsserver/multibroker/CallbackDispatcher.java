@@ -92,6 +92,31 @@ public final class CallbackDispatcher extends Thread {
         }
     }
 
+    /**
+     * Run a task on the dispatcher thread after the events queued before it
+     */
+    public void processTask(final Runnable task, final String name) {
+        CallbackEvent cbe = new CallbackEvent() {
+            @Override
+            public void dispatch(MessageBusCallback cb) {
+                task.run();
+            }
+
+            @Override
+            public String toString() {
+                return name;
+            }
+        };
+
+        synchronized (eventQ) {
+            if (stopThread) {
+                return;
+            }
+            eventQ.add(cbe);
+            eventQ.notifyAll();
+        }
+    }
+
     public void processGPacket(BrokerAddress sender, GPacket pkt, Protocol p) {
         CallbackEvent cbe = new GPacketCallbackEvent(sender, pkt, p);
 
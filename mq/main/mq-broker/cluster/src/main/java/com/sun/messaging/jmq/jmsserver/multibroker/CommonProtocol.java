@@ -132,11 +132,13 @@ public class CommonProtocol implements Protocol {
         selfInfo.setStartTime(startTime);
         selfInfo.setStoreDirtyFlag(false);
         selfInfo.setClusterProtocolVersion(Integer.valueOf(ProtocolGlobals.getCurrentVersion()));
+        selfInfo.setCompactBody(true);
 
         if (Globals.getHAEnabled()) {
             selfInfo.setHeartbeatHostAddress(((HeartbeatService) Globals.getHeartbeatService()).getHeartbeatHostAddress());
             selfInfo.setHeartbeatPort(((HeartbeatService) Globals.getHeartbeatService()).getHeartbeatPort());
             selfInfo.setHeartbeatInterval(((HeartbeatService) Globals.getHeartbeatService()).getHeartbeatInterval());
+            selfInfo.setHeartbeatIntervalMillis(((HeartbeatService) Globals.getHeartbeatService()).getHeartbeatIntervalMillis());
         }
 
         return selfInfo;
@@ -375,6 +377,14 @@ public class CommonProtocol implements Protocol {
         return realProtocol.getClusterAckWaitTimeout();
     }
 
+    @Override
+    public int getMemoryLevel(com.sun.messaging.jmq.jmsserver.core.BrokerAddress broker) {
+        if (!getProtocolInitComplete()) {
+            return 0;
+        }
+        return realProtocol.getMemoryLevel(broker);
+    }
+
     @Override
     public com.sun.messaging.jmq.jmsserver.core.BrokerAddress lookupBrokerAddress(String brokerid) {
         if (!getProtocolInitComplete()) {
@@ -143,6 +143,11 @@ public interface Protocol extends ClusterCallback {
     // in seconds
     int getClusterAckWaitTimeout();
 
+    /**
+     * @return the memory level index last announced by the remote broker, 0 (green) if none
+     */
+    int getMemoryLevel(com.sun.messaging.jmq.jmsserver.core.BrokerAddress broker);
+
     com.sun.messaging.jmq.jmsserver.core.BrokerAddress lookupBrokerAddress(String brokerid);
 
     com.sun.messaging.jmq.jmsserver.core.BrokerAddress lookupBrokerAddress(BrokerMQAddress mqaddr);
@@ -46,6 +46,7 @@ public class HeartbeatImpl implements Heartbeat {
     public static final int DEFAULT_TIMEOUT_THRESHOLD = 3;
 
     private int heartbeatInterval = DEFAULT_HEARTBEAT_INTERVAL; // in seconds
+    private volatile long heartbeatIntervalMillis = DEFAULT_HEARTBEAT_INTERVAL * 1000L;
     private int timeoutThreshold = DEFAULT_TIMEOUT_THRESHOLD * heartbeatInterval;
 
     private HeartbeatCallback cb = null;
@@ -141,6 +142,7 @@ public class HeartbeatImpl implements Heartbeat {
     @Override
     public void setHeartbeatInterval(int interval) {
         heartbeatInterval = interval;
+        heartbeatIntervalMillis = interval * 1000L;
     }
 
     /**
@@ -152,6 +154,22 @@ public class HeartbeatImpl implements Heartbeat {
         return heartbeatInterval;
     }
 
+    /**
+     * The interval in seconds is rounded up, it is what brokers that do not know of millisecond intervals see
+     *
+     * @param interval The inteval between each heartbeat in milliseconds
+     */
+    @Override
+    public void setHeartbeatIntervalMillis(long interval) {
+        heartbeatIntervalMillis = interval;
+        heartbeatInterval = (int) Math.max(1, (interval + 999) / 1000);
+    }
+
+    @Override
+    public long getHeartbeatIntervalMillis() {
+        return heartbeatIntervalMillis;
+    }
+
     /**
      * Timeout when heartbeat message not received for period of threshold*interval from a remote endpoint
      *
@@ -357,7 +375,7 @@ public class HeartbeatImpl implements Heartbeat {
                             continue;
                         }
                         try {
-                            Thread.sleep(heartbeatInterval * 1000L);
+                            Thread.sleep(heartbeatIntervalMillis);
                         } catch (InterruptedException e) {
                         }
 
@@ -57,8 +57,27 @@ public class HeartbeatService implements HeartbeatCallback, ClusterListener, Con
     public static final String HEARTBEAT_INTERVAL_PROP = Globals.IMQ + ".cluster.heartbeat.interval";
     public static final String HEARTBEAT_THRESHOLD_PROP = Globals.IMQ + ".cluster.heartbeat.threshold";
 
+    /**
+     * Heartbeat interval in milliseconds, overrides HEARTBEAT_INTERVAL_PROP if set
+     */
+    public static final String HEARTBEAT_INTERVAL_MILLIS_PROP = Globals.IMQ + ".cluster.heartbeat.intervalMillis";
+
+    /**
+     * Phi above which a remote broker is suspected, 0 to time out after threshold times the interval
+     */
+    public static final String HEARTBEAT_PHI_THRESHOLD_PROP = Globals.IMQ + ".cluster.heartbeat.phiThreshold";
+
+    /**
+     * Pause in milliseconds tolerated on top of the mean heartbeat interval by the phi accrual detector
+     */
+    public static final String HEARTBEAT_ACCEPTABLE_PAUSE_PROP = Globals.IMQ + ".cluster.heartbeat.acceptablePause";
+
     private static final int HEARTBEAT_INTERVAL_DEFAULT = 5; // 5 seconds
     private static final int HEARTBEAT_THRESHOLD_DEFAULT = 3; // 3 times interval
+    private static final int HEARTBEAT_PHI_THRESHOLD_DEFAULT = 0; // disabled
+
+    private static final long TIMEOUT_CHECK_INTERVAL_MAX = 1000L;
+    private static final long TIMEOUT_CHECK_INTERVAL_MIN = 10L;
 
     private Logger logger = Globals.getLogger();
     private BrokerResources br = Globals.getBrokerResources();
@@ -70,6 +89,9 @@ public class HeartbeatService implements HeartbeatCallback, ClusterListener, Con
 
     private TimeoutTimer timeoutTimer = null;
 
+    private int phiThreshold = HEARTBEAT_PHI_THRESHOLD_DEFAULT;
+    private long acceptablePause = -1L;
+
     private FaultInjection fi = null;
 
     public HeartbeatService() throws Exception {
@@ -92,8 +114,18 @@ public class HeartbeatService implements HeartbeatCallback, ClusterListener, Con
         hb = (Heartbeat) c.getDeclaredConstructor().newInstance();
 
         hb.setHeartbeatInterval(Globals.getConfig().getIntProperty(HEARTBEAT_INTERVAL_PROP, HEARTBEAT_INTERVAL_DEFAULT));
+        long intervalMillis = Globals.getConfig().getLongProperty(HEARTBEAT_INTERVAL_MILLIS_PROP, 0L);
+        if (intervalMillis > 0) {
+            hb.setHeartbeatIntervalMillis(intervalMillis);
+        }
         hb.setTimeoutThreshold(Globals.getConfig().getIntProperty(HEARTBEAT_THRESHOLD_PROP, HEARTBEAT_THRESHOLD_DEFAULT));
 
+        phiThreshold = Globals.getConfig().getIntProperty(HEARTBEAT_PHI_THRESHOLD_PROP, HEARTBEAT_PHI_THRESHOLD_DEFAULT);
+        acceptablePause = Globals.getConfig().getLongProperty(HEARTBEAT_ACCEPTABLE_PAUSE_PROP, -1L);
+        if (phiThreshold > 0) {
+            logger.log(Logger.INFO, br.getKString(br.I_CLUSTER_HB_PHI_DETECTOR, String.valueOf(hb.getHeartbeatIntervalMillis()), String.valueOf(phiThreshold)));
+        }
+
         int p = Globals.getConfig().getIntProperty(HEARTBEAT_PORT_PROP, clsmgr.getMQAddress().getPort());
         String h = Globals.getConfig().getProperty(HEARTBEAT_HOST_PROP);
         if (h == null) {
@@ -129,6 +161,41 @@ public class HeartbeatService implements HeartbeatCallback, ClusterListener, Con
         return hb.getHeartbeatInterval();
     }
 
+    public long getHeartbeatIntervalMillis() {
+        return hb.getHeartbeatIntervalMillis();
+    }
+
+    /**
+     * @return how long in milliseconds a remote broker is not suspected again after it has been suspected
+     */
+    private long getTimeout(HeartbeatEntry hbe) {
+        return hbe.heartbeatIntervalMillis * hb.getTimeoutThreshold();
+    }
+
+    /**
+     * With phi accrual detection the remote broker is suspected when phi reaches the phi threshold, otherwise when no
+     * heartbeat was received for threshold times its heartbeat interval
+     */
+    private boolean isTimedout(HeartbeatEntry hbe, long now) {
+        if (hbe.detector != null) {
+            return hbe.detector.isSuspected(now, phiThreshold);
+        }
+        long timestamp = 0L;
+        synchronized (hbe) {
+            timestamp = hbe.lastTimestamp;
+        }
+        return timestamp < (now - getTimeout(hbe));
+    }
+
+    /**
+     * The timeout timer checks often enough that suspicion is raised within half a heartbeat interval, but not more often
+     * than every 10 milliseconds
+     */
+    private long getTimeoutCheckInterval() {
+        long interval = hb.getHeartbeatIntervalMillis() / 2;
+        return Math.max(TIMEOUT_CHECK_INTERVAL_MIN, Math.min(TIMEOUT_CHECK_INTERVAL_MAX, interval));
+    }
+
     public void stopService() {
         try {
             hb.stop();
@@ -156,6 +223,7 @@ public class HeartbeatService implements HeartbeatCallback, ClusterListener, Con
             HeartbeatEntry[] hbes = null;
             HeartbeatEntry hbe = null;
             HeartbeatEntry entry = null;
+            long checkInterval = getTimeoutCheckInterval();
 
             while (!stopped) {
                 try {
@@ -165,7 +233,7 @@ public class HeartbeatService implements HeartbeatCallback, ClusterListener, Con
                             break;
                         }
                         try {
-                            lock.wait(1000);
+                            lock.wait(checkInterval);
                         } catch (InterruptedException e) {
                             /* Ignored */ }
                         if (stopped) {
@@ -181,9 +249,9 @@ public class HeartbeatService implements HeartbeatCallback, ClusterListener, Con
                     }
                     for (int i = 0; i < hbes.length; i++) {
                         hbe = hbes[i];
-                        long timeout = (hbe.heartbeatInterval * hb.getTimeoutThreshold()) * 1000L;
-                        if (hbe.lastTimestamp < (System.currentTimeMillis() - timeout)) {
-                            if (hbe.indoubtTimestamp < (System.currentTimeMillis() - timeout)) {
+                        long now = System.currentTimeMillis();
+                        if (isTimedout(hbe, now)) {
+                            if (hbe.indoubtTimestamp < (now - getTimeout(hbe))) {
                                 logger.log(logger.WARNING, br.getKString(br.W_CLUSTER_HB_TIMEOUT, hbe));
                                 ClusteredBroker cb = clsmgr.getBroker(hbe.brokerID);
                                 cb.setBrokerInDoubt(true, new UID(hbe.sessionUID));
@@ -222,11 +290,13 @@ public class HeartbeatService implements HeartbeatCallback, ClusterListener, Con
         InetSocketAddress endpoint = null;
         InetSocketAddress sender = null;
         int heartbeatInterval = 0;
+        long heartbeatIntervalMillis = 0;
         long lastTimestamp = 0;
         long lastSequence = 0;
         int dataLength = 0;
         long indoubtTimestamp = 0;
         GPacket gp = null;
+        PhiAccrualDetector detector = null;
 
         @Override
         public boolean equals(Object obj) {
@@ -246,7 +316,7 @@ public class HeartbeatService implements HeartbeatCallback, ClusterListener, Con
         public String toString() {
             return ((endpoint == null) ? "" : endpoint.toString()) + " [brokerID=" + brokerID + ", brokerSession=" + sessionUID + "] (seq#="
                     + lastSequence + ", ts=" + lastTimestamp + ", interval=" + heartbeatInterval + ", len=" + dataLength + ")"
-                    + ((sender == null) ? "" : " sender=" + sender.toString());
+                    + ((sender == null) ? "" : " sender=" + sender.toString()) + ((detector == null) ? "" : " phi" + detector.toString());
         }
 
         public String toStringKS() {
@@ -305,8 +375,14 @@ public class HeartbeatService implements HeartbeatCallback, ClusterListener, Con
             hbe.dataLength = HeartbeatInfo.toByteArray(hbi.getGPacket()).length;
 
             hbe.heartbeatInterval = brokerInfo.getHeartbeatInterval();
+            hbe.heartbeatIntervalMillis = brokerInfo.getHeartbeatIntervalMillis();
             hbe.lastTimestamp = System.currentTimeMillis();
             hbe.lastSequence = 0;
+            if (phiThreshold > 0) {
+                long interval = hbe.heartbeatIntervalMillis;
+                hbe.detector = new PhiAccrualDetector(interval, interval / 10, (acceptablePause < 0 ? interval : acceptablePause),
+                        PhiAccrualDetector.DEFAULT_WINDOW_SIZE, hbe.lastTimestamp);
+            }
 
             brokers.put(hbe, hbe);
 
@@ -362,10 +438,14 @@ public class HeartbeatService implements HeartbeatCallback, ClusterListener, Con
             }
             return;
         }
+        long now = System.currentTimeMillis();
         synchronized (existed) {
-            existed.lastTimestamp = System.currentTimeMillis();
+            existed.lastTimestamp = now;
             existed.lastSequence = 0;
         }
+        if (existed.detector != null) {
+            existed.detector.reset(now);
+        }
         logger.log(logger.INFO, br.getKString(br.I_CLUSTER_HB_UNSUSPECTED, existed));
     }
 
@@ -379,17 +459,7 @@ public class HeartbeatService implements HeartbeatCallback, ClusterListener, Con
             logger.log(logger.INFO, br.getKString(br.I_HEARTBEAT_ENTRY_NOTFOUND, hbe.toString()));
             return true;
         }
-        long timestamp = 0L;
-        int interval = 0;
-        synchronized (existed) {
-            timestamp = existed.lastTimestamp;
-            interval = existed.heartbeatInterval;
-        }
-        long timeout = (interval * hb.getTimeoutThreshold()) * 1000L;
-        if (timestamp < (System.currentTimeMillis() - timeout)) {
-            return true;
-        }
-        return false;
+        return isTimedout(existed, System.currentTimeMillis());
     }
 
     /***************************************************************************
@@ -473,10 +543,14 @@ public class HeartbeatService implements HeartbeatCallback, ClusterListener, Con
             }
         }
 
+        long now = System.currentTimeMillis();
         synchronized (assigned) {
-            assigned.lastTimestamp = System.currentTimeMillis();
+            assigned.lastTimestamp = now;
             assigned.lastSequence = hbi.getSequence();
         }
+        if (assigned.detector != null) {
+            assigned.detector.heartbeat(now);
+        }
         assigned.sender = sender;
     }
 
@@ -531,13 +605,11 @@ public class HeartbeatService implements HeartbeatCallback, ClusterListener, Con
         // XXX check entry == hbe ?
 
         long indoubtTimestamp = 0;
-        int heartbeatInterval = 0;
         synchronized (entry) {
             indoubtTimestamp = entry.indoubtTimestamp;
-            heartbeatInterval = entry.heartbeatInterval;
         }
 
-        long timeout = (heartbeatInterval * hb.getTimeoutThreshold()) * 1000L;
+        long timeout = getTimeout(entry);
         if (indoubtTimestamp < (System.currentTimeMillis() - timeout)) {
             if (DEBUG) {
                 logger.logStack(logger.INFO, "Heart beat timeout because " + (reason == null ? "" : reason.getMessage()) + ": " + entry, reason);
@@ -691,11 +763,11 @@ public class HeartbeatService implements HeartbeatCallback, ClusterListener, Con
             throw new PropertyUpdateException(br.getKString(br.X_DYNAMIC_UPDATE_PROPERTY_NOT_SUPPORT, name));
         }
 
-        if (name.equals(HEARTBEAT_INTERVAL_PROP)) {
+        if (name.equals(HEARTBEAT_INTERVAL_PROP) || name.equals(HEARTBEAT_INTERVAL_MILLIS_PROP)) {
             throw new PropertyUpdateException(br.getKString(br.X_DYNAMIC_UPDATE_PROPERTY_NOT_SUPPORT, name));
         }
 
-        if (name.equals(HEARTBEAT_THRESHOLD_PROP)) {
+        if (name.equals(HEARTBEAT_THRESHOLD_PROP) || name.equals(HEARTBEAT_PHI_THRESHOLD_PROP) || name.equals(HEARTBEAT_ACCEPTABLE_PAUSE_PROP)) {
             throw new PropertyUpdateException(br.getKString(br.X_DYNAMIC_UPDATE_PROPERTY_NOT_SUPPORT, name));
         }
     }
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.messaging.jmq.jmsserver.multibroker.heartbeat;
+
+/**
+ * Phi accrual failure detector for the heartbeats of one remote broker session.
+ * <P>
+ * Instead of a fixed timeout the detector keeps a sliding window of heartbeat inter-arrival times and computes phi, the
+ * suspicion level that the remote broker has failed given the time since the last heartbeat: phi = -log10(1 - F(t)),
+ * where F is the normal distribution with the mean and standard deviation of the window. Phi 1 means a 10% chance the
+ * suspicion is wrong, phi 2 1%, phi 3 0.1% and so on. A remote broker is suspected when phi reaches the configured
+ * threshold, so the detection time adapts to the jitter actually seen on the network rather than to a worst case.
+ * <P>
+ * The window is seeded with the announced heartbeat interval of the remote broker so that a broker that fails right
+ * after it has been added is still detected.
+ */
+class PhiAccrualDetector {
+
+    static final int DEFAULT_WINDOW_SIZE = 200;
+
+    private final long[] samples;
+    private int count = 0;
+    private int next = 0;
+    private double sum = 0;
+    private double sumOfSquares = 0;
+
+    private final double minStdDeviation;
+    private final long acceptablePause;
+
+    private long lastTimestamp;
+
+    /**
+     * @param interval the expected heartbeat interval in milliseconds
+     * @param minStdDeviation the lower bound of the standard deviation in milliseconds, so that a very regular heartbeat
+     * does not make phi grow too steeply
+     * @param acceptablePause a pause in milliseconds that is tolerated on top of the mean interval, such as a GC pause
+     * @param windowSize the number of inter-arrival times kept
+     * @param now time of the first heartbeat or of when the remote broker was added
+     */
+    PhiAccrualDetector(long interval, long minStdDeviation, long acceptablePause, int windowSize, long now) {
+        this.samples = new long[Math.max(2, windowSize)];
+        this.minStdDeviation = Math.max(1, minStdDeviation);
+        this.acceptablePause = Math.max(0, acceptablePause);
+        this.lastTimestamp = now;
+
+        long stdDeviation = Math.max(1, interval / 4);
+        add(interval - stdDeviation);
+        add(interval + stdDeviation);
+    }
+
+    private void add(long interval) {
+        if (count == samples.length) {
+            long old = samples[next];
+            sum -= old;
+            sumOfSquares -= (double) old * old;
+        } else {
+            count++;
+        }
+        samples[next] = interval;
+        next = (next + 1) % samples.length;
+        sum += interval;
+        sumOfSquares += (double) interval * interval;
+    }
+
+    /**
+     * Record a heartbeat received at the given time
+     */
+    synchronized void heartbeat(long now) {
+        long interval = now - lastTimestamp;
+        lastTimestamp = now;
+        if (interval >= 0) {
+            add(interval);
+        }
+    }
+
+    /**
+     * Restart the time since the last heartbeat without recording an interval, after the remote broker was cleared of
+     * suspicion by other means
+     */
+    synchronized void reset(long now) {
+        lastTimestamp = now;
+    }
+
+    synchronized long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    synchronized double getMean() {
+        return sum / count;
+    }
+
+    synchronized double getStdDeviation() {
+        double mean = sum / count;
+        double variance = sumOfSquares / count - mean * mean;
+        return Math.max(minStdDeviation, Math.sqrt(Math.max(0, variance)));
+    }
+
+    /**
+     * @return the suspicion level that the remote broker has failed
+     */
+    synchronized double phi(long now) {
+        return phi(now - lastTimestamp, getMean() + acceptablePause, getStdDeviation());
+    }
+
+    /**
+     * Uses the logistic approximation of the normal cumulative distribution function, which is accurate to within 0.01%
+     * and does not lose precision for large elapsed times.
+     */
+    static double phi(long elapsed, double mean, double stdDeviation) {
+        double y = (elapsed - mean) / stdDeviation;
+        double e = Math.exp(-y * (1.5976 + 0.070566 * y * y));
+        if (elapsed > mean) {
+            return -Math.log10(e / (1.0 + e));
+        }
+        return -Math.log10(1.0 - 1.0 / (1.0 + e));
+    }
+
+    /**
+     * @return true if the remote broker is suspected to have failed
+     */
+    boolean isSuspected(long now, int threshold) {
+        return phi(now) >= threshold;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "[mean=" + (long) getMean() + "ms, stddev=" + (long) getStdDeviation() + "ms, samples=" + count + "]";
+    }
+}
@@ -74,6 +74,22 @@ public interface Heartbeat {
      */
     int getHeartbeatInterval();
 
+    /**
+     * An implementation that supports sub-second intervals overrides this and getHeartbeatIntervalMillis
+     *
+     * @param interval The inteval (in milliseconds) between each heartbeat
+     */
+    default void setHeartbeatIntervalMillis(long interval) {
+        setHeartbeatInterval((int) Math.max(1, (interval + 999) / 1000));
+    }
+
+    /**
+     * @return The heartbeat interval in milliseconds
+     */
+    default long getHeartbeatIntervalMillis() {
+        return getHeartbeatInterval() * 1000L;
+    }
+
     /**
      * Timeout when heartbeat message not received for period of threshold*interval from a remote endpoint
      *
@@ -66,6 +66,21 @@ public class ClusterInfoInfo {
         gp.putProp(ClusterInfoRequestInfo.PARTITION_PROP, Long.valueOf(partitionID.longValue()));
     }
 
+    public void memoryLevel(int level) {
+        if (gp == null) {
+            gp = GPacket.getInstance();
+            gp.setType(ProtocolGlobals.G_INFO);
+        }
+        Integer v = (Integer) gp.getProp("T");
+        if (v == null) {
+            gp.putProp("T", Integer.valueOf(ClusterInfoRequestInfo.MEMORY_LEVEL_TYPE));
+        } else {
+            int t = (v.intValue() | ClusterInfoRequestInfo.MEMORY_LEVEL_TYPE);
+            gp.putProp("T", Integer.valueOf(t));
+        }
+        gp.putProp(ClusterInfoRequestInfo.MEMORY_LEVEL_PROP, Integer.valueOf(level));
+    }
+
     public void storeSessionOwnerRequestReply(ClusterInfoRequestInfo cir, int status, String reason, String owner) {
 
         if (gp == null) {
@@ -125,6 +140,14 @@ public class ClusterInfoInfo {
         return (t.intValue() & ClusterInfoRequestInfo.PARTITION_ADDED_TYPE) == ClusterInfoRequestInfo.PARTITION_ADDED_TYPE;
     }
 
+    public static boolean isMemoryLevelInfo(GPacket pkt) {
+        Integer t = (Integer) pkt.getProp("T");
+        if (t == null) {
+            return false;
+        }
+        return (t.intValue() & ClusterInfoRequestInfo.MEMORY_LEVEL_TYPE) == ClusterInfoRequestInfo.MEMORY_LEVEL_TYPE;
+    }
+
     public String getStoreSessionOwner() {
         if (pkt != null) {
             return (String) pkt.getProp(ClusterInfoRequestInfo.STORE_SESSION_OWNER_PROP);
@@ -141,6 +164,15 @@ public class ClusterInfoInfo {
         return new UID(v.longValue());
     }
 
+    public int getMemoryLevel() {
+        assert (pkt != null);
+        Integer v = (Integer) pkt.getProp(ClusterInfoRequestInfo.MEMORY_LEVEL_PROP);
+        if (v == null) {
+            return 0;
+        }
+        return v.intValue();
+    }
+
     @Override
     public String toString() {
         GPacket p = (pkt == null ? gp : pkt);
@@ -29,6 +29,7 @@ import com.sun.messaging.jmq.jmsserver.util.BrokerException;
 public class ClusterInfoRequestInfo {
     public static final int STORE_SESSION_OWNER_TYPE = 0x00000001;
     public static final int PARTITION_ADDED_TYPE = 0x00000002;
+    public static final int MEMORY_LEVEL_TYPE = 0x00000004;
 
     // properties for STORE_SESSION_OWNER request
     public static final String STORE_SESSION_PROP = "storeSession";
@@ -37,6 +38,9 @@ public class ClusterInfoRequestInfo {
     // properties for PARTITION_ADDED
     public static final String PARTITION_PROP = "partition";
 
+    // properties for MEMORY_LEVEL
+    public static final String MEMORY_LEVEL_PROP = "memoryLevel";
+
     private GPacket gp = null; // out going
     private GPacket pkt = null; // in coming
 
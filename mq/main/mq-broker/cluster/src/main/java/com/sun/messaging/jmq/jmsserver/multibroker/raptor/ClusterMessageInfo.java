@@ -36,6 +36,8 @@ import com.sun.messaging.jmq.jmsserver.core.BrokerAddress;
 import com.sun.messaging.jmq.jmsserver.resources.BrokerResources;
 import com.sun.messaging.jmq.jmsserver.multibroker.Cluster;
 import com.sun.messaging.jmq.jmsserver.util.BrokerException;
+import com.sun.messaging.jmq.jmsserver.service.imq.ConvertPacket;
+import com.sun.messaging.jmq.util.io.CompactBodyCodec;
 
 /**
  * An instance of this class is intended to be used one direction only
@@ -48,6 +50,7 @@ public class ClusterMessageInfo {
     private static final String PROP_REDELIVERED = "redelivered";
 
     private PacketReference ref = null;
+    private boolean convertCompactBody = false;
     private ArrayList<Consumer> consumers = null;
     private ArrayList<Integer> deliveryCnts = null;
     private boolean redelivered = false;
@@ -82,6 +85,14 @@ public class ClusterMessageInfo {
         return new ClusterMessageInfo(ref, consumers, deliveryCnts, redelivered, sendMessageDeliveredAck, c);
     }
 
+    /**
+     * Send a compact MapMessage or StreamMessage body in the serialized format, for a broker that does not read compact
+     * bodies and would deliver them as is to its clients
+     */
+    public void setConvertCompactBody(boolean convert) {
+        convertCompactBody = convert;
+    }
+
     /**
      * GPacket to Destination
      *
@@ -124,6 +135,9 @@ public class ClusterMessageInfo {
             roPkt.generateTimestamp(false);
             roPkt.generateSequenceNumber(false);
 
+            if (convertCompactBody) {
+                roPkt = toSerializedBody(roPkt);
+            }
             roPkt.writePacket(dos);
             dos.flush();
             bos.flush();
@@ -144,6 +158,20 @@ public class ClusterMessageInfo {
         return gp;
     }
 
+    /**
+     * @return a copy of the packet with a compact MapMessage or StreamMessage body converted to the serialized format, or
+     * the packet itself if its body is not compact. The message itself is not changed.
+     */
+    static Packet toSerializedBody(Packet pkt) throws IOException {
+        if (!CompactBodyCodec.isCompact(pkt.getMessageBodyByteBuffer())) {
+            return pkt;
+        }
+        Packet copy = new Packet(false);
+        copy.fill(pkt);
+        ConvertPacket.convertCompactBody(copy);
+        return copy;
+    }
+
     @Override
     public String toString() {
         if (consumers == null || ref == null) {
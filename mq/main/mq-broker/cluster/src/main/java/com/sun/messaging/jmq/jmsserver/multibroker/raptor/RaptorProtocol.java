@@ -60,8 +60,10 @@ import com.sun.messaging.jmq.jmsserver.multibroker.CallbackDispatcher;
 import com.sun.messaging.jmq.jmsserver.multibroker.BrokerInfo;
 import com.sun.messaging.jmq.jmsserver.multibroker.raptor.handlers.*;
 import com.sun.messaging.jmq.jmsserver.persist.api.ChangeRecordInfo;
+import com.sun.messaging.jmq.jmsserver.memory.MemoryLevelListener;
+import com.sun.messaging.jmq.jmsserver.memory.MemoryManager;
 
-public class RaptorProtocol implements Protocol, PartitionListener, StoreSessionReaperListener {
+public class RaptorProtocol implements Protocol, PartitionListener, StoreSessionReaperListener, MemoryLevelListener {
     protected static final Logger logger = Globals.getLogger();
     protected static final BrokerResources br = Globals.getBrokerResources();
 
@@ -135,6 +137,12 @@ public class RaptorProtocol implements Protocol, PartitionListener, StoreSession
     private DestinationList DL = Globals.getDestinationList();
     private Map<String, ChangeRecord> inDSubToBrokerMap = Collections.synchronizedMap(new HashMap<String, ChangeRecord>());
 
+    // memory level to announce to the other brokers, -1 if no announcement is pending
+    private final java.util.concurrent.atomic.AtomicInteger pendingMemoryLevel = new java.util.concurrent.atomic.AtomicInteger(-1);
+
+    // memory level last announced by each remote broker
+    private Map<BrokerAddress, Integer> memoryLevels = new java.util.concurrent.ConcurrentHashMap<>();
+
     public RaptorProtocol(MessageBusCallback cb, Cluster c, BrokerAddress myaddress, BrokerInfo myinfo) throws BrokerException {
         if (DEBUG_CLUSTER_ALL) {
             DEBUG = DEBUG_CLUSTER_ALL;
@@ -587,6 +595,10 @@ public class RaptorProtocol implements Protocol, PartitionListener, StoreSession
             // Ignore this exception...
         }
         Globals.getDestinationList().addPartitionListener(this);
+        MemoryManager mm = Globals.getMemManager();
+        if (mm != null) {
+            mm.addMemoryLevelListener(this);
+        }
         try {
             store.addPartitionListener(this);
             if (Globals.getHAEnabled()) {
@@ -632,6 +644,64 @@ public class RaptorProtocol implements Protocol, PartitionListener, StoreSession
         }
     }
 
+    /*********************************************
+     * implement MemoryLevelListener interface
+     *********************************************/
+
+    /**
+     * Called by the thread that changed the memory level, the broadcast is done on the cluster dispatcher thread. Changes
+     * that happen before the broadcast are coalesced into one announcement of the latest level.
+     */
+    @Override
+    public void memoryLevelChanged(int oldLevel, int newLevel) {
+        if (pendingMemoryLevel.getAndSet(newLevel) != -1) {
+            return;
+        }
+        cbDispatcher.processTask(() -> {
+            int level = pendingMemoryLevel.getAndSet(-1);
+            if (level != -1) {
+                sendMemoryLevelInfo(null, level);
+            }
+        }, "MemoryLevelChanged");
+    }
+
+    private void sendMemoryLevelInfo(BrokerAddress baddr, int level) {
+        ClusterInfoInfo cii = ClusterInfoInfo.newInstance();
+        cii.memoryLevel(level);
+        GPacket gp = cii.getGPacket();
+        if (DEBUG_CLUSTER_MSG) {
+            logger.log(logger.INFO, "Sending " + ProtocolGlobals.getPacketTypeDisplayString(gp.getType()) + "[" + cii + "] to "
+                    + (baddr == null ? "all brokers" : baddr.toString()));
+        }
+        try {
+            if (baddr == null) {
+                c.broadcast(gp);
+            } else {
+                c.unicast(baddr, gp);
+            }
+        } catch (IOException e) {
+            /* Ignore, the remote broker keeps the last level it has seen */
+        }
+    }
+
+    public void receiveMemoryLevelInfo(BrokerAddress sender, ClusterInfoInfo cii, GPacket pkt) {
+        int level = cii.getMemoryLevel();
+        if (DEBUG_CLUSTER_MSG) {
+            logger.log(logger.INFO, "Received memory level " + level + " from " + sender);
+        }
+        if (level <= 0) {
+            memoryLevels.remove(sender);
+        } else {
+            memoryLevels.put(sender, Integer.valueOf(level));
+        }
+    }
+
+    @Override
+    public int getMemoryLevel(BrokerAddress broker) {
+        Integer level = memoryLevels.get(broker);
+        return (level == null ? 0 : level.intValue());
+    }
+
     /**
      * @param partitionID the partition id
      */
@@ -2390,7 +2460,7 @@ public class RaptorProtocol implements Protocol, PartitionListener, StoreSession
             logger.log(Logger.DEBUGMED, "MessageBus: sending message {0} to {1} targets.", pkt.getSysMessageID(), Integer.toString(targets.size()));
         }
 
-        StringBuilder debugString = new StringBuilder("\n");
+        StringBuilder debugString = (DEBUG ? new StringBuilder("\n") : null);
         boolean redeliverFlag = false;
         Iterator<Consumer> itr = targets.iterator();
         while (itr.hasNext()) {
@@ -2424,7 +2494,9 @@ public class RaptorProtocol implements Protocol, PartitionListener, StoreSession
             }
             v[0].add(target);
             v[1].add(Integer.valueOf(dct));
-            debugString.append('\t').append(target).append("#" + dct).append('\n');
+            if (debugString != null) {
+                debugString.append('\t').append(target).append('#').append(dct).append('\n');
+            }
         }
 
         if (DEBUG) {
@@ -2451,6 +2523,7 @@ public class RaptorProtocol implements Protocol, PartitionListener, StoreSession
                     if (be.sentGoodbye()) {
                         throw new BrokerException("GOODBYE: Could not deliver message " + cmi.toString() + " to " + b);
                     }
+                    cmi.setConvertCompactBody(!be.getBrokerInfo().getCompactBody());
                 }
                 c.unicast(b, cmi.getGPacket(), true);
                 if (DEBUG) {
@@ -4193,6 +4266,10 @@ public class RaptorProtocol implements Protocol, PartitionListener, StoreSession
         if (flowStopped) {
             sendFlowControlUpdate(brokerInfo.getBrokerAddr());
         }
+        MemoryManager mm = Globals.getMemManager();
+        if (mm != null && mm.getCurrentLevel() > 0) {
+            sendMemoryLevelInfo(brokerInfo.getBrokerAddr(), mm.getCurrentLevel());
+        }
 
         forwardLocalInterests(brokerInfo.getBrokerAddr());
         sendTransactionInquiries(brokerInfo.getBrokerAddr(), null);
@@ -4696,6 +4773,7 @@ public class RaptorProtocol implements Protocol, PartitionListener, StoreSession
         BrokerInfoEx brokerInfoEx = null;
 
         brokerInfoEx = (BrokerInfoEx) brokerList.remove(broker);
+        memoryLevels.remove(broker);
 
         if (DEBUG) {
             logger.log(Logger.DEBUG, "Broker down " + broker);
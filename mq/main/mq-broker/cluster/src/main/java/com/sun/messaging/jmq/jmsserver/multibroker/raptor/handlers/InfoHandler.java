@@ -50,6 +50,9 @@ public class InfoHandler extends GPacketHandler {
             if (cii.isPartitionAddedInfo(pkt)) {
                 p.receivePartitionAddedInfo(sender, cii, pkt);
             }
+            if (cii.isMemoryLevelInfo(pkt)) {
+                p.receiveMemoryLevelInfo(sender, cii, pkt);
+            }
         } else {
             logger.log(logger.WARNING, "InfoHandler " + "Cannot handle this packet :" + pkt.toLongString());
         }
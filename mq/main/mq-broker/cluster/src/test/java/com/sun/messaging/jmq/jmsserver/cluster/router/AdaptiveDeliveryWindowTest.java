@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.messaging.jmq.jmsserver.cluster.router;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.Test;
+
+class AdaptiveDeliveryWindowTest {
+
+    private static final int FLOW_LIMIT = 1000;
+
+    @Test
+    void slowConsumerGetsSmallerWindow() {
+        AdaptiveDeliveryWindow.Group group = new AdaptiveDeliveryWindow.Group();
+        AdaptiveDeliveryWindow fast = new AdaptiveDeliveryWindow(group);
+        AdaptiveDeliveryWindow slow = new AdaptiveDeliveryWindow(group);
+
+        // the fast consumer acknowledges ten messages for each one of the slow consumer
+        for (int i = 0; i < 50; i++) {
+            for (int j = 0; j < 10; j++) {
+                fast.sent();
+                fast.done(1_000_000L);
+            }
+            slow.sent();
+            slow.done(50_000_000L);
+        }
+
+        assertThat(fast.getSize(FLOW_LIMIT, 0)).isEqualTo(FLOW_LIMIT);
+        assertThat(slow.getSize(FLOW_LIMIT, 0)).isLessThan(FLOW_LIMIT / 4).isGreaterThanOrEqualTo(1);
+    }
+
+    @Test
+    void memoryLevelHalvesWindow() {
+        AdaptiveDeliveryWindow w = new AdaptiveDeliveryWindow(new AdaptiveDeliveryWindow.Group());
+
+        assertThat(w.getSize(FLOW_LIMIT, 0)).isEqualTo(FLOW_LIMIT);
+        assertThat(w.getSize(FLOW_LIMIT, 1)).isEqualTo(FLOW_LIMIT / 2);
+        assertThat(w.getSize(FLOW_LIMIT, 2)).isEqualTo(FLOW_LIMIT / 4);
+        assertThat(w.getSize(FLOW_LIMIT, 40)).isEqualTo(1);
+    }
+
+    @Test
+    void fullWindowIsReleasedByDone() {
+        AdaptiveDeliveryWindow w = new AdaptiveDeliveryWindow(new AdaptiveDeliveryWindow.Group());
+
+        w.sent();
+        w.sent();
+        assertThat(w.isFull(2, 0)).isTrue();
+        assertThat(w.getInFlight()).isEqualTo(2);
+
+        // the consumer was held, so the first done releases it
+        assertThat(w.done(-1L)).isTrue();
+        assertThat(w.done(-1L)).isFalse();
+        assertThat(w.isFull(2, 0)).isFalse();
+    }
+
+    @Test
+    void groupIsRemovedWithItsLastWindow() {
+        ConcurrentHashMap<String, AdaptiveDeliveryWindow.Group> groups = new ConcurrentHashMap<>();
+        AdaptiveDeliveryWindow a = AdaptiveDeliveryWindow.open(groups, "q1");
+        AdaptiveDeliveryWindow b = AdaptiveDeliveryWindow.open(groups, "q1");
+        AdaptiveDeliveryWindow c = AdaptiveDeliveryWindow.open(groups, "q2");
+        assertThat(groups).containsOnlyKeys("q1", "q2");
+
+        a.close(groups);
+        assertThat(groups).containsOnlyKeys("q1", "q2");
+        b.close(groups);
+        assertThat(groups).containsOnlyKeys("q2");
+        c.close(groups);
+        assertThat(groups).isEmpty();
+    }
+
+    @Test
+    void closingAStaleWindowKeepsTheNewGroup() {
+        ConcurrentHashMap<String, AdaptiveDeliveryWindow.Group> groups = new ConcurrentHashMap<>();
+        AdaptiveDeliveryWindow a = AdaptiveDeliveryWindow.open(groups, "q1");
+        a.close(groups);
+        AdaptiveDeliveryWindow b = AdaptiveDeliveryWindow.open(groups, "q1");
+
+        a.close(groups);
+        assertThat(groups).containsOnlyKeys("q1");
+        b.close(groups);
+        assertThat(groups).isEmpty();
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.messaging.jmq.jmsserver.cluster.router;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class RemoteDeliveryWorkerTest {
+
+    /**
+     * A consumer with a number of messages waiting
+     */
+    static class TestConsumer {
+        final String name;
+        final AtomicInteger pending = new AtomicInteger();
+
+        TestConsumer(String name) {
+            this.name = name;
+        }
+
+        boolean isBusy() {
+            return pending.get() > 0;
+        }
+
+        boolean take() {
+            return pending.getAndUpdate(n -> n > 0 ? n - 1 : 0) > 0;
+        }
+    }
+
+    @Test
+    void deliversAllMessagesOfSignalledConsumersInTurn() throws Exception {
+        List<String> sent = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(6);
+        RemoteDeliveryWorker<TestConsumer> worker = new RemoteDeliveryWorker<>("test-worker", TestConsumer::isBusy, c -> {
+            if (!c.take()) {
+                return false;
+            }
+            sent.add(c.name);
+            done.countDown();
+            return true;
+        });
+        TestConsumer a = new TestConsumer("a");
+        TestConsumer b = new TestConsumer("b");
+        a.pending.set(3);
+        b.pending.set(3);
+
+        synchronized (worker) {
+            worker.start();
+            worker.signal(a);
+            worker.signal(b);
+        }
+
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(sent).containsExactly("a", "b", "a", "b", "a", "b");
+        worker.shutdown();
+
+        assertThat(worker.getDeliveredCount()).isEqualTo(6);
+        assertThat(worker.getReadyConsumers()).isEmpty();
+    }
+
+    @Test
+    void idleConsumerIsNotQueued() {
+        RemoteDeliveryWorker<TestConsumer> worker = new RemoteDeliveryWorker<>("test-worker", TestConsumer::isBusy, TestConsumer::take);
+        TestConsumer a = new TestConsumer("a");
+
+        worker.signal(a);
+        assertThat(worker.getReadyConsumers()).isEmpty();
+
+        a.pending.set(1);
+        worker.signal(a);
+        assertThat(worker.getReadyConsumers()).containsExactly(a);
+
+        worker.remove(a);
+        assertThat(worker.getReadyConsumers()).isEmpty();
+    }
+
+    @Test
+    void consumersOfDifferentWorkersAreServedInParallel() throws Exception {
+        int nworkers = 4;
+        CountDownLatch allInside = new CountDownLatch(nworkers);
+        Map<String, Thread> threads = new ConcurrentHashMap<>();
+        @SuppressWarnings("unchecked")
+        RemoteDeliveryWorker<TestConsumer>[] workers = new RemoteDeliveryWorker[nworkers];
+        for (int i = 0; i < nworkers; i++) {
+            workers[i] = new RemoteDeliveryWorker<>("test-worker-" + i, TestConsumer::isBusy, c -> {
+                c.take();
+                threads.put(c.name, Thread.currentThread());
+                allInside.countDown();
+                try {
+                    // only returns if all workers are delivering at the same time
+                    return allInside.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    return false;
+                }
+            });
+            workers[i].start();
+        }
+        for (int i = 0; i < nworkers; i++) {
+            TestConsumer c = new TestConsumer("c" + i);
+            c.pending.set(1);
+            workers[i].signal(c);
+        }
+
+        assertThat(allInside.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(threads.values()).doesNotHaveDuplicates();
+        for (RemoteDeliveryWorker<TestConsumer> w : workers) {
+            w.shutdown();
+        }
+    }
+}
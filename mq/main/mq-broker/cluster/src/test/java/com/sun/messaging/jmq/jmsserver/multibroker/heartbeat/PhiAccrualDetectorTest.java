@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.messaging.jmq.jmsserver.multibroker.heartbeat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class PhiAccrualDetectorTest {
+
+    private static final int THRESHOLD = 8;
+
+    @Test
+    void regularHeartbeatsAreNotSuspected() {
+        long now = 0;
+        PhiAccrualDetector d = new PhiAccrualDetector(200, 20, 0, PhiAccrualDetector.DEFAULT_WINDOW_SIZE, now);
+        for (int i = 0; i < 100; i++) {
+            now += 190 + (i % 3) * 10;
+            d.heartbeat(now);
+        }
+
+        assertThat(d.getMean()).isBetween(195.0, 205.0);
+        assertThat(d.isSuspected(now + 200, THRESHOLD)).isFalse();
+        assertThat(d.isSuspected(now + 250, THRESHOLD)).isFalse();
+    }
+
+    @Test
+    void missingHeartbeatsAreSuspectedWithinASecond() {
+        long now = 0;
+        PhiAccrualDetector d = new PhiAccrualDetector(200, 20, 200, PhiAccrualDetector.DEFAULT_WINDOW_SIZE, now);
+        for (int i = 0; i < 50; i++) {
+            now += 200;
+            d.heartbeat(now);
+        }
+
+        assertThat(d.phi(now + 300)).isLessThan(d.phi(now + 500));
+        assertThat(d.isSuspected(now + 300, THRESHOLD)).isFalse();
+        assertThat(d.isSuspected(now + 1000, THRESHOLD)).isTrue();
+    }
+
+    @Test
+    void jitterDelaysSuspicion() {
+        long now = 0;
+        PhiAccrualDetector steady = new PhiAccrualDetector(200, 1, 0, PhiAccrualDetector.DEFAULT_WINDOW_SIZE, now);
+        PhiAccrualDetector jittery = new PhiAccrualDetector(200, 1, 0, PhiAccrualDetector.DEFAULT_WINDOW_SIZE, now);
+        for (int i = 0; i < 100; i++) {
+            steady.heartbeat((i + 1) * 200L);
+            jittery.heartbeat((i + 1) * 200L + (i % 2 == 0 ? 80 : -80));
+        }
+        now = 100 * 200L;
+
+        assertThat(jittery.getStdDeviation()).isGreaterThan(steady.getStdDeviation());
+        assertThat(jittery.phi(now + 400)).isLessThan(steady.phi(now + 400));
+    }
+
+    @Test
+    void resetRestartsElapsedTime() {
+        PhiAccrualDetector d = new PhiAccrualDetector(1000, 100, 0, PhiAccrualDetector.DEFAULT_WINDOW_SIZE, 0);
+
+        assertThat(d.isSuspected(5000, THRESHOLD)).isTrue();
+        d.reset(5000);
+        assertThat(d.isSuspected(5500, THRESHOLD)).isFalse();
+    }
+}
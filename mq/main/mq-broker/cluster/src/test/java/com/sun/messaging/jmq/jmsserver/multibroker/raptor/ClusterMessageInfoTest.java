@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+
+package com.sun.messaging.jmq.jmsserver.multibroker.raptor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.sun.messaging.jmq.io.Packet;
+import com.sun.messaging.jmq.io.PacketType;
+import com.sun.messaging.jmq.jmsserver.Globals;
+import com.sun.messaging.jmq.util.io.CompactBodyCodec;
+
+class ClusterMessageInfoTest {
+
+    @BeforeAll
+    static void initConfig() throws Exception {
+        System.setProperty("imq.varhome", Files.createTempDirectory("cluster").toString());
+        Globals.pathinit(null);
+    }
+
+    private static Packet newPacket(int type, byte[] body) {
+        Packet pkt = new Packet(false);
+        pkt.setPacketType(type);
+        pkt.setMessageBody(body);
+        return pkt;
+    }
+
+    private static byte[] body(Packet pkt) {
+        ByteBuffer bb = pkt.getMessageBodyByteBuffer();
+        byte[] body = new byte[bb.remaining()];
+        bb.duplicate().get(body);
+        return body;
+    }
+
+    @Test
+    void testCompactBodyIsSentSerialized() throws Exception {
+        byte[] compact = CompactBodyCodec.encodeList(List.of(Integer.valueOf(1), "two", new byte[] { 3 }));
+        Packet pkt = newPacket(PacketType.STREAM_MESSAGE, compact);
+
+        Packet sent = ClusterMessageInfo.toSerializedBody(pkt);
+        assertThat(sent).isNotSameAs(pkt);
+        assertThat(sent.getSysMessageID()).isEqualTo(pkt.getSysMessageID());
+        assertThat(body(pkt)).isEqualTo(compact);
+
+        // as a broker that does not read compact bodies reads it off the wire
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        sent.writePacket(bos);
+        Packet received = new Packet(false);
+        received.readPacket(new ByteArrayInputStream(bos.toByteArray()));
+        byte[] body = body(received);
+        assertThat(CompactBodyCodec.isCompact(body)).isFalse();
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(body))) {
+            assertThat(in.readObject()).isEqualTo(1);
+            assertThat(in.readObject()).isEqualTo("two");
+            assertThat((byte[]) in.readObject()).containsExactly(3);
+        }
+    }
+
+    @Test
+    void testOtherBodiesAreSentAsIs() throws Exception {
+        Packet serialized = newPacket(PacketType.STREAM_MESSAGE, CompactBodyCodec.toSerializedStream(CompactBodyCodec.encodeList(List.of("a"))));
+        assertThat(ClusterMessageInfo.toSerializedBody(serialized)).isSameAs(serialized);
+
+        Packet bytes = newPacket(PacketType.BYTES_MESSAGE, new byte[] { 1, 2, 3 });
+        assertThat(ClusterMessageInfo.toSerializedBody(bytes)).isSameAs(bytes);
+
+        Packet empty = newPacket(PacketType.MAP_MESSAGE, null);
+        assertThat(ClusterMessageInfo.toSerializedBody(empty)).isSameAs(empty);
+    }
+}
@@ -35,6 +35,7 @@ import com.sun.messaging.jmq.io.disk.VRFile;
 import com.sun.messaging.jmq.io.disk.VRFileRAF;
 import com.sun.messaging.jmq.io.disk.VRecordRAF;
 import com.sun.messaging.jmq.util.DestMetricsCounters;
+import com.sun.messaging.jmq.jmsserver.service.LatencyMetrics;
 
 import java.io.*;
 import java.util.*;
@@ -61,6 +62,7 @@ class DstMsgStore extends RandomAccessStore {
     DestinationUID myDestination = null;
 
     // private MsgStore parent = null;
+    private FileStore fileStore = null;
 
     // cache of all messages of the destination; message id -> MessageInfo
     private ConcurrentHashMap messageMap = new ConcurrentHashMap(1000);
@@ -127,6 +129,7 @@ class DstMsgStore extends RandomAccessStore {
 
         super(dir, p.msgfdlimit, p.poollimit, p.cleanratio);
         // parent = p;
+        fileStore = p.parent;
         myDestination = dst;
 
         try {
@@ -316,7 +319,7 @@ class DstMsgStore extends RandomAccessStore {
     void removeAllMessages(boolean sync) throws IOException, BrokerException {
 
         if (vrfile != null) {
-            vrfile.clear(false); // false->don't truncate
+            vrfile.clear(true); // true->truncate back to the initial file size
         }
 
         removeAllData(sync);
@@ -688,9 +691,28 @@ class DstMsgStore extends RandomAccessStore {
             if (Store.getDEBUG_SYNC()) {
                 logger.log(Logger.DEBUG, "sync called on " + myDestination);
             }
+            long start = (LatencyMetrics.ENABLED ? System.nanoTime() : 0L);
             vrfile.force();
+            syncDone(start);
         } catch (IOException e) {
             throw new BrokerException("Failed to synchronize data to disk for file: " + vrfile, e);
         }
     }
+
+    /**
+     * Record the time taken by a sync to disk in the latency metrics of the destination
+     *
+     * @param start System.nanoTime() before the sync, ignored if latency metrics are disabled
+     */
+    void syncDone(long start) {
+        if (!LatencyMetrics.ENABLED) {
+            return;
+        }
+        // looked up each time, the destination may have been destroyed and re-created since the last sync
+        Destination d = DestinationList.getDestination(fileStore, myDestination)[0];
+        if (d == null) {
+            return;
+        }
+        d.getLatencyMetrics().record(LatencyMetrics.FSYNC, System.nanoTime() - start);
+    }
 }
@@ -25,6 +25,8 @@ import java.io.File;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Enumeration;
@@ -32,6 +34,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Properties;
 import java.util.Set;
@@ -40,6 +43,7 @@ import java.util.TimerTask;
 import com.sun.messaging.jmq.jmsserver.persist.api.util.MQObjectInputStream;
 import com.sun.messaging.jmq.util.DestMetricsCounters;
 import com.sun.messaging.jmq.io.Packet;
+import com.sun.messaging.jmq.io.Status;
 import com.sun.messaging.jmq.io.SysMessageID;
 import com.sun.messaging.jmq.io.disk.ObjectInputStreamCallback;
 import com.sun.messaging.jmq.jmsserver.Broker;
@@ -154,6 +158,17 @@ public class FileStore extends Store implements PartitionedStore, TxnLoggingStor
     static final String NO_SYNC_FOR_DELIVERY_STATE_UPDATE = FILE_PROP_PREFIX + "noSyncForDeliveryStateUpdate";
     static final boolean noSyncForDeliveryStateUpdate = config.getBooleanProperty(NO_SYNC_FOR_DELIVERY_STATE_UPDATE, false);
 
+    /**
+     * Comma separated list of directories, e.g. on different disks, each holding one additional store partition under
+     * <dir>/<instance name>/fs370 with its own destinations, messages and transaction log. Setting it enables partition
+     * mode unless imq.persist.partitionMode.enabled=false; connections are then assigned to the partitions by
+     * imq.connection.loadBalanceToPartitionStrategy.
+     */
+    static final String PARTITION_DIRS_PROP = FILE_PROP_PREFIX + "partition.dirs";
+
+    // file under the root directory of an additional partition that holds its partition id
+    static final String PARTITION_ID_FILE = "partitionid";
+
     /**
      * Instance variables
      */
@@ -193,6 +208,14 @@ public class FileStore extends Store implements PartitionedStore, TxnLoggingStor
 
     private UID partitionid = PartitionedStore.DEFAULT_UID;
 
+    private boolean partitionMode = false;
+
+    // the primary partition if this is an additional partition
+    private FileStore primary = null;
+
+    // all partitions of the primary store, the primary first
+    private LinkedHashMap<UID, PartitionedStore> partitionStores = new LinkedHashMap<>();
+
     /**
      * When instantiated, the object configures itself by reading the properties specified in BrokerConfig.
      */
@@ -227,11 +250,29 @@ public class FileStore extends Store implements PartitionedStore, TxnLoggingStor
         // the file store root directory
         rootDir = new File(instanceDir, FILESTORE_TOP);
 
+        List<File> partitionDirs = getPartitionDirs();
+        if (!partitionDirs.isEmpty()) {
+            partitionMode = StoreManager.isConfiguredPartitionMode(true);
+            if (partitionMode && Globals.isConfigForCluster()) {
+                partitionMode = false;
+                logger.log(Logger.WARNING, br.getKString(BrokerResources.W_IGNORE_PROP_SETTING, PARTITION_DIRS_PROP + "=" + config.getProperty(PARTITION_DIRS_PROP)));
+            }
+            if (partitionMode) {
+                logger.log(Logger.INFO, br.getKString(BrokerResources.I_STORE_USE_PARTITION_MODE, getStoreType()) + "[" + PARTITION_DIRS_PROP + "="
+                        + config.getProperty(PARTITION_DIRS_PROP) + "]");
+            }
+        } else {
+            partitionMode = StoreManager.isConfiguredPartitionMode(false);
+        }
+
         // check if we need to remove the store
         if (removeStore) {
             try {
                 // remove everything and return
                 FileUtil.removeFiles(rootDir, true);
+                for (File dir : partitionDirs) {
+                    FileUtil.removeFiles(new File(dir, FILESTORE_TOP), true);
+                }
                 return;
             } catch (IOException e) {
                 logger.log(Logger.ERROR, BrokerResources.E_REMOVE_STORE_FAILED, rootDir, e);
@@ -370,6 +411,94 @@ public class FileStore extends Store implements PartitionedStore, TxnLoggingStor
                 logger.log(Logger.DEBUG, "FileStore instantiated successfully.");
             }
         }
+
+        partitionStores.put(partitionid, this);
+        if (partitionMode) {
+            for (File dir : partitionDirs) {
+                FileStore ps = new FileStore(this, dir);
+                if (partitionStores.containsKey(ps.getPartitionID())) {
+                    throw new BrokerException(br.getKString(BrokerResources.X_FILE_STORE_PARTITION_ID, dir, "duplicate partition id " + ps.getPartitionID()));
+                }
+                partitionStores.put(ps.getPartitionID(), ps);
+            }
+        }
+    }
+
+    /**
+     * Instantiate an additional partition of the primary store
+     *
+     * @param primary the primary store
+     * @param instanceDir the instance directory of the partition
+     */
+    private FileStore(FileStore primary, File instanceDir) throws BrokerException {
+        super(primary);
+        this.primary = primary;
+        this.partitionMode = true;
+
+        // durable subscriptions, properties and config change records are
+        // kept by the primary store, a partition uses the same objects
+        intStore = primary.intStore;
+        configStore = primary.configStore;
+        propFile = primary.propFile;
+
+        rootDir = new File(instanceDir, FILESTORE_TOP);
+        if (!rootDir.exists() && !rootDir.mkdirs()) {
+            logger.log(Logger.ERROR, BrokerResources.E_CANNOT_CREATE_STORE_HIERARCHY, rootDir);
+            throw new BrokerException(br.getString(BrokerResources.E_CANNOT_CREATE_STORE_HIERARCHY, rootDir));
+        }
+        partitionid = loadPartitionID(rootDir);
+        logger.logToAll(Logger.INFO, br.getKString(BrokerResources.I_FILE_STORE_PARTITION_INFO, partitionid, rootDir));
+
+        dstList = new DestinationListStore(this, rootDir, resetStore);
+
+        msgStore = new MsgStore(this, rootDir, (resetStore || resetMessage));
+
+        if (resetStore) {
+            TxnConversionUtil.resetAllTransactionState(rootDir);
+        }
+        boolean isNewTxnLogEnabled = Globals.isNewTxnLogEnabled();
+        TxnConversionUtil.checkForIncompleteTxnConversion(rootDir, isNewTxnLogEnabled);
+
+        if (!isNewTxnLogEnabled || TxnConversionUtil.isTxnConversionRequired()) {
+            tidList = new TidList(this, rootDir, resetStore);
+        }
+        if (isNewTxnLogEnabled || TxnConversionUtil.isTxnConversionRequired()) {
+            txnLogManager = new TransactionLogManager(this, msgStore, rootDir, resetStore);
+        }
+    }
+
+    /**
+     * @return the instance directories of the additional partitions
+     */
+    private static List<File> getPartitionDirs() {
+        List<File> dirs = new ArrayList<>();
+        List<String> list = config.getList(PARTITION_DIRS_PROP);
+        if (list == null) {
+            return dirs;
+        }
+        for (String dir : list) {
+            dirs.add(new File(dir, Globals.getConfigName()));
+        }
+        return dirs;
+    }
+
+    /**
+     * Read the partition id of an additional partition, a new id is created on first use
+     */
+    private static UID loadPartitionID(File dir) throws BrokerException {
+        File f = new File(dir, PARTITION_ID_FILE);
+        try {
+            if (f.exists()) {
+                return new UID(Long.parseLong(new String(Files.readAllBytes(f.toPath()), StandardCharsets.US_ASCII).trim()));
+            }
+            UID id = new UID();
+            Files.write(f.toPath(), String.valueOf(id.longValue()).getBytes(StandardCharsets.US_ASCII));
+            return id;
+        } catch (IOException | NumberFormatException e) {
+            String emsg = br.getKString(BrokerResources.X_FILE_STORE_PARTITION_ID, f, e.toString());
+            logger.log(Logger.ERROR, emsg);
+            throw new BrokerException(emsg, e);
+        }
     }
 
     @Override
@@ -510,13 +639,21 @@ public class FileStore extends Store implements PartitionedStore, TxnLoggingStor
         // make sure all operations are done before we proceed to close
         super.setClosedAndWait();
 
+        if (primary == null) {
+            for (FileStore ps : getAdditionalPartitions()) {
+                ps.close(cleanup);
+            }
+        }
+
         dstList.close(cleanup);
         if (tidList != null) {
             tidList.close(cleanup);
         }
-        configStore.close(cleanup);
-        propFile.close(cleanup);
-        intStore.close(cleanup);
+        if (primary == null) {
+            configStore.close(cleanup);
+            propFile.close(cleanup);
+            intStore.close(cleanup);
+        }
         msgStore.close(cleanup);
 
         try {
@@ -569,15 +706,22 @@ public class FileStore extends Store implements PartitionedStore, TxnLoggingStor
         super.checkClosedAndSetInProgress();
 
         try {
+            if (primary == null) {
+                for (FileStore ps : getAdditionalPartitions()) {
+                    ps.clearAll(sync);
+                }
+            }
             msgStore.clearAll(sync);
-            intStore.clearAll(sync);
             dstList.clearAll(sync, false); // don't worry about messages since
             // they are removed already
             if (tidList != null) {
                 tidList.clearAll(sync);
             }
-            configStore.clearAll(sync);
-            propFile.clearAll(sync);
+            if (primary == null) {
+                intStore.clearAll(sync);
+                configStore.clearAll(sync);
+                propFile.clearAll(sync);
+            }
 
             try {
                 if (msgLogWriter != null) {
@@ -824,6 +968,34 @@ public class FileStore extends Store implements PartitionedStore, TxnLoggingStor
         }
     }
 
+    /**
+     * Remove the given messages of the specified destination from the persistent store. The file store truncates the
+     * destination's file, so this is only supported if they are all the messages of the destination in the store.
+     *
+     * @param destination the destination whose messages are to be removed
+     * @param ids the messages to remove
+     * @param sync if true, will synchronize data to disk
+     * @exception IOException if an error occurs while removing the messages
+     * @exception UnsupportedOperationException if the destination has other messages in the store
+     */
+    @Override
+    public void removeMessages(Destination destination, Collection<SysMessageID> ids, boolean sync) throws IOException, BrokerException {
+
+        if (Store.getDEBUG()) {
+            logger.log(Logger.INFO, "FileStore.removeMessages(Destination, " + ids.size() + ") called");
+        }
+
+        // make sure store is not closed then increment in progress count
+        super.checkClosedAndSetInProgress();
+
+        try {
+            msgStore.removeMessages(destination.getDestinationUID(), ids, sync);
+        } finally {
+            // decrement in progress count
+            super.setInProgress(false);
+        }
+    }
+
     /**
      * Return an enumeration of all persisted messages for the given destination. Use the Enumeration methods on the
      * returned object to fetch and load each message sequentially.
@@ -2158,12 +2330,19 @@ public class FileStore extends Store implements PartitionedStore, TxnLoggingStor
         t.put("Store version", String.valueOf(STORE_VERSION));
         t.putAll(dstList.getDebugState());
         t.putAll(msgStore.getDebugState());
-        t.putAll(intStore.getDebugState());
         if (tidList != null) {
             t.putAll(tidList.getDebugState());
         }
+        if (primary != null) {
+            t.put("Partition", partitionid.toString());
+            return t;
+        }
+        t.putAll(intStore.getDebugState());
         t.putAll(propFile.getDebugState());
         t.putAll(configStore.getDebugState());
+        for (FileStore ps : getAdditionalPartitions()) {
+            t.put("Partition " + ps.getPartitionID(), ps.getDebugState());
+        }
         return t;
     }
 
@@ -2620,6 +2799,11 @@ public class FileStore extends Store implements PartitionedStore, TxnLoggingStor
 
         txnLoggerInited = true;
 
+        if (primary == null) {
+            for (FileStore ps : getAdditionalPartitions()) {
+                storeNeedsRestart = ps.initTxnLogger() || storeNeedsRestart;
+            }
+        }
         return storeNeedsRestart;
     }
 
@@ -2883,6 +3067,9 @@ public class FileStore extends Store implements PartitionedStore, TxnLoggingStor
 
     @Override
     public String toString() {
+        if (partitionMode) {
+            return "[" + getStoreType() + ":" + partitionid + "]";
+        }
         return "[" + getStoreType() + "]";
     }
 
@@ -2908,6 +3095,21 @@ public class FileStore extends Store implements PartitionedStore, TxnLoggingStor
         throw new UnsupportedOperationException("Operation not supported by the " + getStoreType() + " store");
     }
 
+    /**
+     * Partition mode is supported if imq.persist.file.partition.dirs lists the directories of the additional partitions
+     */
+    @Override
+    public void checkPartitionMode() throws BrokerException {
+        if (getPartitionDirs().isEmpty()) {
+            super.checkPartitionMode();
+        }
+    }
+
+    @Override
+    public boolean getPartitionModeEnabled() {
+        return partitionMode;
+    }
+
     @Override
     public UID getPartitionID() {
         return partitionid;
@@ -2915,19 +3117,46 @@ public class FileStore extends Store implements PartitionedStore, TxnLoggingStor
 
     @Override
     public boolean isPrimaryPartition() {
-        return true;
+        return primary == null;
     }
 
     @Override
     public List<PartitionedStore> getAllStorePartitions() throws BrokerException {
-        ArrayList<PartitionedStore> list = new ArrayList<>();
-        list.add(this);
+        if (primary != null) {
+            return primary.getAllStorePartitions();
+        }
+        ArrayList<PartitionedStore> list = new ArrayList<>(partitionStores.values());
+        if (list.isEmpty()) {
+            list.add(this);
+        }
         return list;
     }
 
+    @Override
+    public PartitionedStore getStorePartition(UID id) throws BrokerException {
+        if (primary != null) {
+            return primary.getStorePartition(id);
+        }
+        PartitionedStore ps = partitionStores.get(id);
+        if (ps == null) {
+            throw new BrokerException(br.getKString(BrokerResources.X_STORE_PARTITION_NOT_FOUND, id), Status.NOT_FOUND);
+        }
+        return ps;
+    }
+
     @Override
     public PartitionedStore getPrimaryPartition() throws BrokerException {
-        return this;
+        return (primary == null ? this : primary);
+    }
+
+    private List<FileStore> getAdditionalPartitions() {
+        List<FileStore> list = new ArrayList<>();
+        for (PartitionedStore ps : partitionStores.values()) {
+            if (ps != this) {
+                list.add((FileStore) ps);
+            }
+        }
+        return list;
     }
 
 }
@@ -41,6 +41,7 @@ import com.sun.messaging.jmq.jmsserver.persist.api.PartitionedStore;
 import com.sun.messaging.jmq.jmsserver.core.ConsumerUID;
 import com.sun.messaging.jmq.jmsserver.persist.api.Store;
 import com.sun.messaging.jmq.jmsserver.resources.BrokerResources;
+import com.sun.messaging.jmq.jmsserver.service.LatencyMetrics;
 import com.sun.messaging.jmq.jmsserver.util.BrokerException;
 import com.sun.messaging.jmq.util.log.Logger;
 
@@ -190,7 +191,9 @@ class MessageInfo {
                     if (Store.getDEBUG_SYNC() || DEBUG) {
                         Globals.getLogger().log(Logger.INFO, "sync storeMessage mid=" + mid);
                     }
+                    long start = (LatencyMetrics.ENABLED ? System.nanoTime() : 0L);
                     vrecord.force();
+                    parent.syncDone(start);
                 }
             }
 
@@ -224,7 +227,9 @@ class MessageInfo {
                     if (Store.getDEBUG_SYNC() || DEBUG) {
                         Globals.getLogger().log(Logger.INFO, "sync storeMessage mid=" + mid);
                     }
+                    long start = (LatencyMetrics.ENABLED ? System.nanoTime() : 0L);
                     vrecord.force();
+                    parent.syncDone(start);
                 }
             }
         }
@@ -268,7 +273,9 @@ class MessageInfo {
             if (sync) {
                 // bug 5042763:
                 // use FileChannel.force(false) to improve file sync performance
+                long start = (LatencyMetrics.ENABLED ? System.nanoTime() : 0L);
                 raf.getChannel().force(false);
+                parent.syncDone(start);
             }
             parent.releaseRAF(mid, raf, endofdata, endoffile);
         } else {
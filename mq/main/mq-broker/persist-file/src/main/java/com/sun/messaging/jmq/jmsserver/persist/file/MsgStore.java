@@ -21,6 +21,7 @@ package com.sun.messaging.jmq.jmsserver.persist.file;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Collection;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Hashtable;
@@ -38,6 +39,7 @@ import com.sun.messaging.jmq.jmsserver.core.Destination;
 import com.sun.messaging.jmq.jmsserver.core.DestinationUID;
 import com.sun.messaging.jmq.jmsserver.data.TransactionWorkMessage;
 import com.sun.messaging.jmq.jmsserver.persist.api.Store;
+import com.sun.messaging.jmq.jmsserver.persist.api.StoreCompression;
 import com.sun.messaging.jmq.jmsserver.resources.BrokerResources;
 import com.sun.messaging.jmq.jmsserver.util.BrokerException;
 import com.sun.messaging.jmq.jmsservice.BrokerEvent;
@@ -200,6 +202,8 @@ class MsgStore {
             logger.log(Logger.DEBUGHIGH, "storeMessage for " + dst);
         }
 
+        message = StoreCompression.compress(dst.toString(), message);
+
         if (Globals.isNewTxnLogEnabled() && TransactionLogManager.logNonTransactedMsgSend && !TransactionLogManager.isReplayInProgress()) {
             long tid = message.getTransactionID();
             if (tid <= 0) {
@@ -377,6 +381,35 @@ class MsgStore {
         }
     }
 
+    /**
+     * Remove the given messages of the specified destination by truncating its backing file. This is only done if they
+     * are all the messages the destination has in the store.
+     *
+     * @param dst the destination whose messages are to be removed
+     * @param ids the messages to remove
+     * @exception IOException if an error occurs while removing the messages
+     * @exception UnsupportedOperationException if the destination has other messages in the store
+     */
+    void removeMessages(DestinationUID dst, Collection<SysMessageID> ids, boolean sync) throws IOException, BrokerException {
+
+        // get from cache and instantiate if not found
+        DstMsgStore dstMsgStore = getDstMsgStore(dst, true, false, false);
+
+        if (dstMsgStore == null) {
+            return;
+        }
+        if (dstMsgStore.getMessageCount() != ids.size()) {
+            throw new UnsupportedOperationException(
+                    "Destination " + dst + " has " + dstMsgStore.getMessageCount() + " messages in the store, not " + ids.size());
+        }
+        for (SysMessageID id : ids) {
+            if (!dstMsgStore.containsMsg(id)) {
+                throw new UnsupportedOperationException("Message " + id + " of destination " + dst + " is not in the store");
+            }
+        }
+        dstMsgStore.removeAllMessages(sync);
+    }
+
     /**
      * Destination is being removed and so the associated backing file for it's messages can be released.
      */
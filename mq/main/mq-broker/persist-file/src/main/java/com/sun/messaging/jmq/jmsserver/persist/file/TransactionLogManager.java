@@ -700,15 +700,6 @@ public class TransactionLogManager implements CheckPointListener {
         // 6. reset txn log
         // 7. remove committed txns (since last checkpoint) from prepared store
 
-        FileStore store = null;
-        try {
-            store = (FileStore) Globals.getStore();
-        } catch (Throwable e) {
-            logger.logStack(Logger.ERROR, "failed to getStore", e);
-
-            // fatal
-        }
-
         boolean locked = false;
         try {
 
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+
+package com.sun.messaging.jmq.jmsserver.persist.file;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sun.messaging.jmq.jmsserver.Globals;
+import com.sun.messaging.jmq.jmsserver.persist.api.PartitionedStore;
+import com.sun.messaging.jmq.util.UID;
+
+class FileStorePartitionTest {
+
+    private static Path varHome;
+
+    private FileStore store;
+
+    @BeforeAll
+    static void initConfig() throws Exception {
+        varHome = Files.createTempDirectory("filestore");
+        System.setProperty("imq.varhome", varHome.toString());
+        // the primary store is under the instance directory
+        Globals.pathinit(null);
+    }
+
+    @BeforeEach
+    void open() throws Exception {
+        Globals.getConfig().put(FileStore.PARTITION_DIRS_PROP, varHome.resolve("p1") + "," + varHome.resolve("p2"));
+        store = new FileStore();
+    }
+
+    @AfterEach
+    void close() {
+        store.close(false);
+        Globals.getConfig().remove(FileStore.PARTITION_DIRS_PROP);
+    }
+
+    @Test
+    void testPartitionsOnSeparateDirectories() throws Exception {
+        List<PartitionedStore> partitions = store.getAllStorePartitions();
+
+        assertEquals(3, partitions.size());
+        assertSame(store, partitions.get(0));
+        assertTrue(store.getPartitionModeEnabled());
+        for (PartitionedStore ps : partitions.subList(1, 3)) {
+            assertFalse(ps.isPrimaryPartition());
+            assertSame(store, ((FileStore) ps).getPrimaryPartition());
+            assertSame(ps, store.getStorePartition(ps.getPartitionID()));
+        }
+        assertTrue(new File(varHome.resolve("p1").toFile(), Globals.getConfigName() + File.separator + "fs370" + File.separator + FileStore.PARTITION_ID_FILE)
+                .exists());
+    }
+
+    @Test
+    void testPartitionIdSurvivesRestart() throws Exception {
+        UID id = store.getAllStorePartitions().get(1).getPartitionID();
+
+        store.close(false);
+        store = new FileStore();
+
+        assertEquals(id, store.getAllStorePartitions().get(1).getPartitionID());
+    }
+
+    @Test
+    void testPartitionUsesPrimaryProperties() throws Exception {
+        FileStore partition = (FileStore) store.getAllStorePartitions().get(1);
+
+        store.updateProperty("partition.test", "value", true);
+
+        assertEquals("value", partition.getProperty("partition.test"));
+        assertEquals(0, partition.getAllInterests().length);
+        assertNull(partition.getLoadConsumerException());
+        assertNull(partition.getLoadPropertyException());
+        assertTrue(partition.getAllConfigRecords().isEmpty());
+    }
+
+    @Test
+    void testPartitionModeSupportedWithPartitionDirs() throws Exception {
+        store.checkPartitionMode();
+    }
+}
@@ -827,6 +827,68 @@ class ConsumerStateDAOImpl extends BaseDAOImpl implements ConsumerStateDAO {
         }
     }
 
+    /**
+     * Delete the states of the given messages.
+     *
+     * @param conn database connection
+     * @param ids the IDs of the messages
+     */
+    @Override
+    public void deleteByMessageIDs(Connection conn, List<String> ids) throws BrokerException {
+
+        boolean myConn = false;
+        PreparedStatement pstmt = null;
+        Exception myex = null;
+        try {
+            // Get a connection
+            DBManager dbMgr = DBManager.getDBManager();
+            if (conn == null) {
+                conn = dbMgr.getConnection(true);
+                myConn = true;
+            }
+
+            boolean dobatch = dbMgr.supportsBatchUpdates();
+            pstmt = dbMgr.createPreparedStatement(conn, deleteByMsgSQL);
+            for (String id : ids) {
+                pstmt.setString(1, id);
+                if (dobatch) {
+                    pstmt.addBatch();
+                } else {
+                    pstmt.executeUpdate();
+                }
+            }
+            if (dobatch) {
+                pstmt.executeBatch();
+            }
+        } catch (Exception e) {
+            myex = e;
+            try {
+                if ((conn != null) && !conn.getAutoCommit()) {
+                    conn.rollback();
+                }
+            } catch (SQLException rbe) {
+                logger.log(Logger.ERROR, BrokerResources.X_DB_ROLLBACK_FAILED, rbe);
+            }
+
+            Exception ex;
+            if (e instanceof BrokerException) {
+                throw (BrokerException) e;
+            } else if (e instanceof SQLException) {
+                ex = DBManager.wrapSQLException("[" + deleteByMsgSQL + "]", (SQLException) e);
+            } else {
+                ex = e;
+            }
+
+            throw new BrokerException(br.getKString(BrokerResources.X_REMOVE_INTEREST_STATE_FAILED, ids.size() + " messages"), ex);
+        } finally {
+            if (myConn) {
+                Util.close(null, pstmt, conn, myex);
+            } else {
+                Util.close(null, pstmt, null, myex);
+            }
+        }
+    }
+
     /**
      * Delete all consumer states for a transaction.
      *
@@ -549,6 +549,50 @@ public class JDBCStore extends Store implements DBConstants, PartitionedStore {
         }
     }
 
+    /**
+     * Remove the given messages of the specified destination, and their interest lists, from the persistent store in one
+     * transaction.
+     *
+     * @param dst the destination whose messages are to be removed
+     * @param ids the messages to remove
+     * @param sync if true, will synchronize data to disk
+     * @exception BrokerException if an error occurs while removing the messages
+     */
+    @Override
+    public void removeMessages(Destination dst, Collection<SysMessageID> ids, boolean sync) throws BrokerException {
+
+        if (DEBUG) {
+            logger.log(Logger.INFO, "JDBCStore.removeMessages(" + dst.getUniqueName() + ", " + ids.size() + ")");
+        }
+
+        List<String> idList = new ArrayList<>(ids.size());
+        for (SysMessageID id : ids) {
+            idList.add(id.getUniqueName());
+        }
+
+        // make sure store is not closed then increment in progress count
+        checkClosedAndSetInProgress();
+
+        try {
+            Util.RetryStrategy retry = null;
+            do {
+                try {
+                    daoFactory.getMessageDAO().delete(null, dst.getDestinationUID(), idList);
+                    return;
+                } catch (Exception e) {
+                    // Exception will be log & re-throw if operation cannot be retry
+                    if (retry == null) {
+                        retry = new Util.RetryStrategy();
+                    }
+                    retry.assertShouldRetry(e);
+                }
+            } while (true);
+        } finally {
+            // decrement in progress count
+            setInProgress(false);
+        }
+    }
+
     /**
      * Return an enumeration of all persisted messages for the given destination. Use the Enumeration methods on the
      * returned object to fetch and load each message sequentially.
@@ -78,6 +78,8 @@ public interface MessageDAO extends BaseDAO {
 
     void delete(Connection conn, DestinationUID dstUID, String id, boolean replaycheck) throws BrokerException;
 
+    int delete(Connection conn, DestinationUID dstUID, List<String> ids) throws BrokerException;
+
     int deleteByDestinationBySession(Connection conn, DestinationUID dstUID, Long storeSession) throws BrokerException;
 
     String getBroker(Connection conn, DestinationUID dstUID, String id) throws BrokerException;
@@ -20,6 +20,7 @@ package com.sun.messaging.jmq.jmsserver.persist.jdbc;
 
 import com.sun.messaging.jmq.jmsserver.persist.api.PartitionedStore;
 import com.sun.messaging.jmq.jmsserver.persist.api.HABrokerInfo;
+import com.sun.messaging.jmq.jmsserver.persist.api.StoreCompression;
 import com.sun.messaging.jmq.util.log.Logger;
 import com.sun.messaging.jmq.jmsserver.util.*;
 import com.sun.messaging.jmq.jmsserver.core.ConsumerUID;
@@ -237,18 +238,30 @@ class MessageDAOImpl extends BaseDAOImpl implements MessageDAO {
         insert(conn, dstID, message, conUIDs, states, storeSessionID, createdTime, checkMsgExist, replaycheck);
     }
 
+    /**
+     * @return the message to write to the store, compressed if store compression is enabled
+     */
+    static Packet compressForStore(String dstID, Packet message) throws BrokerException {
+        try {
+            return StoreCompression.compress(dstID, message);
+        } catch (IOException e) {
+            throw new BrokerException("Failed to compress message " + message.getSysMessageID() + " for " + dstID, e);
+        }
+    }
+
     @Override
     public void insert(Connection conn, String dstID, Packet message, ConsumerUID[] conUIDs, int[] states, long storeSessionID, long createdTime,
             boolean checkMsgExist, boolean replaycheck) throws BrokerException {
 
         SysMessageID sysMsgID = message.getSysMessageID();
         String id = sysMsgID.getUniqueName();
-        int size = message.getPacketSize();
         long txnID = message.getTransactionID();
 
         if (dstID == null) {
             dstID = DestinationUID.getUniqueString(message.getDestination(), message.getIsQueue());
         }
+        message = compressForStore(dstID, message);
+        int size = message.getPacketSize();
 
         boolean myConn = false;
         PreparedStatement pstmt = null;
@@ -574,6 +587,111 @@ class MessageDAOImpl extends BaseDAOImpl implements MessageDAO {
         }
     }
 
+    /**
+     * Delete the given messages of a destination, and their states, in one transaction. Unlike
+     * deleteByDestinationBySession, messages of the destination that are not in the list are kept, e.g. messages of a
+     * broker being taken over that are not loaded yet.
+     *
+     * @param conn database connection
+     * @param dstUID the destination
+     * @param ids the IDs of the messages
+     * @return the number of messages deleted
+     */
+    @Override
+    public int delete(Connection conn, DestinationUID dstUID, List<String> ids) throws BrokerException {
+
+        int count = 0;
+        boolean myConn = false;
+        PreparedStatement pstmt = null;
+        Exception myex = null;
+        try {
+            // Get a connection
+            DBManager dbMgr = DBManager.getDBManager();
+            if (conn == null) {
+                conn = dbMgr.getConnection(false);
+                myConn = true; // Set to true since this is our connection
+            }
+
+            boolean dobatch = dbMgr.supportsBatchUpdates();
+            pstmt = dbMgr.createPreparedStatement(conn, deleteSQL);
+            for (String id : ids) {
+                pstmt.setString(1, id);
+                if (dobatch) {
+                    pstmt.addBatch();
+                } else {
+                    count += pstmt.executeUpdate();
+                }
+            }
+            if (dobatch) {
+                for (int n : pstmt.executeBatch()) {
+                    // SUCCESS_NO_INFO if the driver does not report the count
+                    count += (n == Statement.SUCCESS_NO_INFO ? 1 : Math.max(n, 0));
+                }
+            }
+
+            // For HA mode, make sure this broker still owns the store
+            if (count > 0 && Globals.getHAEnabled()) {
+                String brokerID = dbMgr.getBrokerID();
+                BrokerDAO dao = dbMgr.getDAOFactory().getBrokerDAO();
+                if (dao.isBeingTakenOver(conn, brokerID)) {
+                    BrokerException be = new StoreBeingTakenOverException(br.getKString(BrokerResources.E_STORE_BEING_TAKEN_OVER));
+
+                    try {
+                        HABrokerInfo bkrInfo = dao.getBrokerInfo(conn, brokerID);
+                        logger.logStack(Logger.ERROR, be.getMessage() + "[" + (bkrInfo == null ? "" + brokerID : bkrInfo.toString()) + "]", be);
+                    } catch (Throwable t) {
+                        /* Ignore error */ }
+
+                    throw be;
+                }
+            }
+
+            // Delete states
+            dbMgr.getDAOFactory().getConsumerStateDAO().deleteByMessageIDs(conn, ids);
+
+            // Check whether to commit or not
+            if (myConn) {
+                conn.commit();
+            }
+        } catch (Exception e) {
+            myex = e;
+            boolean replayck = false;
+            try {
+                if ((conn != null) && !conn.getAutoCommit()) {
+                    conn.rollback();
+                }
+            } catch (SQLException rbe) {
+                replayck = true;
+                logger.log(Logger.ERROR, BrokerResources.X_DB_ROLLBACK_FAILED, rbe);
+            }
+
+            Exception ex;
+            if (e instanceof BrokerException) {
+                if (!(e instanceof StoreBeingTakenOverException)) {
+                    ((BrokerException) e).setSQLRecoverable(true);
+                    ((BrokerException) e).setSQLReplayCheck(replayck);
+                }
+                throw (BrokerException) e;
+            } else if (e instanceof SQLException) {
+                ex = DBManager.wrapSQLException("[" + deleteSQL + "]", (SQLException) e);
+            } else {
+                ex = e;
+            }
+
+            BrokerException be = new BrokerException(br.getKString(BrokerResources.X_REMOVE_MESSAGE_FAILED, ids.size() + "[" + dstUID + "]"), ex);
+            be.setSQLRecoverable(true);
+            be.setSQLReplayCheck(replayck);
+            throw be;
+        } finally {
+            if (myConn) {
+                Util.close(null, pstmt, conn, myex);
+            } else {
+                Util.close(null, pstmt, null, myex);
+            }
+        }
+        return count;
+    }
+
     /**
      * Delete all messages from a destination for the current broker.
      *
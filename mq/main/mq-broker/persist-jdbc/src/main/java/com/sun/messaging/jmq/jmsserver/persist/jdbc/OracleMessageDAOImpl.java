@@ -90,12 +90,13 @@ class OracleMessageDAOImpl extends MessageDAOImpl {
 
             SysMessageID sysMsgID = message.getSysMessageID();
             String id = sysMsgID.getUniqueName();
-            int size = message.getPacketSize();
             long txnID = message.getTransactionID();
 
             if (dstID == null) {
                 dstID = DestinationUID.getUniqueString(message.getDestination(), message.getIsQueue());
             }
+            message = compressForStore(dstID, message);
+            int size = message.getPacketSize();
 
             if (checkMsgExist) {
                 boolean hasmsg = false;
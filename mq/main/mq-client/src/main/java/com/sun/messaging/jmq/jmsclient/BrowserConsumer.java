@@ -50,6 +50,8 @@ class BrowserConsumer extends Consumer implements Enumeration, Traceable {
     private int cursor = 0;
     private int cursorEnd = 0;
     private int waitCounter = 0;
+    // cursor of the next page of message IDs, null after the last page
+    private String pageCursor = null;
 
     BrowserConsumer(QueueBrowserImpl browser, Destination dest) throws JMSException {
 
@@ -74,9 +76,7 @@ class BrowserConsumer extends Consumer implements Enumeration, Traceable {
         receiveQueue = new ReceiveQueue();
         // XXX PROTOCOL2.1
         // messageIDs = session.getMessageIdSet(getDestination(), getMessageSelector());
-        messageIDs = session.getMessageIdSet(this);
-        cursorEnd = messageIDs.length - 1;
-        cursor = 0;
+        nextPage();
 
         addInterest();
 
@@ -85,6 +85,18 @@ class BrowserConsumer extends Consumer implements Enumeration, Traceable {
         moreMessage();
     }
 
+    /**
+     * Get the next page of message IDs from the broker, the queue is read in pages of browseChunkLimit IDs so that
+     * neither side has to hold the IDs of a whole deep queue
+     */
+    private void nextPage() throws JMSException {
+        String[] next = new String[1];
+        messageIDs = session.getMessageIdSet(this, pageCursor, browseChunkLimit, next);
+        pageCursor = next[0];
+        cursorEnd = messageIDs.length - 1;
+        cursor = 0;
+    }
+
     private void addInterest() {
         // XXX PROTOCOL2.1
         // session.addBrowserConsumer(this);
@@ -138,7 +150,11 @@ class BrowserConsumer extends Consumer implements Enumeration, Traceable {
 
         boolean moreComming = false;
         SysMessageID messageID = null;
-        while (!moreComming && cursor <= cursorEnd) {
+        while (!moreComming && (cursor <= cursorEnd || pageCursor != null)) {
+            if (cursor > cursorEnd) {
+                nextPage();
+                continue;
+            }
             int count = 0;
             while (cursor <= cursorEnd && count < browseChunkLimit) {
                 messageID = messageIDs[cursor];
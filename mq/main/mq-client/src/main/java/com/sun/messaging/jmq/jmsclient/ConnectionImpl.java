@@ -307,6 +307,9 @@ public class ConnectionImpl implements com.sun.messaging.jms.Connection, Traceab
 
     private volatile boolean negotiateProtocolLevel = false;
     private int brokerProtocolLevel = 0;
+
+    // the broker reads MapMessage and StreamMessage bodies in the compact format
+    private volatile boolean brokerCompactBody = false;
     private String brokerVersion = "Unknown";
 
     // ping interval -- default to 30 seconds.
@@ -472,6 +475,17 @@ public class ConnectionImpl implements com.sun.messaging.jms.Connection, Traceab
         this.brokerProtocolLevel = brokerProtocolLevel;
     }
 
+    /**
+     * Invoked from ReadChannel on HELLO_REPLY
+     */
+    protected void setBrokerCompactBody(boolean brokerCompactBody) {
+        this.brokerCompactBody = brokerCompactBody;
+    }
+
+    protected boolean getBrokerCompactBody() {
+        return brokerCompactBody;
+    }
+
     protected boolean checkBrokerProtocolLevel() throws JMSException {
         return (brokerProtocolLevel >= PacketType.VERSION2);
     }
@@ -2007,6 +2021,8 @@ public class ConnectionImpl implements com.sun.messaging.jms.Connection, Traceab
                     // close socket.
                     protocolHandler.close();
 
+                    initiator.closeStandby();
+
                 } catch (Exception ex) {
                     if (debug) {
                         Debug.printStackTrace(ex);
@@ -2126,6 +2142,10 @@ public class ConnectionImpl implements com.sun.messaging.jms.Connection, Traceab
             // set flag so that this will not be called again
             isClosed = true;
 
+            if (initiator != null) {
+                initiator.closeStandby();
+            }
+
             setReconnecting(false);
         }
     }
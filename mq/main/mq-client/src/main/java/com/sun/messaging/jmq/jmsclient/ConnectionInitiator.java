@@ -69,6 +69,22 @@ public class ConnectionInitiator {
 
     private String redirectURL = null;
 
+    // warm standby -- transport connection opened in advance to the next
+    // broker in the address list, used when the connection fails over to it.
+    // Each connection then holds a second socket to another broker, and that
+    // broker a connection slot, until the connection fails over or closes.
+    private boolean useStandby = false;
+
+    private ConnectionHandler standby = null;
+
+    private int standbyIndex = -1;
+
+    // incremented each time the standby is replaced or closed
+    private int standbyGeneration = 0;
+
+    // imqAddressListBehavior is PRIORITY
+    private boolean priorityBehavior = true;
+
     // private Logger rootLogger = Logger.getLogger(ConnectionImpl.ROOT_LOGGER_NAME);
 
     public ConnectionInitiator(ConnectionImpl connection) throws JMSException, MalformedURLException {
@@ -86,6 +102,8 @@ public class ConnectionInitiator {
 
         useStaticAddressList = Boolean.getBoolean("imq.useStaticAddressList");
 
+        useStandby = Boolean.getBoolean("imq.failover.standby");
+
         String prop = connection.getTrimmedProperty(ConnectionConfiguration.imqReconnectInterval);
 
         if (prop != null) {
@@ -206,6 +224,26 @@ public class ConnectionInitiator {
         String alist[] = new String[addrList.size()];
         // Exception lastException = null;
 
+        // with PRIORITY the standby is only used when the loop below gets to
+        // it, so the connection does not leave the current broker any sooner
+        if (isReconnect && !priorityBehavior) {
+            ConnectionHandler connHandler = null;
+            int currentIndex = -1;
+            synchronized (this) {
+                connHandler = standby;
+                currentIndex = standbyIndex;
+                standby = null;
+            }
+            if (connHandler != null) {
+                if (debug) {
+                    Debug.println("*** failing over to standby connection: " + addrList.get(currentIndex));
+                }
+                nextStart = this.getNextStartIndex(isReconnect, currentIndex);
+                openStandby(currentIndex);
+                return connHandler;
+            }
+        }
+
         for (int i = 0; addressListIterations <= 0 || i < addressListIterations; i++) {
 
             for (int j = 0; j < addrList.size(); j++) {
@@ -215,8 +253,16 @@ public class ConnectionInitiator {
 
                 try {
 
-                    ConnectionHandler connHandler = this.createConnection(addr);
+                    ConnectionHandler connHandler = isReconnect ? takeStandby(currentIndex) : null;
+                    if (connHandler != null) {
+                        if (debug) {
+                            Debug.println("*** failing over to standby connection: " + addr);
+                        }
+                    } else {
+                        connHandler = this.createConnection(addr);
+                    }
                     nextStart = this.getNextStartIndex(isReconnect, currentIndex);
+                    openStandby(currentIndex);
 
                     return connHandler;
 
@@ -421,8 +467,10 @@ public class ConnectionInitiator {
 
             if (PRIORITY.equalsIgnoreCase(prop)) {
                 aList.setBehavior(MQAddressList.PRIORITY);
+                priorityBehavior = true;
             } else if (RANDOM.equalsIgnoreCase(prop)) {
                 aList.setBehavior(MQAddressList.RANDOM);
+                priorityBehavior = false;
             } else {
                 JMSException jmse = new com.sun.messaging.jms.JMSException("Bad imqAddressListBehavior value : " + prop);
 
@@ -516,6 +564,9 @@ public class ConnectionInitiator {
         Debug.println("*** isJMSService: " + isJMSService);
         Debug.println("*** defaultService: " + defaultService);
 
+        // the standby index refers to the old list
+        closeStandby();
+
         if (isJMSService) {
             addrListString = alString;
             addrList = createAddressList(alString);
@@ -701,10 +752,7 @@ public class ConnectionInitiator {
                     Debug.println("#### Connecting to :" + address + "  counter: " + ct);
                 }
 
-                String handler = address.getHandlerClass();
-                StreamHandler sh = StreamHandlerFactory.getStreamHandler(handler);
-
-                ConnectionHandler connHandler = sh.openConnection(address, connection);
+                ConnectionHandler connHandler = openTransport(address);
 
                 // break out of the loop.
                 return connHandler;
@@ -738,6 +786,110 @@ public class ConnectionInitiator {
         }
     }
 
+    /**
+     * Open a transport connection to the broker
+     */
+    ConnectionHandler openTransport(MQAddress address) throws Exception {
+        StreamHandler sh = StreamHandlerFactory.getStreamHandler(address.getHandlerClass());
+        return sh.openConnection(address, connection);
+    }
+
+    /**
+     * Open a transport connection to the broker after the current one in the address list in the background, if
+     * imq.failover.standby is set. The connection is not authenticated and stays idle until the connection fails over.
+     * With imqAddressListBehavior RANDOM it is used as soon as the connection fails over, with PRIORITY only when the
+     * reconnect gets to that broker in the address list after the attempts against the current broker, so it saves the
+     * connect and not the reconnect attempts. If it has been closed by then, for example by the broker or a firewall for
+     * being idle, the reconnect fails and is retried through the address list as usual.
+     * <p>
+     * The standby costs every connection a second socket (and SSL session) and the other broker a connection, counted
+     * against the connection limits of its service, for as long as the connection is up.
+     */
+    private void openStandby(int currentIndex) {
+        closeStandby();
+
+        if (!useStandby || !connection.imqReconnect || connection.isConnectedToHABroker || addrList.size() < 2) {
+            return;
+        }
+
+        int index = (currentIndex + 1) % addrList.size();
+        MQAddress addr = (MQAddress) addrList.get(index);
+        if ("direct".equalsIgnoreCase(addr.getSchemeName())) {
+            return;
+        }
+
+        int generation;
+        synchronized (this) {
+            generation = standbyGeneration;
+        }
+        Thread thread = new Thread(() -> {
+            ConnectionHandler connHandler = null;
+            try {
+                connHandler = openTransport(addr);
+            } catch (Exception e) {
+                if (debug) {
+                    Debug.println("*** unable to open standby connection to " + addr);
+                    Debug.printStackTrace(e);
+                }
+                return;
+            }
+            synchronized (this) {
+                if (generation == standbyGeneration && !connection.isCloseCalled) {
+                    standby = connHandler;
+                    standbyIndex = index;
+                    return;
+                }
+            }
+            closeHandler(connHandler);
+        }, "imqConnectionStandby-" + addr);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return the standby connection to the broker at index in the address list, or null
+     */
+    synchronized ConnectionHandler takeStandby(int index) {
+        if (standby == null || standbyIndex != index) {
+            return null;
+        }
+        ConnectionHandler connHandler = standby;
+        standby = null;
+        return connHandler;
+    }
+
+    /**
+     * @return index in the address list of the broker the standby connection is to, or -1
+     */
+    synchronized int getStandbyIndex() {
+        return standby == null ? -1 : standbyIndex;
+    }
+
+    /**
+     * Close the standby connection, if any
+     */
+    protected void closeStandby() {
+        ConnectionHandler connHandler = null;
+        synchronized (this) {
+            connHandler = standby;
+            standby = null;
+            standbyGeneration++;
+        }
+        if (connHandler != null) {
+            closeHandler(connHandler);
+        }
+    }
+
+    private void closeHandler(ConnectionHandler connHandler) {
+        try {
+            connHandler.close();
+        } catch (Exception e) {
+            if (debug) {
+                Debug.printStackTrace(e);
+            }
+        }
+    }
+
     private void sleepReconnectDelay() {
         try {
             Thread.sleep(this.reconnectDelay);
@@ -28,7 +28,7 @@ import jakarta.jms.*;
 import com.sun.messaging.AdministeredObject;
 import com.sun.messaging.jmq.io.*;
 import com.sun.messaging.jmq.jmsclient.resources.ClientResources;
-import com.sun.messaging.jmq.util.io.FilteringObjectInputStream;
+import com.sun.messaging.jmq.util.io.CompactBodyCodec;
 
 /**
  * A MapMessage is used to send a set of name-value pairs where names are Strings and values are Java primitive types.
@@ -91,12 +91,6 @@ public class MapMessageImpl extends MessageImpl implements MapMessage {
     private byte[] messageBody = null;
     // private byte[] defaultBytes = new byte [32];
 
-    private ByteArrayOutputStream byteArrayOutputStream = null;
-    private ObjectOutputStream objectOutputStream = null;
-
-    private ByteArrayInputStream byteArrayInputStream = null;
-    private ObjectInputStream objectInputStream = null;
-
     protected MapMessageImpl() throws JMSException {
         setPacketType(PacketType.MAP_MESSAGE);
     }
@@ -107,16 +101,26 @@ public class MapMessageImpl extends MessageImpl implements MapMessage {
     protected void setMessageBodyToPacket() throws JMSException {
 
         try {
-            byteArrayOutputStream = new ByteArrayOutputStream();
-            objectOutputStream = new ObjectOutputStream(byteArrayOutputStream);
-
-            objectOutputStream.writeObject(mapMessage);
-            objectOutputStream.flush();
-
-            messageBody = byteArrayOutputStream.toByteArray();
-
-            objectOutputStream.close();
-            byteArrayOutputStream.close();
+            messageBody = null;
+            if (compactBody) {
+                try {
+                    messageBody = CompactBodyCodec.encodeMap(mapMessage);
+                } catch (IllegalArgumentException e) {
+                    // not a valid map body value, let serialization report it
+                }
+            }
+            if (messageBody == null) {
+                ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+                ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream);
+
+                objectOutputStream.writeObject(mapMessage);
+                objectOutputStream.flush();
+
+                messageBody = byteArrayOutputStream.toByteArray();
+
+                objectOutputStream.close();
+                byteArrayOutputStream.close();
+            }
             setMessageBody(messageBody);
 
         } catch (Exception e) {
@@ -132,10 +136,7 @@ public class MapMessageImpl extends MessageImpl implements MapMessage {
 
         try {
             messageBody = getMessageBody();
-            byteArrayInputStream = new ByteArrayInputStream(messageBody);
-            objectInputStream = new FilteringObjectInputStream(byteArrayInputStream);
-
-            mapMessage = (Map) objectInputStream.readObject();
+            mapMessage = CompactBodyCodec.readMap(messageBody);
 
         } catch (Exception e) {
             ExceptionHandler.handleException(e, ClientResources.X_MESSAGE_DESERIALIZE);
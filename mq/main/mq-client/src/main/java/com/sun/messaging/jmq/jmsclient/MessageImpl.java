@@ -461,6 +461,9 @@ public class MessageImpl implements jakarta.jms.Message, com.sun.messaging.jms.M
 
     protected boolean shouldCompress = false;
 
+    // MapMessage and StreamMessage bodies are written in the compact format, set when the message is sent
+    protected boolean compactBody = false;
+
     protected int clientRetries = 0;
 
     public static final String JMS_SUN_COMPRESS = "JMS_SUN_COMPRESS";
@@ -543,7 +546,9 @@ public class MessageImpl implements jakarta.jms.Message, com.sun.messaging.jms.M
             this.decompress();
         }
 
-        return pkt.getMessageBody();
+        // the message holds its packet, so the body can go back to
+        // the receive buffer pool when the message is unreachable
+        return pkt.lendMessageBody();
     }
 
     /**
@@ -626,7 +631,7 @@ public class MessageImpl implements jakarta.jms.Message, com.sun.messaging.jms.M
         Decompressor decomp = Decompressor.getInstance();
 
         // get ziped body.
-        byte[] zipBody = pkt.getMessageBody();
+        byte[] zipBody = pkt.lendMessageBody();
 
         // get unziped size
         int unzipSize = getIntProperty(MessageImpl.JMS_SUN_UNCOMPRESSED_SIZE);
@@ -185,6 +185,9 @@ public class ProtocolHandler {
 
     private boolean enableZip = Boolean.getBoolean("imq.zip.enable");
 
+    // write MapMessage and StreamMessage bodies in the compact format if the broker reads it
+    private static final boolean ENABLE_COMPACT_BODY = Boolean.parseBoolean(System.getProperty("imq.compactBody.enable", "true"));
+
     // logging name for inbound packet logging
     public static final String INBOUND_PACKET_LOGGING_NAME = "com.sun.messaging.jms.pkt.in";
 
@@ -804,6 +807,12 @@ public class ProtocolHandler {
 
         ht.put("JMQReconnectable", Boolean.valueOf(connection.imqReconnect));
 
+        // this client reads compact MapMessage and StreamMessage bodies
+        ht.put("JMQCompactBody", Boolean.TRUE);
+
+        // this client decompresses message bodies that have the Z flag set
+        ht.put("JMQCompressedBody", Boolean.TRUE);
+
         if (connectionID != null) {
             ht.put("JMQConnectionID", connectionID);
         }
@@ -1609,6 +1618,9 @@ public class ProtocolHandler {
             message.setStringProperty(ConnectionMetaDataImpl.JMSXUserID, jmsxUserID);
         }
 
+        // compressed bodies are never compact, so that the broker can convert them for old clients
+        messageImpl.compactBody = ENABLE_COMPACT_BODY && connection.getBrokerCompactBody() && !enableZip && !messageImpl.shouldCompress;
+
         // convert message type to byte[]
         messageImpl.setMessageBodyToPacket();
 
@@ -3240,6 +3252,18 @@ public class ProtocolHandler {
      * @return an array of SysMessageIDs
      */
     protected SysMessageID[] browse(Consumer consumer) throws JMSException {
+        return browse(consumer, null, 0, null);
+    }
+
+    /**
+     * Get a page of the IDs of the messages in the queue, in delivery order
+     *
+     * @param cursor the cursor returned with the previous page or null for the first page
+     * @param limit max number of message IDs returned, 0 for all
+     * @param nextCursor if not null, receives at index 0 the cursor of the next page, or null if there are no more
+     * messages. A broker that does not support pages returns all IDs and no cursor.
+     */
+    protected SysMessageID[] browse(Consumer consumer, String cursor, int limit, String[] nextCursor) throws JMSException {
         // browse(Destination destination, String selector) throws JMSException {
         com.sun.messaging.Destination dest = (com.sun.messaging.Destination) consumer.getDestination();
         String selector = consumer.getMessageSelector();
@@ -3254,6 +3278,15 @@ public class ProtocolHandler {
         if (selector != null) {
             props.put("JMQSelector", selector);
         }
+        if (limit > 0) {
+            props.put("JMQBrowseLimit", Integer.valueOf(limit));
+            if (cursor != null) {
+                props.put("JMQBrowseCursor", cursor);
+            }
+        }
+        if (nextCursor != null) {
+            nextCursor[0] = null;
+        }
 
         // XXX PROTOCOL2.1 --
         // this will be used in addMetaData and then removed.
@@ -3267,6 +3300,9 @@ public class ProtocolHandler {
         try {
             Hashtable propsrev = pktrev.getProperties();
             statusCode = ((Integer) propsrev.get("JMQStatus")).intValue();
+            if (nextCursor != null) {
+                nextCursor[0] = (String) propsrev.get("JMQBrowseCursor");
+            }
             if (statusCode == Status.NOT_FOUND) {
                 Boolean autoCreate = (Boolean) propsrev.get("JMQCanCreate");
                 if (autoCreate != null && autoCreate.booleanValue()) {
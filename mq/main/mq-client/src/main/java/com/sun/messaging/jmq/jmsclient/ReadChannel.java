@@ -718,6 +718,9 @@ public class ReadChannel implements PacketDispatcher, Runnable {
                 connection.setBrokerProtocolLevel(protoLevel.intValue());
             }
 
+            Boolean compactBody = (Boolean) props.get("JMQCompactBody");
+            connection.setBrokerCompactBody(compactBody != null && compactBody.booleanValue());
+
             int statusCode = ((Integer) props.get("JMQStatus")).intValue();
 
             // TEST_HA -- to be removed
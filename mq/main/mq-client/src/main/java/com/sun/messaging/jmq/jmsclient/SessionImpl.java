@@ -674,6 +674,15 @@ public class SessionImpl implements JMSRAXASession, Traceable, ContextableSessio
         return protocolHandler.browse(consumer);
     }
 
+    /**
+     * get the next page of the message IDs the browser consumer enumerates
+     *
+     * @see ProtocolHandler#browse(Consumer, String, int, String[])
+     */
+    protected SysMessageID[] getMessageIdSet(Consumer consumer, String cursor, int limit, String[] nextCursor) throws JMSException {
+        return protocolHandler.browse(consumer, cursor, limit, nextCursor);
+    }
+
     /**
      * request deliver all messages listed (SysMessageIDs) in the ByteArrayOutputStream to the browser consumer
      *
@@ -3876,6 +3885,20 @@ public class SessionImpl implements JMSRAXASession, Traceable, ContextableSessio
         return false;
     }
 
+    /**
+     * @return true if a consumer of this session has a message listener
+     */
+    public boolean hasMessageListeners() {
+        synchronized (consumers) {
+            for (Object consumer : consumers.values()) {
+                if (consumer instanceof MessageConsumerImpl && ((MessageConsumerImpl) consumer).messageListener != null) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     public void setIsMessageListenerThread(boolean bool) {
         isMessageListener.set(Boolean.valueOf(bool));
     }
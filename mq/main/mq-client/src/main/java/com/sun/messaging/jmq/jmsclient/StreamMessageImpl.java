@@ -23,8 +23,12 @@ package com.sun.messaging.jmq.jmsclient;
 
 import jakarta.jms.*;
 import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
 import com.sun.messaging.AdministeredObject;
 import com.sun.messaging.jmq.io.*;
+import com.sun.messaging.jmq.jmsclient.resources.ClientResources;
+import com.sun.messaging.jmq.util.io.CompactBodyCodec;
 import com.sun.messaging.jmq.util.io.FilteringObjectInputStream;
 
 /**
@@ -97,12 +101,16 @@ public class StreamMessageImpl extends MessageImpl implements StreamMessage {
     private byte[] messageBody = null;
     // private byte[] defaultBytes = new byte [32];
 
-    private ByteArrayOutputStream byteArrayOutputStream = null;
-    private ObjectOutputStream objectOutputStream = null;
+    // values written since the body was last cleared, null for a received message
+    private List<Object> values = null;
 
     private ByteArrayInputStream byteArrayInputStream = null;
     private ObjectInputStream objectInputStream = null;
 
+    // values read from a compact body (or written values), in place of objectInputStream
+    private List<Object> readValues = null;
+    private int readIndex = 0;
+
     private boolean bufferIsDirty = false;
 
     /**
@@ -130,12 +138,7 @@ public class StreamMessageImpl extends MessageImpl implements StreamMessage {
     }
 
     protected void initOutputStream() throws JMSException {
-        try {
-            byteArrayOutputStream = new ByteArrayOutputStream();
-            objectOutputStream = new ObjectOutputStream(byteArrayOutputStream);
-        } catch (Exception e) {
-            ExceptionHandler.handleException(e, AdministeredObject.cr.X_CAUGHT_EXCEPTION);
-        }
+        values = new ArrayList<>();
     }
 
     // serialize message body
@@ -143,14 +146,40 @@ public class StreamMessageImpl extends MessageImpl implements StreamMessage {
     @Override
     protected void setMessageBodyToPacket() throws JMSException {
         reset();
+        if (messageBody != null && CompactBodyCodec.isCompact(messageBody) != compactBody) {
+            try {
+                if (values != null) {
+                    messageBody = encodeValues();
+                } else {
+                    // a received message sent to a broker that does not read compact bodies
+                    messageBody = CompactBodyCodec.toSerializedStream(messageBody);
+                }
+            } catch (Exception e) {
+                ExceptionHandler.handleException(e, ClientResources.X_MESSAGE_SERIALIZE);
+            }
+        }
         setMessageBody(messageBody);
     }
 
+    private byte[] encodeValues() throws IOException {
+        if (compactBody) {
+            return CompactBodyCodec.encodeList(values);
+        }
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        try (ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream)) {
+            for (Object value : values) {
+                objectOutputStream.writeObject(value);
+            }
+        }
+        return byteArrayOutputStream.toByteArray();
+    }
+
     // deserialize message body
     // This is called after message is received in Session Reader.
     @Override
     protected void getMessageBodyFromPacket() throws JMSException {
         messageBody = getMessageBody();
+        values = null;
         reset();
     }
 
@@ -165,6 +194,15 @@ public class StreamMessageImpl extends MessageImpl implements StreamMessage {
             if (notYetProcessedPrimitiveObject != null) {
                 obj = notYetProcessedPrimitiveObject;
                 notYetProcessedPrimitiveObject = null;
+            } else if (readValues != null) {
+                if (readIndex >= readValues.size()) {
+                    throw new EOFException();
+                }
+                obj = readValues.get(readIndex++);
+                if (obj instanceof byte[]) {
+                    // the same value is read again after reset
+                    obj = ((byte[]) obj).clone();
+                }
             } else {
                 obj = objectInputStream.readObject();
             }
@@ -186,11 +224,11 @@ public class StreamMessageImpl extends MessageImpl implements StreamMessage {
 
         checkMessageAccess();
 
-        try {
-            objectOutputStream.writeObject(obj);
-        } catch (Exception e) {
-            ExceptionHandler.handleException(e, AdministeredObject.cr.X_CAUGHT_EXCEPTION);
+        if (obj instanceof byte[]) {
+            // the value is written when the message is reset, not when this is called
+            obj = ((byte[]) obj).clone();
         }
+        values.add(obj);
 
         setBufferIsDirty(true);
     }
@@ -734,16 +772,20 @@ public class StreamMessageImpl extends MessageImpl implements StreamMessage {
         try {
 
             if (bufferIsDirty) {
-                objectOutputStream.flush();
-                messageBody = byteArrayOutputStream.toByteArray();
-
-                objectOutputStream.close();
-                byteArrayOutputStream.close();
+                messageBody = encodeValues();
             }
 
+            readValues = null;
+            readIndex = 0;
             if (messageBody != null) {
-                byteArrayInputStream = new ByteArrayInputStream(messageBody);
-                objectInputStream = new FilteringObjectInputStream(byteArrayInputStream);
+                if (values != null) {
+                    readValues = values;
+                } else if (CompactBodyCodec.isCompact(messageBody)) {
+                    readValues = CompactBodyCodec.decodeList(messageBody);
+                } else {
+                    byteArrayInputStream = new ByteArrayInputStream(messageBody);
+                    objectInputStream = new FilteringObjectInputStream(byteArrayInputStream);
+                }
             }
 
         } catch (Exception e) {
@@ -22,9 +22,13 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+import com.sun.messaging.jmq.io.ByteBufferPool;
 import com.sun.messaging.jmq.io.ReadWritePacket;
 import com.sun.messaging.jmq.jmsclient.ConnectionHandler;
+import com.sun.messaging.jmq.jmsclient.ConnectionImpl;
 import com.sun.messaging.jmq.jmsclient.Debug;
 
 public abstract class SocketConnectionHandler implements ConnectionHandler {
@@ -34,6 +38,11 @@ public abstract class SocketConnectionHandler implements ConnectionHandler {
 
     private boolean debug = Debug.debug;
 
+    // Pool the buffers of received packets are taken from, shared by all connections.
+    // Packets return their buffers when they are garbage collected, which cuts the
+    // allocation rate of consumers that receive many messages of similar sizes.
+    private static final ByteBufferPool receivePool = createReceivePool();
+
     private InputStream is = null;
     private OutputStream os = null;
 
@@ -44,9 +53,26 @@ public abstract class SocketConnectionHandler implements ConnectionHandler {
         return false;
     }
 
+    private static ByteBufferPool createReceivePool() {
+        if (!Boolean.getBoolean("imq.receiveBufferPool.enable")) {
+            return null;
+        }
+        ByteBufferPool pool = new ByteBufferPool(Integer.getInteger("imq.receiveBufferPool.capacity", 8 * 1024 * 1024), false);
+        // message bodies are handed to messages as arrays, which must be the exact size of the body
+        pool.setBlockSize(1);
+        return pool;
+    }
+
+    /**
+     * @return the pool of the buffers of received packets, or null if imq.receiveBufferPool.enable is not set
+     */
+    public static ByteBufferPool getReceivePool() {
+        return receivePool;
+    }
+
     @Override
     public ReadWritePacket readPacket() throws IOException {
-        ReadWritePacket pkt = new ReadWritePacket();
+        ReadWritePacket pkt = (receivePool == null ? new ReadWritePacket() : new ReadWritePacket(receivePool));
         pkt.readPacket(is);
         return pkt;
     }
@@ -109,6 +135,13 @@ public abstract class SocketConnectionHandler implements ConnectionHandler {
     @Override
     public void close() throws IOException {
 
+        if (receivePool != null) {
+            Logger logger = ConnectionImpl.getConnectionLogger();
+            if (logger.isLoggable(Level.FINE)) {
+                logger.fine("Receive buffer pool: " + receivePool.toDiagString());
+            }
+        }
+
         getInputStream().close();
         is.close();
         os.close();
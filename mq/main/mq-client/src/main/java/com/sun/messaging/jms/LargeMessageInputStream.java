@@ -0,0 +1,312 @@
+/*
+ * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+
+package com.sun.messaging.jms;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Set;
+
+import jakarta.jms.BytesMessage;
+import jakarta.jms.Destination;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.MessageConsumer;
+import jakarta.jms.Queue;
+import jakarta.jms.QueueBrowser;
+import jakarta.jms.Session;
+import jakarta.jms.Topic;
+
+import com.sun.messaging.jmq.jmsclient.SessionImpl;
+
+/**
+ * An <CODE>InputStream</CODE> over the payload of a large message sent with a {@link LargeMessageOutputStream}.
+ * <P>
+ * The stream is created from the first chunk of the message and receives the following chunks as the payload is read,
+ * so only the chunk being read is held in memory, plus the chunks prefetched by the consumer (see
+ * <CODE>imqConsumerFlowLimit</CODE>). Closing the stream before the end of the payload receives and discards the
+ * remaining chunks.
+ * <P>
+ * The chunks of two messages sent at the same time by different producers are interleaved on the destination, and
+ * message groups, which would keep the chunks of a message on one consumer, are off by default. So a stream created
+ * with a {@link Session} receives the following chunks from its own consumer, with a selector on the
+ * <CODE>JMSXGroupID</CODE> of the message. This only works on a queue, and the application consumer that receives the
+ * first chunks must use {@link #FIRST_CHUNK_SELECTOR} so that it does not take or prefetch the following chunks. A
+ * stream created with a {@link MessageConsumer} receives the following chunks from that consumer, which is only correct
+ * if the chunks of one message reach it in sequence: a single producer, or message groups enabled on the queue. The
+ * consumer must not be used by the application until the stream is closed.
+ * <P>
+ * The following chunks are received synchronously, so a stream cannot be created on a session that delivers messages
+ * to a message listener: the constructors throw an <CODE>IllegalStateException</CODE> if the session or the consumer
+ * has a message listener, or if called from <CODE>onMessage</CODE>. Read large messages with <CODE>receive</CODE>, on
+ * a session of their own if other messages of the application are delivered asynchronously.
+ * <P>
+ * Use <CODE>CLIENT_ACKNOWLEDGE</CODE> or a transacted session, and acknowledge or commit after the stream is closed, so
+ * that all chunks of the message are consumed together. With <CODE>AUTO_ACKNOWLEDGE</CODE> the first chunk is consumed
+ * as soon as it is received, so if the reader fails before the end of the stream the following chunks are left on the
+ * queue with no first chunk, and no consumer with {@link #FIRST_CHUNK_SELECTOR} ever receives them. Such orphaned
+ * chunks expire with the time to live of the producer of the stream, if any, and are removed by
+ * {@link #purgeOrphanedChunks}.
+ *
+ * @see LargeMessageOutputStream
+ */
+public class LargeMessageInputStream extends InputStream {
+
+    /**
+     * Selector for the consumer that receives the first chunks of large messages, and any other message, but none of
+     * the following chunks
+     */
+    public static final String FIRST_CHUNK_SELECTOR = LargeMessageOutputStream.JMS_SUN_LARGE_MESSAGE + " IS NULL OR "
+            + LargeMessageOutputStream.JMSX_GROUP_SEQ + " = 1";
+
+    // how long purgeOrphanedChunks waits for the next chunk of a message
+    private static final long PURGE_RECEIVE_TIMEOUT = 1000L;
+
+    private final MessageConsumer consumer;
+    // the consumer is created and closed by this stream
+    private final boolean ownConsumer;
+    private final long timeout;
+    private final String id;
+    private byte[] chunk;
+    private int pos = 0;
+    private int seq = 1;
+    private boolean last;
+    private boolean closed = false;
+
+    /**
+     * Create a stream that receives the following chunks from a consumer of its own on the queue of the first chunk
+     *
+     * @param session the session of the consumer that received the first chunk
+     * @param first the first chunk of the message
+     * @param timeout how long to wait for each of the following chunks in milliseconds, 0 to wait forever
+     * @throws jakarta.jms.MessageFormatException if the message is not the first chunk of a large message
+     * @throws jakarta.jms.InvalidDestinationException if the message was not received from a queue
+     * @throws jakarta.jms.IllegalStateException if the session delivers messages to a message listener
+     */
+    public LargeMessageInputStream(Session session, Message first, long timeout) throws JMSException {
+        checkSyncReceive(session);
+        this.id = checkFirst(first);
+        Destination dest = first.getJMSDestination();
+        if (dest instanceof Topic) {
+            throw new jakarta.jms.InvalidDestinationException("Large message " + id + " not received from a queue: " + dest);
+        }
+        this.consumer = session.createConsumer(dest, getChunkSelector(id));
+        this.ownConsumer = true;
+        this.timeout = timeout;
+        setChunk((BytesMessage) first);
+    }
+
+    /**
+     * Create a stream that receives the following chunks from the consumer of the first chunk
+     *
+     * @param consumer the consumer that received the first chunk
+     * @param first the first chunk of the message
+     * @param timeout how long to wait for each of the following chunks in milliseconds, 0 to wait forever
+     * @throws jakarta.jms.MessageFormatException if the message is not the first chunk of a large message
+     * @throws jakarta.jms.IllegalStateException if the consumer has a message listener
+     */
+    public LargeMessageInputStream(MessageConsumer consumer, Message first, long timeout) throws JMSException {
+        if (consumer.getMessageListener() != null) {
+            throw new jakarta.jms.IllegalStateException("Large messages cannot be read from a consumer with a message listener");
+        }
+        this.id = checkFirst(first);
+        this.consumer = consumer;
+        this.ownConsumer = false;
+        this.timeout = timeout;
+        setChunk((BytesMessage) first);
+    }
+
+    private static void checkSyncReceive(Session session) throws JMSException {
+        boolean async = (session.getMessageListener() != null);
+        if (!async && session instanceof SessionImpl) {
+            SessionImpl s = (SessionImpl) session;
+            async = s.isIsMessageListenerThread() || s.hasMessageListeners();
+        }
+        if (async) {
+            throw new jakarta.jms.IllegalStateException("Large messages cannot be read from a session that delivers messages to a message listener");
+        }
+    }
+
+    /**
+     * Remove the chunks of large messages left on a queue without their first chunk, as when a reader using
+     * <CODE>AUTO_ACKNOWLEDGE</CODE> fails before the end of the stream.
+     * <P>
+     * Only the chunks of messages whose first chunk is no longer on the queue and whose chunks are all older than minAge
+     * are removed, so minAge must be longer than it takes to write or read a large message. In a transacted session the
+     * chunks are removed when the session is committed. With <CODE>CLIENT_ACKNOWLEDGE</CODE> the chunks are
+     * acknowledged, along with the other messages consumed by the session.
+     *
+     * @param session a session without message listeners
+     * @param queue the queue of the large messages
+     * @param minAge how long the chunks must have been on the queue in milliseconds
+     * @return the number of chunks removed
+     * @throws jakarta.jms.IllegalStateException if the session delivers messages to a message listener
+     */
+    public static int purgeOrphanedChunks(Session session, Queue queue, long minAge) throws JMSException {
+        checkSyncReceive(session);
+        long before = System.currentTimeMillis() - minAge;
+        Set<String> orphans = new HashSet<>();
+        Set<String> live = new HashSet<>();
+        try (QueueBrowser browser = session.createBrowser(queue, LargeMessageOutputStream.JMS_SUN_LARGE_MESSAGE + " = TRUE")) {
+            Enumeration<?> msgs = browser.getEnumeration();
+            while (msgs.hasMoreElements()) {
+                Message msg = (Message) msgs.nextElement();
+                String id = msg.getStringProperty(LargeMessageOutputStream.JMSX_GROUP_ID);
+                if (id == null) {
+                    continue;
+                }
+                if (msg.getIntProperty(LargeMessageOutputStream.JMSX_GROUP_SEQ) == 1 || msg.getJMSTimestamp() > before) {
+                    live.add(id);
+                } else {
+                    orphans.add(id);
+                }
+            }
+        }
+        orphans.removeAll(live);
+        int count = 0;
+        Message last = null;
+        for (String id : orphans) {
+            try (MessageConsumer consumer = session.createConsumer(queue, getChunkSelector(id))) {
+                Message msg = null;
+                while ((msg = consumer.receive(PURGE_RECEIVE_TIMEOUT)) != null) {
+                    last = msg;
+                    count++;
+                }
+            }
+        }
+        if (last != null && session.getAcknowledgeMode() == Session.CLIENT_ACKNOWLEDGE) {
+            last.acknowledge();
+        }
+        return count;
+    }
+
+    private static String checkFirst(Message first) throws JMSException {
+        if (!isLargeMessage(first) || first.getIntProperty(LargeMessageOutputStream.JMSX_GROUP_SEQ) != 1) {
+            throw new jakarta.jms.MessageFormatException("Not the first chunk of a large message: " + first.getJMSMessageID());
+        }
+        return first.getStringProperty(LargeMessageOutputStream.JMSX_GROUP_ID);
+    }
+
+    /**
+     * @return the selector for the chunks of a large message after the first one
+     */
+    public static String getChunkSelector(String id) {
+        return LargeMessageOutputStream.JMSX_GROUP_ID + " = '" + id.replace("'", "''") + "' AND " + LargeMessageOutputStream.JMSX_GROUP_SEQ + " > 1";
+    }
+
+    /**
+     * @return true if the message is a chunk of a large message
+     */
+    public static boolean isLargeMessage(Message msg) throws JMSException {
+        return msg instanceof BytesMessage && msg.getBooleanProperty(LargeMessageOutputStream.JMS_SUN_LARGE_MESSAGE);
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return chunk[pos++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int n = Math.min(len, chunk.length - pos);
+        System.arraycopy(chunk, pos, b, off, n);
+        pos += n;
+        return n;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (closed ? 0 : chunk.length - pos);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            while (!last) {
+                next();
+            }
+        } finally {
+            closed = true;
+            chunk = null;
+            if (ownConsumer) {
+                try {
+                    consumer.close();
+                } catch (JMSException e) {
+                    throw new IOException("Failed to close the consumer of large message " + id, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return false at the end of the payload
+     */
+    private boolean fill() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        while (pos == chunk.length) {
+            if (last) {
+                return false;
+            }
+            next();
+        }
+        return true;
+    }
+
+    private void next() throws IOException {
+        seq++;
+        try {
+            Message msg = (timeout == 0 ? consumer.receive() : consumer.receive(timeout));
+            if (msg == null) {
+                throw new IOException("No chunk " + seq + " of large message " + id + " received");
+            }
+            if (!isLargeMessage(msg) || !id.equals(msg.getStringProperty(LargeMessageOutputStream.JMSX_GROUP_ID))
+                    || msg.getIntProperty(LargeMessageOutputStream.JMSX_GROUP_SEQ) != seq) {
+                throw new IOException("Received " + msg.getJMSMessageID() + " instead of chunk " + seq + " of large message " + id);
+            }
+            setChunk((BytesMessage) msg);
+        } catch (JMSException e) {
+            throw new IOException("Failed to receive chunk " + seq + " of large message " + id, e);
+        }
+    }
+
+    private void setChunk(BytesMessage msg) throws JMSException {
+        msg.reset();
+        chunk = new byte[(int) msg.getBodyLength()];
+        msg.readBytes(chunk);
+        pos = 0;
+        last = msg.getBooleanProperty(LargeMessageOutputStream.JMS_SUN_LARGE_MESSAGE_LAST);
+    }
+}
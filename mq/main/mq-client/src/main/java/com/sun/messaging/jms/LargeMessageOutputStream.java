@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+
+package com.sun.messaging.jms;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import jakarta.jms.BytesMessage;
+import jakarta.jms.JMSException;
+import jakarta.jms.MessageProducer;
+import jakarta.jms.Session;
+
+/**
+ * An <CODE>OutputStream</CODE> that sends a payload of any size as a sequence of chunk <CODE>BytesMessage</CODE>s, so
+ * neither the producer, the broker nor the store ever holds more than one chunk of the payload.
+ * <P>
+ * All chunks of a stream share a unique <CODE>JMSXGroupID</CODE> and carry their position in
+ * <CODE>JMSXGroupSeq</CODE>, starting at 1. The last chunk, sent by {@link #close()}, has the
+ * {@link #JMS_SUN_LARGE_MESSAGE_LAST} property set. The chunks are read back with a {@link LargeMessageInputStream},
+ * which receives the chunks of one stream with a selector on its <CODE>JMSXGroupID</CODE> since the chunks of streams
+ * sent at the same time are interleaved on the destination.
+ * <P>
+ * Chunks are sent with the delivery mode, priority and time to live of the producer. A time to live also bounds how
+ * long chunks left without their first chunk by a failed reader stay on the queue, see
+ * {@link LargeMessageInputStream#purgeOrphanedChunks}. In a transacted session the chunks become visible to consumers
+ * when the session is committed after the stream is closed.
+ *
+ * @see LargeMessageInputStream
+ */
+public class LargeMessageOutputStream extends OutputStream {
+
+    /**
+     * Boolean property set on every chunk of a large message
+     */
+    public static final String JMS_SUN_LARGE_MESSAGE = "JMS_SUN_LARGE_MESSAGE";
+
+    /**
+     * Boolean property set on the last chunk of a large message
+     */
+    public static final String JMS_SUN_LARGE_MESSAGE_LAST = "JMS_SUN_LARGE_MESSAGE_LAST";
+
+    /**
+     * Long property with the size of the payload, set on the last chunk of a large message
+     */
+    public static final String JMS_SUN_LARGE_MESSAGE_SIZE = "JMS_SUN_LARGE_MESSAGE_SIZE";
+
+    static final String JMSX_GROUP_ID = "JMSXGroupID";
+    static final String JMSX_GROUP_SEQ = "JMSXGroupSeq";
+
+    /**
+     * The default chunk size, from the imq.largeMessage.chunkSize system property
+     */
+    public static final int DEFAULT_CHUNK_SIZE = Integer.getInteger("imq.largeMessage.chunkSize", 512 * 1024);
+
+    private final Session session;
+    private final MessageProducer producer;
+    private final String id = UUID.randomUUID().toString();
+    private final Map<String, Object> properties = new LinkedHashMap<>();
+    private final byte[] chunk;
+    private int count = 0;
+    private int seq = 0;
+    private long size = 0;
+    private boolean closed = false;
+
+    public LargeMessageOutputStream(Session session, MessageProducer producer) {
+        this(session, producer, DEFAULT_CHUNK_SIZE);
+    }
+
+    public LargeMessageOutputStream(Session session, MessageProducer producer, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Invalid chunk size " + chunkSize);
+        }
+        this.session = session;
+        this.producer = producer;
+        this.chunk = new byte[chunkSize];
+    }
+
+    /**
+     * @return the JMSXGroupID of the chunks of this stream
+     */
+    public String getID() {
+        return id;
+    }
+
+    /**
+     * Set a property on every chunk of the stream. Properties can only be set before the first chunk is sent.
+     *
+     * @see jakarta.jms.Message#setObjectProperty(String, Object)
+     */
+    public void setObjectProperty(String name, Object value) {
+        if (seq > 0) {
+            throw new java.lang.IllegalStateException("Properties must be set before the first chunk is sent");
+        }
+        properties.put(name, value);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        checkClosed();
+        if (count == chunk.length) {
+            send(false);
+        }
+        chunk[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        checkClosed();
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        while (len > 0) {
+            if (count == chunk.length) {
+                send(false);
+            }
+            int n = Math.min(len, chunk.length - count);
+            System.arraycopy(b, off, chunk, count, n);
+            count += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Does nothing, chunks are only sent when they are full or when the stream is closed
+     */
+    @Override
+    public void flush() throws IOException {
+    }
+
+    /**
+     * Send the last chunk of the stream
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        send(true);
+        closed = true;
+    }
+
+    private void send(boolean last) throws IOException {
+        try {
+            BytesMessage msg = session.createBytesMessage();
+            for (Map.Entry<String, Object> e : properties.entrySet()) {
+                msg.setObjectProperty(e.getKey(), e.getValue());
+            }
+            msg.setStringProperty(JMSX_GROUP_ID, id);
+            msg.setIntProperty(JMSX_GROUP_SEQ, ++seq);
+            msg.setBooleanProperty(JMS_SUN_LARGE_MESSAGE, true);
+            size += count;
+            if (last) {
+                msg.setBooleanProperty(JMS_SUN_LARGE_MESSAGE_LAST, true);
+                msg.setLongProperty(JMS_SUN_LARGE_MESSAGE_SIZE, size);
+            }
+            msg.writeBytes(chunk, 0, count);
+            count = 0;
+            producer.send(msg);
+        } catch (JMSException e) {
+            throw new IOException("Failed to send chunk " + seq + " of large message " + id, e);
+        }
+    }
+
+    private void checkClosed() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+}
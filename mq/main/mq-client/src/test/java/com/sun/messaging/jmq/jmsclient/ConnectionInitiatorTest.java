@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+
+package com.sun.messaging.jmq.jmsclient;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import jakarta.jms.JMSException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sun.messaging.ConnectionConfiguration;
+
+class ConnectionInitiatorTest {
+
+    private ConnectionImpl connection;
+
+    // host name -> remaining failed attempts, -1 for down
+    private final Map<String, Integer> failures = new ConcurrentHashMap<>();
+
+    // hosts connected to on the calling thread
+    private final List<String> connects = new CopyOnWriteArrayList<>();
+
+    private final Map<String, ConnectionHandler> standbys = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        System.setProperty("imq.failover.standby", "true");
+        connection = mock(ConnectionImpl.class);
+        connection.imqReconnect = true;
+        when(connection.getTrimmedProperty(ConnectionConfiguration.imqAddressList)).thenReturn("mq://h0:7676/jms,mq://h1:7676/jms");
+        when(connection.getTrimmedProperty(ConnectionConfiguration.imqReconnectInterval)).thenReturn("1");
+        when(connection.getTrimmedProperty(ConnectionConfiguration.imqReconnectAttempts)).thenReturn("2");
+    }
+
+    @AfterEach
+    void tearDown() {
+        System.clearProperty("imq.failover.standby");
+    }
+
+    private ConnectionInitiator newInitiator(String behavior) throws Exception {
+        when(connection.getProperty(ConnectionConfiguration.imqAddressListBehavior)).thenReturn(behavior);
+        return new ConnectionInitiator(connection) {
+            @Override
+            ConnectionHandler openTransport(MQAddress address) throws Exception {
+                String host = address.getHostName();
+                if (Thread.currentThread().getName().startsWith("imqConnectionStandby-")) {
+                    ConnectionHandler handler = mock(ConnectionHandler.class);
+                    standbys.put(host, handler);
+                    return handler;
+                }
+                connects.add(host);
+                int n = failures.getOrDefault(host, 0);
+                if (n != 0) {
+                    failures.put(host, n - 1);
+                    throw new JMSException("connection refused: " + host);
+                }
+                return mock(ConnectionHandler.class);
+            }
+        };
+    }
+
+    private static void awaitStandby(ConnectionInitiator initiator) throws InterruptedException {
+        for (int i = 0; i < 500 && initiator.getStandbyIndex() < 0; i++) {
+            Thread.sleep(10);
+        }
+        assertThat(initiator.getStandbyIndex()).isNotNegative();
+    }
+
+    @Test
+    void testPriorityRetriesCurrentBrokerBeforeStandby() throws Exception {
+        ConnectionInitiator initiator = newInitiator("PRIORITY");
+        initiator.createConnection();
+        awaitStandby(initiator);
+        assertThat(initiator.getStandbyIndex()).isEqualTo(1);
+        ConnectionHandler standby = standbys.get("h1");
+
+        failures.put("h0", 1);
+        ConnectionHandler handler = initiator.reconnect();
+
+        assertThat(handler).isNotSameAs(standby);
+        assertThat(connects).containsExactly("h0", "h0", "h0");
+        verify(standby).close();
+    }
+
+    @Test
+    void testPriorityUsesStandbyWhenCurrentBrokerIsDown() throws Exception {
+        ConnectionInitiator initiator = newInitiator("PRIORITY");
+        initiator.createConnection();
+        awaitStandby(initiator);
+        ConnectionHandler standby = standbys.get("h1");
+
+        failures.put("h0", -1);
+        ConnectionHandler handler = initiator.reconnect();
+
+        assertThat(handler).isSameAs(standby);
+        assertThat(connects).containsExactly("h0", "h0", "h0");
+    }
+
+    @Test
+    void testRandomUsesStandbyFirst() throws Exception {
+        ConnectionInitiator initiator = newInitiator("RANDOM");
+        initiator.createConnection();
+        awaitStandby(initiator);
+        assertThat(connects).hasSize(1);
+        String current = connects.get(0);
+        ConnectionHandler standby = standbys.get(current.equals("h0") ? "h1" : "h0");
+
+        ConnectionHandler handler = initiator.reconnect();
+
+        assertThat(handler).isSameAs(standby);
+        assertThat(connects).containsExactly(current);
+    }
+
+    @Test
+    void testNoStandbyWithoutReconnect() throws Exception {
+        connection.imqReconnect = false;
+        ConnectionInitiator initiator = newInitiator("PRIORITY");
+        initiator.createConnection();
+        Thread.sleep(50);
+
+        assertThat(initiator.getStandbyIndex()).isEqualTo(-1);
+        assertThat(standbys).isEmpty();
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+
+package com.sun.messaging.jmq.jmsclient;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Predicate;
+
+import jakarta.jms.Destination;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.MessageConsumer;
+import jakarta.jms.MessageListener;
+import jakarta.jms.MessageProducer;
+import jakarta.jms.Queue;
+import jakarta.jms.QueueBrowser;
+import jakarta.jms.Session;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import com.sun.messaging.jmq.util.selector.Selector;
+import com.sun.messaging.jms.LargeMessageInputStream;
+import com.sun.messaging.jms.LargeMessageOutputStream;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class LargeMessageStreamTest {
+
+    @Mock
+    private Session session;
+
+    @Mock
+    private MessageProducer producer;
+
+    @Mock
+    private MessageConsumer consumer;
+
+    private final Deque<Message> sent = new ArrayDeque<>();
+
+    @BeforeEach
+    public void setUp() throws JMSException {
+        when(session.createBytesMessage()).thenAnswer(invocation -> new BytesMessageImpl(true));
+        doAnswer(invocation -> {
+            Message msg = invocation.getArgument(0);
+            msg.setJMSTimestamp(System.currentTimeMillis());
+            return sent.add(msg);
+        }).when(producer).send(any(Message.class));
+        when(consumer.receive(1000L)).thenAnswer(invocation -> sent.poll());
+    }
+
+    private byte[] send(int size, int chunkSize) throws IOException {
+        byte[] payload = new byte[size];
+        new Random(size).nextBytes(payload);
+        try (LargeMessageOutputStream out = new LargeMessageOutputStream(session, producer, chunkSize)) {
+            out.setObjectProperty("name", "payload");
+            out.write(payload, 0, 1);
+            out.write(payload, 1, size - 1);
+        }
+        return payload;
+    }
+
+    @Test
+    void payloadIsSentInChunksAndReadBack() throws Exception {
+        byte[] payload = send(10000, 1024);
+
+        assertThat(sent).hasSize(10);
+        Message first = sent.poll();
+        assertThat(first.getStringProperty("name")).isEqualTo("payload");
+        assertThat(sent.peekLast().getLongProperty(LargeMessageOutputStream.JMS_SUN_LARGE_MESSAGE_SIZE)).isEqualTo(10000L);
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (InputStream in = new LargeMessageInputStream(consumer, first, 1000L)) {
+            in.transferTo(bos);
+        }
+        assertThat(bos.toByteArray()).isEqualTo(payload);
+    }
+
+    @Test
+    void closeDiscardsRemainingChunks() throws Exception {
+        send(4096, 1024);
+
+        try (InputStream in = new LargeMessageInputStream(consumer, sent.poll(), 1000L)) {
+            assertThat(in.read(new byte[10])).isEqualTo(10);
+        }
+        assertThat(sent).isEmpty();
+    }
+
+    private static boolean isFirst(Message msg) throws JMSException {
+        return msg.getIntProperty("JMSXGroupSeq") == 1;
+    }
+
+    private Message poll(Predicate<Message> selector) {
+        Iterator<Message> itr = sent.iterator();
+        while (itr.hasNext()) {
+            Message msg = itr.next();
+            if (selector.test(msg)) {
+                itr.remove();
+                return msg;
+            }
+        }
+        return null;
+    }
+
+    private MessageConsumer newChunkConsumer(String selector) throws JMSException {
+        MessageConsumer c = mock(MessageConsumer.class);
+        when(c.receive(1000L)).thenAnswer(invocation -> poll(msg -> {
+            try {
+                return !isFirst(msg) && selector.equals(LargeMessageInputStream.getChunkSelector(msg.getStringProperty("JMSXGroupID")));
+            } catch (JMSException e) {
+                throw new IllegalStateException(e);
+            }
+        }));
+        return c;
+    }
+
+    private void sendInterleaved(byte[] a, byte[] b) throws IOException {
+        try (LargeMessageOutputStream outA = new LargeMessageOutputStream(session, producer, 1024);
+                LargeMessageOutputStream outB = new LargeMessageOutputStream(session, producer, 1024)) {
+            for (int off = 0; off < a.length; off += 500) {
+                outA.write(a, off, 500);
+                if (off < b.length) {
+                    outB.write(b, off, 500);
+                }
+            }
+        }
+    }
+
+    // the application consumer, with FIRST_CHUNK_SELECTOR
+    private Message receiveFirst() {
+        return poll(msg -> {
+            try {
+                return isFirst(msg);
+            } catch (JMSException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    @Test
+    void interleavedProducersAreReadWithChunkConsumers() throws Exception {
+        List<MessageConsumer> chunkConsumers = new ArrayList<>();
+        when(session.createConsumer(ArgumentMatchers.<Destination> any(), anyString())).thenAnswer(invocation -> {
+            MessageConsumer c = newChunkConsumer(invocation.getArgument(1));
+            chunkConsumers.add(c);
+            return c;
+        });
+        byte[] a = new byte[5000];
+        byte[] b = new byte[3000];
+        new Random(1).nextBytes(a);
+        new Random(2).nextBytes(b);
+        sendInterleaved(a, b);
+
+        Message firstA = receiveFirst();
+        Message firstB = receiveFirst();
+        assertThat(sent).hasSize(6);
+        try (InputStream in = new LargeMessageInputStream(session, firstB, 1000L)) {
+            assertThat(in.readAllBytes()).isEqualTo(b);
+        }
+        try (InputStream in = new LargeMessageInputStream(session, firstA, 1000L)) {
+            assertThat(in.readAllBytes()).isEqualTo(a);
+        }
+        assertThat(sent).isEmpty();
+        assertThat(chunkConsumers).hasSize(2);
+        for (MessageConsumer c : chunkConsumers) {
+            verify(c).close();
+        }
+    }
+
+    @Test
+    void interleavedChunksFailTheReadFromOneConsumer() throws Exception {
+        sendInterleaved(new byte[5000], new byte[3000]);
+
+        receiveFirst();
+        Message firstB = receiveFirst();
+        // the next message of the consumer is the second chunk of a
+        InputStream in = new LargeMessageInputStream(consumer, firstB, 1000L);
+        assertThatThrownBy(() -> in.readAllBytes()).isInstanceOf(IOException.class).hasMessageContaining("instead of chunk 2");
+    }
+
+    private static Map<Object, Object> chunk(String id, int seq) {
+        Map<Object, Object> props = new HashMap<>();
+        props.put(LargeMessageOutputStream.JMS_SUN_LARGE_MESSAGE, Boolean.TRUE);
+        props.put("JMSXGroupID", id);
+        props.put("JMSXGroupSeq", Integer.valueOf(seq));
+        return props;
+    }
+
+    @Test
+    void selectorsSplitFirstAndFollowingChunks() throws Exception {
+        Selector first = Selector.compile(LargeMessageInputStream.FIRST_CHUNK_SELECTOR);
+        assertThat(first.match(chunk("a", 1), new HashMap<>())).isTrue();
+        assertThat(first.match(chunk("a", 2), new HashMap<>())).isFalse();
+        assertThat(first.match(new HashMap<>(), new HashMap<>())).isTrue();
+
+        Selector following = Selector.compile(LargeMessageInputStream.getChunkSelector("it's"));
+        assertThat(following.match(chunk("it's", 2), new HashMap<>())).isTrue();
+        assertThat(following.match(chunk("it's", 1), new HashMap<>())).isFalse();
+        assertThat(following.match(chunk("its", 2), new HashMap<>())).isFalse();
+    }
+
+    @Test
+    void missingChunkFailsTheRead() throws Exception {
+        send(4096, 1024);
+        Message first = sent.poll();
+        sent.poll();
+
+        InputStream in = new LargeMessageInputStream(consumer, first, 1000L);
+        assertThatThrownBy(() -> in.readAllBytes()).isInstanceOf(IOException.class).hasMessageContaining("instead of chunk 2");
+        assertThatThrownBy(() -> new LargeMessageInputStream(consumer, sent.poll(), 1000L)).isInstanceOf(jakarta.jms.MessageFormatException.class);
+    }
+
+    @Test
+    void asyncConsumersAreRejected() throws Exception {
+        send(2048, 1024);
+        Message first = sent.poll();
+
+        when(consumer.getMessageListener()).thenReturn(mock(MessageListener.class));
+        assertThatThrownBy(() -> new LargeMessageInputStream(consumer, first, 1000L)).isInstanceOf(jakarta.jms.IllegalStateException.class);
+
+        when(session.getMessageListener()).thenReturn(mock(MessageListener.class));
+        assertThatThrownBy(() -> new LargeMessageInputStream(session, first, 1000L)).isInstanceOf(jakarta.jms.IllegalStateException.class);
+
+        // an application consumer of the session has a message listener
+        UnifiedSessionImpl asyncSession = mock(UnifiedSessionImpl.class);
+        when(asyncSession.hasMessageListeners()).thenReturn(true);
+        assertThatThrownBy(() -> new LargeMessageInputStream(asyncSession, first, 1000L)).isInstanceOf(jakarta.jms.IllegalStateException.class);
+        verify(asyncSession, never()).createConsumer(ArgumentMatchers.<Destination> any(), anyString());
+    }
+
+    @Test
+    void purgeRemovesChunksLeftWithoutTheirFirstChunk() throws Exception {
+        Queue queue = mock(Queue.class);
+        when(session.createBrowser(any(Queue.class), anyString())).thenAnswer(invocation -> {
+            QueueBrowser browser = mock(QueueBrowser.class);
+            when(browser.getEnumeration()).thenReturn(Collections.enumeration(new ArrayList<>(sent)));
+            return browser;
+        });
+        when(session.createConsumer(ArgumentMatchers.<Destination> any(), anyString())).thenAnswer(invocation -> newChunkConsumer(invocation.getArgument(1)));
+        byte[] a = new byte[5000];
+        byte[] b = new byte[3000];
+        sendInterleaved(a, b);
+
+        // the reader of a failed after receiving its first chunk
+        receiveFirst();
+        assertThat(sent).hasSize(7);
+
+        // chunks of messages younger than minAge are kept
+        assertThat(LargeMessageInputStream.purgeOrphanedChunks(session, queue, 60000L)).isEqualTo(0);
+        assertThat(sent).hasSize(7);
+
+        assertThat(LargeMessageInputStream.purgeOrphanedChunks(session, queue, 0L)).isEqualTo(4);
+        assertThat(sent).hasSize(3);
+        try (InputStream in = new LargeMessageInputStream(session, receiveFirst(), 1000L)) {
+            assertThat(in.readAllBytes()).isEqualTo(b);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+
+package com.sun.messaging.jmq.jmsclient;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import com.sun.messaging.jmq.io.ReadWritePacket;
+import com.sun.messaging.jmq.util.io.CompactBodyCodec;
+
+import jakarta.jms.JMSException;
+import jakarta.jms.MessageEOFException;
+import jakarta.jms.MessageFormatException;
+import jakarta.jms.MessageNotReadableException;
+import jakarta.jms.MessageNotWriteableException;
+
+class StreamMessageImplTest {
+
+    private static StreamMessageImpl newMessage() throws JMSException {
+        StreamMessageImpl message = new StreamMessageImpl(true);
+        message.setPacket(new ReadWritePacket());
+        return message;
+    }
+
+    private static void writeValues(StreamMessageImpl message) throws JMSException {
+        message.writeBoolean(true);
+        message.writeByte((byte) -3);
+        message.writeShort((short) 300);
+        message.writeChar('€');
+        message.writeInt(-70000);
+        message.writeLong(Long.MIN_VALUE);
+        message.writeFloat(1.5f);
+        message.writeDouble(-0.25d);
+        message.writeString("streäm\u0000");
+        message.writeString(null);
+        message.writeBytes(new byte[] { 1, 2, 3, 4, 5 }, 1, 3);
+        message.writeObject(Integer.valueOf(42));
+    }
+
+    private static void readValues(StreamMessageImpl message) throws JMSException {
+        assertThat(message.readBoolean()).isTrue();
+        assertThat(message.readByte()).isEqualTo((byte) -3);
+        assertThat(message.readShort()).isEqualTo((short) 300);
+        assertThat(message.readChar()).isEqualTo('€');
+        assertThat(message.readInt()).isEqualTo(-70000);
+        assertThat(message.readLong()).isEqualTo(Long.MIN_VALUE);
+        assertThat(message.readFloat()).isEqualTo(1.5f);
+        assertThat(message.readDouble()).isEqualTo(-0.25d);
+        assertThat(message.readString()).isEqualTo("streäm\u0000");
+        assertThat(message.readString()).isNull();
+        assertThat((byte[]) message.readObject()).containsExactly(2, 3, 4);
+        assertThat(message.readInt()).isEqualTo(42);
+        assertThatExceptionOfType(MessageEOFException.class).isThrownBy(message::readInt);
+    }
+
+    @Test
+    void testResetRereadsWrittenValues() throws Exception {
+        StreamMessageImpl message = newMessage();
+        writeValues(message);
+        assertThatExceptionOfType(MessageNotReadableException.class).isThrownBy(message::readInt);
+
+        message.reset();
+        readValues(message);
+        message.reset();
+        readValues(message);
+        assertThatExceptionOfType(MessageNotWriteableException.class).isThrownBy(() -> message.writeInt(1));
+    }
+
+    @Test
+    void testClearBodyDropsValues() throws Exception {
+        StreamMessageImpl message = newMessage();
+        writeValues(message);
+        message.reset();
+        message.clearBody();
+
+        message.writeInt(7);
+        message.reset();
+        assertThat(message.readInt()).isEqualTo(7);
+        assertThatExceptionOfType(MessageEOFException.class).isThrownBy(message::readInt);
+    }
+
+    @Test
+    void testByteArraysAreCopied() throws Exception {
+        StreamMessageImpl message = newMessage();
+        byte[] value = { 1, 2, 3 };
+        message.writeBytes(value);
+        // a change after the write is not seen
+        value[0] = 9;
+        message.reset();
+
+        byte[] read = (byte[]) message.readObject();
+        assertThat(read).containsExactly(1, 2, 3);
+        read[1] = 9;
+        message.reset();
+        assertThat((byte[]) message.readObject()).containsExactly(1, 2, 3);
+    }
+
+    @Test
+    void testReadBytesInChunks() throws Exception {
+        StreamMessageImpl message = newMessage();
+        message.writeBytes(new byte[] { 1, 2, 3, 4, 5 });
+        message.writeBytes(new byte[0]);
+        message.writeInt(1);
+        message.reset();
+
+        byte[] buf = new byte[2];
+        assertThat(message.readBytes(buf)).isEqualTo(2);
+        // the whole field has to be read first
+        assertThatExceptionOfType(MessageFormatException.class).isThrownBy(message::readInt);
+        assertThat(message.readBytes(buf)).isEqualTo(2);
+        assertThat(message.readBytes(buf)).isEqualTo(1);
+        assertThat(buf[0]).isEqualTo((byte) 5);
+        assertThat(message.readBytes(buf)).isZero();
+        assertThat(message.readInt()).isEqualTo(1);
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = { true, false })
+    void testSentBodyIsReadByReceiver(boolean compact) throws Exception {
+        StreamMessageImpl message = newMessage();
+        message.compactBody = compact;
+        writeValues(message);
+        message.setMessageBodyToPacket();
+        byte[] body = message.getMessageBody();
+        assertThat(CompactBodyCodec.isCompact(body)).isEqualTo(compact);
+
+        StreamMessageImpl received = new StreamMessageImpl();
+        received.setPacket(new ReadWritePacket());
+        received.setMessageBody(body);
+        received.getMessageBodyFromPacket();
+        readValues(received);
+        received.reset();
+        readValues(received);
+    }
+
+    @Test
+    void testReceivedCompactBodyResentSerialized() throws Exception {
+        StreamMessageImpl message = newMessage();
+        message.compactBody = true;
+        writeValues(message);
+        message.setMessageBodyToPacket();
+
+        StreamMessageImpl received = new StreamMessageImpl();
+        received.setPacket(new ReadWritePacket());
+        received.setMessageBody(message.getMessageBody());
+        received.getMessageBodyFromPacket();
+
+        // forwarded to a broker that does not read compact bodies
+        received.compactBody = false;
+        received.setMessageBodyToPacket();
+        byte[] body = received.getMessageBody();
+        assertThat(CompactBodyCodec.isCompact(body)).isFalse();
+        assertThat(body[0]).isEqualTo((byte) 0xAC);
+        assertThat(body[1]).isEqualTo((byte) 0xED);
+
+        StreamMessageImpl again = new StreamMessageImpl();
+        again.setPacket(new ReadWritePacket());
+        again.setMessageBody(body);
+        again.getMessageBodyFromPacket();
+        readValues(again);
+    }
+}
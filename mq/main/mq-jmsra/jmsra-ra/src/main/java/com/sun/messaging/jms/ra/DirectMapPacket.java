@@ -32,6 +32,7 @@ import jakarta.jms.MessageNotWriteableException;
 
 import com.sun.messaging.jmq.io.JMSPacket;
 import com.sun.messaging.jmq.io.PacketType;
+import com.sun.messaging.jmq.util.io.CompactBodyCodec;
 import com.sun.messaging.jmq.util.io.FilteringObjectInputStream;
 
 /**
@@ -589,16 +590,26 @@ public class DirectMapPacket extends DirectPacket implements jakarta.jms.MapMess
     @Override
     protected void _setBodyToPacket() throws JMSException {
         try {
-            this.byteArrayOutputStream = new ByteArrayOutputStream();
-            this.objectOutputStream = new ObjectOutputStream(byteArrayOutputStream);
+            this.messageBody = null;
+            if (this._useCompactBody()) {
+                try {
+                    this.messageBody = CompactBodyCodec.encodeMap(map);
+                } catch (IllegalArgumentException e) {
+                    // not a valid map body value, let serialization report it
+                }
+            }
+            if (this.messageBody == null) {
+                this.byteArrayOutputStream = new ByteArrayOutputStream();
+                this.objectOutputStream = new ObjectOutputStream(byteArrayOutputStream);
 
-            this.objectOutputStream.writeObject(map);
-            this.objectOutputStream.flush();
+                this.objectOutputStream.writeObject(map);
+                this.objectOutputStream.flush();
 
-            this.messageBody = byteArrayOutputStream.toByteArray();
+                this.messageBody = byteArrayOutputStream.toByteArray();
 
-            this.objectOutputStream.close();
-            this.byteArrayOutputStream.close();
+                this.objectOutputStream.close();
+                this.byteArrayOutputStream.close();
+            }
 
             super._setMessageBodyOfPacket(this.messageBody);
         } catch (Exception ex) {
@@ -617,9 +628,13 @@ public class DirectMapPacket extends DirectPacket implements jakarta.jms.MapMess
     protected void _getMessageBodyFromPacket() throws JMSException {
         try {
             this.messageBody = super._getMessageBodyByteArray();
-            this.byteArrayInputStream = new ByteArrayInputStream(messageBody);
-            this.objectInputStream = new FilteringObjectInputStream(byteArrayInputStream);
-            this.map = (Map<String, Object>) objectInputStream.readObject();
+            if (CompactBodyCodec.isCompact(this.messageBody)) {
+                this.map = CompactBodyCodec.decodeMap(this.messageBody);
+            } else {
+                this.byteArrayInputStream = new ByteArrayInputStream(messageBody);
+                this.objectInputStream = new FilteringObjectInputStream(byteArrayInputStream);
+                this.map = (Map<String, Object>) objectInputStream.readObject();
+            }
         } catch (Exception e) {
             String errMsg = _lgrMID_EXC + ":MapMessage:Exception deserializing on deliver:" + e.getMessage();
             _loggerJM.severe(errMsg);
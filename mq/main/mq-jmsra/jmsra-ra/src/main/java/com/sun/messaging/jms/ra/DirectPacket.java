@@ -45,6 +45,7 @@ import com.sun.messaging.jmq.io.SysMessageID;
 import com.sun.messaging.jmq.jmsclient.MessageImpl;
 import com.sun.messaging.jmq.jmsclient.zip.Compressor;
 import com.sun.messaging.jmq.jmsclient.zip.Decompressor;
+import com.sun.messaging.jmq.jmsserver.service.imq.ConvertPacket;
 import com.sun.messaging.jmq.jmsservice.JMSService;
 import com.sun.messaging.jmq.util.net.IPAddress;
 
@@ -131,6 +132,10 @@ public class DirectPacket implements JMSPacket, jakarta.jms.Message, com.sun.mes
 
     private boolean enableZip = Boolean.getBoolean("imq.zip.enable");
 
+    // write MapMessage and StreamMessage bodies in the compact format if the broker also has it enabled, the broker
+    // converts them for clients and cluster brokers that do not read it
+    private static final boolean ENABLE_COMPACT_BODY = Boolean.parseBoolean(System.getProperty("imq.compactBody.enable", "true"));
+
     static {
 //        _loggerOC = Logger.getLogger(_lgrNameOutboundConnection);
 //        _loggerJM = Logger.getLogger(_lgrNameJMSMessage);
@@ -1679,6 +1684,13 @@ public class DirectPacket implements JMSPacket, jakarta.jms.Message, com.sun.mes
         }
     }
 
+    /**
+     * Whether a MapMessage or StreamMessage body is set in the compact format, compressed bodies never are
+     */
+    protected boolean _useCompactBody() {
+        return ENABLE_COMPACT_BODY && ConvertPacket.COMPACT_BODY && !enableZip && !shouldCompress;
+    }
+
     /**
      * Set the Body of this JMS Message into the Packet
      */
@@ -23,6 +23,8 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 import jakarta.jms.JMSException;
 import jakarta.jms.MessageEOFException;
@@ -32,6 +34,7 @@ import jakarta.jms.MessageNotWriteableException;
 
 import com.sun.messaging.jmq.io.JMSPacket;
 import com.sun.messaging.jmq.io.PacketType;
+import com.sun.messaging.jmq.util.io.CompactBodyCodec;
 import com.sun.messaging.jmq.util.io.FilteringObjectInputStream;
 
 /**
@@ -105,12 +108,16 @@ public class DirectStreamPacket extends DirectPacket implements jakarta.jms.Stre
 
     private byte[] messageBody = null;
 
-    private ByteArrayOutputStream byteArrayOutputStream = null;
-    private ObjectOutputStream objectOutputStream = null;
+    // values written since the body was last cleared, null for a received message
+    private List<Object> values = null;
 
     private ByteArrayInputStream byteArrayInputStream = null;
     private ObjectInputStream objectInputStream = null;
 
+    // values read from a compact body (or written values), in place of objectInputStream
+    private List<Object> readValues = null;
+    private int readIndex = 0;
+
     /** Indicates whether this JMS BytesMessage has been written to or not */
     private boolean writePerformed = false;
 
@@ -661,6 +668,9 @@ public class DirectStreamPacket extends DirectPacket implements jakarta.jms.Stre
         this._reset("_setBodyToPacket");
         if (this.messageBody != null) {
             try {
+                if (this.values != null && CompactBodyCodec.isCompact(this.messageBody) != this._useCompactBody()) {
+                    this.messageBody = this._encodeValues();
+                }
                 super._setMessageBodyOfPacket(this.messageBody, 0, this.messageBody.length);
             } catch (Exception ex) {
                 String errMsg = _lgrMID_EXC + ":ERROR setting StreamMessage body" + ":Exception=" + ex.getMessage();
@@ -678,6 +688,7 @@ public class DirectStreamPacket extends DirectPacket implements jakarta.jms.Stre
     @Override
     protected void _getMessageBodyFromPacket() throws JMSException {
         this.messageBody = super._getMessageBodyByteArray();
+        this.values = null;
         this._reset("_getMessageBodyFromPacket");
     }
 
@@ -688,16 +699,20 @@ public class DirectStreamPacket extends DirectPacket implements jakarta.jms.Stre
         super._setReadOnlyBody(true);
         try {
             if (this.writePerformed) {
-                this.objectOutputStream.flush();
-                this.messageBody = this.byteArrayOutputStream.toByteArray();
-
-                this.objectOutputStream.close();
-                this.byteArrayOutputStream.close();
+                this.messageBody = this._encodeValues();
                 this.writePerformed = false;
             }
+            this.readValues = null;
+            this.readIndex = 0;
             if (this.messageBody != null) {
-                this.byteArrayInputStream = new ByteArrayInputStream(this.messageBody);
-                this.objectInputStream = new FilteringObjectInputStream(this.byteArrayInputStream);
+                if (this.values != null) {
+                    this.readValues = this.values;
+                } else if (CompactBodyCodec.isCompact(this.messageBody)) {
+                    this.readValues = CompactBodyCodec.decodeList(this.messageBody);
+                } else {
+                    this.byteArrayInputStream = new ByteArrayInputStream(this.messageBody);
+                    this.objectInputStream = new FilteringObjectInputStream(this.byteArrayInputStream);
+                }
             }
         } catch (Exception e) {
             String errMsg = _lgrMID_EXC + ":Exception:StreamMessage." + methodName + ":message=" + e.getMessage();
@@ -722,6 +737,15 @@ public class DirectStreamPacket extends DirectPacket implements jakarta.jms.Stre
             if (this.notYetProcessedPrimitiveObject != null) {
                 obj = this.notYetProcessedPrimitiveObject;
                 this.notYetProcessedPrimitiveObject = null;
+            } else if (this.readValues != null) {
+                if (this.readIndex >= this.readValues.size()) {
+                    throw new EOFException();
+                }
+                obj = this.readValues.get(this.readIndex++);
+                if (obj instanceof byte[]) {
+                    // the same value is read again after reset
+                    obj = ((byte[]) obj).clone();
+                }
             } else {
                 obj = this.objectInputStream.readObject();
             }
@@ -741,15 +765,11 @@ public class DirectStreamPacket extends DirectPacket implements jakarta.jms.Stre
      */
     private void _writePrimitiveObject(Object obj, String methodName) throws JMSException {
         this.checkForReadOnlyMessageBody(methodName);
-        try {
-            this.objectOutputStream.writeObject(obj);
-        } catch (Exception e) {
-            String errMsg = _lgrMID_EXC + ":Exception:StreamMessage." + methodName + ":message=" + e.getMessage();
-            _loggerJM.severe(errMsg);
-            JMSException jmse = new jakarta.jms.JMSException(errMsg);
-            jmse.initCause(e);
-            throw jmse;
+        if (obj instanceof byte[]) {
+            // the value is written when the message is reset, not when this is called
+            obj = ((byte[]) obj).clone();
         }
+        this.values.add(obj);
         this.writePerformed = true;
     }
 
@@ -771,14 +791,23 @@ public class DirectStreamPacket extends DirectPacket implements jakarta.jms.Stre
      * } Initialize buffers for output
      */
     private void _initializeOutputStreams() throws JMSException {
-        try {
-            this.byteArrayOutputStream = new ByteArrayOutputStream();
-            this.objectOutputStream = new ObjectOutputStream(byteArrayOutputStream);
-        } catch (Exception e) {
-            JMSException jmse = new JMSException("Exception:" + "StreamMessage:initializing output streams:" + e.getMessage());
-            jmse.initCause(e);
-            throw jmse;
+        this.values = new ArrayList<>();
+    }
+
+    /**
+     * Encode the written values in the compact or serialized format
+     */
+    private byte[] _encodeValues() throws IOException {
+        if (this._useCompactBody()) {
+            return CompactBodyCodec.encodeList(this.values);
+        }
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        try (ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream)) {
+            for (Object value : this.values) {
+                objectOutputStream.writeObject(value);
+            }
         }
+        return byteArrayOutputStream.toByteArray();
     }
 
     private void _checkValidObjectType(Object value, String name) throws MessageFormatException {
@@ -142,6 +142,13 @@ public class Constants {
     // default receive timeout - 7 seconds.
     public static final String IMQ_RECEIVE_TIMEOUT_DEFAULT_VALUE = "7000";
 
+    /**
+     * Receive from queues with servlet asynchronous long-polling through a shared consumer per queue. Default true.
+     */
+    public static final String RECEIVE_ASYNC = "ums.receive.async";
+
+    public static final String RECEIVE_ASYNC_DEFAULT_VALUE = "true";
+
     /**
      * JMS cache duration. JMS resources are closed if not used for the defined duration (milli secs).
      *
@@ -29,6 +29,7 @@ import com.sun.messaging.ums.readonly.ReadOnlyRequestMessage;
 import com.sun.messaging.ums.readonly.ReadOnlyResponseMessage;
 import com.sun.messaging.ums.service.DestinationService;
 import com.sun.messaging.ums.service.BrokerInfoService;
+import com.sun.messaging.ums.service.ReceiveMultiplexer;
 import com.sun.messaging.ums.service.SOAP2JMSService;
 import com.sun.messaging.ums.service.UMSServiceImpl;
 import java.io.ByteArrayOutputStream;
@@ -51,6 +52,8 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.StringTokenizer;
 
+import jakarta.jms.JMSException;
+import jakarta.servlet.AsyncContext;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -177,6 +180,11 @@ public class UMSServlet extends HttpServlet {
      */
     private static long receiveTimeout = 7000;
 
+    /**
+     * added to the receive timeout for the servlet asynchronous timeout of a long-poll receive.
+     */
+    private static final long ASYNC_TIMEOUT_GRACE = 5000;
+
     /**
      * topic/queue domain
      */
@@ -649,24 +657,23 @@ public class UMSServlet extends HttpServlet {
 
                     long timeout = this.getServiceTimeout(msg);
 
+                    // long-poll without holding this thread if the request and the receive allow it
+                    if (req.isAsyncSupported()) {
+
+                        AsyncReceive ar = new AsyncReceive(req, resp, destName, isTopic, JMSService.getProvider(map), timeout);
+
+                        if (this.JMSService.receiveTextAsync(clientId, destName, isTopic, timeout, map, ar)) {
+                            return;
+                        }
+                    }
+
                     // receive message
                     String text = this.JMSService.receiveText(clientId, destName, isTopic, timeout, map);
 
-                    resp.setHeader(UMS_SERVICE, Constants.SERVICE_VALUE_RECEIVE_MESSAGE_REPLY);
-                    resp.setHeader(UMS_DESTINATION, destName);
-                    resp.setHeader(UMS_DOMAIN, getDomain(isTopic));
-
-                    resp.setHeader(UMS_MOM, JMSService.getProvider(map));
+                    setReceiveReplyHeaders(resp, destName, isTopic, JMSService.getProvider(map), text);
 
                     respMsg = text;
 
-                    if (respMsg == null) {
-                        // respMsg = "null";
-                        resp.setHeader(UMS_STATUS, Constants.SERVICE_STATUS_VALUE_NO_MESSAGE);
-                    } else {
-                        resp.setHeader(UMS_STATUS, Constants.SERVICE_STATUS_VALUE_OK);
-                    }
-
                 } else if (isLogin) {
 
                     String sid = this.JMSService.authenticate(map);
@@ -724,56 +731,148 @@ public class UMSServlet extends HttpServlet {
                 status = resp.SC_OK;
             }
 
-            resp.setStatus(status);
+            writeSimpleResponse(resp, status, respMsg);
 
-            // resp.setHeader("Content-Type", "text/plain;charset=UTF-8");
-            resp.setHeader(CONTENT_TYPE, PLAIN_TEXT_CONTENT_TYPE);
-            // resp.setCharacterEncoding("UTF-8");
+        } catch (Exception e) {
 
-            byte[] data = null;
+            logger.log(Level.WARNING, e.getMessage(), e);
 
-            if (respMsg != null) {
-                data = respMsg.getBytes(UTF8);
-            } else {
-                // data = "".getBytes(UTF8);
-                data = EMPTY_STRING.getBytes(UTF8);
+            writeSimpleError(resp, e);
+
+            if (req.isAsyncStarted()) {
+                req.getAsyncContext().complete();
             }
+        }
 
-            DataOutputStream dos = new DataOutputStream(resp.getOutputStream());
+    }
 
-            resp.setContentLength(data.length);
+    private void setReceiveReplyHeaders(HttpServletResponse resp, String destName, boolean isTopic, String mom, String text) {
 
-            dos.write(data, 0, data.length);
+        resp.setHeader(UMS_SERVICE, Constants.SERVICE_VALUE_RECEIVE_MESSAGE_REPLY);
+        resp.setHeader(UMS_DESTINATION, destName);
+        resp.setHeader(UMS_DOMAIN, getDomain(isTopic));
 
-            // dos.writeUTF(respMsg);
+        resp.setHeader(UMS_MOM, mom);
 
-            dos.flush();
-            dos.close();
+        if (text == null) {
+            // respMsg = "null";
+            resp.setHeader(UMS_STATUS, Constants.SERVICE_STATUS_VALUE_NO_MESSAGE);
+        } else {
+            resp.setHeader(UMS_STATUS, Constants.SERVICE_STATUS_VALUE_OK);
+        }
+    }
 
-        } catch (Exception e) {
+    private void writeSimpleResponse(HttpServletResponse resp, int status, String respMsg) throws IOException {
 
-            logger.log(Level.WARNING, e.getMessage(), e);
+        resp.setStatus(status);
 
-            resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            resp.setHeader(CONTENT_TYPE, PLAIN_TEXT_CONTENT_TYPE);
+        // resp.setHeader("Content-Type", "text/plain;charset=UTF-8");
+        resp.setHeader(CONTENT_TYPE, PLAIN_TEXT_CONTENT_TYPE);
+        // resp.setCharacterEncoding("UTF-8");
 
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] data = null;
 
-            PrintStream ps = new PrintStream(baos);
-            e.printStackTrace(ps);
-            byte[] data = baos.toString().getBytes(UTF8);
+        if (respMsg != null) {
+            data = respMsg.getBytes(UTF8);
+        } else {
+            // data = "".getBytes(UTF8);
+            data = EMPTY_STRING.getBytes(UTF8);
+        }
 
-            DataOutputStream dos = new DataOutputStream(resp.getOutputStream());
+        DataOutputStream dos = new DataOutputStream(resp.getOutputStream());
 
-            resp.setContentLength(data.length);
+        resp.setContentLength(data.length);
 
-            dos.write(data, 0, data.length);
+        dos.write(data, 0, data.length);
 
-            dos.flush();
-            dos.close();
-            resp.flushBuffer();
+        // dos.writeUTF(respMsg);
+
+        dos.flush();
+        dos.close();
+    }
+
+    private void writeSimpleError(HttpServletResponse resp, Exception e) throws IOException {
+
+        resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        resp.setHeader(CONTENT_TYPE, PLAIN_TEXT_CONTENT_TYPE);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        PrintStream ps = new PrintStream(baos);
+        e.printStackTrace(ps);
+        byte[] data = baos.toString().getBytes(UTF8);
+
+        DataOutputStream dos = new DataOutputStream(resp.getOutputStream());
+
+        resp.setContentLength(data.length);
+
+        dos.write(data, 0, data.length);
+
+        dos.flush();
+        dos.close();
+        resp.flushBuffer();
+    }
+
+    /**
+     * A simple messaging receive completed by the shared queue consumer. The reply is written on a container thread.
+     */
+    private class AsyncReceive implements ReceiveMultiplexer.ReceiveListener {
+
+        private final HttpServletRequest req;
+        private final HttpServletResponse resp;
+        private final String destName;
+        private final boolean isTopic;
+        private final String mom;
+        private final long timeout;
+
+        private AsyncContext asyncContext = null;
+
+        AsyncReceive(HttpServletRequest req, HttpServletResponse resp, String destName, boolean isTopic, String mom, long timeout) {
+            this.req = req;
+            this.resp = resp;
+            this.destName = destName;
+            this.isTopic = isTopic;
+            this.mom = mom;
+            this.timeout = timeout;
+        }
+
+        @Override
+        public void start() {
+            asyncContext = req.startAsync(req, resp);
+            // the receive times out first and replies with no message
+            asyncContext.setTimeout(timeout + ASYNC_TIMEOUT_GRACE);
         }
 
+        @Override
+        public void onReceive(String text) {
+
+            asyncContext.start(() -> {
+
+                try {
+                    setReceiveReplyHeaders(resp, destName, isTopic, mom, text);
+                    writeSimpleResponse(resp, HttpServletResponse.SC_OK, text);
+                } catch (Exception e) {
+                    logger.log(Level.WARNING, e.getMessage(), e);
+                } finally {
+                    asyncContext.complete();
+                }
+            });
+        }
+
+        @Override
+        public void onException(JMSException e) {
+
+            asyncContext.start(() -> {
+
+                try {
+                    writeSimpleError(resp, e);
+                } catch (Exception ex) {
+                    logger.log(Level.WARNING, ex.getMessage(), ex);
+                } finally {
+                    asyncContext.complete();
+                }
+            });
+        }
     }
 
     /**
@@ -71,4 +71,6 @@ public class UMSResources extends MQResourceBundle {
     final public static String UMS_CONFIG_INIT = "UMS1008";
 
     final public static String UMS_SERVICE_STARTED = "UMS1009";
+
+    final public static String UMS_ASYNC_RECEIVE_INIT = "UMS1010";
 }
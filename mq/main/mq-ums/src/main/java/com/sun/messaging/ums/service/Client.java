@@ -47,6 +47,8 @@ public class Client {
 
     private boolean transacted = false;
 
+    private int acknowledgeMode = Session.AUTO_ACKNOWLEDGE;
+
     /**
      * the destination name that current consumer is associated with. Each client consumer can only associate with one
      * destination at a time.
@@ -102,10 +104,17 @@ public class Client {
         return this.transacted;
     }
 
+    /**
+     * set the acknowledge mode of a non-transacted session, before the session is created. default AUTO_ACKNOWLEDGE.
+     */
+    public void setAcknowledgeMode(int mode) {
+        this.acknowledgeMode = mode;
+    }
+
     public synchronized Session getSession() throws JMSException {
 
         if (session == null) {
-            session = cc.getConnection().createSession(transacted, Session.AUTO_ACKNOWLEDGE);
+            session = cc.getConnection().createSession(transacted, acknowledgeMode);
         }
 
         this.setTimestamp();
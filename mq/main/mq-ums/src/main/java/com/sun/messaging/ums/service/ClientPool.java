@@ -59,6 +59,11 @@ public class ClientPool implements Sweepable {
      */
     private Hashtable<String, UMSDestination> queueTable = new Hashtable<>();
 
+    /**
+     * shared queue consumers for asynchronous receive, null if disabled
+     */
+    private ReceiveMultiplexer multiplexer = null;
+
     public ClientPool(String provider, Properties p) throws JMSException {
 
         this.provider = provider;
@@ -78,12 +83,24 @@ public class ClientPool implements Sweepable {
         String sid = ccpool.nextSid();
 
         this.destService = this.createInternalClient(sid);
+
+        String tmp = props.getProperty(Constants.RECEIVE_ASYNC, Constants.RECEIVE_ASYNC_DEFAULT_VALUE);
+        if (Boolean.parseBoolean(tmp)) {
+            this.multiplexer = new ReceiveMultiplexer(this, props);
+        }
     }
 
     public CachedConnectionPool getConnectionPool() {
         return this.ccpool;
     }
 
+    /**
+     * @return the shared queue consumers for asynchronous receive, null if disabled
+     */
+    public ReceiveMultiplexer getReceiveMultiplexer() {
+        return this.multiplexer;
+    }
+
     protected String authenticate(String user, String password, boolean transacted) throws JMSException {
 
         String sid = this.ccpool.authenticate(user, password);
@@ -288,6 +305,10 @@ public class ClientPool implements Sweepable {
 
     public void close() {
 
+        if (multiplexer != null) {
+            multiplexer.close();
+        }
+
         Iterator it = clients.values().iterator();
 
         while (it.hasNext()) {
@@ -402,6 +423,15 @@ public class ClientPool implements Sweepable {
 
         this.sweepClient(duration);
 
+        if (multiplexer != null) {
+
+            if (UMSServiceImpl.getDebug()) {
+                logger.info("sweeping shared receive consumers, duration (milli secs): " + duration);
+            }
+
+            multiplexer.sweep(duration);
+        }
+
         if (UMSServiceImpl.getDebug()) {
             logger.info("sweeping queue destination cache, duration (milli secs): " + duration);
         }
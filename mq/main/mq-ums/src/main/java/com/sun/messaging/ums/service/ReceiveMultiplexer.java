@@ -0,0 +1,397 @@
+/*
+ * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.messaging.ums.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.MessageConsumer;
+import jakarta.jms.MessageListener;
+import jakarta.jms.Session;
+import jakarta.jms.TextMessage;
+
+import com.sun.messaging.ums.resources.UMSResources;
+
+/**
+ * Shares one JMS consumer per queue among all UMS clients that long-poll the queue.
+ *
+ * A synchronous receive pins a servlet thread and a JMS session per HTTP receiver for up to the receive timeout. The
+ * multiplexer instead registers a pending receive and returns, and the message listener of the shared consumer hands
+ * each message to the oldest pending receive. When no receive is pending the listener waits for one, which stops the
+ * provider from delivering more messages to the shared consumer.
+ *
+ * The shared consumer uses a CLIENT_ACKNOWLEDGE session and acknowledges a message only after it has been handed to a
+ * receive. Messages are not buffered past the receive they are handed to, so a message that has not been handed to a
+ * receive when the shared consumer is closed goes back to the queue as it is, with its headers and properties.
+ *
+ * Only queues of non-transacted clients are multiplexed. A topic subscriber must see every message and a transacted
+ * client must receive in its own session, so both still use the synchronous receive.
+ */
+public class ReceiveMultiplexer implements Sweepable {
+
+    /**
+     * Completes a pending receive. The methods must not block, an implementation hands the reply to another thread.
+     */
+    public interface ReceiveListener {
+
+        /**
+         * Called once the receive has been accepted, before any other method.
+         */
+        void start();
+
+        /**
+         * @param text the received text, null if no message was received before the timeout
+         */
+        void onReceive(String text);
+
+        void onException(JMSException e);
+    }
+
+    private static final String UMS_DMQ = "UMS.DMQ";
+
+    private Logger logger = UMSServiceImpl.logger;
+
+    private ClientPool cache = null;
+
+    private Hashtable<String, SharedConsumer> consumers = new Hashtable<>();
+
+    private ScheduledExecutorService timer = null;
+
+    private volatile boolean closed = false;
+
+    public ReceiveMultiplexer(ClientPool cache, Properties props) {
+
+        this.cache = cache;
+
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "UMSReceiveTimer");
+            t.setDaemon(true);
+            return t;
+        });
+
+        String msg = UMSResources.getResources().getKString(UMSResources.UMS_ASYNC_RECEIVE_INIT);
+        logger.info(msg);
+    }
+
+    /**
+     * Receive a text message from a queue. The listener is completed with the message, or with null after the timeout.
+     */
+    public void receive(String destName, long timeout, ReceiveListener listener) throws JMSException {
+
+        while (true) {
+
+            SharedConsumer sc = null;
+
+            synchronized (consumers) {
+
+                if (closed) {
+                    throw new JMSException("UMS receive service is closed.");
+                }
+
+                sc = consumers.get(destName);
+
+                if (sc == null) {
+                    sc = new SharedConsumer(destName);
+                    consumers.put(destName, sc);
+                }
+            }
+
+            // false if swept meanwhile, a new shared consumer is created
+            if (sc.receive(timeout, listener)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Close shared consumers of queues that have not been polled for the specified duration.
+     */
+    @Override
+    public void sweep(long duration) {
+
+        List<SharedConsumer> idle = new ArrayList<>();
+
+        long now = System.currentTimeMillis();
+
+        synchronized (consumers) {
+
+            Iterator<SharedConsumer> it = consumers.values().iterator();
+
+            while (it.hasNext()) {
+
+                SharedConsumer sc = it.next();
+
+                if (sc.sweep(now, duration)) {
+                    it.remove();
+                    idle.add(sc);
+                }
+            }
+        }
+
+        for (SharedConsumer sc : idle) {
+
+            if (UMSServiceImpl.getDebug()) {
+                logger.info("closing idle shared consumer, destination=" + sc.destName);
+            }
+
+            sc.close();
+        }
+    }
+
+    public void close() {
+
+        this.closed = true;
+
+        SharedConsumer[] scs = null;
+
+        synchronized (consumers) {
+            scs = consumers.values().toArray(new SharedConsumer[0]);
+            consumers.clear();
+        }
+
+        for (SharedConsumer sc : scs) {
+            sc.close();
+        }
+
+        timer.shutdownNow();
+    }
+
+    private static class PendingReceive {
+
+        private final ReceiveListener listener;
+
+        private final AtomicBoolean done = new AtomicBoolean(false);
+
+        private ScheduledFuture<?> timeout = null;
+
+        PendingReceive(ReceiveListener listener) {
+            this.listener = listener;
+        }
+
+        /**
+         * @return false if the receive has already been completed or claimed
+         */
+        boolean claim() {
+
+            if (!done.compareAndSet(false, true)) {
+                return false;
+            }
+
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+
+            return true;
+        }
+    }
+
+    private class SharedConsumer implements MessageListener {
+
+        private final String destName;
+
+        private Client client = null;
+
+        private MessageConsumer consumer = null;
+
+        private final ArrayDeque<PendingReceive> waiters = new ArrayDeque<>();
+
+        private long timestamp = System.currentTimeMillis();
+
+        private boolean stopped = false;
+
+        SharedConsumer(String destName) {
+            this.destName = destName;
+        }
+
+        private void start() throws JMSException {
+
+            // not registered in the client table, so its sid cannot be used by applications
+            client = new Client(cache.getConnectionPool().nextSid(), cache.getConnectionPool(), false);
+            client.setAcknowledgeMode(Session.CLIENT_ACKNOWLEDGE);
+            client.setInuse(true);
+
+            consumer = client.getConsumer(false, destName);
+            consumer.setMessageListener(this);
+
+            if (UMSServiceImpl.debug) {
+                logger.info("created shared consumer on queue: " + destName);
+            }
+        }
+
+        /**
+         * @return false if this consumer has been stopped
+         */
+        boolean receive(long timeout, ReceiveListener listener) throws JMSException {
+
+            synchronized (this) {
+
+                if (stopped) {
+                    return false;
+                }
+
+                if (client == null) {
+                    start();
+                }
+
+                this.timestamp = System.currentTimeMillis();
+
+                listener.start();
+
+                PendingReceive pr = new PendingReceive(listener);
+                waiters.add(pr);
+
+                pr.timeout = timer.schedule(() -> timeout(pr), timeout, TimeUnit.MILLISECONDS);
+
+                // wake up the listener waiting for a receive
+                notifyAll();
+            }
+
+            return true;
+        }
+
+        private void timeout(PendingReceive pr) {
+
+            synchronized (this) {
+                waiters.remove(pr);
+            }
+
+            if (pr.claim()) {
+                pr.listener.onReceive(null);
+            }
+        }
+
+        @Override
+        public void onMessage(Message message) {
+
+            try {
+
+                if (!(message instanceof TextMessage)) {
+                    // XXX I18N
+                    logger.warning("received message is not a TextMessage type, message=" + message);
+
+                    jakarta.jms.Destination dmq = cache.getJMSDestination(UMS_DMQ, false);
+                    client.getProducer().send(dmq, message);
+                    message.acknowledge();
+
+                    logger.info("Message sent to DMQ, destination=" + UMS_DMQ + ", message=" + message);
+                    return;
+                }
+
+                String text = ((TextMessage) message).getText();
+
+                PendingReceive pr = nextReceive();
+
+                if (pr == null) {
+                    // not acknowledged, the message goes back to the queue when the consumer is closed
+                    return;
+                }
+
+                pr.listener.onReceive(text);
+
+                message.acknowledge();
+
+            } catch (JMSException e) {
+                logger.log(Level.WARNING, e.getMessage(), e);
+            }
+        }
+
+        /**
+         * Wait for a pending receive
+         *
+         * @return the oldest pending receive, claimed, or null if this consumer has been stopped
+         */
+        private synchronized PendingReceive nextReceive() {
+
+            while (!stopped) {
+
+                PendingReceive pr = null;
+
+                while ((pr = waiters.poll()) != null) {
+                    if (pr.claim()) {
+                        return pr;
+                    }
+                }
+
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+
+            return null;
+        }
+
+        /**
+         * @return true if this consumer is idle and should be closed
+         */
+        synchronized boolean sweep(long now, long duration) {
+            return waiters.isEmpty() && (now - timestamp) > duration;
+        }
+
+        /**
+         * Stop the shared consumer. Messages delivered to it and not handed to a receive are not acknowledged, they go back
+         * to the queue when the consumer is closed.
+         */
+        void close() {
+
+            List<PendingReceive> pending = null;
+
+            synchronized (this) {
+
+                stopped = true;
+
+                pending = new ArrayList<>(waiters);
+                waiters.clear();
+
+                notifyAll();
+            }
+
+            for (PendingReceive pr : pending) {
+                if (pr.claim()) {
+                    pr.listener.onReceive(null);
+                }
+            }
+
+            if (client == null) {
+                return;
+            }
+
+            try {
+                // waits for a running onMessage to return
+                consumer.close();
+            } catch (Exception e) {
+                logger.log(Level.WARNING, e.getMessage(), e);
+            } finally {
+                client.close();
+            }
+        }
+    }
+}
@@ -276,6 +276,58 @@ public class ReceiveServiceImpl implements ReceiveService {
         return reply;
     }
 
+    /**
+     * receive a TextMessage from a MQ queue without blocking the calling thread. The listener is started and later
+     * completed with the message, or with null after the timeout.
+     *
+     * @return false if the receive must be done with receiveText, for a topic, a transacted client or if asynchronous
+     * receive is disabled. The listener is not used then.
+     */
+    public boolean receiveTextAsync(String sid, String destName, boolean isTopic, long timeout, Map map, ReceiveMultiplexer.ReceiveListener listener)
+            throws JMSException {
+
+        ReceiveMultiplexer multiplexer = cache.getReceiveMultiplexer();
+
+        if (isTopic || multiplexer == null) {
+            return false;
+        }
+
+        Client client = null;
+
+        try {
+
+            client = cache.getClient(sid, map);
+
+            if (client.getTransacted()) {
+                return false;
+            }
+
+            if (UMSServiceImpl.debug) {
+                logger.info("ReceiveService receiving Text message asynchronously ...");
+            }
+
+            multiplexer.receive(destName, timeout, listener);
+
+            return true;
+
+        } catch (Exception ex) {
+
+            logger.log(Level.WARNING, ex.getMessage(), ex);
+
+            if (ex instanceof JMSException) {
+                throw (JMSException) ex;
+            } else {
+                JMSException jmse = new JMSException(ex.getMessage());
+                jmse.setLinkedException(ex);
+                throw jmse;
+            }
+
+        } finally {
+            // the shared consumer does not use the client session
+            cache.returnClient(client);
+        }
+    }
+
     /**
      * Messages unable to process is sent to UMS_DMQ
      */
@@ -331,6 +331,19 @@ public class UMSServiceImpl {
         return text;
     }
 
+    /**
+     * @return false if the receive must be done with receiveText
+     */
+    public boolean receiveTextAsync(String sid, String destName, boolean isTopic, long timeout, Map map, ReceiveMultiplexer.ReceiveListener listener)
+            throws JMSException {
+
+        String provider = this.getProvider(map);
+
+        ReceiveService service = getReceiveService(provider);
+
+        return ((ReceiveServiceImpl) service).receiveTextAsync(sid, destName, isTopic, timeout, map, listener);
+    }
+
     private SendService getSendService(String provider) throws JMSException {
 
         SendService service = this.sendServices.get(provider);
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+
+package com.sun.messaging.ums.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import jakarta.jms.Connection;
+import jakarta.jms.MessageConsumer;
+import jakarta.jms.MessageListener;
+import jakarta.jms.Queue;
+import jakarta.jms.Session;
+import jakarta.jms.TextMessage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+
+class ReceiveMultiplexerTest {
+
+    private static final long LONG_POLL = 60000L;
+
+    private final ClientPool cache = mock(ClientPool.class);
+    private final Session session = mock(Session.class);
+    private final MessageConsumer consumer = mock(MessageConsumer.class);
+
+    private final ExecutorService provider = Executors.newSingleThreadExecutor();
+
+    private ReceiveMultiplexer multiplexer;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        CachedConnectionPool pool = mock(CachedConnectionPool.class);
+        CachedConnection cc = mock(CachedConnection.class);
+        Connection conn = mock(Connection.class);
+        Queue queue = mock(Queue.class);
+        when(cache.getConnectionPool()).thenReturn(pool);
+        when(pool.nextSid()).thenReturn("1-shared");
+        when(pool.getCachedConnection()).thenReturn(cc);
+        when(cc.getConnection()).thenReturn(conn);
+        when(conn.createSession(false, Session.CLIENT_ACKNOWLEDGE)).thenReturn(session);
+        when(session.createQueue("Q")).thenReturn(queue);
+        when(session.createConsumer(queue)).thenReturn(consumer);
+
+        multiplexer = new ReceiveMultiplexer(cache, new Properties());
+    }
+
+    @AfterEach
+    void tearDown() {
+        multiplexer.close();
+        provider.shutdownNow();
+    }
+
+    private MessageListener messageListener() throws Exception {
+        ArgumentCaptor<MessageListener> ml = ArgumentCaptor.forClass(MessageListener.class);
+        verify(consumer).setMessageListener(ml.capture());
+        return ml.getValue();
+    }
+
+    private static TextMessage textMessage(String text) throws Exception {
+        TextMessage m = mock(TextMessage.class);
+        when(m.getText()).thenReturn(text);
+        return m;
+    }
+
+    @Test
+    void testAcknowledgedAfterHandOff() throws Exception {
+        ReceiveMultiplexer.ReceiveListener receiver = mock(ReceiveMultiplexer.ReceiveListener.class);
+        multiplexer.receive("Q", LONG_POLL, receiver);
+        TextMessage m = textMessage("hello");
+
+        messageListener().onMessage(m);
+
+        InOrder order = inOrder(receiver, m);
+        order.verify(receiver).start();
+        order.verify(receiver).onReceive("hello");
+        order.verify(m).acknowledge();
+    }
+
+    @Test
+    void testListenerWaitsForReceive() throws Exception {
+        ReceiveMultiplexer.ReceiveListener first = mock(ReceiveMultiplexer.ReceiveListener.class);
+        multiplexer.receive("Q", LONG_POLL, first);
+        MessageListener ml = messageListener();
+        ml.onMessage(textMessage("m1"));
+        verify(first).onReceive("m1");
+
+        TextMessage m2 = textMessage("m2");
+        Future<?> delivery = provider.submit(() -> ml.onMessage(m2));
+        assertWaiting(delivery);
+        verify(m2, never()).acknowledge();
+
+        ReceiveMultiplexer.ReceiveListener second = mock(ReceiveMultiplexer.ReceiveListener.class);
+        multiplexer.receive("Q", LONG_POLL, second);
+        delivery.get(10, TimeUnit.SECONDS);
+
+        verify(second).onReceive("m2");
+        verify(m2).acknowledge();
+    }
+
+    @Test
+    void testCloseLeavesMessageNotHandedOffUnacknowledged() throws Exception {
+        ReceiveMultiplexer.ReceiveListener receiver = mock(ReceiveMultiplexer.ReceiveListener.class);
+        multiplexer.receive("Q", 1L, receiver);
+        verify(receiver, timeout(10000)).onReceive(null);
+
+        TextMessage m = textMessage("late");
+        MessageListener ml = messageListener();
+        Future<?> delivery = provider.submit(() -> ml.onMessage(m));
+        assertWaiting(delivery);
+
+        multiplexer.close();
+        delivery.get(10, TimeUnit.SECONDS);
+
+        verify(m, never()).acknowledge();
+        verify(receiver, never()).onReceive("late");
+        // the message goes back to the queue as it is, it is not sent again as a new message
+        verify(session, never()).createTextMessage(anyString());
+        verify(session, never()).createProducer(any());
+        verify(consumer).close();
+        verify(session).close();
+    }
+
+    @Test
+    void testCloseCompletesPendingReceives() throws Exception {
+        ReceiveMultiplexer.ReceiveListener receiver = mock(ReceiveMultiplexer.ReceiveListener.class);
+        multiplexer.receive("Q", LONG_POLL, receiver);
+
+        multiplexer.close();
+
+        verify(receiver).onReceive(null);
+    }
+
+    @Test
+    void testSweepClosesIdleConsumer() throws Exception {
+        ReceiveMultiplexer.ReceiveListener receiver = mock(ReceiveMultiplexer.ReceiveListener.class);
+        multiplexer.receive("Q", 1L, receiver);
+        verify(receiver, timeout(10000)).onReceive(null);
+
+        multiplexer.sweep(LONG_POLL);
+        verify(consumer, never()).close();
+
+        Thread.sleep(5);
+        multiplexer.sweep(0L);
+        verify(consumer).close();
+    }
+
+    private static void assertWaiting(Future<?> f) throws Exception {
+        try {
+            f.get(200, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            return;
+        }
+        assertThat(f.isDone()).as("listener waits for a receive").isFalse();
+    }
+}
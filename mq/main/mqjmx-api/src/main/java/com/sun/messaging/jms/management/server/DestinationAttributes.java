@@ -209,6 +209,11 @@ public class DestinationAttributes {
      */
     public static final String DISK_UTILIZATION_RATIO = "DiskUtilizationRatio";
 
+    /**
+     * Compressed size over uncompressed size of the message bodies compressed in the store.
+     */
+    public static final String STORE_COMPRESSION_RATIO = "StoreCompressionRatio";
+
     /**
      * Msg bytes in
      */
@@ -344,6 +349,11 @@ public class DestinationAttributes {
      */
     public static final String RELOAD_XML_SCHEMA_ON_FAILURE = "ReloadXMLSchemaOnFailure";
 
+    /**
+     * Message groups enabled (queues only)
+     */
+    public static final String MESSAGE_GROUPS_ENABLED = "MessageGroupsEnabled";
+
     /*
      * Class cannot be instantiated
      */
@@ -84,6 +84,11 @@ public class DestinationOperations {
      */
     public static final String GET_NUM_WILDCARD_CONSUMERS = "getNumWildcardConsumers";
 
+    /**
+     * Get latency statistics of the stages messages go through in the broker.
+     */
+    public static final String GET_LATENCY_INFO = "getLatencyInfo";
+
     /**
      * Get producer wildcards used on this destination
      */
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2022 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.messaging.jms.management.server;
+
+/**
+ * This class contains constants/names for fields in the CompositeData that is returned by the getLatencyInfo operation
+ * of the Destination Monitor and Service Monitor MBeans. There is one CompositeData per stage. All times are in
+ * microseconds.
+ */
+public class LatencyInfo implements java.io.Serializable {
+
+    private static final long serialVersionUID = -2961518870465283011L;
+
+    /**
+     * Stage name, one of produceToRoute, storeWrite, fsync, queued or deliverToAck
+     */
+    public static final String STAGE = "Stage";
+
+    /**
+     * Number of recorded values
+     */
+    public static final String COUNT = "Count";
+
+    /**
+     * Mean
+     */
+    public static final String MEAN = "Mean";
+
+    /**
+     * Median
+     */
+    public static final String P50 = "P50";
+
+    /**
+     * 90th percentile
+     */
+    public static final String P90 = "P90";
+
+    /**
+     * 99th percentile
+     */
+    public static final String P99 = "P99";
+
+    /**
+     * 99.9th percentile
+     */
+    public static final String P999 = "P999";
+
+    /**
+     * Maximum
+     */
+    public static final String MAX = "Max";
+
+    /*
+     * Class cannot be instantiated
+     */
+    private LatencyInfo() {
+    }
+
+}
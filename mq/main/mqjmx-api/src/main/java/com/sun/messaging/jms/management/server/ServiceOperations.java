@@ -39,6 +39,11 @@ public class ServiceOperations {
      */
     public static final String GET_CONSUMER_IDS = "getConsumerIDs";
 
+    /**
+     * Get latency statistics of the stages messages go through in the broker.
+     */
+    public static final String GET_LATENCY_INFO = "getLatencyInfo";
+
     /**
      * Get list of producer IDs.
      */